@@ -3,9 +3,9 @@ package com.httprun.aspect;
 import com.httprun.dto.AuditContext;
 import com.httprun.dto.request.RunCommandRequest;
 import com.httprun.entity.Command;
-import com.httprun.repository.CommandRepository;
 import com.httprun.security.JwtUserPrincipal;
 import com.httprun.service.AccessLogService;
+import com.httprun.util.CurrentCommandHolder;
 import com.httprun.util.SensitiveDataMasker;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
@@ -35,7 +35,6 @@ public class AccessLogAspect {
 
     private final AccessLogService accessLogService;
     private final ObjectMapper objectMapper;
-    private final CommandRepository commandRepository;
 
     @Pointcut("within(com.httprun.controller..*)")
     public void controllerMethods() {
@@ -79,21 +78,16 @@ public class AccessLogAspect {
         }
 
         String requestBody = null;
-        Command command = null;
+        RunCommandRequest runCommandRequest = null;
         try {
             Object[] args = joinPoint.getArgs();
             if (args != null && args.length > 0) {
                 // 过滤掉 HttpServletRequest/Response 等不可序列化对象
                 for (Object arg : args) {
                     if (arg != null && isSerializable(arg)) {
-                        // 如果是 RunCommandRequest，尝试加载命令定义进行脱敏
-                        if (arg instanceof RunCommandRequest runCommandRequest) {
-                            command = loadCommand(runCommandRequest.getName());
-                            if (command != null) {
-                                requestBody = SensitiveDataMasker.maskRequest(command, runCommandRequest);
-                            } else {
-                                requestBody = objectMapper.writeValueAsString(arg);
-                            }
+                        // RunCommandRequest 需按命令定义脱敏，待服务层加载命令后再序列化
+                        if (arg instanceof RunCommandRequest run) {
+                            runCommandRequest = run;
                         } else {
                             requestBody = objectMapper.writeValueAsString(arg);
                         }
@@ -105,32 +99,22 @@ public class AccessLogAspect {
             log.debug("Failed to serialize request body", e);
         }
 
-        Object result = null;
-        String responseBody = null;
+        CurrentCommandHolder.clear();
         int statusCode = 200;
 
         try {
-            result = joinPoint.proceed();
-
-            if (result != null) {
-                try {
-                    responseBody = objectMapper.writeValueAsString(result);
-                } catch (Exception e) {
-                    log.debug("Failed to serialize response", e);
-                }
-            }
-
-            return result;
-
+            return joinPoint.proceed();
         } catch (Exception e) {
             statusCode = 500;
-            responseBody = e.getMessage();
             throw e;
         } finally {
             long duration = System.currentTimeMillis() - startTime;
 
-            // 构建审计上下文并异步记录日志
+            // 构建审计上下文：响应体与最终状态码由 AuditResponseCaptureFilter 在响应写出后补齐
             try {
+                if (runCommandRequest != null) {
+                    requestBody = maskRunCommandRequest(runCommandRequest);
+                }
                 AuditContext context = AuditContext.builder()
                         .tokenId(tokenId)
                         .path(path)
@@ -143,18 +127,34 @@ public class AccessLogAspect {
                         .requestId(requestId)
                         .commandName(commandName)
                         .request(requestBody)
-                        .response(responseBody)
                         .statusCode(statusCode)
                         .duration(duration)
                         .build();
 
-                accessLogService.logAccess(context);
+                if (request != null && request.getAttribute(AuditResponseCaptureFilter.CAPTURE_ACTIVE_ATTRIBUTE) != null) {
+                    request.setAttribute(AuditResponseCaptureFilter.PENDING_AUDIT_ATTRIBUTE, context);
+                } else {
+                    accessLogService.logAccess(context);
+                }
             } catch (Exception e) {
                 log.warn("Failed to log access", e);
+            } finally {
+                CurrentCommandHolder.clear();
             }
         }
     }
 
+    /**
+     * 使用服务层已加载的命令定义对执行请求脱敏；未加载到命令（如命令不存在）时按原样序列化
+     */
+    private String maskRunCommandRequest(RunCommandRequest runCommandRequest) throws Exception {
+        Command command = CurrentCommandHolder.get();
+        if (command != null && command.getName().equals(runCommandRequest.getName())) {
+            return SensitiveDataMasker.maskRequest(command, runCommandRequest);
+        }
+        return objectMapper.writeValueAsString(runCommandRequest);
+    }
+
     private HttpServletRequest getCurrentRequest() {
         try {
             ServletRequestAttributes attrs = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
@@ -248,18 +248,6 @@ public class AccessLogAspect {
         return false;
     }
 
-    /**
-     * 加载命令定义（用于脱敏）
-     */
-    private Command loadCommand(String commandName) {
-        try {
-            return commandRepository.findByName(commandName).orElse(null);
-        } catch (Exception e) {
-            log.debug("Failed to load command for masking: {}", commandName, e);
-            return null;
-        }
-    }
-
     /**
      * 检查对象是否可序列化（排除 Servlet 相关类）
      */
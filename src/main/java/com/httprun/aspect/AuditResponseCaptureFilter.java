@@ -0,0 +1,201 @@
+package com.httprun.aspect;
+
+import com.httprun.dto.AuditContext;
+import com.httprun.service.AccessLogService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 审计响应采集过滤器
+ *
+ * 将 Spring MVC 写出的响应字节边写边复制一份，最多保留 {@link #MAX_CAPTURE_BYTES} 字节，
+ * 响应体不会被缓存或重新序列化。{@link AccessLogAspect} 只在请求属性中登记待写入的审计上下文，
+ * 由本过滤器在响应写完后补上响应内容、实际状态码与总耗时再提交日志。
+ * 未登记审计上下文的请求（如 GET 查询）不复制任何字节。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AuditResponseCaptureFilter extends OncePerRequestFilter {
+
+    /** 请求属性：本过滤器已生效 */
+    static final String CAPTURE_ACTIVE_ATTRIBUTE = AuditResponseCaptureFilter.class.getName() + ".ACTIVE";
+    /** 请求属性：切面登记的待写入审计上下文 */
+    static final String PENDING_AUDIT_ATTRIBUTE = AuditResponseCaptureFilter.class.getName() + ".PENDING";
+
+    /** 日志最多保存 65000 个字符，按 UTF-8 最坏情况保留足够的字节 */
+    static final int MAX_CAPTURE_BYTES = 65_000 * 3;
+
+    private final AccessLogService accessLogService;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long startTime = System.currentTimeMillis();
+        request.setAttribute(CAPTURE_ACTIVE_ATTRIBUTE, Boolean.TRUE);
+        CapturingResponseWrapper wrapper = new CapturingResponseWrapper(response, request);
+        boolean failed = true;
+        try {
+            chain.doFilter(request, wrapper);
+            failed = false;
+        } finally {
+            AuditContext context = (AuditContext) request.getAttribute(PENDING_AUDIT_ATTRIBUTE);
+            if (context != null) {
+                request.removeAttribute(PENDING_AUDIT_ATTRIBUTE);
+                try {
+                    wrapper.flushWriter();
+                    if (context.getResponse() == null) {
+                        context.setResponse(wrapper.capturedBody());
+                    }
+                    context.setStatusCode(failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : wrapper.getStatus());
+                    context.setDuration(System.currentTimeMillis() - startTime);
+                    accessLogService.logAccess(context);
+                } catch (Exception e) {
+                    log.warn("Failed to log access", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 响应包装：输出原样写给客户端，同时复制前 N 个字节
+     */
+    static final class CapturingResponseWrapper extends HttpServletResponseWrapper {
+
+        private final HttpServletRequest request;
+        private byte[] captured = new byte[256];
+        private int capturedLength;
+        private boolean truncated;
+        /** 首次写入时确定是否需要采集（此时切面已登记审计上下文） */
+        private Boolean capturing;
+        private TeeOutputStream outputStream;
+        private PrintWriter writer;
+
+        CapturingResponseWrapper(HttpServletResponse response, HttpServletRequest request) {
+            super(response);
+            this.request = request;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                outputStream = new TeeOutputStream(super.getOutputStream());
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), charset()), false);
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            flushWriter();
+            super.flushBuffer();
+        }
+
+        void flushWriter() {
+            if (writer != null) {
+                writer.flush();
+            }
+        }
+
+        String capturedBody() {
+            if (capturedLength == 0) {
+                return null;
+            }
+            String body = new String(captured, 0, capturedLength, charset());
+            return truncated ? body + "...[truncated]" : body;
+        }
+
+        private Charset charset() {
+            String encoding = getCharacterEncoding();
+            try {
+                return encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+            } catch (Exception e) {
+                return StandardCharsets.UTF_8;
+            }
+        }
+
+        private void capture(byte[] bytes, int off, int len) {
+            if (capturing == null) {
+                capturing = request.getAttribute(PENDING_AUDIT_ATTRIBUTE) != null;
+            }
+            if (!capturing || truncated) {
+                return;
+            }
+            int room = MAX_CAPTURE_BYTES - capturedLength;
+            int copy = Math.min(room, len);
+            if (capturedLength + copy > captured.length) {
+                captured = Arrays.copyOf(captured, Math.min(MAX_CAPTURE_BYTES,
+                        Math.max(captured.length * 2, capturedLength + copy)));
+            }
+            System.arraycopy(bytes, off, captured, capturedLength, copy);
+            capturedLength += copy;
+            if (copy < len) {
+                truncated = true;
+            }
+        }
+
+        private final class TeeOutputStream extends ServletOutputStream {
+
+            private final ServletOutputStream delegate;
+
+            TeeOutputStream(ServletOutputStream delegate) {
+                this.delegate = delegate;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                delegate.write(b);
+                capture(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int off, int len) throws IOException {
+                delegate.write(bytes, off, len);
+                capture(bytes, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                delegate.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                delegate.close();
+            }
+
+            @Override
+            public boolean isReady() {
+                return delegate.isReady();
+            }
+
+            @Override
+            public void setWriteListener(WriteListener listener) {
+                delegate.setWriteListener(listener);
+            }
+        }
+    }
+}
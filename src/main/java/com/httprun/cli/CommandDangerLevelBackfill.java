@@ -0,0 +1,58 @@
+package com.httprun.cli;
+
+import com.httprun.entity.Command;
+import com.httprun.executor.CommandTemplate;
+import com.httprun.repository.CommandRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * 命令危险等级回填任务
+ *
+ * 危险等级在命令创建/更新时计算并持久化。升级前已存在的命令 danger_level 为空，
+ * 启动时分批回填一次，之后命令列表不再需要执行任何正则检测。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CommandDangerLevelBackfill implements ApplicationRunner {
+
+    private static final int BATCH_SIZE = 200;
+
+    private final CommandRepository commandRepository;
+    private final CommandTemplate commandTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        int total = 0;
+        while (true) {
+            Integer updated = transactionTemplate.execute(status -> backfillBatch());
+            if (updated == null || updated == 0) {
+                break;
+            }
+            total += updated;
+        }
+        if (total > 0) {
+            log.info("Backfilled danger level for {} commands", total);
+        }
+    }
+
+    private int backfillBatch() {
+        List<Command> commands = commandRepository.findByDangerLevelIsNull(PageRequest.of(0, BATCH_SIZE));
+        for (Command command : commands) {
+            // 不修改托管实体，避免脏检查触发 @PreUpdate 改写 updatedAt（会使按版本缓存的模板计划失效）
+            int level = commandTemplate.detectDangerLevel(command);
+            commandRepository.updateDangerAnalysis(command.getId(), level,
+                    commandTemplate.getDangerWarning(command, level));
+        }
+        return commands.size();
+    }
+}
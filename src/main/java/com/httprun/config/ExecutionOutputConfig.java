@@ -0,0 +1,43 @@
+package com.httprun.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+/**
+ * 命令完整输出落盘配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "httprun.execution-output")
+public class ExecutionOutputConfig {
+
+    /**
+     * 是否启用落盘；关闭时输出全部保存在内存中（不截断）
+     */
+    private boolean enabled = true;
+
+    /**
+     * 落盘目录，多节点部署时按节点独立
+     */
+    private String dir = "./data/execution-output";
+
+    /**
+     * 单路输出（stdout / stderr）超过该字节数后写入磁盘，执行结果只保留前该字节数的内容
+     */
+    private long spillThresholdBytes = 1024 * 1024;
+
+    /**
+     * 落盘输出保留天数
+     */
+    private int retentionDays = 7;
+
+    /**
+     * 执行中的临时落盘目录，未启用时返回 null
+     */
+    public Path spillDirectory() {
+        return enabled ? Path.of(dir, "tmp") : null;
+    }
+}
@@ -6,13 +6,19 @@ import com.httprun.dto.request.CreateTokenRequest;
 import com.httprun.dto.request.UpdateCommandRequest;
 import com.httprun.dto.response.CommandImportResult;
 import com.httprun.dto.response.CommandResponse;
+import com.httprun.dto.response.CommandStatsResponse;
 import com.httprun.dto.response.CommandVersionResponse;
+import com.httprun.dto.response.CursorPage;
+import com.httprun.dto.response.LiveCommandStatsResponse;
 import com.httprun.dto.response.RevokeTokenResponse;
 import com.httprun.entity.AccessLog;
 import com.httprun.entity.Command;
+import com.httprun.entity.ExecutionRecord;
 import com.httprun.entity.Token;
 import com.httprun.service.AccessLogService;
+import com.httprun.service.CommandStatsService;
 import com.httprun.service.CommandService;
+import com.httprun.service.ExecutionRecordService;
 import com.httprun.service.TokenService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -24,9 +30,11 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -42,6 +50,8 @@ public class AdminController {
         private final CommandService commandService;
         private final TokenService tokenService;
         private final AccessLogService accessLogService;
+        private final CommandStatsService commandStatsService;
+        private final ExecutionRecordService executionRecordService;
 
         // ========== 命令管理 ==========
 
@@ -200,4 +210,79 @@ public class AdminController {
                 return ResponseEntity.ok(accessLogService.searchLogs(
                                 null, null, null, null, null, keyword, commandOnly, page, pageSize));
         }
+
+        @GetMapping("/accesslog/cursor")
+        @Operation(summary = "游标分页获取访问日志", description = "按时间倒序的键集分页，不统计总数，翻页耗时与页深无关。首页不传 cursor，之后传上一页返回的 nextCursor")
+        @ApiResponses({
+                        @ApiResponse(responseCode = "200", description = "日志获取成功"),
+                        @ApiResponse(responseCode = "400", description = "游标无效")
+        })
+        public ResponseEntity<CursorPage<AccessLog>> getAccessLogListByCursor(
+                        @Parameter(description = "上一页返回的 nextCursor，首页为空") @RequestParam(required = false) String cursor,
+                        @Parameter(description = "每页记录数（最多 500）", example = "10") @RequestParam(defaultValue = "10") int limit,
+                        @Parameter(description = "日志类型筛选：command（仅命令执行）/all（全部）", example = "all") @RequestParam(defaultValue = "all") String type,
+                        @Parameter(description = "关键词搜索") @RequestParam(required = false) String keyword,
+                        @Parameter(description = "是否返回总数估算值（来自数据库统计信息，仅未筛选时提供）") @RequestParam(defaultValue = "false") boolean withTotal) {
+                boolean commandOnly = "command".equalsIgnoreCase(type);
+                return ResponseEntity.ok(accessLogService.searchLogsByCursor(
+                                null, null, null, null, null, keyword, commandOnly, cursor, limit, withTotal));
+        }
+
+        // ========== 执行统计 ==========
+
+        @GetMapping("/stats/commands")
+        @Operation(summary = "命令执行统计", description = "按命令汇总时间范围内的执行次数、失败次数与耗时分位数，读取按小时/按天的汇总表，不扫描访问日志")
+        @ApiResponses({
+                        @ApiResponse(responseCode = "200", description = "统计获取成功"),
+                        @ApiResponse(responseCode = "400", description = "参数错误")
+        })
+        public ResponseEntity<List<CommandStatsResponse>> getCommandStats(
+                        @Parameter(description = "汇总粒度：HOUR / DAY", example = "DAY") @RequestParam(defaultValue = "DAY") String granularity,
+                        @Parameter(description = "开始时间（ISO 格式，默认结束时间前 7 天）") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+                        @Parameter(description = "结束时间（ISO 格式，默认当前时间）") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+                        @Parameter(description = "命令名称筛选") @RequestParam(required = false) String commandName) {
+                return ResponseEntity.ok(commandStatsService.summarize(granularity, startTime, endTime, commandName));
+        }
+
+        @GetMapping("/stats/command/{name}/series")
+        @Operation(summary = "命令执行统计时间序列", description = "按小时或按天返回指定命令每个时间桶的执行统计")
+        @ApiResponses({
+                        @ApiResponse(responseCode = "200", description = "统计获取成功"),
+                        @ApiResponse(responseCode = "400", description = "参数错误")
+        })
+        public ResponseEntity<List<CommandStatsResponse>> getCommandStatsSeries(
+                        @Parameter(description = "命令名称", required = true) @PathVariable String name,
+                        @Parameter(description = "汇总粒度：HOUR / DAY", example = "HOUR") @RequestParam(defaultValue = "HOUR") String granularity,
+                        @Parameter(description = "开始时间（ISO 格式，默认 HOUR 为 24 小时前、DAY 为 30 天前）") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+                        @Parameter(description = "结束时间（ISO 格式，默认当前时间）") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
+                return ResponseEntity.ok(commandStatsService.series(name, granularity, startTime, endTime));
+        }
+
+        @GetMapping("/stats/live")
+        @Operation(summary = "命令实时执行统计", description = "当前节点内存中的实时统计：正在执行数，以及最近 1 / 5 / 15 分钟的执行速率、失败数与耗时分位数")
+        @ApiResponse(responseCode = "200", description = "统计获取成功")
+        public ResponseEntity<List<LiveCommandStatsResponse>> getLiveCommandStats() {
+                return ResponseEntity.ok(commandStatsService.live());
+        }
+
+        // ========== 执行记录 ==========
+
+        @GetMapping("/executions")
+        @Operation(summary = "命令执行记录", description = "按命令、目标主机、退出码、是否失败与时间范围筛选结构化执行记录（退出码、耗时、排队时间、输出字节数），按结束时间倒序游标分页")
+        @ApiResponses({
+                        @ApiResponse(responseCode = "200", description = "记录获取成功"),
+                        @ApiResponse(responseCode = "400", description = "游标无效")
+        })
+        public ResponseEntity<CursorPage<ExecutionRecord>> getExecutionRecords(
+                        @Parameter(description = "命令名称") @RequestParam(required = false) String commandName,
+                        @Parameter(description = "SSH 目标主机") @RequestParam(required = false) String targetHost,
+                        @Parameter(description = "退出码") @RequestParam(required = false) Integer exitCode,
+                        @Parameter(description = "true 只看失败执行，false 只看成功执行") @RequestParam(required = false) Boolean failed,
+                        @Parameter(description = "开始时间（ISO 格式）") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+                        @Parameter(description = "结束时间（ISO 格式）") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+                        @Parameter(description = "上一页返回的 nextCursor，首页为空") @RequestParam(required = false) String cursor,
+                        @Parameter(description = "每页记录数（最多 500）", example = "20") @RequestParam(defaultValue = "20") int limit) {
+                return ResponseEntity.ok(executionRecordService.searchRecords(
+                                commandName, targetHost, exitCode, failed, startTime, endTime, cursor, limit));
+        }
 }
@@ -3,10 +3,17 @@ package com.httprun.controller;
 import com.httprun.dto.request.RunCommandRequest;
 import com.httprun.dto.response.CommandExecutionResult;
 import com.httprun.dto.response.CommandResponse;
+import com.httprun.dto.response.CursorPage;
+import com.httprun.dto.response.OutputLinePage;
 import com.httprun.entity.AccessLog;
+import com.httprun.enums.ErrorCode;
+import com.httprun.enums.ExportFormat;
+import com.httprun.enums.OutputStreamType;
+import com.httprun.exception.BusinessException;
 import com.httprun.security.JwtUserPrincipal;
 import com.httprun.service.AccessLogService;
 import com.httprun.service.CommandService;
+import com.httprun.service.ExecutionRecordService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -16,13 +23,21 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * 用户控制器（命令执行接口）
@@ -33,8 +48,11 @@ import java.util.Map;
 @Tag(name = "User API", description = "用户命令执行接口 - 提供命令查询和执行功能")
 public class UserController {
 
+    private static final DateTimeFormatter EXPORT_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
     private final CommandService commandService;
     private final AccessLogService accessLogService;
+    private final ExecutionRecordService executionRecordService;
 
     @GetMapping("/commands")
     @Operation(summary = "获取用户可执行的命令列表", description = "根据当前用户权限返回可执行的命令列表。管理员可查看所有命令，普通用户仅看到授权的命令")
@@ -96,29 +114,93 @@ public class UserController {
             @Parameter(description = "结束时间（ISO 格式）") @RequestParam(required = false) String endTime,
             @Parameter(description = "关键词搜索") @RequestParam(required = false) String keyword) {
 
-        // 解析时间参数
-        java.time.LocalDateTime start = null;
-        java.time.LocalDateTime end = null;
-        if (startTime != null && !startTime.isEmpty()) {
-            start = java.time.LocalDateTime.parse(startTime);
-        }
-        if (endTime != null && !endTime.isEmpty()) {
-            end = java.time.LocalDateTime.parse(endTime);
-        }
-
-        // 确定查询的 tokenId
-        String queryTokenId;
-        if (principal.admin()) {
-            // 管理员可以查看所有记录，或根据 tokenName 筛选
-            queryTokenId = (tokenName != null && !tokenName.isEmpty()) ? tokenName : null;
-        } else {
-            // 普通用户只能查看自己的记录，忽略 tokenName 参数
-            queryTokenId = principal.name();
-        }
-
         // 执行历史只显示命令执行记录（commandOnly=true）
         return ResponseEntity.ok(accessLogService.searchLogs(
-                queryTokenId, commandName, status, start, end, keyword, true, page, pageSize));
+                historyTokenId(principal, tokenName), commandName, status, parseTime(startTime), parseTime(endTime),
+                keyword, true, page, pageSize));
+    }
+
+    @GetMapping("/history/cursor")
+    @Operation(summary = "游标分页获取执行历史", description = "按时间倒序的键集分页，不统计总数，翻页耗时与页深无关。首页不传 cursor，之后传上一页返回的 nextCursor")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "执行历史获取成功"),
+            @ApiResponse(responseCode = "400", description = "游标无效"),
+            @ApiResponse(responseCode = "401", description = "未授权访问")
+    })
+    public ResponseEntity<CursorPage<AccessLog>> getExecutionHistoryByCursor(
+            @AuthenticationPrincipal JwtUserPrincipal principal,
+            @Parameter(description = "上一页返回的 nextCursor，首页为空") @RequestParam(required = false) String cursor,
+            @Parameter(description = "每页记录数（最多 500）", example = "20") @RequestParam(defaultValue = "20") int limit,
+            @Parameter(description = "Token 名称筛选（仅管理员可用）") @RequestParam(required = false) String tokenName,
+            @Parameter(description = "命令名称筛选") @RequestParam(required = false) String commandName,
+            @Parameter(description = "状态筛选：success/error") @RequestParam(required = false) String status,
+            @Parameter(description = "开始时间（ISO 格式）") @RequestParam(required = false) String startTime,
+            @Parameter(description = "结束时间（ISO 格式）") @RequestParam(required = false) String endTime,
+            @Parameter(description = "关键词搜索") @RequestParam(required = false) String keyword) {
+        return ResponseEntity.ok(accessLogService.searchLogsByCursor(
+                historyTokenId(principal, tokenName), commandName, status, parseTime(startTime), parseTime(endTime),
+                keyword, true, cursor, limit, false));
+    }
+
+    @GetMapping("/history/export")
+    @Operation(summary = "导出执行历史", description = "按与执行历史相同的筛选条件流式导出全部匹配记录（NDJSON 或 CSV，可选 gzip 压缩），按时间倒序，包含已归档的记录")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "导出开始"),
+            @ApiResponse(responseCode = "400", description = "导出格式无效"),
+            @ApiResponse(responseCode = "401", description = "未授权访问")
+    })
+    public ResponseEntity<StreamingResponseBody> exportExecutionHistory(
+            @AuthenticationPrincipal JwtUserPrincipal principal,
+            @Parameter(description = "导出格式：ndjson/csv", example = "ndjson") @RequestParam(defaultValue = "ndjson") String format,
+            @Parameter(description = "是否 gzip 压缩") @RequestParam(defaultValue = "false") boolean gzip,
+            @Parameter(description = "Token 名称筛选（仅管理员可用）") @RequestParam(required = false) String tokenName,
+            @Parameter(description = "命令名称筛选") @RequestParam(required = false) String commandName,
+            @Parameter(description = "状态筛选：success/error") @RequestParam(required = false) String status,
+            @Parameter(description = "开始时间（ISO 格式）") @RequestParam(required = false) String startTime,
+            @Parameter(description = "结束时间（ISO 格式）") @RequestParam(required = false) String endTime,
+            @Parameter(description = "关键词搜索") @RequestParam(required = false) String keyword) {
+        ExportFormat exportFormat = ExportFormat.of(format);
+        String tokenId = historyTokenId(principal, tokenName);
+        LocalDateTime start = parseTime(startTime);
+        LocalDateTime end = parseTime(endTime);
+
+        // 在请求线程外逐行写出，响应头发出后不再缓冲整个结果
+        StreamingResponseBody body = out -> {
+            OutputStream target = gzip ? new GZIPOutputStream(out, 8192) : out;
+            accessLogService.exportLogs(tokenId, commandName, status, start, end, keyword, true, exportFormat, target);
+            if (target instanceof GZIPOutputStream compressed) {
+                compressed.finish();
+            }
+        };
+        String filename = "history-" + LocalDateTime.now().format(EXPORT_TIMESTAMP) + "."
+                + exportFormat.getExtension() + (gzip ? ".gz" : "");
+        return ResponseEntity.ok()
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip")
+                        : MediaType.parseMediaType(exportFormat.getContentType() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(filename).build().toString())
+                .body(body);
+    }
+
+    @GetMapping("/history/{id}")
+    @Operation(summary = "获取执行记录详情", description = "获取单条执行记录及其请求 / 响应内容（列表接口只返回元数据）。普通用户只能查看自己的记录。传入列表中的 createdAt 时只访问对应分区，并可查看已归档的记录")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "详情获取成功"),
+            @ApiResponse(responseCode = "403", description = "无权查看此记录"),
+            @ApiResponse(responseCode = "404", description = "记录不存在")
+    })
+    public ResponseEntity<AccessLog> getExecutionHistoryDetail(
+            @AuthenticationPrincipal JwtUserPrincipal principal,
+            @Parameter(description = "记录 ID") @PathVariable Long id,
+            @Parameter(description = "记录创建时间（ISO 格式，取自列表）") @RequestParam(required = false) String createdAt) {
+        AccessLog log = accessLogService.getLogDetail(id, parseTime(createdAt));
+        if (log == null) {
+            return ResponseEntity.status(404).build();
+        }
+        if (!principal.admin() && !principal.name().equals(log.getTokenId())) {
+            return ResponseEntity.status(403).build();
+        }
+        return ResponseEntity.ok(log);
     }
 
     @DeleteMapping("/history/{id}")
@@ -147,10 +229,10 @@ public class UserController {
     }
 
     @DeleteMapping("/history")
-    @Operation(summary = "批量删除执行记录", description = "批量删除执行记录。普通用户只能删除自己的记录，管理员可删除任意记录")
+    @Operation(summary = "批量删除执行记录", description = "批量删除执行记录。普通用户只删除其中属于自己的记录，管理员可删除任意记录；返回实际删除的数量")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "删除成功"),
-            @ApiResponse(responseCode = "403", description = "无权删除部分记录")
+            @ApiResponse(responseCode = "400", description = "未提供记录 ID")
     })
     public ResponseEntity<Map<String, Object>> deleteExecutionHistoryBatch(
             @AuthenticationPrincipal JwtUserPrincipal principal,
@@ -160,26 +242,20 @@ public class UserController {
                 .map(String::trim)
                 .filter(s -> !s.isEmpty())
                 .map(Long::parseLong)
+                .distinct()
                 .toList();
 
         if (idList.isEmpty()) {
             return ResponseEntity.badRequest().body(Map.of("success", false, "message", "请提供要删除的记录 ID"));
         }
 
-        // 非管理员需要检查每条记录的所有权
-        if (!principal.admin()) {
-            for (Long id : idList) {
-                AccessLog log = accessLogService.getLogById(id);
-                if (log != null && !principal.name().equals(log.getTokenId())) {
-                    return ResponseEntity.status(403).body(Map.of(
-                            "success", false,
-                            "message", "无权删除 ID=" + id + " 的记录"));
-                }
-            }
-        }
-
-        int deleted = accessLogService.deleteLogs(idList);
-        return ResponseEntity.ok(Map.of("success", true, "message", "成功删除 " + deleted + " 条记录", "deleted", deleted));
+        // 所有权校验在 DELETE 条件中完成（token_id = 当前用户），不逐条查询
+        int deleted = accessLogService.deleteLogs(idList, principal.admin() ? null : principal.name());
+        int skipped = idList.size() - deleted;
+        String message = skipped > 0
+                ? "成功删除 " + deleted + " 条记录，" + skipped + " 条不存在或无权删除"
+                : "成功删除 " + deleted + " 条记录";
+        return ResponseEntity.ok(Map.of("success", true, "message", message, "deleted", deleted, "skipped", skipped));
     }
 
     @DeleteMapping("/history/clear")
@@ -194,6 +270,67 @@ public class UserController {
         return ResponseEntity.ok(Map.of("success", true, "message", "成功清空 " + deleted + " 条记录", "deleted", deleted));
     }
 
+    @GetMapping("/result/{id}/{stream}")
+    @Operation(summary = "分页读取完整输出", description = "按行读取超过落盘阈值的完整 stdout / stderr（执行结果中 stdoutTruncated / stderrTruncated 为 true 时可用，id 为执行结果中的 executionId）。" +
+            "按稀疏行索引定位后顺序读取，不会把整个输出载入内存。普通用户只能读取自己的执行")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "读取成功"),
+            @ApiResponse(responseCode = "400", description = "stream 无效"),
+            @ApiResponse(responseCode = "403", description = "无权读取此输出"),
+            @ApiResponse(responseCode = "404", description = "输出不存在、未落盘或已过期")
+    })
+    public ResponseEntity<OutputLinePage> getExecutionOutputLines(
+            @AuthenticationPrincipal JwtUserPrincipal principal,
+            @Parameter(description = "执行记录 ID") @PathVariable Long id,
+            @Parameter(description = "输出流：stdout/stderr", example = "stdout") @PathVariable String stream,
+            @Parameter(description = "起始行（0 起），取上一页返回的 nextLine", example = "0") @RequestParam(defaultValue = "0") long fromLine,
+            @Parameter(description = "每页行数（最多 5000，单页内容最多 1 MB）", example = "1000") @RequestParam(defaultValue = "1000") int limit) {
+        OutputStreamType type = OutputStreamType.of(stream);
+        ResponseEntity<OutputLinePage> denied = checkOutputAccess(principal, id, type);
+        if (denied != null) {
+            return denied;
+        }
+        OutputLinePage page = executionRecordService.readOutputLines(id, type, fromLine, limit);
+        return page != null ? ResponseEntity.ok(page) : ResponseEntity.status(404).build();
+    }
+
+    @GetMapping("/result/{id}/{stream}/raw")
+    @Operation(summary = "按字节范围读取完整输出", description = "以 text/plain 返回落盘完整输出中 [offset, offset + length) 范围内的原始字节（UTF-8），" +
+            "服务端以 FileChannel.transferTo 直接写出；省略 length 时读到末尾。普通用户只能读取自己的执行")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "读取成功"),
+            @ApiResponse(responseCode = "400", description = "参数无效"),
+            @ApiResponse(responseCode = "403", description = "无权读取此输出"),
+            @ApiResponse(responseCode = "404", description = "输出不存在、未落盘或已过期")
+    })
+    public ResponseEntity<StreamingResponseBody> getExecutionOutputBytes(
+            @AuthenticationPrincipal JwtUserPrincipal principal,
+            @Parameter(description = "执行记录 ID") @PathVariable Long id,
+            @Parameter(description = "输出流：stdout/stderr", example = "stdout") @PathVariable String stream,
+            @Parameter(description = "起始字节偏移", example = "0") @RequestParam(defaultValue = "0") long offset,
+            @Parameter(description = "读取字节数，省略时读到末尾") @RequestParam(required = false) Long length) {
+        OutputStreamType type = OutputStreamType.of(stream);
+        if (offset < 0 || (length != null && length <= 0)) {
+            throw new BusinessException(ErrorCode.INVALID_PARAMETER, "offset must be >= 0 and length must be > 0");
+        }
+        ResponseEntity<StreamingResponseBody> denied = checkOutputAccess(principal, id, type);
+        if (denied != null) {
+            return denied;
+        }
+        Long size = executionRecordService.getOutputSize(id, type);
+        if (size == null) {
+            return ResponseEntity.status(404).build();
+        }
+        long start = Math.min(offset, size);
+        long count = length != null ? Math.min(length, size - start) : size - start;
+        StreamingResponseBody body = out -> executionRecordService.transferOutput(id, type, start, count, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("text/plain;charset=UTF-8"))
+                .contentLength(count)
+                .header("X-Output-Total-Bytes", Long.toString(size))
+                .body(body);
+    }
+
     @PostMapping("/**")
     @Operation(summary = "执行命令", description = "执行指定的命令。命令名称从 URL 路径中获取，参数通过请求体传递。" +
             "系统会验证用户权限、参数安全性，并记录执行日志")
@@ -208,9 +345,35 @@ public class UserController {
             @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "命令执行请求，包含命令名称和参数列表", content = @Content(schema = @Schema(example = "{\"name\":\"deploy-app\",\"params\":[{\"name\":\"env\",\"value\":\"prod\"},{\"name\":\"version\",\"value\":\"1.0.0\"}]}"))) @RequestBody RunCommandRequest request,
             @AuthenticationPrincipal JwtUserPrincipal principal) {
 
-        String subject = principal.admin() ? "admin" : principal.subject();
-        String allowedGroups = principal.allowedGroups();
-        CommandExecutionResult result = commandService.runCommand(request, subject, allowedGroups);
+        CommandExecutionResult result = commandService.runCommand(request, principal.policy());
         return ResponseEntity.ok(result);
     }
+
+    /**
+     * 确定查询的 tokenId：管理员可查看所有记录或按 tokenName 筛选，普通用户只能查看自己的记录
+     */
+    private String historyTokenId(JwtUserPrincipal principal, String tokenName) {
+        if (principal.admin()) {
+            return (tokenName != null && !tokenName.isEmpty()) ? tokenName : null;
+        }
+        return principal.name();
+    }
+
+    /**
+     * 落盘输出的访问检查（按行索引中记录的归属 Token）：输出不存在返回 404，普通用户读取他人的执行返回 403，允许时返回 null
+     */
+    private <T> ResponseEntity<T> checkOutputAccess(JwtUserPrincipal principal, Long id, OutputStreamType type) {
+        String owner = executionRecordService.getOutputOwner(id, type);
+        if (owner == null) {
+            return ResponseEntity.status(404).build();
+        }
+        if (!principal.admin() && !principal.name().equals(owner)) {
+            return ResponseEntity.status(403).build();
+        }
+        return null;
+    }
+
+    private LocalDateTime parseTime(String value) {
+        return (value != null && !value.isEmpty()) ? LocalDateTime.parse(value) : null;
+    }
 }
@@ -4,6 +4,7 @@ import com.httprun.entity.CommandConfig;
 import com.httprun.entity.RemoteConfig;
 import com.httprun.enums.ExecutionMode;
 import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import lombok.Data;
 
@@ -56,6 +57,13 @@ public class CreateCommandRequest {
      */
     private Integer timeoutSeconds;
 
+    /**
+     * 每分钟允许的执行次数（更新时 null 表示不修改，0 表示取消限流）
+     */
+    @Schema(description = "每分钟允许的执行次数（所有 Token 共享，0 或不填表示不限流）", example = "60")
+    @Min(value = 0, message = "频率限制不能为负数")
+    private Integer rateLimitPerMinute;
+
     /**
      * 远程执行配置（SSH 模式使用）
      */
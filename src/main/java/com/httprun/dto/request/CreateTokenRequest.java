@@ -1,6 +1,7 @@
 package com.httprun.dto.request;
 
 import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.Size;
@@ -58,6 +59,13 @@ public class CreateTokenRequest {
     @Schema(description = "允许执行的星期几（1=周一, ..., 7=周日）", example = "[1, 2, 3, 4, 5]")
     private List<Integer> allowedWeekdays;
 
+    /**
+     * 每分钟允许的命令执行次数
+     */
+    @Schema(description = "每分钟允许的命令执行次数（不填表示不限流）", example = "60")
+    @Min(value = 1, message = "频率限制至少为每分钟 1 次")
+    private Integer rateLimitPerMinute;
+
     /**
      * 备注
      */
@@ -1,5 +1,7 @@
 package com.httprun.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.httprun.util.OutputSpillFile;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -34,6 +36,38 @@ public class CommandExecutionResult {
      */
     private long duration;
 
+    /**
+     * 等待执行槽位 / SSH 连接的时间（毫秒）
+     */
+    private long queueWait;
+
+    /**
+     * 标准输出是否被截断（完整输出可通过 /api/run/result/{executionId}/stdout 分页读取）
+     */
+    private boolean stdoutTruncated;
+
+    /**
+     * 标准错误是否被截断
+     */
+    private boolean stderrTruncated;
+
+    /**
+     * 执行记录 ID
+     */
+    private Long executionId;
+
+    /**
+     * 落盘的完整标准输出（仅服务端内部使用）
+     */
+    @JsonIgnore
+    private OutputSpillFile stdoutSpill;
+
+    /**
+     * 落盘的完整标准错误（仅服务端内部使用）
+     */
+    @JsonIgnore
+    private OutputSpillFile stderrSpill;
+
     /**
      * 错误信息
      */
@@ -32,6 +32,11 @@ public class CommandResponse {
 
     private Integer timeoutSeconds;
 
+    /**
+     * 每分钟允许的执行次数（null 表示不限流）
+     */
+    private Integer rateLimitPerMinute;
+
     /**
      * 危险等级：0=安全, 1=警告, 2=高危
      */
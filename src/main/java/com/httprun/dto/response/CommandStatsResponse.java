@@ -0,0 +1,50 @@
+package com.httprun.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 命令执行统计
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "命令执行统计")
+public class CommandStatsResponse {
+
+    @Schema(description = "命令名称", example = "deploy")
+    private String commandName;
+
+    @Schema(description = "时间桶起点（仅时间序列返回）")
+    private LocalDateTime bucketStart;
+
+    @Schema(description = "执行次数", example = "120")
+    private long count;
+
+    @Schema(description = "失败次数（状态码 >= 400）", example = "3")
+    private long errorCount;
+
+    @Schema(description = "平均耗时（毫秒）", example = "85")
+    private Long avgDuration;
+
+    @Schema(description = "最短耗时（毫秒）", example = "12")
+    private Long minDuration;
+
+    @Schema(description = "最长耗时（毫秒）", example = "930")
+    private Long maxDuration;
+
+    @Schema(description = "耗时中位数估算值（毫秒，相对误差约 2%）", example = "70")
+    private Long p50Duration;
+
+    @Schema(description = "耗时 P95 估算值（毫秒）", example = "310")
+    private Long p95Duration;
+
+    @Schema(description = "耗时 P99 估算值（毫秒）", example = "720")
+    private Long p99Duration;
+}
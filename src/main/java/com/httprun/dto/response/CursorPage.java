@@ -0,0 +1,32 @@
+package com.httprun.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 游标分页结果（不执行 COUNT 查询）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "游标分页结果")
+public class CursorPage<T> {
+
+    @Schema(description = "当前页数据")
+    private List<T> items;
+
+    @Schema(description = "下一页游标，原样传回 cursor 参数；没有更多数据时为空")
+    private String nextCursor;
+
+    @Schema(description = "是否还有下一页", example = "true")
+    private boolean hasMore;
+
+    @Schema(description = "总数估算值（来自数据库统计信息，仅在请求 withTotal 且未附加筛选条件时返回）", example = "12000000")
+    private Long approximateTotal;
+}
@@ -0,0 +1,58 @@
+package com.httprun.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * 命令实时执行统计（当前节点）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "命令实时执行统计（当前节点）")
+public class LiveCommandStatsResponse {
+
+    @Schema(description = "命令名称", example = "deploy")
+    private String commandName;
+
+    @Schema(description = "正在执行的数量", example = "2")
+    private int inFlight;
+
+    @Schema(description = "滑动窗口统计，键为 1m / 5m / 15m")
+    private Map<String, WindowStats> windows;
+
+    /**
+     * 单个滑动窗口的统计
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Schema(description = "滑动窗口统计")
+    public static class WindowStats {
+
+        @Schema(description = "执行次数", example = "42")
+        private long count;
+
+        @Schema(description = "失败次数", example = "1")
+        private long errorCount;
+
+        @Schema(description = "每秒执行次数", example = "0.7")
+        private double ratePerSecond;
+
+        @Schema(description = "耗时中位数估算值（毫秒，相对误差约 5%）", example = "80")
+        private Long p50Duration;
+
+        @Schema(description = "耗时 P95 估算值（毫秒）", example = "300")
+        private Long p95Duration;
+
+        @Schema(description = "耗时 P99 估算值（毫秒）", example = "640")
+        private Long p99Duration;
+    }
+}
@@ -0,0 +1,44 @@
+package com.httprun.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 落盘命令输出的一页（按行）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "落盘命令输出的一页")
+public class OutputLinePage {
+
+    @Schema(description = "执行记录 ID", example = "1024")
+    private Long executionId;
+
+    @Schema(description = "输出流：stdout / stderr", example = "stdout")
+    private String stream;
+
+    @Schema(description = "本页起始行（0 起）", example = "0")
+    private long fromLine;
+
+    @Schema(description = "本页内容（不含换行符，超长行截断）")
+    private List<String> lines;
+
+    @Schema(description = "下一页起始行，原样传回 fromLine 参数", example = "1000")
+    private long nextLine;
+
+    @Schema(description = "是否还有下一页", example = "true")
+    private boolean hasMore;
+
+    @Schema(description = "输出总行数", example = "250000")
+    private long totalLines;
+
+    @Schema(description = "输出总字节数（UTF-8）", example = "52428800")
+    private long totalBytes;
+}
@@ -1,5 +1,7 @@
 package com.httprun.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import jakarta.persistence.*;
 import lombok.Data;
 
@@ -14,12 +16,17 @@ import java.time.LocalDateTime;
         @Index(name = "idx_accesslog_token", columnList = "tokenId"),
         @Index(name = "idx_accesslog_path", columnList = "path"),
         @Index(name = "idx_accesslog_created", columnList = "createdAt"),
+        @Index(name = "idx_accesslog_created_id", columnList = "createdAt DESC, id DESC"),
         @Index(name = "idx_accesslog_ip", columnList = "ip")
 })
 public class AccessLog {
 
+    /**
+     * 主键：pooled 序列，每次 nextval 分配 50 个（与 AccessLogWriter 的批量分配一致）
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "access_logs_id")
+    @SequenceGenerator(name = "access_logs_id", sequenceName = "access_logs_id_seq", allocationSize = 50)
     private Long id;
 
     /**
@@ -87,17 +94,26 @@ public class AccessLog {
     // ========== 原有字段 ==========
 
     /**
-     * 请求内容
+     * 请求内容（存放在 access_log_payloads，只在详情与导出中加载，列表中为空）
      */
-    @Column(columnDefinition = "TEXT")
+    @Transient
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private String request;
 
     /**
-     * 响应内容
+     * 响应内容（存放在 access_log_payloads，只在详情与导出中加载，列表中为空）
      */
-    @Column(columnDefinition = "MEDIUMTEXT")
+    @Transient
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private String response;
 
+    /**
+     * 检索文本：路径、命令名与请求参数（小写），由 AccessLogSearchIndex 生成并建立检索索引
+     */
+    @JsonIgnore
+    @Column(columnDefinition = "TEXT")
+    private String searchText;
+
     /**
      * 响应状态码
      */
@@ -0,0 +1,48 @@
+package com.httprun.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 访问日志请求 / 响应内容
+ * <p>
+ * 与 access_logs 一一对应（id、created_at 相同），只在查看详情与导出时读取，
+ * 列表查询不会把大字段带入缓存。PostgreSQL 下与 access_logs 同样按天范围分区，主键为 (id, created_at)。
+ */
+@Data
+@Entity
+@Table(name = "access_log_payloads")
+public class AccessLogPayload {
+
+    /**
+     * 访问日志 ID
+     */
+    @Id
+    private Long id;
+
+    /**
+     * 访问日志创建时间（分区键）
+     */
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * 请求内容
+     */
+    @Column(columnDefinition = "TEXT")
+    private String request;
+
+    /**
+     * 响应内容（V12 之前写入的行；之后写入的响应保存在 output_blobs 中）
+     */
+    @Column(columnDefinition = "TEXT")
+    private String response;
+
+    /**
+     * 响应内容在 output_blobs 中的哈希引用
+     */
+    @Column(length = 64)
+    private String responseHash;
+}
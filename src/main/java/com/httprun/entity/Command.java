@@ -2,6 +2,7 @@ package com.httprun.entity;
 
 import java.time.LocalDateTime;
 
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 
@@ -99,6 +100,32 @@ public class Command {
     @Column
     private Integer timeoutSeconds = 30;
 
+    /**
+     * 每分钟允许的执行次数（所有 Token 共享，null 表示不限流）
+     */
+    @Column(name = "rate_limit_per_minute")
+    private Integer rateLimitPerMinute;
+
+    /**
+     * 危险等级：0=安全, 1=警告, 2=高危
+     * 在创建/更新命令时根据命令模板计算并持久化，列表查询直接读取
+     */
+    @Column(name = "danger_level")
+    private Integer dangerLevel;
+
+    /**
+     * 高危命令警告信息（危险等级大于 0 时有值）
+     */
+    @Column(name = "danger_warning", length = 200)
+    private String dangerWarning;
+
+    /**
+     * 当前配置版本号（每次更新保存快照后递增，与版本历史中最大版本号 + 1 一致）
+     */
+    @Column(name = "config_version", nullable = false)
+    @ColumnDefault("1")
+    private Integer configVersion = 1;
+
     /**
      * 创建时间
      */
@@ -0,0 +1,88 @@
+package com.httprun.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 命令执行统计汇总（按小时 / 按天）
+ * <p>
+ * 每行是一个时间桶内某命令、某 Token、某状态码的执行次数与耗时汇总，
+ * 由 CommandStatsAggregator 随访问日志写入增量合并，统计接口只读该表。
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@IdClass(CommandStatsRollup.Key.class)
+@Table(name = "command_stats_rollups", indexes = {
+        @Index(name = "idx_stats_command_bucket", columnList = "commandName, granularity, bucketStart")
+})
+public class CommandStatsRollup {
+
+    /**
+     * 汇总粒度：HOUR / DAY
+     */
+    @Id
+    @Column(length = 8)
+    private String granularity;
+
+    /**
+     * 时间桶起点（整点 / 零点）
+     */
+    @Id
+    private LocalDateTime bucketStart;
+
+    @Id
+    @Column(length = 100)
+    private String commandName;
+
+    /**
+     * Token 名称，无 Token 时为空字符串
+     */
+    @Id
+    @Column(length = 500)
+    private String tokenId;
+
+    /**
+     * HTTP 状态码，未知时为 0
+     */
+    @Id
+    private Integer statusCode;
+
+    @Column(nullable = false)
+    private Long execCount;
+
+    /**
+     * 状态码 &gt;= 400 的次数
+     */
+    @Column(nullable = false)
+    private Long errorCount;
+
+    /**
+     * 耗时总和（毫秒）
+     */
+    @Column(nullable = false)
+    private Long durationSum;
+
+    private Long durationMin;
+
+    private Long durationMax;
+
+    /**
+     * 耗时分位数草图（LatencySketch 序列化）
+     */
+    private byte[] latencySketch;
+
+    @Data
+    @NoArgsConstructor
+    public static class Key implements Serializable {
+        private String granularity;
+        private LocalDateTime bucketStart;
+        private String commandName;
+        private String tokenId;
+        private Integer statusCode;
+    }
+}
@@ -0,0 +1,47 @@
+package com.httprun.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.LocalDateTime;
+
+/**
+ * 命令执行统计汇总状态（单行，id = 1）
+ * <p>
+ * created_at 早于 rollupStart 的日志由回填任务汇总，之后的日志随写入增量汇总，两者不重叠。
+ */
+@Data
+@Entity
+@Table(name = "command_stats_state")
+public class CommandStatsState {
+
+    @Id
+    private Integer id;
+
+    /**
+     * 增量汇总起点
+     */
+    @Column(nullable = false)
+    private LocalDateTime rollupStart;
+
+    /**
+     * 旧版按 id 回填的进度：id 不大于该值的日志已汇总，键集回填跳过
+     */
+    @Column(nullable = false)
+    private Long backfillLastId;
+
+    /**
+     * 回填进度：已汇总到的 (created_at, id) 位置，尚未开始时为空
+     */
+    private LocalDateTime backfillCursorAt;
+
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private Long backfillCursorId;
+
+    /**
+     * 回填完成时间，未完成时为空
+     */
+    private LocalDateTime backfilledAt;
+}
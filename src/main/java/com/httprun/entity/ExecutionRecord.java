@@ -0,0 +1,104 @@
+package com.httprun.entity;
+
+import com.httprun.enums.ExecutionMode;
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 命令执行记录
+ * <p>
+ * 每次实际调用执行器产生一行，保存退出码、耗时、排队时间、输出字节数等结构化结果，
+ * 按命令、目标主机、退出码与时间建立索引，故障排查不必解析访问日志中的响应 JSON。
+ * 由 ExecutionRecorder 批量写入。
+ */
+@Data
+@Entity
+@Table(name = "execution_records", indexes = {
+        @Index(name = "idx_exec_created", columnList = "createdAt, id"),
+        @Index(name = "idx_exec_command_created", columnList = "commandName, createdAt"),
+        @Index(name = "idx_exec_host_created", columnList = "targetHost, createdAt"),
+        @Index(name = "idx_exec_exit_created", columnList = "exitCode, createdAt")
+})
+public class ExecutionRecord {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 100)
+    private String commandName;
+
+    /**
+     * 执行时的命令配置版本（commands.config_version）
+     */
+    private Integer commandVersion;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private ExecutionMode executionMode;
+
+    /**
+     * SSH 目标主机，本地执行为空
+     */
+    @Column(length = 255)
+    private String targetHost;
+
+    /**
+     * 发起执行的 Token 名称
+     */
+    @Column(length = 500)
+    private String tokenId;
+
+    /**
+     * 退出码；执行器内部错误（未拿到退出码）时为 -1
+     */
+    @Column(nullable = false)
+    private Integer exitCode;
+
+    /**
+     * 退出码非 0 或执行出错
+     */
+    @Column(nullable = false)
+    private Boolean failed;
+
+    /**
+     * 执行耗时（毫秒）
+     */
+    @Column(nullable = false)
+    private Long durationMs;
+
+    /**
+     * 等待执行槽位 / SSH 连接的时间（毫秒）
+     */
+    @Column(nullable = false)
+    private Long queueWaitMs;
+
+    /**
+     * 标准输出字节数（UTF-8，脱敏后）
+     */
+    @Column(nullable = false)
+    private Long stdoutBytes;
+
+    @Column(nullable = false)
+    private Long stderrBytes;
+
+    @Column(nullable = false)
+    private Boolean stdoutTruncated;
+
+    @Column(nullable = false)
+    private Boolean stderrTruncated;
+
+    /**
+     * 执行器错误信息（截断到 500 字符）
+     */
+    @Column(length = 500)
+    private String error;
+
+    /**
+     * 执行结束时间
+     */
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,55 @@
+package com.httprun.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 内容寻址的命令输出
+ * <p>
+ * 以输出内容的 SHA-256 为主键，相同输出只存一份（Deflate 压缩后不变小时原样保存），
+ * access_log_payloads 只保存哈希引用。由 OutputBlobStore 读写与维护引用计数，引用数归零后删除。
+ */
+@Data
+@Entity
+@Table(name = "output_blobs")
+public class OutputBlob {
+
+    /**
+     * 原始内容（UTF-8）的 SHA-256，十六进制小写
+     */
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    /**
+     * 存储内容（compressed 为 true 时为 Deflate 压缩数据）
+     */
+    @Column(nullable = false)
+    private byte[] content;
+
+    @Column(nullable = false)
+    private Boolean compressed;
+
+    /**
+     * 原始内容字节数
+     */
+    @Column(nullable = false)
+    private Integer rawSize;
+
+    /**
+     * 引用该内容的访问日志数量
+     */
+    @Column(nullable = false)
+    private Long refCount;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * 最近一次被引用的时间
+     */
+    @Column(nullable = false)
+    private LocalDateTime lastReferencedAt;
+}
@@ -2,6 +2,8 @@ package com.httprun.entity;
 
 import lombok.Data;
 
+import java.util.List;
+
 /**
  * 参数定义
  */
@@ -37,4 +39,10 @@ public class ParamDefine {
      * 敏感参数在日志中会被脱敏显示为 ***
      */
     private boolean sensitive;
+
+    /**
+     * 可选值列表（枚举型参数）
+     * 配置后参数值必须是其中之一，为空表示不限制
+     */
+    private List<String> options;
 }
@@ -1,10 +1,10 @@
 package com.httprun.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
 
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.util.List;
 
 /**
@@ -14,7 +14,7 @@ import java.util.List;
 @Entity
 @Table(name = "tokens", indexes = {
         @Index(name = "idx_token_name", columnList = "name"),
-        @Index(name = "idx_token_jwt", columnList = "jwtToken", unique = true)
+        @Index(name = "idx_token_jwt_digest", columnList = "jwt_digest", unique = true)
 })
 public class Token {
 
@@ -58,6 +58,13 @@ public class Token {
     @Column(nullable = false, columnDefinition = "TEXT")
     private String jwtToken;
 
+    /**
+     * JWT 的 SHA-256 摘要（十六进制），用于按 Token 查找的定长索引
+     */
+    @JsonIgnore
+    @Column(name = "jwt_digest", nullable = false, length = 64)
+    private String jwtDigest;
+
     /**
      * Token 是否被撤销
      */
@@ -97,6 +104,12 @@ public class Token {
     @Column(length = 500)
     private String allowedGroups;
 
+    /**
+     * 每分钟允许的命令执行次数（null 表示不限流）
+     */
+    @Column(name = "rate_limit_per_minute")
+    private Integer rateLimitPerMinute;
+
     /**
      * 备注信息
      */
@@ -125,51 +138,4 @@ public class Token {
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
     }
-
-    /**
-     * 检查当前时间是否在允许的时间范围内
-     */
-    @Transient
-    public boolean isWithinAllowedTimeRange() {
-        LocalDateTime now = LocalDateTime.now();
-
-        // 检查星期几限制
-        if (allowedWeekdays != null && !allowedWeekdays.isEmpty()) {
-            int currentDayOfWeek = now.getDayOfWeek().getValue(); // 1=周一, 7=周日
-            String[] days = allowedWeekdays.split(",");
-            boolean dayAllowed = false;
-            for (String day : days) {
-                if (String.valueOf(currentDayOfWeek).equals(day.trim())) {
-                    dayAllowed = true;
-                    break;
-                }
-            }
-            if (!dayAllowed) {
-                return false;
-            }
-        }
-
-        // 检查时间范围限制
-        if (allowedStartTime != null && !allowedStartTime.isEmpty()
-                && allowedEndTime != null && !allowedEndTime.isEmpty()) {
-            LocalTime currentTime = now.toLocalTime();
-            LocalTime startTime = LocalTime.parse(allowedStartTime);
-            LocalTime endTime = LocalTime.parse(allowedEndTime);
-
-            // 处理跨夜情况（如 22:00 - 06:00）
-            if (startTime.isAfter(endTime)) {
-                // 跨夜：当前时间应该在开始时间之后 或 在结束时间之前
-                if (currentTime.isBefore(startTime) && currentTime.isAfter(endTime)) {
-                    return false;
-                }
-            } else {
-                // 正常情况：当前时间应该在开始和结束时间之间
-                if (currentTime.isBefore(startTime) || currentTime.isAfter(endTime)) {
-                    return false;
-                }
-            }
-        }
-
-        return true;
-    }
 }
@@ -0,0 +1,52 @@
+package com.httprun.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Token 撤销变更日志
+ * <p>
+ * 每次撤销、删除或过期清理都追加一条记录，各节点按 id 增量拉取并同步到本地 TokenRegistry。
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "token_revocation_events", indexes = {
+        @Index(name = "idx_revocation_created", columnList = "createdAt")
+})
+public class TokenRevocationEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * 被撤销 Token 的 JWT 摘要
+     */
+    @Column(name = "jwt_digest", nullable = false, length = 64)
+    private String jwtDigest;
+
+    /**
+     * 被撤销 Token 的 ID
+     */
+    private Long tokenId;
+
+    /**
+     * 撤销时间
+     */
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    public TokenRevocationEvent(String jwtDigest, Long tokenId) {
+        this.jwtDigest = jwtDigest;
+        this.tokenId = tokenId;
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
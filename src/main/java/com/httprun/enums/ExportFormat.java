@@ -0,0 +1,50 @@
+package com.httprun.enums;
+
+import com.httprun.exception.BusinessException;
+
+import java.util.Locale;
+
+/**
+ * 日志导出格式枚举
+ */
+public enum ExportFormat {
+    /**
+     * 每行一个 JSON 对象
+     */
+    NDJSON("application/x-ndjson", "ndjson"),
+
+    /**
+     * RFC 4180 CSV（UTF-8，带表头）
+     */
+    CSV("text/csv", "csv");
+
+    private final String contentType;
+    private final String extension;
+
+    ExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * 解析格式参数（不区分大小写，为空时默认 NDJSON）
+     */
+    public static ExportFormat of(String value) {
+        if (value == null || value.isBlank()) {
+            return NDJSON;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException(ErrorCode.INVALID_PARAMETER, "format must be ndjson or csv");
+        }
+    }
+}
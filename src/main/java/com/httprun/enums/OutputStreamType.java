@@ -0,0 +1,44 @@
+package com.httprun.enums;
+
+import com.httprun.exception.BusinessException;
+
+import java.util.Locale;
+
+/**
+ * 命令输出流类型
+ */
+public enum OutputStreamType {
+    /**
+     * 标准输出
+     */
+    STDOUT("stdout"),
+
+    /**
+     * 标准错误
+     */
+    STDERR("stderr");
+
+    private final String suffix;
+
+    OutputStreamType(String suffix) {
+        this.suffix = suffix;
+    }
+
+    /**
+     * 落盘文件扩展名
+     */
+    public String getSuffix() {
+        return suffix;
+    }
+
+    /**
+     * 解析路径参数（不区分大小写）
+     */
+    public static OutputStreamType of(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (RuntimeException e) {
+            throw new BusinessException(ErrorCode.INVALID_PARAMETER, "stream must be stdout or stderr");
+        }
+    }
+}
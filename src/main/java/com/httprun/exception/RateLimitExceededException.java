@@ -0,0 +1,21 @@
+package com.httprun.exception;
+
+import com.httprun.enums.ErrorCode;
+import lombok.Getter;
+
+/**
+ * 执行频率超限异常
+ */
+@Getter
+public class RateLimitExceededException extends BusinessException {
+
+    /**
+     * 建议的重试等待时间（秒）
+     */
+    private final long retryAfterSeconds;
+
+    public RateLimitExceededException(String detail, long retryAfterSeconds) {
+        super(ErrorCode.RATE_LIMIT_EXCEEDED, detail + ", retry after " + retryAfterSeconds + "s");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
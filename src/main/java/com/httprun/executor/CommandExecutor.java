@@ -15,6 +15,19 @@ public interface CommandExecutor {
      */
     CommandExecutionResult execute(String command, RunCommandRequest request, int timeoutSeconds);
 
+    /**
+     * 同步执行已渲染的命令
+     * 默认使用完整命令行执行并在结束后对输出脱敏，支持 argv 或流式脱敏的执行器可覆盖
+     */
+    default CommandExecutionResult execute(RenderedCommand command, RunCommandRequest request, int timeoutSeconds) {
+        CommandExecutionResult result = execute(command.commandLine(), request, timeoutSeconds);
+        if (result != null && !command.outputMasker().isEmpty()) {
+            result.setStdout(command.outputMasker().mask(result.getStdout()));
+            result.setStderr(command.outputMasker().mask(result.getStderr()));
+        }
+        return result;
+    }
+
     /**
      * 异步执行命令
      */
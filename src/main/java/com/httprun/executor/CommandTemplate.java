@@ -1,9 +1,12 @@
 package com.httprun.executor;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.httprun.dto.request.RunCommandRequest;
 import com.httprun.entity.Command;
 import com.httprun.entity.ParamDefine;
 import com.httprun.util.CommandSecurityValidator;
+import com.httprun.util.ParamValidationPlan;
 import com.httprun.util.SensitiveDataMasker;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -28,6 +31,13 @@ public class CommandTemplate {
     // 匹配 {{.variableName}} 或 {{variableName}} 格式的模板变量（点号可选）
     private static final Pattern TEMPLATE_PATTERN = Pattern.compile("\\{\\{\\s*\\.?([a-zA-Z_][a-zA-Z0-9_]*)\\s*}}");
 
+    /**
+     * 预编译模板缓存，按命令 ID 存储，命中时再以 updatedAt 校验版本
+     */
+    private final Cache<Long, CompiledCommandTemplate> compiledTemplates = Caffeine.newBuilder()
+            .maximumSize(4096)
+            .build();
+
     /**
      * 渲染命令模板
      *
@@ -37,31 +47,67 @@ public class CommandTemplate {
      * 结果: "ping google.com -c 4"
      */
     public String render(Command command, RunCommandRequest request) {
+        return renderCommand(command, request).commandLine();
+    }
+
+    /**
+     * 渲染命令模板并返回脱敏后的日志字符串
+     * 用于日志记录，敏感参数会被替换为 ***
+     *
+     * @return 数组 [0]=实际命令, [1]=脱敏后的日志
+     */
+    public String[] renderWithMasking(Command command, RunCommandRequest request) {
+        RenderedCommand rendered = renderCommand(command, request);
+        return new String[] { rendered.commandLine(), rendered.maskedCommandLine() };
+    }
+
+    /**
+     * 使用预编译计划渲染命令，一次产出 argv、实际命令行和脱敏命令行
+     */
+    public RenderedCommand renderCommand(Command command, RunCommandRequest request) {
         // 检查 commandConfig 是否存在
         if (command.getCommandConfig() == null || command.getCommandConfig().getCommand() == null) {
             throw new IllegalArgumentException(
                     "Command configuration is not set. Please configure the command template first.");
         }
-        String template = command.getCommandConfig().getCommand();
-
-        // 构建参数映射
-        Map<String, Object> params = buildParamMap(command, request);
+        return compile(command).render(buildParamMap(command, request));
+    }
 
-        // 渲染模板
-        return renderTemplate(template, params);
+    /**
+     * 获取命令的预编译模板，同一版本只编译一次
+     */
+    private CompiledCommandTemplate compile(Command command) {
+        String template = command.getCommandConfig().getCommand();
+        if (command.getId() == null) {
+            return CompiledCommandTemplate.compile(template, command.getUpdatedAt(), TEMPLATE_PATTERN,
+                    SensitiveDataMasker.getSensitiveParamNames(command));
+        }
+        CompiledCommandTemplate cached = compiledTemplates.getIfPresent(command.getId());
+        if (cached != null && cached.isCompiledFrom(command.getUpdatedAt(), template)) {
+            return cached;
+        }
+        CompiledCommandTemplate compiled = CompiledCommandTemplate.compile(template, command.getUpdatedAt(),
+                TEMPLATE_PATTERN, SensitiveDataMasker.getSensitiveParamNames(command));
+        compiledTemplates.put(command.getId(), compiled);
+        log.debug("Compiled command template: {} (version {})", command.getName(), command.getUpdatedAt());
+        return compiled;
     }
 
     /**
-     * 渲染命令模板并返回脱敏后的日志字符串
-     * 用于日志记录，敏感参数会被替换为 ***
-     *
-     * @return 数组 [0]=实际命令, [1]=脱敏后的日志
+     * 渲染简单的内联模板（如 remoteConfig 的 host/username），缺失的变量替换为空字符串
      */
-    public String[] renderWithMasking(Command command, RunCommandRequest request) {
-        String actualCommand = render(command, request);
-        Map<String, Object> params = buildParamMap(command, request);
-        String maskedCommand = SensitiveDataMasker.maskCommand(command, actualCommand, params);
-        return new String[] { actualCommand, maskedCommand };
+    public static String renderInline(String template, Map<String, String> params) {
+        if (template == null || !template.contains("{{")) {
+            return template;
+        }
+        StringBuilder result = new StringBuilder();
+        Matcher matcher = TEMPLATE_PATTERN.matcher(template);
+        while (matcher.find()) {
+            matcher.appendReplacement(result,
+                    Matcher.quoteReplacement(params.getOrDefault(matcher.group(1), "")));
+        }
+        matcher.appendTail(result);
+        return result.toString();
     }
 
     private Map<String, Object> buildParamMap(Command command, RunCommandRequest request) {
@@ -88,21 +134,6 @@ public class CommandTemplate {
         return params;
     }
 
-    private String renderTemplate(String template, Map<String, Object> params) {
-        StringBuffer result = new StringBuffer();
-        Matcher matcher = TEMPLATE_PATTERN.matcher(template);
-
-        while (matcher.find()) {
-            String varName = matcher.group(1);
-            Object value = params.get(varName);
-            String replacement = value != null ? String.valueOf(value) : "";
-            matcher.appendReplacement(result, Matcher.quoteReplacement(replacement));
-        }
-        matcher.appendTail(result);
-
-        return result.toString();
-    }
-
     /**
      * 验证参数
      */
@@ -119,19 +150,18 @@ public class CommandTemplate {
             }
         }
 
-        for (ParamDefine paramDef : command.getCommandConfig().getParams()) {
-            if (paramDef.isRequired()) {
-                Object value = providedParams.get(paramDef.getName());
-                if (value == null || value.toString().isEmpty()) {
-                    throw new IllegalArgumentException(
-                            "Parameter '" + paramDef.getName() + "' is required");
-                }
+        // 按命令版本预编译的校验计划（必填项、类型解析器、白名单、可选值）
+        ParamValidationPlan plan = securityValidator.getValidationPlan(command);
+        for (String name : plan.requiredParamNames()) {
+            Object value = providedParams.get(name);
+            if (value == null || value.toString().isEmpty()) {
+                throw new IllegalArgumentException("Parameter '" + name + "' is required");
             }
         }
 
         // 使用增强的综合安全检查（包含命令注入防护、参数白名单验证、路径遍历防护）
         // strictMode=true 启用严格模式（参数白名单验证）
-        securityValidator.performFullSecurityCheck(command, providedParams, true);
+        securityValidator.performFullSecurityCheck(plan, providedParams, true);
     }
 
     /**
@@ -150,13 +180,27 @@ public class CommandTemplate {
      * 获取高危命令警告信息
      */
     public String getDangerWarning(Command command) {
-        if (command.getCommandConfig() == null || command.getCommandConfig().getCommand() == null) {
+        return getDangerWarning(command, detectDangerLevel(command));
+    }
+
+    /**
+     * 根据已检测出的危险等级获取警告信息，避免重复检测
+     */
+    public String getDangerWarning(Command command, int dangerLevel) {
+        if (dangerLevel <= 0 || command.getCommandConfig() == null
+                || command.getCommandConfig().getCommand() == null) {
             return null;
         }
+        return securityValidator.getDangerWarning(command.getCommandConfig().getCommand());
+    }
+
+    /**
+     * 分析命令危险等级并写入命令实体（检测只执行一次）
+     * 在命令创建、更新时调用，结果随命令一起持久化
+     */
+    public void applyDangerAnalysis(Command command) {
         int level = detectDangerLevel(command);
-        if (level > 0) {
-            return securityValidator.getDangerWarning(command.getCommandConfig().getCommand());
-        }
-        return null;
+        command.setDangerLevel(level);
+        command.setDangerWarning(getDangerWarning(command, level));
     }
 }
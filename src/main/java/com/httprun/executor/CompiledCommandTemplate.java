@@ -0,0 +1,200 @@
+package com.httprun.executor;
+
+import com.httprun.util.SecretMaskingFilter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 预编译的命令模板
+ *
+ * 模板在编译时按 shlex 规则（与 LocalCommandExecutor#parseCommand 相同的引号语义）切分为参数级计划：
+ * 每个 argv 参数由若干字面量片段和参数槽位组成。渲染时参数值只会填入其所在的槽位，
+ * 因此包含空格或引号的参数值永远不会被拆分成额外的参数。
+ *
+ * 同一个计划还会在同一次遍历中产出实际命令行（供 SSH 远端 shell 使用）和脱敏后的展示字符串，
+ * 并以敏感参数值构建输出脱敏过滤器。
+ */
+public final class CompiledCommandTemplate {
+
+    private static final String MASK = "***";
+
+    private final String source;
+    private final LocalDateTime version;
+    /** 参数槽位名称，下标即槽位编号 */
+    private final String[] slotNames;
+    /** 槽位是否为敏感参数 */
+    private final boolean[] slotSensitive;
+    /** 命令行片段：String 为字面量，Integer 为槽位编号 */
+    private final Object[] lineSegments;
+    /** argv 计划：每个元素同样由 String 字面量与 Integer 槽位组成 */
+    private final Object[][] argPlans;
+
+    private CompiledCommandTemplate(String source, LocalDateTime version, String[] slotNames,
+            boolean[] slotSensitive, Object[] lineSegments, Object[][] argPlans) {
+        this.source = source;
+        this.version = version;
+        this.slotNames = slotNames;
+        this.slotSensitive = slotSensitive;
+        this.lineSegments = lineSegments;
+        this.argPlans = argPlans;
+    }
+
+    /**
+     * 编译命令模板
+     *
+     * @param template       命令模板
+     * @param version        命令版本（updatedAt），用于缓存校验
+     * @param pattern        模板变量匹配规则
+     * @param sensitiveNames 敏感参数名称
+     */
+    static CompiledCommandTemplate compile(String template, LocalDateTime version, Pattern pattern,
+            Set<String> sensitiveNames) {
+        List<String> names = new ArrayList<>();
+        List<int[]> spans = new ArrayList<>();
+        Matcher matcher = pattern.matcher(template);
+        while (matcher.find()) {
+            spans.add(new int[] { matcher.start(), matcher.end() });
+            names.add(matcher.group(1));
+        }
+
+        boolean[] sensitive = new boolean[names.size()];
+        for (int i = 0; i < sensitive.length; i++) {
+            sensitive[i] = sensitiveNames.contains(names.get(i));
+        }
+
+        // 1. 命令行片段
+        List<Object> line = new ArrayList<>();
+        int last = 0;
+        for (int i = 0; i < spans.size(); i++) {
+            int[] span = spans.get(i);
+            if (span[0] > last) {
+                line.add(template.substring(last, span[0]));
+            }
+            line.add(i);
+            last = span[1];
+        }
+        if (last < template.length()) {
+            line.add(template.substring(last));
+        }
+
+        // 2. argv 计划（引号规则与 parseCommand 一致）
+        List<Object[]> args = new ArrayList<>();
+        List<Object> parts = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        boolean inQuote = false;
+        char quoteChar = 0;
+        int spanIndex = 0;
+        int i = 0;
+        while (i < template.length()) {
+            if (spanIndex < spans.size() && spans.get(spanIndex)[0] == i) {
+                flushLiteral(literal, parts);
+                parts.add(spanIndex);
+                i = spans.get(spanIndex)[1];
+                spanIndex++;
+                continue;
+            }
+            char c = template.charAt(i++);
+            if (inQuote) {
+                if (c == quoteChar) {
+                    inQuote = false;
+                } else {
+                    literal.append(c);
+                }
+            } else if (c == '"' || c == '\'') {
+                inQuote = true;
+                quoteChar = c;
+            } else if (Character.isWhitespace(c)) {
+                flushLiteral(literal, parts);
+                if (!parts.isEmpty()) {
+                    args.add(parts.toArray());
+                    parts.clear();
+                }
+            } else {
+                literal.append(c);
+            }
+        }
+        flushLiteral(literal, parts);
+        if (!parts.isEmpty()) {
+            args.add(parts.toArray());
+        }
+
+        return new CompiledCommandTemplate(template, version, names.toArray(new String[0]), sensitive,
+                line.toArray(), args.toArray(new Object[0][]));
+    }
+
+    private static void flushLiteral(StringBuilder literal, List<Object> parts) {
+        if (literal.length() > 0) {
+            parts.add(literal.toString());
+            literal.setLength(0);
+        }
+    }
+
+    /**
+     * 判断该计划是否由指定版本的模板编译而来
+     */
+    boolean isCompiledFrom(LocalDateTime updatedAt, String template) {
+        return Objects.equals(version, updatedAt) && source.equals(template);
+    }
+
+    /**
+     * 使用参数渲染命令
+     *
+     * @param params 参数映射（默认值已合并）
+     */
+    public RenderedCommand render(Map<String, Object> params) {
+        String[] values = new String[slotNames.length];
+        for (int i = 0; i < values.length; i++) {
+            Object value = params.get(slotNames[i]);
+            values[i] = value != null ? String.valueOf(value) : "";
+        }
+
+        List<String> secrets = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            if (slotSensitive[i] && !values[i].isEmpty()) {
+                secrets.add(values[i]);
+            }
+        }
+
+        StringBuilder commandLine = new StringBuilder(source.length() + 32);
+        StringBuilder masked = new StringBuilder(source.length() + 32);
+        for (Object segment : lineSegments) {
+            if (segment instanceof String literal) {
+                commandLine.append(literal);
+                masked.append(literal);
+            } else {
+                int slot = (Integer) segment;
+                commandLine.append(values[slot]);
+                masked.append(slotSensitive[slot] && !values[slot].isEmpty() ? MASK : values[slot]);
+            }
+        }
+
+        List<String> argv = new ArrayList<>(argPlans.length);
+        for (Object[] plan : argPlans) {
+            String arg;
+            if (plan.length == 1) {
+                arg = plan[0] instanceof String literal ? literal : values[(Integer) plan[0]];
+            } else {
+                StringBuilder sb = new StringBuilder();
+                for (Object part : plan) {
+                    sb.append(part instanceof String literal ? literal : values[(Integer) part]);
+                }
+                arg = sb.toString();
+            }
+            // 与 parseCommand 一致：渲染后为空的参数不出现在 argv 中
+            if (!arg.isEmpty()) {
+                argv.add(arg);
+            }
+        }
+
+        return new RenderedCommand(Collections.unmodifiableList(argv), commandLine.toString(), masked.toString(),
+                SecretMaskingFilter.of(secrets));
+    }
+}
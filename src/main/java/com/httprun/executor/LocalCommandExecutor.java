@@ -1,8 +1,11 @@
 package com.httprun.executor;
 
+import com.httprun.config.ExecutionOutputConfig;
 import com.httprun.dto.request.RunCommandRequest;
 import com.httprun.dto.response.CommandExecutionResult;
+import com.httprun.util.SecretMaskingFilter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.BufferedReader;
@@ -11,7 +14,6 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.*;
-import java.util.stream.Collectors;
 
 /**
  * 本地命令执行器
@@ -24,6 +26,7 @@ public class LocalCommandExecutor implements CommandExecutor {
 
     private final ExecutorService executorService;
     private final Semaphore semaphore; // 并发控制
+    private ExecutionOutputConfig outputConfig;
 
     public LocalCommandExecutor() {
         // 最大并发执行数
@@ -32,17 +35,43 @@ public class LocalCommandExecutor implements CommandExecutor {
         this.semaphore = new Semaphore(maxConcurrent);
     }
 
+    /**
+     * 输出落盘配置；未注入时输出全部保存在内存中
+     */
+    @Autowired(required = false)
+    public void setOutputConfig(ExecutionOutputConfig outputConfig) {
+        this.outputConfig = outputConfig;
+    }
+
     @Override
     public CommandExecutionResult execute(String command, RunCommandRequest request, int timeoutSeconds) {
+        // 解析命令为参数列表（类似 Go 的 shlex.Split）
+        List<String> cmdArgs = parseCommand(command);
+        return executeArgs(cmdArgs, cmdArgs.toString(), SecretMaskingFilter.NONE, request, timeoutSeconds);
+    }
+
+    /**
+     * 直接按预编译模板生成的 argv 执行，无需重新解析命令行；输出在读取时流式脱敏
+     */
+    @Override
+    public CommandExecutionResult execute(RenderedCommand command, RunCommandRequest request, int timeoutSeconds) {
+        return executeArgs(command.argv(), command.maskedCommandLine(), command.outputMasker(), request,
+                timeoutSeconds);
+    }
+
+    private CommandExecutionResult executeArgs(List<String> cmdArgs, String displayCommand,
+            SecretMaskingFilter outputMasker, RunCommandRequest request, int timeoutSeconds) {
         // 尝试获取信号量
         boolean acquired = false;
+        long queueStart = System.currentTimeMillis();
         try {
             acquired = semaphore.tryAcquire(5, TimeUnit.SECONDS);
-            if (!acquired) {
-                return CommandExecutionResult.error("Execution queue full, please retry later");
-            }
-
-            return doExecute(command, request, timeoutSeconds);
+            long queueWait = System.currentTimeMillis() - queueStart;
+            CommandExecutionResult result = acquired
+                    ? doExecute(cmdArgs, displayCommand, outputMasker, request, timeoutSeconds)
+                    : CommandExecutionResult.error("Execution queue full, please retry later");
+            result.setQueueWait(queueWait);
+            return result;
 
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -54,13 +83,13 @@ public class LocalCommandExecutor implements CommandExecutor {
         }
     }
 
-    private CommandExecutionResult doExecute(String command, RunCommandRequest request, int timeoutSeconds) {
+    private CommandExecutionResult doExecute(List<String> cmdArgs, String displayCommand,
+            SecretMaskingFilter outputMasker, RunCommandRequest request, int timeoutSeconds) {
         long startTime = System.currentTimeMillis();
 
         try {
-            // 1. 解析命令为参数列表（类似 Go 的 shlex.Split）
-            List<String> cmdArgs = parseCommand(command);
-            log.info("Executing command: {}", cmdArgs);
+            // 1. 参数列表已由调用方准备好
+            log.info("Executing command: {}", displayCommand);
 
             // 2. 构建进程（类似 Go 的 exec.CommandContext）
             ProcessBuilder processBuilder = new ProcessBuilder(cmdArgs);
@@ -79,10 +108,10 @@ public class LocalCommandExecutor implements CommandExecutor {
             Process process = processBuilder.start();
 
             // 6. 异步读取输出
-            CompletableFuture<String> stdoutFuture = CompletableFuture
-                    .supplyAsync(() -> readStream(process.getInputStream()), executorService);
-            CompletableFuture<String> stderrFuture = CompletableFuture
-                    .supplyAsync(() -> readStream(process.getErrorStream()), executorService);
+            CompletableFuture<OutputCapture> stdoutFuture = CompletableFuture
+                    .supplyAsync(() -> readStream(process.getInputStream(), outputMasker), executorService);
+            CompletableFuture<OutputCapture> stderrFuture = CompletableFuture
+                    .supplyAsync(() -> readStream(process.getErrorStream(), outputMasker), executorService);
 
             // 7. 等待进程完成（带超时）
             boolean finished = process.waitFor(timeoutSeconds, TimeUnit.SECONDS);
@@ -91,6 +120,9 @@ public class LocalCommandExecutor implements CommandExecutor {
                 // 超时，强制终止进程（类似 Go 的 cmd.Process.Kill()）
                 process.destroyForcibly();
                 process.waitFor(5, TimeUnit.SECONDS);
+                // 超时结果不含输出，丢弃已落盘的部分
+                stdoutFuture.thenAccept(OutputCapture::discard);
+                stderrFuture.thenAccept(OutputCapture::discard);
                 return CommandExecutionResult.builder()
                         .exitCode(-1)
                         .stderr("Command timeout after " + timeoutSeconds + " seconds")
@@ -99,13 +131,11 @@ public class LocalCommandExecutor implements CommandExecutor {
             }
 
             // 8. 获取输出
-            String stdout = stdoutFuture.get(5, TimeUnit.SECONDS);
-            String stderr = stderrFuture.get(5, TimeUnit.SECONDS);
+            OutputCapture stdout = stdoutFuture.get(5, TimeUnit.SECONDS);
+            OutputCapture stderr = stderrFuture.get(5, TimeUnit.SECONDS);
             int exitCode = process.exitValue();
 
-            return CommandExecutionResult.builder()
-                    .stdout(stdout)
-                    .stderr(stderr)
+            return OutputCapture.resultBuilder(stdout, stderr)
                     .exitCode(exitCode)
                     .duration(System.currentTimeMillis() - startTime)
                     .build();
@@ -166,16 +196,30 @@ public class LocalCommandExecutor implements CommandExecutor {
         return args;
     }
 
-    private String readStream(java.io.InputStream inputStream) {
+    private OutputCapture readStream(java.io.InputStream inputStream, SecretMaskingFilter outputMasker) {
         // Windows 中文系统使用 GBK 编码，其他系统使用 UTF-8
         Charset charset = System.getProperty("os.name").toLowerCase().contains("windows")
                 ? Charset.forName("GBK")
                 : Charset.forName("UTF-8");
+        OutputCapture capture = outputConfig != null
+                ? new OutputCapture(outputMasker, outputConfig.spillDirectory(), outputConfig.getSpillThresholdBytes())
+                : new OutputCapture(outputMasker);
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, charset))) {
-            return reader.lines().collect(Collectors.joining("\n"));
+            String line;
+            boolean first = true;
+            while ((line = reader.readLine()) != null) {
+                if (!first) {
+                    capture.write("\n");
+                }
+                capture.write(line);
+                first = false;
+            }
         } catch (Exception e) {
-            return "";
+            // 读取中断时保留已收集的部分
+            log.debug("Output stream closed while reading: {}", e.getMessage());
         }
+        capture.finish();
+        return capture;
     }
 
     @Override
@@ -0,0 +1,251 @@
+package com.httprun.executor;
+
+import com.httprun.dto.response.CommandExecutionResult;
+import com.httprun.util.OutputSpillFile;
+import com.httprun.util.SecretMaskingFilter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+
+/**
+ * 命令输出收集器
+ *
+ * 输出在写入时即经过 {@link SecretMaskingFilter} 流式脱敏，收集到的内容中不会出现敏感参数值，
+ * 执行结束后无需再对整段输出做替换。可通过 {@link #asOutputStream(Charset)} 直接作为 SSH 通道的输出流。
+ *
+ * 指定落盘目录时，输出超过阈值（UTF-8 字节数）后全部写入 {@link OutputSpillFile}，内存中只保留阈值以内的开头部分，
+ * 执行结果标记为已截断；落盘文件创建失败时退回为全部保存在内存中。
+ */
+@Slf4j
+public final class OutputCapture {
+
+    private final SecretMaskingFilter.Stream stream;
+    private final StringBuilder buffer = new StringBuilder();
+    private final long spillThreshold;
+    private Path spillDirectory;
+    private DecodingOutputStream decoder;
+    private OutputSpillFile spill;
+    /** buffer 中已计入 inlineBytes（或已写入落盘文件）的长度 */
+    private int scanned;
+    private long inlineBytes;
+    private boolean truncated;
+    private String result;
+
+    public OutputCapture(SecretMaskingFilter filter) {
+        this(filter, null, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param spillDirectory 临时落盘目录，为 null 时不落盘
+     * @param spillThreshold 落盘阈值（字节）
+     */
+    public OutputCapture(SecretMaskingFilter filter, Path spillDirectory, long spillThreshold) {
+        this.stream = filter.newStream();
+        this.spillDirectory = spillDirectory;
+        this.spillThreshold = spillThreshold;
+    }
+
+    /**
+     * 以 stdout / stderr 的收集结果（内联输出、截断标记、落盘文件）创建执行结果
+     */
+    public static CommandExecutionResult.CommandExecutionResultBuilder resultBuilder(OutputCapture stdout,
+            OutputCapture stderr) {
+        return CommandExecutionResult.builder()
+                .stdout(stdout.finish())
+                .stdoutTruncated(stdout.isTruncated())
+                .stdoutSpill(stdout.getSpill())
+                .stderr(stderr.finish())
+                .stderrTruncated(stderr.isTruncated())
+                .stderrSpill(stderr.getSpill());
+    }
+
+    /**
+     * 写入一段文本
+     */
+    public synchronized void write(CharSequence chunk) {
+        if (result != null) {
+            return;
+        }
+        stream.write(chunk, buffer);
+        spillIfNeeded();
+    }
+
+    /**
+     * 结束写入并返回脱敏后的输出（已落盘时只返回开头部分）；重复调用返回相同结果
+     */
+    public synchronized String finish() {
+        if (result != null) {
+            return result;
+        }
+        if (decoder != null) {
+            decoder.endOfInput();
+        }
+        stream.finish(buffer);
+        spillIfNeeded();
+        if (spill != null) {
+            try {
+                spill.finish();
+            } catch (IOException e) {
+                log.warn("Failed to finish spilled output {}: {}", spill.path(), e.getMessage());
+                spill.delete();
+                spill = null;
+            }
+        }
+        result = buffer.toString();
+        return result;
+    }
+
+    /**
+     * 输出是否超过落盘阈值（返回的内容只是开头部分）
+     */
+    public synchronized boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * 完整输出的落盘文件，未落盘时为 null
+     */
+    public synchronized OutputSpillFile getSpill() {
+        return spill;
+    }
+
+    /**
+     * 丢弃落盘文件（执行结果不再需要完整输出时调用）
+     */
+    public synchronized void discard() {
+        if (spill != null) {
+            spill.delete();
+            spill = null;
+        }
+    }
+
+    private void spillIfNeeded() {
+        if (spillDirectory == null) {
+            return;
+        }
+        int length = buffer.length();
+        if (truncated) {
+            // 已超过阈值：后续输出只写入落盘文件（落盘失败时丢弃）
+            if (length > scanned) {
+                writeSpill(scanned, length);
+                buffer.setLength(scanned);
+            }
+            return;
+        }
+        for (int i = scanned; i < length; i++) {
+            char c = buffer.charAt(i);
+            inlineBytes += c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate(c) ? 2 : 3;
+            if (inlineBytes > spillThreshold) {
+                startSpill(i);
+                return;
+            }
+        }
+        scanned = length;
+    }
+
+    /**
+     * 超过阈值：整段输出写入落盘文件，内存中只保留 [0, cut)
+     */
+    private void startSpill(int cut) {
+        try {
+            spill = OutputSpillFile.create(spillDirectory);
+        } catch (IOException e) {
+            log.warn("Failed to create output spill file in {}, keeping output in memory: {}", spillDirectory,
+                    e.getMessage());
+            spillDirectory = null;
+            return;
+        }
+        writeSpill(0, buffer.length());
+        if (cut > 0 && Character.isHighSurrogate(buffer.charAt(cut - 1))) {
+            cut--;
+        }
+        buffer.setLength(cut);
+        scanned = cut;
+        truncated = true;
+    }
+
+    private void writeSpill(int start, int end) {
+        if (spill == null) {
+            return;
+        }
+        try {
+            spill.write(buffer, start, end);
+        } catch (IOException e) {
+            // 落盘失败：完整输出不可用，内存中仍只保留开头部分
+            log.warn("Failed to write spilled output {}: {}", spill.path(), e.getMessage());
+            spill.delete();
+            spill = null;
+        }
+    }
+
+    /**
+     * 以字节流形式接收输出（按指定字符集增量解码，多字节字符可跨 write 调用）
+     */
+    public synchronized OutputStream asOutputStream(Charset charset) {
+        if (decoder == null) {
+            decoder = new DecodingOutputStream(charset);
+        }
+        return decoder;
+    }
+
+    private final class DecodingOutputStream extends OutputStream {
+
+        private final CharsetDecoder charsetDecoder;
+        /** 上次写入末尾未解码完的字节 */
+        private ByteBuffer carry = ByteBuffer.allocate(0);
+
+        DecodingOutputStream(Charset charset) {
+            this.charsetDecoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int off, int len) {
+            synchronized (OutputCapture.this) {
+                if (result != null) {
+                    return;
+                }
+                ByteBuffer in;
+                if (carry.hasRemaining()) {
+                    in = ByteBuffer.allocate(carry.remaining() + len);
+                    in.put(carry).put(bytes, off, len).flip();
+                } else {
+                    in = ByteBuffer.wrap(bytes, off, len);
+                }
+                decode(in, false);
+                spillIfNeeded();
+                carry = in.hasRemaining() ? ByteBuffer.allocate(in.remaining()).put(in).flip() : ByteBuffer.allocate(0);
+            }
+        }
+
+        void endOfInput() {
+            decode(carry, true);
+            CharBuffer out = CharBuffer.allocate(8);
+            charsetDecoder.flush(out);
+            out.flip();
+            stream.write(out, buffer);
+            carry = ByteBuffer.allocate(0);
+            charsetDecoder.reset();
+        }
+
+        private void decode(ByteBuffer in, boolean endOfInput) {
+            CharBuffer out = CharBuffer.allocate((int) (in.remaining() * charsetDecoder.maxCharsPerByte()) + 1);
+            charsetDecoder.decode(in, out, endOfInput);
+            out.flip();
+            stream.write(out, buffer);
+        }
+    }
+}
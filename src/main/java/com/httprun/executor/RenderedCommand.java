@@ -0,0 +1,17 @@
+package com.httprun.executor;
+
+import com.httprun.util.SecretMaskingFilter;
+
+import java.util.List;
+
+/**
+ * 渲染后的命令
+ *
+ * @param argv              本地执行使用的参数列表（参数值不会被拆分）
+ * @param commandLine       完整命令行（SSH 远端执行使用）
+ * @param maskedCommandLine 敏感参数已替换为 *** 的命令行，用于日志展示
+ * @param outputMasker      由本次敏感参数值构建的输出脱敏过滤器
+ */
+public record RenderedCommand(List<String> argv, String commandLine, String maskedCommandLine,
+        SecretMaskingFilter outputMasker) {
+}
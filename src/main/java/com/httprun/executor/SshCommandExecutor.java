@@ -1,5 +1,6 @@
 package com.httprun.executor;
 
+import com.httprun.config.ExecutionOutputConfig;
 import com.httprun.config.SshPoolConfig;
 import com.httprun.dto.request.RunCommandRequest;
 import com.httprun.dto.response.CommandExecutionResult;
@@ -8,14 +9,15 @@ import com.httprun.repository.SshHostKeyRepository;
 import com.httprun.ssh.DatabaseHostKeyRepository;
 import com.httprun.ssh.SshConnectionPool;
 import com.httprun.util.CryptoUtils;
+import com.httprun.util.SecretMaskingFilter;
 import com.jcraft.jsch.ChannelExec;
 import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.Session;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -55,18 +57,40 @@ public class SshCommandExecutor implements CommandExecutor {
     private final SshConnectionPool sshConnectionPool;
     private final SshPoolConfig sshPoolConfig;
     private final SshHostKeyRepository sshHostKeyRepository;
+    private ExecutionOutputConfig outputConfig;
+
+    /**
+     * 输出落盘配置；未注入时输出全部保存在内存中
+     */
+    @Autowired(required = false)
+    public void setOutputConfig(ExecutionOutputConfig outputConfig) {
+        this.outputConfig = outputConfig;
+    }
 
     @Override
     public CommandExecutionResult execute(String command, RunCommandRequest request, int timeoutSeconds) {
+        return execute(command, SecretMaskingFilter.NONE, request, timeoutSeconds);
+    }
+
+    /**
+     * 执行已渲染的命令，通道输出在接收时即流式脱敏
+     */
+    @Override
+    public CommandExecutionResult execute(RenderedCommand command, RunCommandRequest request, int timeoutSeconds) {
+        return execute(command.commandLine(), command.outputMasker(), request, timeoutSeconds);
+    }
+
+    private CommandExecutionResult execute(String command, SecretMaskingFilter outputMasker,
+            RunCommandRequest request, int timeoutSeconds) {
         RemoteConfig remoteConfig = request.getRemoteConfig();
         if (remoteConfig == null || isLocalhost(remoteConfig.getHost())) {
             return CommandExecutionResult.error("Remote config with valid host is required for SSH execution");
         }
 
         if (sshConnectionPool.isEnabled()) {
-            return executeWithPool(command, remoteConfig, timeoutSeconds);
+            return executeWithPool(command, outputMasker, remoteConfig, timeoutSeconds);
         } else {
-            return executeDirectly(command, remoteConfig, timeoutSeconds);
+            return executeDirectly(command, outputMasker, remoteConfig, timeoutSeconds);
         }
     }
 
@@ -153,11 +177,22 @@ public class SshCommandExecutor implements CommandExecutor {
         return session;
     }
 
+    /**
+     * 创建输出收集器（超过配置的阈值后落盘）
+     */
+    private OutputCapture newCapture(SecretMaskingFilter outputMasker) {
+        return outputConfig != null
+                ? new OutputCapture(outputMasker, outputConfig.spillDirectory(), outputConfig.getSpillThresholdBytes())
+                : new OutputCapture(outputMasker);
+    }
+
     /**
      * 使用连接池执行 SSH 命令
      */
-    private CommandExecutionResult executeWithPool(String command, RemoteConfig remoteConfig, int timeoutSeconds) {
+    private CommandExecutionResult executeWithPool(String command, SecretMaskingFilter outputMasker,
+            RemoteConfig remoteConfig, int timeoutSeconds) {
         long startTime = System.currentTimeMillis();
+        long queueWait = 0;
         Session session = null;
         ChannelExec channel = null;
         boolean sessionInvalid = false;
@@ -173,15 +208,16 @@ public class SshCommandExecutor implements CommandExecutor {
         try {
             // 1. 从连接池借用 Session
             session = sshConnectionPool.borrowSession(remoteConfig);
+            queueWait = System.currentTimeMillis() - startTime;
 
             // 2. 在复用的 Session 上打开 exec 通道执行命令
             channel = (ChannelExec) session.openChannel("exec");
             channel.setCommand(command);
 
-            ByteArrayOutputStream stdout = new ByteArrayOutputStream();
-            ByteArrayOutputStream stderr = new ByteArrayOutputStream();
-            channel.setOutputStream(stdout);
-            channel.setErrStream(stderr);
+            OutputCapture stdout = newCapture(outputMasker);
+            OutputCapture stderr = newCapture(outputMasker);
+            channel.setOutputStream(stdout.asOutputStream(StandardCharsets.UTF_8));
+            channel.setErrStream(stderr.asOutputStream(StandardCharsets.UTF_8));
 
             channel.connect(channelTimeoutMs);
 
@@ -190,12 +226,11 @@ public class SshCommandExecutor implements CommandExecutor {
             while (!channel.isClosed()) {
                 if (System.currentTimeMillis() > deadline) {
                     log.warn("SSH command execution timed out after {}s", execTimeoutSec);
-                    return CommandExecutionResult.builder()
+                    return OutputCapture.resultBuilder(stdout, stderr)
                             .error("Command execution timed out after " + execTimeoutSec + " seconds")
-                            .stdout(stdout.toString())
-                            .stderr(stderr.toString())
                             .exitCode(-1)
                             .duration(System.currentTimeMillis() - startTime)
+                            .queueWait(queueWait)
                             .build();
                 }
                 Thread.sleep(100);
@@ -203,11 +238,10 @@ public class SshCommandExecutor implements CommandExecutor {
 
             int exitCode = channel.getExitStatus();
 
-            return CommandExecutionResult.builder()
-                    .stdout(stdout.toString())
-                    .stderr(stderr.toString())
+            return OutputCapture.resultBuilder(stdout, stderr)
                     .exitCode(exitCode)
                     .duration(System.currentTimeMillis() - startTime)
+                    .queueWait(queueWait)
                     .build();
 
         } catch (Exception e) {
@@ -216,6 +250,7 @@ public class SshCommandExecutor implements CommandExecutor {
             return CommandExecutionResult.builder()
                     .error(e.getMessage())
                     .duration(System.currentTimeMillis() - startTime)
+                    .queueWait(queueWait)
                     .build();
         } finally {
             // 关闭 channel（但不关闭 session，session 归还给池）
@@ -236,7 +271,8 @@ public class SshCommandExecutor implements CommandExecutor {
     /**
      * 直连模式执行 SSH 命令（兼容旧逻辑，连接池禁用时使用）
      */
-    private CommandExecutionResult executeDirectly(String command, RemoteConfig remoteConfig, int timeoutSeconds) {
+    private CommandExecutionResult executeDirectly(String command, SecretMaskingFilter outputMasker,
+            RemoteConfig remoteConfig, int timeoutSeconds) {
         long startTime = System.currentTimeMillis();
         Session session = null;
         ChannelExec channel = null;
@@ -256,10 +292,10 @@ public class SshCommandExecutor implements CommandExecutor {
             channel = (ChannelExec) session.openChannel("exec");
             channel.setCommand(command);
 
-            ByteArrayOutputStream stdout = new ByteArrayOutputStream();
-            ByteArrayOutputStream stderr = new ByteArrayOutputStream();
-            channel.setOutputStream(stdout);
-            channel.setErrStream(stderr);
+            OutputCapture stdout = newCapture(outputMasker);
+            OutputCapture stderr = newCapture(outputMasker);
+            channel.setOutputStream(stdout.asOutputStream(StandardCharsets.UTF_8));
+            channel.setErrStream(stderr.asOutputStream(StandardCharsets.UTF_8));
 
             channel.connect(channelTimeoutMs);
 
@@ -268,10 +304,8 @@ public class SshCommandExecutor implements CommandExecutor {
             while (!channel.isClosed()) {
                 if (System.currentTimeMillis() > deadline) {
                     log.warn("SSH command execution timed out after {}s (direct mode)", execTimeoutSec);
-                    return CommandExecutionResult.builder()
+                    return OutputCapture.resultBuilder(stdout, stderr)
                             .error("Command execution timed out after " + execTimeoutSec + " seconds")
-                            .stdout(stdout.toString())
-                            .stderr(stderr.toString())
                             .exitCode(-1)
                             .duration(System.currentTimeMillis() - startTime)
                             .build();
@@ -281,9 +315,7 @@ public class SshCommandExecutor implements CommandExecutor {
 
             int exitCode = channel.getExitStatus();
 
-            return CommandExecutionResult.builder()
-                    .stdout(stdout.toString())
-                    .stderr(stderr.toString())
+            return OutputCapture.resultBuilder(stdout, stderr)
                     .exitCode(exitCode)
                     .duration(System.currentTimeMillis() - startTime)
                     .build();
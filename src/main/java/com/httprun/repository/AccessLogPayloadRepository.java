@@ -0,0 +1,77 @@
+package com.httprun.repository;
+
+import com.httprun.entity.AccessLogPayload;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 访问日志请求 / 响应内容数据访问层
+ */
+@Repository
+public interface AccessLogPayloadRepository extends JpaRepository<AccessLogPayload, Long> {
+
+    /**
+     * 按 ID 与创建时间查找（PostgreSQL 下只访问一个分区）
+     */
+    Optional<AccessLogPayload> findByIdAndCreatedAt(Long id, LocalDateTime createdAt);
+
+    /**
+     * 按 ID 批量查找，附带时间范围以裁剪分区
+     */
+    List<AccessLogPayload> findByIdInAndCreatedAtBetween(Collection<Long> ids, LocalDateTime start,
+            LocalDateTime end);
+
+    /**
+     * 统计指定日志对各命令输出的引用数（[response_hash, count]），须在删除之前调用
+     */
+    @Query("SELECT p.responseHash, COUNT(p) FROM AccessLogPayload p WHERE p.id IN :ids "
+            + "AND p.responseHash IS NOT NULL GROUP BY p.responseHash")
+    List<Object[]> countResponseHashesByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 统计指定日志中属于指定 Token 的部分对各命令输出的引用数
+     */
+    @Query("SELECT p.responseHash, COUNT(p) FROM AccessLogPayload p WHERE p.id IN "
+            + "(SELECT a.id FROM AccessLog a WHERE a.id IN :ids AND a.tokenId = :tokenId) "
+            + "AND p.responseHash IS NOT NULL GROUP BY p.responseHash")
+    List<Object[]> countResponseHashesByIdInAndTokenId(@Param("ids") Collection<Long> ids,
+            @Param("tokenId") String tokenId);
+
+    /**
+     * 统计指定 Token 的全部日志对各命令输出的引用数
+     */
+    @Query("SELECT p.responseHash, COUNT(p) FROM AccessLogPayload p WHERE p.id IN "
+            + "(SELECT a.id FROM AccessLog a WHERE a.tokenId = :tokenId) "
+            + "AND p.responseHash IS NOT NULL GROUP BY p.responseHash")
+    List<Object[]> countResponseHashesByTokenId(@Param("tokenId") String tokenId);
+
+    /**
+     * 按 ID 批量删除
+     */
+    @Modifying
+    @Query("DELETE FROM AccessLogPayload p WHERE p.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 按 ID 批量删除属于指定 Token 的日志内容（须在删除 access_logs 之前执行）
+     */
+    @Modifying
+    @Query("DELETE FROM AccessLogPayload p WHERE p.id IN "
+            + "(SELECT a.id FROM AccessLog a WHERE a.id IN :ids AND a.tokenId = :tokenId)")
+    int deleteByIdInAndTokenId(@Param("ids") Collection<Long> ids, @Param("tokenId") String tokenId);
+
+    /**
+     * 删除指定 Token 的全部日志内容（须在删除 access_logs 之前执行）
+     */
+    @Modifying
+    @Query("DELETE FROM AccessLogPayload p WHERE p.id IN (SELECT a.id FROM AccessLog a WHERE a.tokenId = :tokenId)")
+    int deleteByTokenId(@Param("tokenId") String tokenId);
+}
@@ -11,7 +11,9 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * 访问日志数据访问层
@@ -39,13 +41,6 @@ public interface AccessLogRepository extends JpaRepository<AccessLog, Long>, Jpa
      */
     List<AccessLog> findByStatusCode(Integer statusCode);
 
-    /**
-     * 删除指定时间之前的日志
-     */
-    @Modifying
-    @Query("DELETE FROM AccessLog a WHERE a.createdAt < :cutoffTime")
-    int deleteByCreatedAtBefore(@Param("cutoffTime") LocalDateTime cutoffTime);
-
     /**
      * 统计指定时间范围内的请求数
      */
@@ -62,6 +57,11 @@ public interface AccessLogRepository extends JpaRepository<AccessLog, Long>, Jpa
      */
     Page<AccessLog> findBySource(String source, Pageable pageable);
 
+    /**
+     * 按 ID 与创建时间查找（PostgreSQL 下只访问一个分区）
+     */
+    Optional<AccessLog> findByIdAndCreatedAt(Long id, LocalDateTime createdAt);
+
     /**
      * 根据请求 ID 查找日志
      */
@@ -72,6 +72,20 @@ public interface AccessLogRepository extends JpaRepository<AccessLog, Long>, Jpa
      */
     Page<AccessLog> findByCommandName(String commandName, Pageable pageable);
 
+    /**
+     * 按 ID 批量删除日志（单条 DELETE，不逐条加载实体）
+     */
+    @Modifying
+    @Query("DELETE FROM AccessLog a WHERE a.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 按 ID 批量删除属于指定 Token 的日志，不属于该 Token 的 ID 被忽略
+     */
+    @Modifying
+    @Query("DELETE FROM AccessLog a WHERE a.id IN :ids AND a.tokenId = :tokenId")
+    int deleteByIdInAndTokenId(@Param("ids") Collection<Long> ids, @Param("tokenId") String tokenId);
+
     /**
      * 根据 Token ID 删除日志
      */
@@ -87,4 +87,17 @@ public interface CommandRepository extends JpaRepository<Command, Long> {
      */
     @Modifying
     void deleteByNameIn(List<String> names);
+
+    /**
+     * 查询尚未计算危险等级的命令（历史数据回填）
+     */
+    List<Command> findByDangerLevelIsNull(Pageable pageable);
+
+    /**
+     * 写入危险等级分析结果（不触发 updatedAt 变更）
+     */
+    @Modifying
+    @Query("UPDATE Command c SET c.dangerLevel = :level, c.dangerWarning = :warning WHERE c.id = :id")
+    void updateDangerAnalysis(@Param("id") Long id, @Param("level") Integer level,
+            @Param("warning") String warning);
 }
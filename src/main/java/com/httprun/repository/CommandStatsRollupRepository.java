@@ -0,0 +1,27 @@
+package com.httprun.repository;
+
+import com.httprun.entity.CommandStatsRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 命令执行统计汇总数据访问层
+ */
+@Repository
+public interface CommandStatsRollupRepository extends JpaRepository<CommandStatsRollup, CommandStatsRollup.Key> {
+
+    /**
+     * 查询时间范围内的全部汇总行
+     */
+    List<CommandStatsRollup> findByGranularityAndBucketStartGreaterThanEqualAndBucketStartLessThan(
+            String granularity, LocalDateTime start, LocalDateTime end);
+
+    /**
+     * 查询时间范围内某命令的汇总行
+     */
+    List<CommandStatsRollup> findByCommandNameAndGranularityAndBucketStartGreaterThanEqualAndBucketStartLessThan(
+            String commandName, String granularity, LocalDateTime start, LocalDateTime end);
+}
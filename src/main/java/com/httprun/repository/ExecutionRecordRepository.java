@@ -0,0 +1,14 @@
+package com.httprun.repository;
+
+import com.httprun.entity.ExecutionRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.stereotype.Repository;
+
+/**
+ * 命令执行记录数据访问层（写入由 ExecutionRecorder 以 JDBC 批量完成）
+ */
+@Repository
+public interface ExecutionRecordRepository
+        extends JpaRepository<ExecutionRecord, Long>, JpaSpecificationExecutor<ExecutionRecord> {
+}
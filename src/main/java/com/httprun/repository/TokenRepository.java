@@ -19,25 +19,26 @@ import java.util.Optional;
 public interface TokenRepository extends JpaRepository<Token, Long> {
 
     /**
-     * 根据 JWT Token 查找
+     * 根据 JWT 摘要查找
      */
-    Optional<Token> findByJwtToken(String jwtToken);
+    Optional<Token> findByJwtDigest(String jwtDigest);
 
     /**
-     * 根据名称查找
+     * 查找尚未计算摘要的 Token（升级前的历史数据）
      */
-    List<Token> findByName(String name);
+    List<Token> findByJwtDigestIsNull();
 
     /**
-     * 检查 JWT Token 是否存在
+     * 回填 JWT 摘要（不触发 @PreUpdate）
      */
-    boolean existsByJwtToken(String jwtToken);
+    @Modifying
+    @Query("UPDATE Token t SET t.jwtDigest = :digest WHERE t.id = :id")
+    int updateJwtDigest(@Param("id") Long id, @Param("digest") String digest);
 
     /**
-     * 查找未撤销的有效 Token（使用 Unix 时间戳，expiresAt 为 null 表示永久有效）
+     * 根据名称查找
      */
-    @Query("SELECT t FROM Token t WHERE t.jwtToken = :jwtToken AND t.revoked = false AND (t.expiresAt IS NULL OR t.expiresAt > :now)")
-    Optional<Token> findValidToken(@Param("jwtToken") String jwtToken, @Param("now") Long now);
+    List<Token> findByName(String name);
 
     /**
      * 分页查询 Token
@@ -98,11 +99,4 @@ public interface TokenRepository extends JpaRepository<Token, Long> {
     @Query("SELECT CASE WHEN COUNT(t) > 0 THEN true ELSE false END FROM Token t " +
             "WHERE t.isAdmin = true AND t.revoked = false AND (t.expiresAt IS NULL OR t.expiresAt > :now)")
     boolean existsValidAdminToken(@Param("now") Long now);
-
-    /**
-     * 检查 JWT Token 是否有效（未撤销且未过期，永久 token 始终有效）
-     */
-    @Query("SELECT CASE WHEN COUNT(t) > 0 THEN true ELSE false END FROM Token t " +
-            "WHERE t.jwtToken = :jwtToken AND t.revoked = false AND (t.expiresAt IS NULL OR t.expiresAt > :now)")
-    boolean existsValidToken(@Param("jwtToken") String jwtToken, @Param("now") Long now);
 }
@@ -0,0 +1,43 @@
+package com.httprun.repository;
+
+import com.httprun.entity.TokenRevocationEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Token 撤销变更日志数据访问层
+ */
+@Repository
+public interface TokenRevocationEventRepository extends JpaRepository<TokenRevocationEvent, Long> {
+
+    /**
+     * 增量拉取 id 大于指定值的事件
+     */
+    List<TokenRevocationEvent> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+
+    /**
+     * id 大于指定值的已提交事件 id
+     */
+    @Query("SELECT e.id FROM TokenRevocationEvent e WHERE e.id > :afterId")
+    List<Long> findIdsGreaterThan(@Param("afterId") long afterId);
+
+    /**
+     * 当前最大事件 id
+     */
+    @Query("SELECT COALESCE(MAX(e.id), 0) FROM TokenRevocationEvent e")
+    long findMaxId();
+
+    /**
+     * 清理指定时间之前的事件
+     */
+    @Modifying
+    @Query("DELETE FROM TokenRevocationEvent e WHERE e.createdAt < :before")
+    int deleteByCreatedAtBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,29 @@
+package com.httprun.security;
+
+import com.httprun.entity.Token;
+
+import java.time.LocalDateTime;
+
+/**
+ * 内存注册表中的有效 Token 快照（只保留鉴权所需字段）
+ *
+ * @param id            Token ID
+ * @param name          Token 名称
+ * @param expiresAt     过期时间（Unix 时间戳，null 表示永久有效）
+ * @param allowedGroups 允许的命令分组（逗号分隔）
+ * @param policy        预编译的授权与时间窗口策略
+ */
+public record ActiveToken(Long id, String name, Long expiresAt, String allowedGroups, TokenPolicy policy) {
+
+    public static ActiveToken of(Token token) {
+        return new ActiveToken(token.getId(), token.getName(), token.getExpiresAt(), token.getAllowedGroups(),
+                TokenPolicy.of(token));
+    }
+
+    /**
+     * 检查当前时间是否在允许的时间范围内
+     */
+    public boolean isWithinAllowedTimeRange() {
+        return policy.isWithinTimeWindow(LocalDateTime.now());
+    }
+}
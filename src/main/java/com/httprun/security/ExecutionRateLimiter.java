@@ -0,0 +1,129 @@
+package com.httprun.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.httprun.entity.Command;
+import com.httprun.exception.RateLimitExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 命令执行频率限制
+ *
+ * 按 Token 和按命令分别限流，每个桶是一个 GCRA（通用信元速率算法）令牌桶：
+ * 只保存一个"理论到达时间"（TAT），获取许可为一次 CAS，无锁且不分配对象。
+ * 桶容量等于每分钟配额，即空闲一分钟后可突发一整分钟的配额。
+ *
+ * 桶存放在有界的 Caffeine 缓存中，空闲超过一分钟的桶必然已回满，淘汰后重建与原状态等价。
+ */
+@Component
+public class ExecutionRateLimiter {
+
+    private static final long WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final Cache<String, AtomicLong> buckets;
+    private final LongSupplier clock;
+    private final Counter tokenRejections;
+    private final Counter commandRejections;
+
+    @Autowired
+    public ExecutionRateLimiter(MeterRegistry meterRegistry,
+            @Value("${httprun.rate-limit.max-buckets:100000}") long maxBuckets) {
+        this(meterRegistry, maxBuckets, System::nanoTime);
+    }
+
+    ExecutionRateLimiter(MeterRegistry meterRegistry, long maxBuckets, LongSupplier clock) {
+        this.clock = clock;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxBuckets)
+                .expireAfterAccess(Duration.ofNanos(WINDOW_NANOS))
+                .build();
+        this.tokenRejections = rejectionCounter(meterRegistry, "token");
+        this.commandRejections = rejectionCounter(meterRegistry, "command");
+        Gauge.builder("httprun.ratelimit.buckets", buckets, Cache::estimatedSize)
+                .description("Rate limit buckets currently tracked")
+                .register(meterRegistry);
+    }
+
+    private static Counter rejectionCounter(MeterRegistry meterRegistry, String scope) {
+        return Counter.builder("httprun.ratelimit.rejected")
+                .description("Command executions rejected by the rate limiter")
+                .tag("scope", scope)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 为一次命令执行获取许可（先 Token 后命令），超限时抛出 {@link RateLimitExceededException}
+     *
+     * 命令桶拒绝时退还已从 Token 桶取得的许可，重试被限流的命令不会消耗调用方自己的配额。
+     */
+    public void acquire(TokenPolicy policy, Command command) {
+        String tokenKey = policy.getRateLimitKey() != null ? "token:" + policy.getRateLimitKey() : null;
+        if (tokenKey != null) {
+            long waitNanos = tryAcquire(tokenKey, policy.getRateLimitPerMinute());
+            if (waitNanos > 0) {
+                tokenRejections.increment();
+                throw new RateLimitExceededException("token rate limit of " + policy.getRateLimitPerMinute()
+                        + "/min exceeded", toRetryAfterSeconds(waitNanos));
+            }
+        }
+        Integer commandLimit = command.getRateLimitPerMinute();
+        if (commandLimit != null && commandLimit > 0) {
+            long waitNanos = tryAcquire("command:" + command.getName(), commandLimit);
+            if (waitNanos > 0) {
+                if (tokenKey != null) {
+                    release(tokenKey, policy.getRateLimitPerMinute());
+                }
+                commandRejections.increment();
+                throw new RateLimitExceededException("command " + command.getName() + " rate limit of "
+                        + commandLimit + "/min exceeded", toRetryAfterSeconds(waitNanos));
+            }
+        }
+    }
+
+    /**
+     * 尝试从桶中获取一个许可
+     *
+     * @return 0 表示获取成功，否则为需要等待的纳秒数
+     */
+    long tryAcquire(String key, int limitPerMinute) {
+        long interval = WINDOW_NANOS / limitPerMinute;
+        long tolerance = WINDOW_NANOS - interval;
+        AtomicLong tat = buckets.get(key, k -> new AtomicLong(clock.getAsLong()));
+        while (true) {
+            long now = clock.getAsLong();
+            long current = tat.get();
+            long base = current - now > 0 ? current : now;
+            long wait = base - tolerance - now;
+            if (wait > 0) {
+                return wait;
+            }
+            if (tat.compareAndSet(current, base + interval)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * 退还一个已获取的许可：把 TAT 回拨一个发放间隔（桶已被淘汰时等价于已回满，无需处理）
+     */
+    void release(String key, int limitPerMinute) {
+        AtomicLong tat = buckets.getIfPresent(key);
+        if (tat != null) {
+            tat.addAndGet(-(WINDOW_NANOS / limitPerMinute));
+        }
+    }
+
+    private static long toRetryAfterSeconds(long waitNanos) {
+        return Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+}
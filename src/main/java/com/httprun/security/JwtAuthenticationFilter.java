@@ -1,7 +1,6 @@
 package com.httprun.security;
 
-import com.httprun.entity.Token;
-import com.httprun.repository.TokenRepository;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -30,7 +29,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private static final String TOKEN_PARAM = "token";
 
     private final JwtTokenProvider jwtTokenProvider;
-    private final TokenRepository tokenRepository;
+    private final TokenRegistry tokenRegistry;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -45,25 +44,29 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         if (token != null && !token.isEmpty()) {
             try {
-                // 1. 验证 JWT 签名和有效期
-                if (!jwtTokenProvider.validateToken(token)) {
+                // 1. 验证 JWT 签名和有效期（每个请求只解析一次，验签结果按摘要缓存）
+                VerifiedClaims claims;
+                try {
+                    claims = jwtTokenProvider.verify(token);
+                } catch (JwtException e) {
+                    log.warn("JWT validation failed: {}", e.getMessage());
                     response.sendError(HttpServletResponse.SC_FORBIDDEN, "Invalid token");
                     return;
                 }
 
-                // 2. 验证 Token 是否在数据库中存在且未被撤销
-                String name = jwtTokenProvider.getName(token);
-                Optional<Token> tokenEntityOpt = tokenRepository.findByJwtToken(token);
-                if (tokenEntityOpt.isEmpty() || tokenEntityOpt.get().getRevoked()) {
+                // 2. 验证 Token 是否存在且未被撤销（内存注册表，按摘要查找）
+                String name = claims.name();
+                Optional<ActiveToken> activeToken = tokenRegistry.find(claims.digest(), claims.issuedAt());
+                if (activeToken.isEmpty()) {
                     response.sendError(HttpServletResponse.SC_FORBIDDEN, "Token not found or revoked");
                     return;
                 }
 
-                Token tokenEntity = tokenEntityOpt.get();
+                ActiveToken active = activeToken.get();
 
                 // 3. 验证时间范围权限（仅对非管理员接口进行检查）
                 String path = request.getRequestURI();
-                if (path.startsWith("/api/run") && !tokenEntity.isWithinAllowedTimeRange()) {
+                if (path.startsWith("/api/run") && !active.isWithinAllowedTimeRange()) {
                     log.warn("Token {} is outside allowed time range", name);
                     response.sendError(HttpServletResponse.SC_FORBIDDEN,
                             "Token is outside allowed time range. Check allowed hours and weekdays.");
@@ -71,15 +74,16 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 }
 
                 // 4. 构建认证信息
-                boolean isAdmin = jwtTokenProvider.isAdmin(token);
-                String subject = jwtTokenProvider.getSubject(token);
-                String allowedGroups = tokenEntity.getAllowedGroups();
+                boolean isAdmin = claims.admin();
+                String subject = claims.subject();
+                String allowedGroups = active.allowedGroups();
+                TokenPolicy policy = active.policy();
 
                 var authorities = isAdmin ? Collections.singletonList(new SimpleGrantedAuthority("ROLE_ADMIN"))
                         : Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER"));
 
                 var authentication = new UsernamePasswordAuthenticationToken(
-                        new JwtUserPrincipal(name, subject, isAdmin, allowedGroups),
+                        new JwtUserPrincipal(name, subject, isAdmin, allowedGroups, policy),
                         token,
                         authorities);
 
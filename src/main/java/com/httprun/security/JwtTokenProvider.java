@@ -1,7 +1,11 @@
 package com.httprun.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import lombok.extern.slf4j.Slf4j;
@@ -10,21 +14,37 @@ import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * JWT Token 提供者
+ *
+ * 验签结果按 Token 的 SHA-256 摘要缓存，过期时间与 exp 声明对齐（永久 Token 最长缓存 {@link #MAX_CACHE_TTL}），
+ * 同一 Token 的后续请求无需再次执行 HMAC 验签和 JSON 解析。撤销状态不在此缓存，由调用方另行校验。
  */
 @Slf4j
 @Component
 public class JwtTokenProvider {
 
+    private static final Duration MAX_CACHE_TTL = Duration.ofHours(1);
+    private static final int MAX_CACHE_SIZE = 10_000;
+
     private final SecretKey secretKey;
+    private final JwtParser jwtParser;
+    private final Cache<String, VerifiedClaims> verifiedClaims;
 
     public JwtTokenProvider(@Value("${jwt.secret}") String secret) {
         this.secretKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        // JwtParser 不可变且线程安全，构建一次复用
+        this.jwtParser = Jwts.parser().verifyWith(secretKey).build();
+        this.verifiedClaims = Caffeine.newBuilder()
+                .maximumSize(MAX_CACHE_SIZE)
+                .expireAfter(new ClaimsExpiry())
+                .build();
     }
 
     /**
@@ -52,11 +72,27 @@ public class JwtTokenProvider {
      * 解析 Token
      */
     public Claims parseToken(String token) {
-        return Jwts.parser()
-                .verifyWith(secretKey)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return jwtParser.parseSignedClaims(token).getPayload();
+    }
+
+    /**
+     * 验签并返回声明（优先使用缓存，每个 Token 在缓存有效期内只解析一次）
+     *
+     * @throws JwtException 签名无效、格式错误或已过期
+     */
+    public VerifiedClaims verify(String token) {
+        return verifiedClaims.get(TokenDigest.of(token), digest -> {
+            Claims claims = parseToken(token);
+            Date expiration = claims.getExpiration();
+            Date issuedAt = claims.getIssuedAt();
+            return new VerifiedClaims(
+                    digest,
+                    claims.get("name", String.class),
+                    claims.getSubject(),
+                    Boolean.TRUE.equals(claims.get("admin", Boolean.class)),
+                    expiration != null ? expiration.toInstant() : null,
+                    issuedAt != null ? issuedAt.toInstant() : null);
+        });
     }
 
     /**
@@ -64,7 +100,7 @@ public class JwtTokenProvider {
      */
     public boolean validateToken(String token) {
         try {
-            parseToken(token);
+            verify(token);
             return true;
         } catch (JwtException e) {
             log.warn("JWT validation failed: {}", e.getMessage());
@@ -76,20 +112,48 @@ public class JwtTokenProvider {
      * 获取授权命令列表
      */
     public String getSubject(String token) {
-        return parseToken(token).getSubject();
+        return verify(token).subject();
     }
 
     /**
      * 检查是否管理员
      */
     public boolean isAdmin(String token) {
-        return parseToken(token).get("admin", Boolean.class);
+        return verify(token).admin();
     }
 
     /**
      * 获取用户名
      */
     public String getName(String token) {
-        return parseToken(token).get("name", String.class);
+        return verify(token).name();
+    }
+
+    /**
+     * 缓存条目在 exp 到达时失效
+     */
+    private static final class ClaimsExpiry implements Expiry<String, VerifiedClaims> {
+
+        @Override
+        public long expireAfterCreate(String key, VerifiedClaims value, long currentTime) {
+            if (value.expiresAt() == null) {
+                return MAX_CACHE_TTL.toNanos();
+            }
+            Duration remaining = Duration.between(Instant.now(), value.expiresAt());
+            if (remaining.isNegative()) {
+                return 0;
+            }
+            return remaining.compareTo(MAX_CACHE_TTL) > 0 ? MAX_CACHE_TTL.toNanos() : remaining.toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, VerifiedClaims value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String key, VerifiedClaims value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 }
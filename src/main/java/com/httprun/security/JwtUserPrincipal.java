@@ -2,6 +2,9 @@ package com.httprun.security;
 
 /**
  * JWT 用户主体
+ *
+ * @param policy 预编译的授权策略（由 {@link TokenPolicy#of} 编译，随 {@link ActiveToken} 缓存）
  */
-public record JwtUserPrincipal(String name, String subject, boolean admin, String allowedGroups) {
+public record JwtUserPrincipal(String name, String subject, boolean admin, String allowedGroups,
+        TokenPolicy policy) {
 }
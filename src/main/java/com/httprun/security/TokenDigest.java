@@ -0,0 +1,28 @@
+package com.httprun.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Token 摘要工具
+ * 使用 SHA-256 十六进制摘要代替原始 JWT 作为缓存与索引的键，避免在内存/索引中长期保留完整 Token
+ */
+public final class TokenDigest {
+
+    private TokenDigest() {
+    }
+
+    /**
+     * 计算 Token 的 SHA-256 摘要（64 位小写十六进制）
+     */
+    public static String of(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.httprun.security;
+
+import com.httprun.entity.Token;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 预编译的 Token 授权策略
+ *
+ * 每个 Token 只编译一次（随 {@link ActiveToken} 缓存在注册表中）：
+ * 授权命令与分组转为 HashSet，星期限制转为位掩码，每日时段转为当日纳秒边界，
+ * 鉴权时无需再拆分字符串或解析时间，判断为 O(1) 且不分配对象。
+ * Token 级别的执行频率限制也随策略携带，由 {@link ExecutionRateLimiter} 使用。
+ */
+public final class TokenPolicy {
+
+    /**
+     * 授权结果
+     */
+    public enum Decision {
+        PERMITTED,
+        /** 命令不在授权的命令列表中 */
+        DENIED,
+        /** 配置了分组范围，但命令不属于任何允许的分组 */
+        DENIED_BY_GROUP
+    }
+
+    private final boolean admin;
+    private final Set<String> commands;
+    /** 允许的分组，null 表示未配置分组范围 */
+    private final Set<String> groups;
+
+    private final boolean weekdayRestricted;
+    /** 第 n 位表示星期 n（1=周一, 7=周日） */
+    private final int weekdayMask;
+
+    private final boolean timeRestricted;
+    /** 时段配置无法解析时一律拒绝 */
+    private final boolean invalidTimeWindow;
+    private final long startNanos;
+    private final long endNanos;
+
+    /** 限流桶标识，null 表示不限流 */
+    private final String rateLimitKey;
+    /** 每分钟允许的执行次数，0 表示不限流 */
+    private final int rateLimitPerMinute;
+
+    private TokenPolicy(boolean admin, Set<String> commands, Set<String> groups, boolean weekdayRestricted,
+            int weekdayMask, boolean timeRestricted, boolean invalidTimeWindow, long startNanos, long endNanos,
+            String rateLimitKey, int rateLimitPerMinute) {
+        this.admin = admin;
+        this.commands = commands;
+        this.groups = groups;
+        this.weekdayRestricted = weekdayRestricted;
+        this.weekdayMask = weekdayMask;
+        this.timeRestricted = timeRestricted;
+        this.invalidTimeWindow = invalidTimeWindow;
+        this.startNanos = startNanos;
+        this.endNanos = endNanos;
+        this.rateLimitKey = rateLimitKey;
+        this.rateLimitPerMinute = rateLimitPerMinute;
+    }
+
+    /**
+     * 由 Token 实体编译策略
+     *
+     * 只按 isAdmin 判断管理员。与旧版按 subject 判断不同：subject 为 "admin" 的非管理员 Token 只允许名为
+     * admin 的命令，subject 为 null 的非管理员 Token 不允许任何命令（除非配置了分组范围），不再视为不受限。
+     */
+    public static TokenPolicy of(Token token) {
+        TokenPolicy policy = compile(Boolean.TRUE.equals(token.getIsAdmin()), token.getSubject(),
+                token.getAllowedGroups(), token.getAllowedWeekdays(), token.getAllowedStartTime(),
+                token.getAllowedEndTime());
+        Integer limit = token.getRateLimitPerMinute();
+        if (limit == null || limit <= 0 || token.getId() == null) {
+            return policy;
+        }
+        return new TokenPolicy(policy.admin, policy.commands, policy.groups, policy.weekdayRestricted,
+                policy.weekdayMask, policy.timeRestricted, policy.invalidTimeWindow, policy.startNanos,
+                policy.endNanos, String.valueOf(token.getId()), limit);
+    }
+
+    private static TokenPolicy compile(boolean admin, String subject, String allowedGroups, String allowedWeekdays,
+            String allowedStartTime, String allowedEndTime) {
+        Set<String> commands = subject != null ? Set.copyOf(splitToSet(subject)) : Set.of();
+        Set<String> groups = allowedGroups != null && !allowedGroups.isBlank()
+                ? Set.copyOf(splitToSet(allowedGroups))
+                : null;
+
+        boolean weekdayRestricted = allowedWeekdays != null && !allowedWeekdays.isEmpty();
+        int weekdayMask = 0;
+        if (weekdayRestricted) {
+            for (String day : allowedWeekdays.split(",")) {
+                String trimmed = day.trim();
+                if (trimmed.length() == 1 && trimmed.charAt(0) >= '1' && trimmed.charAt(0) <= '7') {
+                    weekdayMask |= 1 << (trimmed.charAt(0) - '0');
+                }
+            }
+        }
+
+        boolean timeRestricted = allowedStartTime != null && !allowedStartTime.isEmpty()
+                && allowedEndTime != null && !allowedEndTime.isEmpty();
+        boolean invalidTimeWindow = false;
+        long startNanos = 0;
+        long endNanos = 0;
+        if (timeRestricted) {
+            try {
+                startNanos = LocalTime.parse(allowedStartTime).toNanoOfDay();
+                endNanos = LocalTime.parse(allowedEndTime).toNanoOfDay();
+            } catch (DateTimeParseException e) {
+                invalidTimeWindow = true;
+            }
+        }
+
+        return new TokenPolicy(admin, commands, groups, weekdayRestricted, weekdayMask, timeRestricted,
+                invalidTimeWindow, startNanos, endNanos, null, 0);
+    }
+
+    private static Set<String> splitToSet(String value) {
+        Set<String> set = new HashSet<>();
+        for (String part : value.split(",")) {
+            set.add(part);
+        }
+        return set;
+    }
+
+    /**
+     * 判断是否允许执行命令
+     * 优先级：管理员 > 分组范围（配置后只按分组判断） > 授权命令列表
+     */
+    public Decision authorize(String commandName, String groupName) {
+        if (admin) {
+            return Decision.PERMITTED;
+        }
+        if (groups != null) {
+            return groupName != null && groups.contains(groupName) ? Decision.PERMITTED : Decision.DENIED_BY_GROUP;
+        }
+        return commands.contains(commandName) ? Decision.PERMITTED : Decision.DENIED;
+    }
+
+    /**
+     * 检查指定时间是否在允许的星期与每日时段内
+     */
+    public boolean isWithinTimeWindow(LocalDateTime now) {
+        if (weekdayRestricted && (weekdayMask & (1 << now.getDayOfWeek().getValue())) == 0) {
+            return false;
+        }
+        if (!timeRestricted) {
+            return true;
+        }
+        if (invalidTimeWindow) {
+            return false;
+        }
+        long current = now.toLocalTime().toNanoOfDay();
+        if (startNanos > endNanos) {
+            // 跨夜（如 22:00 - 06:00）：当前时间应该在开始时间之后 或 在结束时间之前
+            return !(current < startNanos && current > endNanos);
+        }
+        return current >= startNanos && current <= endNanos;
+    }
+
+    public boolean isAdmin() {
+        return admin;
+    }
+
+    public String getRateLimitKey() {
+        return rateLimitKey;
+    }
+
+    public int getRateLimitPerMinute() {
+        return rateLimitPerMinute;
+    }
+}
@@ -0,0 +1,159 @@
+package com.httprun.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.httprun.entity.Token;
+import com.httprun.repository.TokenRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 有效 Token 内存注册表
+ *
+ * 启动时加载全部未撤销的 Token（按 JWT 摘要索引），认证路径只做一次内存查找。
+ * TokenServiceImpl 创建 Token 时同步登记；撤销、删除与过期清理经 {@link TokenRevocationSync} 同步到所有节点。
+ * 启动加载完成后，签发时间早于加载时刻（减去 {@link #ISSUE_SKEW}）的 Token 只按注册表判定：它们要么已被加载，
+ * 要么不存在或已撤销，不再查库。只有加载之后签发（可能由其他节点创建）或签发时间未知的 Token 未命中时
+ * 才回退按摘要查询数据库一次，查询结果为不存在或已撤销的摘要记入有界的否定缓存，避免重复查库。
+ * 调用方须先验签，未签名的伪造 Token 不会进入查找。
+ */
+@Slf4j
+@Component
+public class TokenRegistry implements ApplicationRunner {
+
+    private static final int MAX_NEGATIVE_ENTRIES = 10_000;
+    private static final Duration NEGATIVE_TTL = Duration.ofMinutes(10);
+    /** 签发时间的容差（覆盖节点间时钟偏差与加载期间尚未提交的创建事务） */
+    static final Duration ISSUE_SKEW = Duration.ofMinutes(5);
+
+    private final TokenRepository tokenRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<String, ActiveToken> activeTokens = new ConcurrentHashMap<>();
+    /** 已撤销或不存在的摘要 */
+    private final Cache<String, Boolean> rejected = Caffeine.newBuilder()
+            .maximumSize(MAX_NEGATIVE_ENTRIES)
+            .expireAfterWrite(NEGATIVE_TTL)
+            .build();
+    /** 启动加载开始的时刻，加载完成前为 null */
+    private volatile Instant loadedAt;
+
+    public TokenRegistry(TokenRepository tokenRepository, TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry) {
+        this.tokenRepository = tokenRepository;
+        this.transactionTemplate = transactionTemplate;
+        Gauge.builder("httprun.token.registry.active", activeTokens, Map::size)
+                .description("Active tokens held in the in-memory registry")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 启动时回填历史 Token 的摘要并加载全部有效 Token
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        Integer backfilled = transactionTemplate.execute(status -> backfillDigests());
+        if (backfilled != null && backfilled > 0) {
+            log.info("Backfilled jwt digest for {} tokens", backfilled);
+        }
+
+        Instant loadStarted = Instant.now();
+        List<Token> tokens = tokenRepository.findByRevokedFalseOrderByCreatedAtDesc();
+        for (Token token : tokens) {
+            String digest = digestOf(token);
+            activeTokens.putIfAbsent(digest, ActiveToken.of(token));
+            // 加载期间被撤销的 Token 不应被旧快照复活
+            if (rejected.getIfPresent(digest) != null) {
+                activeTokens.remove(digest);
+            }
+        }
+        loadedAt = loadStarted;
+        log.info("Token registry loaded {} active tokens", activeTokens.size());
+    }
+
+    private int backfillDigests() {
+        List<Token> tokens = tokenRepository.findByJwtDigestIsNull();
+        for (Token token : tokens) {
+            tokenRepository.updateJwtDigest(token.getId(), TokenDigest.of(token.getJwtToken()));
+        }
+        return tokens.size();
+    }
+
+    /**
+     * 按 JWT 摘要查找有效 Token（签发时间未知，未命中时允许查库）
+     */
+    public Optional<ActiveToken> find(String digest) {
+        return find(digest, null);
+    }
+
+    /**
+     * 按 JWT 摘要查找有效 Token
+     *
+     * @param issuedAt 已验签 JWT 的签发时间，为 null 时未命中允许查库
+     */
+    public Optional<ActiveToken> find(String digest, Instant issuedAt) {
+        ActiveToken active = activeTokens.get(digest);
+        if (active != null) {
+            return Optional.of(active);
+        }
+        if (rejected.getIfPresent(digest) != null) {
+            return Optional.empty();
+        }
+        Instant registryLoadedAt = loadedAt;
+        if (registryLoadedAt != null && issuedAt != null && issuedAt.isBefore(registryLoadedAt.minus(ISSUE_SKEW))) {
+            return Optional.empty();
+        }
+
+        Optional<Token> token = tokenRepository.findByJwtDigest(digest);
+        if (token.isEmpty() || Boolean.TRUE.equals(token.get().getRevoked())) {
+            rejected.put(digest, Boolean.TRUE);
+            return Optional.empty();
+        }
+        ActiveToken loaded = ActiveToken.of(token.get());
+        activeTokens.put(digest, loaded);
+        return Optional.of(loaded);
+    }
+
+    /**
+     * 登记新建的 Token
+     */
+    public void register(Token token) {
+        String digest = digestOf(token);
+        if (Boolean.TRUE.equals(token.getRevoked())) {
+            revoke(digest);
+            return;
+        }
+        rejected.invalidate(digest);
+        activeTokens.put(digest, ActiveToken.of(token));
+    }
+
+    /**
+     * 撤销 Token
+     */
+    public void revoke(String digest) {
+        rejected.put(digest, Boolean.TRUE);
+        activeTokens.remove(digest);
+    }
+
+    /**
+     * 当前注册的有效 Token 数量
+     */
+    public int size() {
+        return activeTokens.size();
+    }
+
+    private static String digestOf(Token token) {
+        return token.getJwtDigest() != null ? token.getJwtDigest() : TokenDigest.of(token.getJwtToken());
+    }
+}
@@ -0,0 +1,246 @@
+package com.httprun.security;
+
+import com.httprun.entity.TokenRevocationEvent;
+import com.httprun.repository.TokenRevocationEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Token 撤销跨节点同步
+ *
+ * 撤销时在同一事务内向 token_revocation_events 追加记录，各节点定时按 id 增量拉取并更新本地 {@link TokenRegistry}。
+ * PostgreSQL 下额外在事务内执行 pg_notify，监听线程收到通知后立即拉取，轮询作为兜底；SQLite 仅使用轮询。
+ *
+ * 自增 id 的分配顺序与事务提交顺序可能不一致：增量拉取时被跳过的 id 记为待定缺口，之后每次轮询按 id 复查，
+ * 出现即应用；缺口保留 {@link #LATE_COMMIT_WINDOW}（按本节点单调时钟计时，回滚的事务永远不会出现）。
+ * 同步只依赖 id，不比较各节点的时钟，节点间时钟偏差不会导致漏掉撤销。
+ */
+@Slf4j
+@Component
+public class TokenRevocationSync {
+
+    static final String CHANNEL = "token_revocations";
+    private static final int BATCH_SIZE = 500;
+    /** 缺口 id 的复查时长（覆盖晚提交的事务） */
+    static final Duration LATE_COMMIT_WINDOW = Duration.ofSeconds(60);
+    /** 单次跳跃最多记录的缺口 id 数，启动时同样回看这么多 id */
+    static final int MAX_GAP_IDS = 1000;
+    private static final long LISTEN_TIMEOUT_MS = 5000;
+
+    private final TokenRevocationEventRepository eventRepository;
+    private final TokenRegistry tokenRegistry;
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration retention;
+    private final Timer propagationLag;
+    private final Counter appliedEvents;
+
+    /** 已应用的最大事件 id */
+    private long lastSeenId;
+    /** 被跳过、可能尚未提交的事件 id -> 发现时刻（System.nanoTime） */
+    private final TreeMap<Long, Long> pendingGaps = new TreeMap<>();
+    private volatile boolean postgres;
+    private volatile boolean running = true;
+    private Thread listenerThread;
+
+    public TokenRevocationSync(TokenRevocationEventRepository eventRepository, TokenRegistry tokenRegistry,
+            DataSource dataSource, MeterRegistry meterRegistry,
+            @Value("${httprun.token.revocation-retention-hours:24}") long retentionHours) {
+        this.eventRepository = eventRepository;
+        this.tokenRegistry = tokenRegistry;
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.retention = Duration.ofHours(retentionHours);
+        this.propagationLag = Timer.builder("httprun.token.revocation.lag")
+                .description("Delay between a token revocation and its application on this node")
+                .register(meterRegistry);
+        this.appliedEvents = Counter.builder("httprun.token.revocation.applied")
+                .description("Token revocation events applied to the local registry")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 从当前最大 id 开始同步：注册表启动时直接从 tokens 表加载，更早的已提交事件已体现在其中；
+     * 最近 {@link #MAX_GAP_IDS} 个 id 中尚不存在的记为缺口，覆盖启动时仍未提交的事务
+     */
+    @PostConstruct
+    public void init() {
+        lastSeenId = eventRepository.findMaxId();
+        Set<Long> existing = new HashSet<>(eventRepository.findIdsGreaterThan(lastSeenId - MAX_GAP_IDS));
+        long nowNanos = System.nanoTime();
+        for (long id = Math.max(1, lastSeenId - MAX_GAP_IDS + 1); id <= lastSeenId; id++) {
+            if (!existing.contains(id)) {
+                pendingGaps.put(id, nowNanos);
+            }
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            postgres = "PostgreSQL".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName());
+        } catch (Exception e) {
+            log.warn("Failed to detect database type, using polling only: {}", e.getMessage());
+        }
+        if (postgres) {
+            listenerThread = new Thread(this::listenLoop, "token-revocation-listener");
+            listenerThread.setDaemon(true);
+            listenerThread.start();
+        }
+        log.info("Token revocation sync started from event id {} (notify={})", lastSeenId, postgres);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+    }
+
+    /**
+     * 发布撤销事件（需在撤销 Token 的同一事务内调用），本节点注册表立即生效
+     */
+    @Transactional
+    public void publish(Collection<TokenRevocationEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        eventRepository.saveAll(events);
+        for (TokenRevocationEvent event : events) {
+            tokenRegistry.revoke(event.getJwtDigest());
+        }
+        if (postgres) {
+            notifyPeers();
+        }
+    }
+
+    /**
+     * 增量拉取并应用撤销事件
+     */
+    @Scheduled(fixedDelayString = "${httprun.token.revocation-poll-interval-ms:2000}")
+    public synchronized void poll() {
+        LocalDateTime now = LocalDateTime.now();
+        long nowNanos = System.nanoTime();
+        try {
+            // 1. 复查此前跳过的 id
+            if (!pendingGaps.isEmpty()) {
+                for (TokenRevocationEvent event : eventRepository.findAllById(List.copyOf(pendingGaps.keySet()))) {
+                    if (pendingGaps.remove(event.getId()) != null) {
+                        apply(event, now);
+                    }
+                }
+            }
+
+            // 2. 按 id 增量拉取，跳过的 id 记为缺口
+            List<TokenRevocationEvent> batch;
+            do {
+                batch = eventRepository.findByIdGreaterThanOrderByIdAsc(lastSeenId, PageRequest.of(0, BATCH_SIZE));
+                for (TokenRevocationEvent event : batch) {
+                    for (long id = Math.max(lastSeenId + 1, event.getId() - MAX_GAP_IDS); id < event.getId(); id++) {
+                        pendingGaps.putIfAbsent(id, nowNanos);
+                    }
+                    apply(event, now);
+                    lastSeenId = Math.max(lastSeenId, event.getId());
+                }
+            } while (batch.size() == BATCH_SIZE);
+        } catch (Exception e) {
+            log.warn("Token revocation poll failed: {}", e.getMessage());
+        }
+
+        long windowNanos = LATE_COMMIT_WINDOW.toNanos();
+        pendingGaps.values().removeIf(discovered -> nowNanos - discovered > windowNanos);
+    }
+
+    /**
+     * 当前待复查的缺口 id 数
+     */
+    synchronized int pendingGapCount() {
+        return pendingGaps.size();
+    }
+
+    /**
+     * 清理超过保留期的事件（离线超过保留期的节点重启时会从 tokens 表重新加载）
+     */
+    @Scheduled(cron = "0 30 * * * *")
+    @Transactional
+    public void purgeExpiredEvents() {
+        int deleted = eventRepository.deleteByCreatedAtBefore(LocalDateTime.now().minus(retention));
+        if (deleted > 0) {
+            log.info("Purged {} token revocation events", deleted);
+        }
+    }
+
+    /**
+     * 当前已同步到的事件 id
+     */
+    public synchronized long getLastSeenId() {
+        return lastSeenId;
+    }
+
+    private void apply(TokenRevocationEvent event, LocalDateTime now) {
+        tokenRegistry.revoke(event.getJwtDigest());
+        appliedEvents.increment();
+        Duration lag = Duration.between(event.getCreatedAt(), now);
+        propagationLag.record(lag.isNegative() ? Duration.ZERO : lag);
+    }
+
+    private void notifyPeers() {
+        // JdbcTemplate 复用 JPA 事务绑定的连接，NOTIFY 在事务提交时才会投递
+        try {
+            jdbcTemplate.query("SELECT pg_notify(?, '')", rs -> null, CHANNEL);
+        } catch (Exception e) {
+            log.warn("Failed to notify token revocation: {}", e.getMessage());
+        }
+    }
+
+    private void listenLoop() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                log.info("Listening for token revocations on channel {}", CHANNEL);
+                // 重新建立监听后先补拉一次，避免断线期间的通知丢失
+                poll();
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications((int) LISTEN_TIMEOUT_MS);
+                    if (notifications != null && notifications.length > 0) {
+                        poll();
+                    }
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Token revocation listener disconnected, retrying: {}", e.getMessage());
+                try {
+                    Thread.sleep(LISTEN_TIMEOUT_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
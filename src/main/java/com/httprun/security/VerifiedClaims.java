@@ -0,0 +1,17 @@
+package com.httprun.security;
+
+import java.time.Instant;
+
+/**
+ * 已验签的 JWT 声明
+ *
+ * @param digest    Token 的 SHA-256 摘要
+ * @param name      用户名
+ * @param subject   授权的命令列表
+ * @param admin     是否管理员
+ * @param expiresAt 过期时间，null 表示永久有效
+ * @param issuedAt  签发时间，旧 Token 可能为 null
+ */
+public record VerifiedClaims(String digest, String name, String subject, boolean admin, Instant expiresAt,
+        Instant issuedAt) {
+}
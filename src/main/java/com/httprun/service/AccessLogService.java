@@ -1,9 +1,13 @@
 package com.httprun.service;
 
 import com.httprun.dto.AuditContext;
+import com.httprun.dto.response.CursorPage;
 import com.httprun.entity.AccessLog;
+import com.httprun.enums.ExportFormat;
 import org.springframework.data.domain.Page;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 
 /**
@@ -106,6 +110,31 @@ public interface AccessLogService {
                         LocalDateTime startTime, LocalDateTime endTime,
                         String keyword, boolean commandOnly, int page, int pageSize);
 
+        /**
+         * 游标分页搜索日志（键集分页，不执行 COUNT 查询）
+         *
+         * @param cursor    上一页返回的 nextCursor，为空表示第一页
+         * @param limit     每页数量（最多 500）
+         * @param withTotal 是否返回总数估算值（仅在未附加筛选条件时提供）
+         * @return 当前页数据与下一页游标
+         */
+        CursorPage<AccessLog> searchLogsByCursor(String tokenId, String commandName, String status,
+                        LocalDateTime startTime, LocalDateTime endTime, String keyword, boolean commandOnly,
+                        String cursor, int limit, boolean withTotal);
+
+        /**
+         * 流式导出日志（与 searchLogs 相同的筛选条件，按时间倒序）
+         *
+         * 通过服务端游标逐行读取并写出，内存占用与导出行数无关；已归档的日志接在数据库结果之后输出。
+         *
+         * @param format 导出格式
+         * @param out    输出流（不会被关闭）
+         * @return 导出的行数
+         */
+        long exportLogs(String tokenId, String commandName, String status,
+                        LocalDateTime startTime, LocalDateTime endTime, String keyword, boolean commandOnly,
+                        ExportFormat format, OutputStream out) throws IOException;
+
         /**
          * 删除指定日志
          *
@@ -121,6 +150,18 @@ public interface AccessLogService {
          */
         int deleteLogs(java.util.List<Long> ids);
 
+        /**
+         * 批量删除日志（带所有权校验）
+         *
+         * 按 ID 分批执行 DELETE ... WHERE id IN (...) AND token_id = ?，不属于 ownerTokenId、
+         * 不存在或已归档的 ID 不会被删除，也不计入返回值。
+         *
+         * @param ids          日志 ID 列表
+         * @param ownerTokenId 只删除属于该 Token 的日志，为空表示不限制
+         * @return 实际删除的数量
+         */
+        int deleteLogs(java.util.List<Long> ids, String ownerTokenId);
+
         /**
          * 根据 Token 删除日志（用户清空自己的记录）
          *
@@ -130,7 +171,16 @@ public interface AccessLogService {
         int deleteLogsByToken(String tokenId);
 
         /**
-         * 根据 ID 获取日志
+         * 根据 ID 获取日志（只含元数据，不加载请求 / 响应内容）
          */
         AccessLog getLogById(Long id);
+
+        /**
+         * 获取日志详情（含请求 / 响应内容）
+         *
+         * @param id        日志 ID
+         * @param createdAt 日志创建时间（可选）；提供时按 (id, created_at) 只访问一个分区，并可查找已归档的日志
+         * @return 日志详情，不存在时返回 null
+         */
+        AccessLog getLogDetail(Long id, LocalDateTime createdAt);
 }
@@ -6,6 +6,7 @@ import com.httprun.dto.request.RunCommandRequest;
 import com.httprun.dto.response.CommandExecutionResult;
 import com.httprun.dto.response.CommandImportResult;
 import com.httprun.dto.response.CommandResponse;
+import com.httprun.security.TokenPolicy;
 
 import java.util.List;
 
@@ -55,13 +56,12 @@ public interface CommandService {
     void deleteCommands(List<String> names);
 
     /**
-     * 运行命令
+     * 运行命令（使用认证时预编译的 Token 策略鉴权）
      *
-     * @param request       执行请求
-     * @param tokenSubject  Token subject（命令名列表或 "admin"）
-     * @param allowedGroups Token 允许的分组范围（逗号分隔，null 表示不限制）
+     * @param request 执行请求
+     * @param policy  Token 授权策略
      */
-    CommandExecutionResult runCommand(RunCommandRequest request, String tokenSubject, String allowedGroups);
+    CommandExecutionResult runCommand(RunCommandRequest request, TokenPolicy policy);
 
     /**
      * 导出命令（JSON 格式，敏感字段脱敏）
@@ -0,0 +1,40 @@
+package com.httprun.service;
+
+import com.httprun.dto.response.CommandStatsResponse;
+import com.httprun.dto.response.LiveCommandStatsResponse;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 命令执行统计服务接口（历史统计读取按小时 / 按天的汇总表，不扫描访问日志）
+ */
+public interface CommandStatsService {
+
+        /**
+         * 按命令汇总时间范围内的执行统计
+         *
+         * @param granularity 汇总粒度：HOUR / DAY
+         * @param start       开始时间（含），为空时默认结束时间前 7 天
+         * @param end         结束时间（不含），为空时默认当前时间
+         * @param commandName 命令名称筛选，可为空
+         */
+        List<CommandStatsResponse> summarize(String granularity, LocalDateTime start, LocalDateTime end,
+                        String commandName);
+
+        /**
+         * 某命令按时间桶的执行统计序列
+         *
+         * @param commandName 命令名称
+         * @param granularity 汇总粒度：HOUR / DAY
+         * @param start       开始时间（含），为空时默认结束时间前 24 小时（HOUR）或 30 天（DAY）
+         * @param end         结束时间（不含），为空时默认当前时间
+         */
+        List<CommandStatsResponse> series(String commandName, String granularity, LocalDateTime start,
+                        LocalDateTime end);
+
+        /**
+         * 当前节点的实时执行统计（1m / 5m / 15m 滑动窗口）
+         */
+        List<LiveCommandStatsResponse> live();
+}
@@ -0,0 +1,58 @@
+package com.httprun.service;
+
+import com.httprun.dto.response.CursorPage;
+import com.httprun.dto.response.OutputLinePage;
+import com.httprun.entity.ExecutionRecord;
+import com.httprun.enums.OutputStreamType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+
+/**
+ * 命令执行记录与落盘完整输出查询服务接口
+ */
+public interface ExecutionRecordService {
+
+        /**
+         * 按条件游标分页查询执行记录（按结束时间倒序）
+         *
+         * @param commandName 命令名称，可为空
+         * @param targetHost  SSH 目标主机，可为空
+         * @param exitCode    退出码，可为空
+         * @param failed      只看失败（true）/ 成功（false）的执行，可为空
+         * @param start       开始时间（含），可为空
+         * @param end         结束时间（不含），可为空
+         * @param cursor      上一页返回的 nextCursor，首页为空
+         * @param limit       每页条数（最多 500）
+         */
+        CursorPage<ExecutionRecord> searchRecords(String commandName, String targetHost, Integer exitCode,
+                        Boolean failed, LocalDateTime start, LocalDateTime end, String cursor, int limit);
+
+        /**
+         * 落盘完整输出归属的 Token 名称（记录在行索引中，执行结束即可读取，不依赖执行记录入库）
+         *
+         * @return 输出未落盘或已过期时返回 null；未记录归属时返回空字符串
+         */
+        String getOutputOwner(Long id, OutputStreamType type);
+
+        /**
+         * 按行分页读取落盘的完整输出
+         *
+         * @param fromLine 起始行（0 起）
+         * @param limit    每页行数（最多 5000，单页内容最多 1 MB）
+         * @return 输出未落盘（未超过阈值）或已过期时返回 null
+         */
+        OutputLinePage readOutputLines(Long id, OutputStreamType type, long fromLine, int limit);
+
+        /**
+         * 落盘完整输出的字节数，输出未落盘或已过期时返回 null
+         */
+        Long getOutputSize(Long id, OutputStreamType type);
+
+        /**
+         * 把落盘完整输出 [offset, offset + length) 范围内的字节写入 out
+         */
+        void transferOutput(Long id, OutputStreamType type, long offset, long length, OutputStream out)
+                        throws IOException;
+}
@@ -0,0 +1,536 @@
+package com.httprun.service.impl;
+
+import com.httprun.entity.AccessLog;
+import com.httprun.util.KeysetCursor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 访问日志冷数据归档
+ *
+ * 早于热数据窗口（httprun.access-log.archive.hot-days）的日志（连同请求 / 响应内容）按 (created_at, id) 顺序分块压缩，
+ * 写入本地目录下只追加的段文件（{@link AccessLogSegment}），之后按 id 分批从数据库删除。
+ * 段文件保留到与数据库相同的保留期（httprun.access-log.retention-days）后整体删除。
+ *
+ * 崩溃安全：写段前先创建 .pending 标记，段文件写完并落盘后原子改名生效，数据库删除完成后移除标记；
+ * 启动时对残留标记补做删除（段已生效）或丢弃临时文件（段未生效）。删除完成前日志同时存在于数据库与段中，
+ * 查询按 id 去重。
+ *
+ * 游标分页查询覆盖到已归档的时间范围时，按稀疏索引跳过不相关的块，命中的块以内存映射方式读取。
+ * 段文件位于本地磁盘，多节点部署时归档目录须为共享存储；PostgreSQL 下归档持有 advisory lock，同一时刻只有一个节点执行。
+ * 其他节点写入或删除的段在查询前按目录修改时间增量发现（修改时间未变时至多每 {@link #RESCAN_INTERVAL_MS} 毫秒兜底重扫一次）。
+ */
+@Slf4j
+@Component
+public class AccessLogArchiver implements ApplicationRunner {
+
+    static final long ADVISORY_LOCK_KEY = 7_301_947_262_044L;
+    private static final String PENDING = ".pending";
+    private static final String TEMP = ".tmp";
+    private static final int DELETE_CHUNK = 500;
+    static final long RESCAN_INTERVAL_MS = 60_000;
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    private static final String SELECT_COLUMNS = "SELECT a.id, a.token_id, a.path, a.ip, a.method, a.user_agent, "
+            + "a.referer, a.source, a.forwarded_for, a.request_id, a.command_name, p.request, p.response, "
+            + "b.content AS blob_content, b.compressed AS blob_compressed, "
+            + "a.status_code, a.duration, a.created_at FROM access_logs a "
+            + "LEFT JOIN access_log_payloads p ON p.id = a.id AND p.created_at = a.created_at "
+            + "LEFT JOIN output_blobs b ON b.hash = p.response_hash ";
+    /** (created_at, id) 降序 */
+    static final Comparator<AccessLog> KEY_DESC = (a, b) -> AccessLogSegment.compareKey(
+            b.getCreatedAt(), b.getId(), a.getCreatedAt(), a.getId());
+
+    private final JdbcTemplate jdbcTemplate;
+    private final OutputBlobStore blobStore;
+    private final AccessLogPartitionManager partitionManager;
+    private final CommandStatsAggregator statsAggregator;
+    private final boolean enabled;
+    private final Path directory;
+    private final int hotDays;
+    private final int blockRows;
+    private final int segmentMaxRows;
+    private final Counter archivedRows;
+
+    /** 已生效的段 */
+    private final List<AccessLogSegment> segments = new CopyOnWriteArrayList<>();
+    /** 上次扫描时段目录的修改时间与扫描时刻 */
+    private volatile FileTime scannedModified;
+    private volatile long scannedAt;
+    private Boolean postgres;
+
+    public AccessLogArchiver(JdbcTemplate jdbcTemplate, OutputBlobStore blobStore,
+            AccessLogPartitionManager partitionManager,
+            CommandStatsAggregator statsAggregator, MeterRegistry meterRegistry,
+            @Value("${httprun.access-log.archive.enabled:false}") boolean enabled,
+            @Value("${httprun.access-log.archive.dir:./data/access-log-archive}") String directory,
+            @Value("${httprun.access-log.archive.hot-days:7}") int hotDays,
+            @Value("${httprun.access-log.archive.block-rows:512}") int blockRows,
+            @Value("${httprun.access-log.archive.segment-max-rows:50000}") int segmentMaxRows) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.blobStore = blobStore;
+        this.partitionManager = partitionManager;
+        this.statsAggregator = statsAggregator;
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.hotDays = Math.max(1, hotDays);
+        this.blockRows = Math.max(1, blockRows);
+        this.segmentMaxRows = Math.max(this.blockRows, segmentMaxRows);
+        this.archivedRows = Counter.builder("httprun.accesslog.archived")
+                .description("Access log rows moved from the database into archive segments")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 启动时恢复未完成的归档并加载段索引
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            recoverPending();
+            loadSegments();
+            log.info("Access log archive ready ({} segments in {})", segments.size(), directory.toAbsolutePath());
+        } catch (Exception e) {
+            log.warn("Failed to prepare access log archive", e);
+        }
+    }
+
+    /**
+     * 归档冷数据并清理过期段 - 每小时执行
+     */
+    @Scheduled(cron = "0 45 * * * ?")
+    public void scheduledArchive() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long archived = archive(LocalDateTime.now().minusDays(hotDays));
+            if (archived > 0) {
+                log.info("Archived {} access logs older than {} days", archived, hotDays);
+            }
+            purgeExpiredSegments(LocalDateTime.now().minusDays(partitionManager.getRetentionDays()));
+        } catch (Exception e) {
+            log.warn("Access log archiving failed", e);
+        }
+    }
+
+    /**
+     * 将 cutoff 之前的日志写入段文件并从数据库删除
+     *
+     * @return 归档的行数；其他节点正在归档或命令统计尚未回填完成时返回 0
+     */
+    public long archive(LocalDateTime cutoff) throws IOException {
+        // 命令统计回填读取的是数据库中的历史日志，回填完成前不归档
+        if (!statsAggregator.isBackfillComplete()) {
+            log.debug("Command stats backfill in progress, postponing access log archiving");
+            return 0;
+        }
+        if (!isPostgres()) {
+            return archiveUnlocked(cutoff);
+        }
+        Long archived = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try (PreparedStatement lock = connection.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+                lock.setLong(1, ADVISORY_LOCK_KEY);
+                try (ResultSet rs = lock.executeQuery()) {
+                    if (!rs.next() || !rs.getBoolean(1)) {
+                        log.debug("Access log archiving is running on another node, skipping");
+                        return 0L;
+                    }
+                }
+            }
+            try {
+                return archiveUnlocked(cutoff);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                try (PreparedStatement unlock = connection.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+                    unlock.setLong(1, ADVISORY_LOCK_KEY);
+                    unlock.execute();
+                }
+            }
+        });
+        return archived != null ? archived : 0;
+    }
+
+    private long archiveUnlocked(LocalDateTime cutoff) throws IOException {
+        Files.createDirectories(directory);
+        long total = 0;
+        long written;
+        do {
+            written = writeSegment(cutoff);
+            total += written;
+        } while (written > 0);
+        archivedRows.increment(total);
+        return total;
+    }
+
+    /**
+     * 写一个段（至多 segmentMaxRows 行）并删除其中的日志
+     */
+    private long writeSegment(LocalDateTime cutoff) throws IOException {
+        List<AccessLog> block = nextBlock(cutoff, null);
+        if (block.isEmpty()) {
+            return 0;
+        }
+        AccessLog first = block.get(0);
+        String name = "access-logs-" + first.getCreatedAt().format(NAME_FORMAT) + "-" + first.getId();
+        Path segment = directory.resolve(name + AccessLogSegment.EXTENSION);
+        Path temp = directory.resolve(name + TEMP);
+        Path pending = directory.resolve(name + PENDING);
+        Files.createFile(pending);
+
+        long rows = 0;
+        try (AccessLogSegment.Writer writer = new AccessLogSegment.Writer(temp)) {
+            while (!block.isEmpty()) {
+                writer.append(block);
+                rows += block.size();
+                if (rows + blockRows > segmentMaxRows) {
+                    break;
+                }
+                block = nextBlock(cutoff, block.get(block.size() - 1));
+            }
+            writer.finish();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            Files.deleteIfExists(pending);
+            throw e;
+        }
+        Files.move(temp, segment, StandardCopyOption.ATOMIC_MOVE);
+        AccessLogSegment opened = AccessLogSegment.open(segment);
+        addSegment(opened);
+        deleteArchivedRows(opened);
+        Files.delete(pending);
+        return rows;
+    }
+
+    /**
+     * 按 (created_at, id) 升序读取 after 之后的下一块冷数据
+     */
+    private List<AccessLog> nextBlock(LocalDateTime cutoff, AccessLog after) {
+        if (after == null) {
+            return jdbcTemplate.query(SELECT_COLUMNS + "WHERE a.created_at < ? ORDER BY a.created_at, a.id LIMIT ?",
+                    (rs, rowNum) -> toAccessLog(rs), Timestamp.valueOf(cutoff), blockRows);
+        }
+        Timestamp afterTime = Timestamp.valueOf(after.getCreatedAt());
+        return jdbcTemplate.query(SELECT_COLUMNS + "WHERE a.created_at < ? AND (a.created_at > ? "
+                + "OR (a.created_at = ? AND a.id > ?)) ORDER BY a.created_at, a.id LIMIT ?",
+                (rs, rowNum) -> toAccessLog(rs), Timestamp.valueOf(cutoff), afterTime, afterTime, after.getId(),
+                blockRows);
+    }
+
+    /**
+     * 分批删除段中的日志及其请求 / 响应内容（附带时间范围，PostgreSQL 下可裁剪分区），并释放对命令输出的引用
+     */
+    private void deleteArchivedRows(AccessLogSegment segment) throws IOException {
+        for (AccessLogSegment.Block block : segment.getBlocks()) {
+            List<AccessLog> rows = segment.read(block);
+            for (int from = 0; from < rows.size(); from += DELETE_CHUNK) {
+                List<AccessLog> chunk = rows.subList(from, Math.min(rows.size(), from + DELETE_CHUNK));
+                Object[] args = new Object[chunk.size() + 2];
+                args[0] = Timestamp.valueOf(block.firstCreatedAt());
+                args[1] = Timestamp.valueOf(block.lastCreatedAt());
+                StringBuilder condition = new StringBuilder(" WHERE created_at >= ? AND created_at <= ? AND id IN (");
+                for (int i = 0; i < chunk.size(); i++) {
+                    condition.append(i == 0 ? "?" : ", ?");
+                    args[i + 2] = chunk.get(i).getId();
+                }
+                condition.append(')');
+                Map<String, Long> references = blobStore.countReferences("access_log_payloads",
+                        condition.substring(" WHERE ".length()), args);
+                jdbcTemplate.update("DELETE FROM access_log_payloads" + condition, args);
+                jdbcTemplate.update("DELETE FROM access_logs" + condition, args);
+                blobStore.release(references);
+            }
+        }
+    }
+
+    /**
+     * 在归档段中查找匹配的日志，按 (created_at, id) 降序返回至多 limit 行
+     *
+     * @param tokenId 精确匹配的 Token（用于按布隆位图跳过块），可为空
+     * @param after   游标，只返回排在其后的行，可为空
+     */
+    public List<AccessLog> search(Predicate<AccessLog> filter, String tokenId, boolean commandOnly,
+            LocalDateTime startTime, LocalDateTime endTime, KeysetCursor after, int limit) {
+        List<AccessLog> result = new ArrayList<>();
+        for (Candidate candidate : candidates(tokenId, commandOnly, startTime, endTime, after)) {
+            // 已凑满 limit 行且下一块整体更早时停止
+            if (result.size() >= limit) {
+                AccessLog oldest = result.get(limit - 1);
+                AccessLogSegment.Block block = candidate.block();
+                if (AccessLogSegment.compareKey(block.lastCreatedAt(), block.lastId(),
+                        oldest.getCreatedAt(), oldest.getId()) < 0) {
+                    break;
+                }
+            }
+            try {
+                for (AccessLog row : candidate.segment().read(candidate.block())) {
+                    if (isBefore(row, after) && filter.test(row)) {
+                        result.add(row);
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Failed to read access log archive {}: {}", candidate.segment().getPath(), e.getMessage());
+                continue;
+            }
+            result.sort(KEY_DESC);
+            if (result.size() > limit) {
+                result.subList(limit, result.size()).clear();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按 id 与创建时间查找一条已归档的日志（只读取时间范围覆盖 createdAt 的块）
+     *
+     * @return 日志（含请求 / 响应内容），不存在时返回 null
+     */
+    public AccessLog find(long id, LocalDateTime createdAt) {
+        for (Candidate candidate : candidates(null, false, createdAt, createdAt, null)) {
+            try {
+                for (AccessLog row : candidate.segment().read(candidate.block())) {
+                    if (row.getId() == id && createdAt.equals(row.getCreatedAt())) {
+                        return row;
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Failed to read access log archive {}: {}", candidate.segment().getPath(), e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 按 (created_at, id) 降序逐块读取所有匹配的日志，内存中最多保留一个块
+     *
+     * 各段的时间范围互不重叠，块按末行排序后逐块倒序输出即为全局降序。
+     *
+     * @param before 只输出排在其后的行，可为空
+     * @throws IOException 段文件读取失败或 consumer 写出失败
+     */
+    public void scan(Predicate<AccessLog> filter, String tokenId, boolean commandOnly, LocalDateTime startTime,
+            LocalDateTime endTime, KeysetCursor before, RowConsumer consumer) throws IOException {
+        for (Candidate candidate : candidates(tokenId, commandOnly, startTime, endTime, before)) {
+            List<AccessLog> rows = candidate.segment().read(candidate.block());
+            for (int i = rows.size() - 1; i >= 0; i--) {
+                AccessLog row = rows.get(i);
+                if (isBefore(row, before) && filter.test(row)) {
+                    consumer.accept(row);
+                }
+            }
+        }
+    }
+
+    /**
+     * 按稀疏索引筛选可能包含匹配行的块，按末行 (created_at, id) 降序排列
+     */
+    private List<Candidate> candidates(String tokenId, boolean commandOnly, LocalDateTime startTime,
+            LocalDateTime endTime, KeysetCursor after) {
+        List<Candidate> candidates = new ArrayList<>();
+        for (AccessLogSegment segment : segments) {
+            for (AccessLogSegment.Block block : segment.getBlocks()) {
+                if ((startTime != null && block.lastCreatedAt().isBefore(startTime))
+                        || (endTime != null && block.firstCreatedAt().isAfter(endTime))
+                        || (after != null && !block.hasRowsBefore(after))
+                        || (tokenId != null && !tokenId.isEmpty() && !AccessLogSegment.mayContainToken(block, tokenId))
+                        || (commandOnly && block.commandRows() == 0)) {
+                    continue;
+                }
+                candidates.add(new Candidate(segment, block));
+            }
+        }
+        candidates.sort(Comparator.comparing((Candidate c) -> c.block().lastCreatedAt())
+                .thenComparingLong(c -> c.block().lastId()).reversed());
+        return candidates;
+    }
+
+    private static boolean isBefore(AccessLog row, KeysetCursor cursor) {
+        return cursor == null
+                || AccessLogSegment.compareKey(row.getCreatedAt(), row.getId(), cursor.createdAt(), cursor.id()) < 0;
+    }
+
+    /**
+     * 是否存在已归档的段（先同步其他节点写入或删除的段）
+     */
+    public boolean hasSegments() {
+        refreshSegments();
+        return !segments.isEmpty();
+    }
+
+    /**
+     * 段目录修改时间变化或距上次扫描超过 {@link #RESCAN_INTERVAL_MS} 时重新扫描
+     */
+    void refreshSegments() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            FileTime modified = Files.getLastModifiedTime(directory);
+            if (modified.equals(scannedModified) && System.currentTimeMillis() - scannedAt < RESCAN_INTERVAL_MS) {
+                return;
+            }
+            loadSegments();
+        } catch (IOException e) {
+            log.warn("Failed to rescan access log archive {}: {}", directory, e.getMessage());
+        }
+    }
+
+    /**
+     * 删除最新日志早于 cutoff 的段
+     */
+    void purgeExpiredSegments(LocalDateTime cutoff) throws IOException {
+        for (AccessLogSegment segment : segments) {
+            LocalDateTime last = segment.getLastCreatedAt();
+            if (last != null && last.isBefore(cutoff)) {
+                segments.remove(segment);
+                Files.deleteIfExists(segment.getPath());
+                log.info("Deleted expired access log archive {}", segment.getPath().getFileName());
+            }
+        }
+    }
+
+    private void recoverPending() throws IOException {
+        List<Path> markers;
+        try (Stream<Path> files = Files.list(directory)) {
+            markers = files.filter(p -> p.getFileName().toString().endsWith(PENDING)).toList();
+        }
+        for (Path marker : markers) {
+            String name = marker.getFileName().toString();
+            String base = name.substring(0, name.length() - PENDING.length());
+            Path segment = directory.resolve(base + AccessLogSegment.EXTENSION);
+            if (Files.exists(segment)) {
+                // 段已生效但数据库删除未完成
+                deleteArchivedRows(AccessLogSegment.open(segment));
+                log.info("Completed interrupted archive {}", segment.getFileName());
+            } else {
+                Files.deleteIfExists(directory.resolve(base + TEMP));
+            }
+            Files.delete(marker);
+        }
+    }
+
+    /**
+     * 增量扫描段目录：移除已被删除的段，打开新出现的段
+     */
+    private synchronized void loadSegments() throws IOException {
+        FileTime modified = Files.getLastModifiedTime(directory);
+        long now = System.currentTimeMillis();
+        Set<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(p -> p.getFileName().toString().endsWith(AccessLogSegment.EXTENSION))
+                    .map(Path::getFileName)
+                    .collect(Collectors.toSet());
+        }
+        Set<Path> known = new HashSet<>();
+        for (AccessLogSegment segment : segments) {
+            if (files.contains(segment.getPath().getFileName())) {
+                known.add(segment.getPath().getFileName());
+            } else {
+                segments.remove(segment);
+            }
+        }
+        for (Path file : files) {
+            if (known.contains(file)) {
+                continue;
+            }
+            try {
+                addSegment(AccessLogSegment.open(directory.resolve(file)));
+            } catch (IOException e) {
+                log.warn("Skipping unreadable access log archive {}: {}", file, e.getMessage());
+            }
+        }
+        scannedModified = modified;
+        scannedAt = now;
+    }
+
+    private synchronized void addSegment(AccessLogSegment segment) {
+        Path name = segment.getPath().getFileName();
+        if (!segment.getBlocks().isEmpty()
+                && segments.stream().noneMatch(s -> s.getPath().getFileName().equals(name))) {
+            segments.add(segment);
+        }
+    }
+
+    private static AccessLog toAccessLog(ResultSet rs) throws SQLException {
+        AccessLog row = new AccessLog();
+        row.setId(rs.getLong("id"));
+        row.setTokenId(rs.getString("token_id"));
+        row.setPath(rs.getString("path"));
+        row.setIp(rs.getString("ip"));
+        row.setMethod(rs.getString("method"));
+        row.setUserAgent(rs.getString("user_agent"));
+        row.setReferer(rs.getString("referer"));
+        row.setSource(rs.getString("source"));
+        row.setForwardedFor(rs.getString("forwarded_for"));
+        row.setRequestId(rs.getString("request_id"));
+        row.setCommandName(rs.getString("command_name"));
+        row.setRequest(rs.getString("request"));
+        String response = rs.getString("response");
+        byte[] blob = rs.getBytes("blob_content");
+        if (response == null && blob != null) {
+            response = OutputBlobStore.decode(blob, rs.getBoolean("blob_compressed"));
+        }
+        row.setResponse(response);
+        int status = rs.getInt("status_code");
+        row.setStatusCode(rs.wasNull() ? null : status);
+        long duration = rs.getLong("duration");
+        row.setDuration(rs.wasNull() ? null : duration);
+        row.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+        return row;
+    }
+
+    private boolean isPostgres() {
+        if (postgres == null) {
+            postgres = "PostgreSQL".equalsIgnoreCase(jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName()));
+        }
+        return postgres;
+    }
+
+    private record Candidate(AccessLogSegment segment, AccessLogSegment.Block block) {
+    }
+
+    /**
+     * 逐行处理归档日志
+     */
+    @FunctionalInterface
+    public interface RowConsumer {
+        void accept(AccessLog row) throws IOException;
+    }
+}
@@ -0,0 +1,88 @@
+package com.httprun.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.httprun.entity.AccessLog;
+import com.httprun.enums.ExportFormat;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 访问日志导出写入器：逐行写出，不缓存行数据
+ *
+ * CSV 单元格以 =、+、-、@ 开头时加单引号前缀，避免在电子表格中被当作公式执行。
+ */
+public final class AccessLogExportWriter {
+
+    private static final String[] CSV_HEADER = { "id", "created_at", "token_id", "command_name", "status_code",
+            "duration", "source", "ip", "method", "path", "request_id", "request", "response" };
+
+    private final ExportFormat format;
+    private final ObjectMapper objectMapper;
+    private final Writer writer;
+    private long rows;
+
+    public AccessLogExportWriter(ExportFormat format, ObjectMapper objectMapper, OutputStream out) throws IOException {
+        this.format = format;
+        this.objectMapper = objectMapper;
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        if (format == ExportFormat.CSV) {
+            writeCsvRow((Object[]) CSV_HEADER);
+        }
+    }
+
+    public void write(AccessLog row) throws IOException {
+        if (format == ExportFormat.CSV) {
+            writeCsvRow(row.getId(), row.getCreatedAt(), row.getTokenId(), row.getCommandName(), row.getStatusCode(),
+                    row.getDuration(), row.getSource(), row.getIp(), row.getMethod(), row.getPath(),
+                    row.getRequestId(), row.getRequest(), row.getResponse());
+        } else {
+            writer.write(objectMapper.writeValueAsString(row));
+            writer.write('\n');
+        }
+        rows++;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * 写出缓冲区中的剩余内容（不关闭底层输出流）
+     */
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    private void writeCsvRow(Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] != null) {
+                writeCsvCell(values[i].toString());
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    private void writeCsvCell(String value) throws IOException {
+        boolean formula = !value.isEmpty() && "=+-@".indexOf(value.charAt(0)) >= 0;
+        boolean quote = formula || value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        if (formula) {
+            writer.write('\'');
+        }
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
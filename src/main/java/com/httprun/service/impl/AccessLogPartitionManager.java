@@ -0,0 +1,332 @@
+package com.httprun.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * access_logs 分区维护与保留期清理
+ *
+ * PostgreSQL（V7 起 access_logs 按天范围分区，V11 起 access_log_payloads 以相同范围分区）：
+ * 两张表一起提前创建未来若干天的分区，清理时整体 DROP 上界不晚于截止时间的分区，默认分区中的过期行再分批删除。
+ * 维护操作持有 PostgreSQL 会话级 advisory lock，多节点同时触发时只有一个节点执行。
+ * SQLite 或未分区的表：按主键分批 DELETE，每批单独提交，避免单条大事务长时间持锁。
+ * 删除请求 / 响应内容前统计其对命令输出（output_blobs）的引用，删除后由 {@link OutputBlobStore} 释放。
+ */
+@Slf4j
+@Component
+public class AccessLogPartitionManager implements ApplicationRunner {
+
+    static final String TABLE = "access_logs";
+    static final String PAYLOAD_TABLE = "access_log_payloads";
+    /** 按相同范围分区的表：日志元数据与请求 / 响应内容 */
+    private static final List<String> TABLES = List.of(TABLE, PAYLOAD_TABLE);
+    /** 分区维护 advisory lock 键 */
+    static final long ADVISORY_LOCK_KEY = 7_301_947_262_041L;
+    private static final Pattern UPPER_BOUND = Pattern.compile("TO \\('([^']+)'\\)");
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final DateTimeFormatter BOUND_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final OutputBlobStore blobStore;
+    private final int retentionDays;
+    private final int premakeDays;
+    private final int chunkSize;
+    private final Counter droppedPartitions;
+    private final Counter purgedRows;
+
+    private Boolean postgres;
+    private Boolean partitioned;
+
+    public AccessLogPartitionManager(JdbcTemplate jdbcTemplate, OutputBlobStore blobStore, MeterRegistry meterRegistry,
+            @Value("${httprun.access-log.retention-days:30}") int retentionDays,
+            @Value("${httprun.access-log.partition-premake-days:7}") int premakeDays,
+            @Value("${httprun.access-log.retention-chunk-size:5000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.blobStore = blobStore;
+        this.retentionDays = retentionDays;
+        this.premakeDays = Math.max(1, premakeDays);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.droppedPartitions = Counter.builder("httprun.accesslog.partitions.dropped")
+                .description("Expired access_logs partitions dropped by retention")
+                .register(meterRegistry);
+        this.purgedRows = Counter.builder("httprun.accesslog.purged")
+                .description("Access log rows removed by retention (estimated for dropped partitions)")
+                .register(meterRegistry);
+    }
+
+    public int getRetentionDays() {
+        return retentionDays;
+    }
+
+    /**
+     * 启动完成后（Flyway 迁移已执行）补齐分区
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            maintainPartitions();
+        } catch (Exception e) {
+            log.warn("Failed to prepare access_logs partitions on startup", e);
+        }
+    }
+
+    /**
+     * 提前创建当天起 premakeDays 天的分区 - 每小时执行
+     * 分区须在当天开始前建好，否则该天的行会落入默认分区，之后无法再为其建分区
+     */
+    @Scheduled(cron = "0 15 * * * ?")
+    public void maintainPartitions() {
+        if (!isPartitioned()) {
+            return;
+        }
+        Integer created = withAdvisoryLock(connection -> {
+            int count = 0;
+            LocalDate today = LocalDate.now();
+            for (String table : TABLES) {
+                for (int i = 0; i <= premakeDays; i++) {
+                    try {
+                        if (createPartition(connection, table, today.plusDays(i))) {
+                            count++;
+                        }
+                    } catch (SQLException e) {
+                        // 默认分区中已有该天的行时无法建分区，继续创建后续日期
+                        log.warn("Failed to create {} partition for {}: {}", table, today.plusDays(i),
+                                e.getMessage());
+                    }
+                }
+            }
+            return count;
+        });
+        if (created != null && created > 0) {
+            log.info("Created {} access_logs partitions ahead of time", created);
+        }
+    }
+
+    /**
+     * 清理 cutoff 之前的访问日志
+     *
+     * @return 清理的行数（整分区删除时为统计信息中的估算值）；其他节点正在清理时返回 0
+     */
+    public long purgeOlderThan(LocalDateTime cutoff) {
+        long removed;
+        if (isPartitioned()) {
+            Long result = withAdvisoryLock(connection -> {
+                long rows = dropExpiredPartitions(connection, TABLE, cutoff, null)
+                        + deleteInChunks(defaultPartition(TABLE), cutoff);
+                Map<String, Long> references = new HashMap<>();
+                dropExpiredPartitions(connection, PAYLOAD_TABLE, cutoff, references);
+                purgePayloads(defaultPartition(PAYLOAD_TABLE), cutoff, references);
+                return rows;
+            });
+            removed = result != null ? result : 0;
+        } else {
+            removed = deleteInChunks(TABLE, cutoff);
+            purgePayloads(PAYLOAD_TABLE, cutoff, new HashMap<>());
+        }
+        blobStore.collectGarbage();
+        purgedRows.increment(removed);
+        return removed;
+    }
+
+    /**
+     * 删除过期的请求 / 响应内容，并释放这些内容与已删除分区对命令输出的引用
+     */
+    private void purgePayloads(String table, LocalDateTime cutoff, Map<String, Long> references) {
+        blobStore.countReferences(table, "created_at < ?", Timestamp.valueOf(cutoff))
+                .forEach((hash, count) -> references.merge(hash, count, Long::sum));
+        deleteInChunks(table, cutoff);
+        blobStore.release(references);
+    }
+
+    /**
+     * 按数据库统计信息（pg_class.reltuples，含各分区）估算 access_logs 总行数，不扫描表
+     *
+     * @return 估算值；非 PostgreSQL 或尚无统计信息时返回 null
+     */
+    public Long estimateRowCount() {
+        if (!isPostgres()) {
+            return null;
+        }
+        return jdbcTemplate.queryForObject("SELECT SUM(GREATEST(c.reltuples, 0))::bigint FROM pg_class c "
+                + "WHERE c.oid = to_regclass(?) "
+                + "OR c.oid IN (SELECT i.inhrelid FROM pg_inherits i WHERE i.inhparent = to_regclass(?))",
+                Long.class, TABLE, TABLE);
+    }
+
+    /**
+     * 分批删除：每批按主键选出至多 chunkSize 行，单独提交
+     */
+    long deleteInChunks(String table, LocalDateTime cutoff) {
+        String sql = "DELETE FROM " + table + " WHERE id IN (SELECT id FROM " + table
+                + " WHERE created_at < ? LIMIT ?)";
+        Timestamp before = Timestamp.valueOf(cutoff);
+        long total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(sql, before, chunkSize);
+            total += deleted;
+        } while (deleted >= chunkSize);
+        return total;
+    }
+
+    /**
+     * @param references 不为空时在删除前统计各分区对命令输出的引用并累加到其中
+     */
+    private long dropExpiredPartitions(Connection connection, String table, LocalDateTime cutoff,
+            Map<String, Long> references) throws SQLException {
+        long rows = 0;
+        String sql = "SELECT c.relname, pg_get_expr(c.relpartbound, c.oid), c.reltuples::bigint "
+                + "FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                + "WHERE i.inhparent = to_regclass(?)";
+        List<String> expired = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    LocalDateTime upper = upperBound(rs.getString(2));
+                    // 分区上界不晚于截止时间，说明分区内所有行都已过期
+                    if (upper != null && !upper.isAfter(cutoff)) {
+                        expired.add(rs.getString(1));
+                        rows += Math.max(0, rs.getLong(3));
+                    }
+                }
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            for (String partition : expired) {
+                if (references != null) {
+                    blobStore.countReferences("\"" + partition + "\"", null)
+                            .forEach((hash, count) -> references.merge(hash, count, Long::sum));
+                }
+                statement.execute("DROP TABLE IF EXISTS \"" + partition + "\"");
+                if (TABLE.equals(table)) {
+                    droppedPartitions.increment();
+                }
+                log.info("Dropped expired {} partition {}", table, partition);
+            }
+        }
+        return rows;
+    }
+
+    private boolean createPartition(Connection connection, String table, LocalDate day) throws SQLException {
+        String name = partitionName(table, day);
+        try (PreparedStatement ps = connection.prepareStatement("SELECT to_regclass(?) IS NOT NULL")) {
+            ps.setString(1, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next() && rs.getBoolean(1)) {
+                    return false;
+                }
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + table
+                    + " FOR VALUES FROM ('" + day.atStartOfDay().format(BOUND_FORMAT) + "') TO ('"
+                    + day.plusDays(1).atStartOfDay().format(BOUND_FORMAT) + "')");
+        }
+        return true;
+    }
+
+    /**
+     * 在同一连接上持有 advisory lock 执行维护操作；锁被其他节点持有时跳过并返回 null
+     */
+    private <T> T withAdvisoryLock(SqlFunction<T> work) {
+        return jdbcTemplate.execute((ConnectionCallback<T>) connection -> {
+            try (PreparedStatement lock = connection.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+                lock.setLong(1, ADVISORY_LOCK_KEY);
+                try (ResultSet rs = lock.executeQuery()) {
+                    if (!rs.next() || !rs.getBoolean(1)) {
+                        log.debug("access_logs maintenance is running on another node, skipping");
+                        return null;
+                    }
+                }
+            }
+            try {
+                return work.apply(connection);
+            } finally {
+                try (PreparedStatement unlock = connection.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+                    unlock.setLong(1, ADVISORY_LOCK_KEY);
+                    unlock.execute();
+                }
+            }
+        });
+    }
+
+    private boolean isPostgres() {
+        if (postgres == null) {
+            postgres = "PostgreSQL".equalsIgnoreCase(jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName()));
+        }
+        return postgres;
+    }
+
+    private boolean isPartitioned() {
+        if (partitioned == null) {
+            if (!isPostgres()) {
+                partitioned = false;
+                return false;
+            }
+            partitioned = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+                try (PreparedStatement ps = connection.prepareStatement(
+                        "SELECT relkind = 'p' FROM pg_class WHERE oid = to_regclass(?)")) {
+                    ps.setString(1, TABLE);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        return rs.next() && rs.getBoolean(1);
+                    }
+                }
+            });
+        }
+        return partitioned;
+    }
+
+    static String partitionName(String table, LocalDate day) {
+        return table + "_p" + day.format(PARTITION_SUFFIX);
+    }
+
+    static String defaultPartition(String table) {
+        return table + "_default";
+    }
+
+    /**
+     * 解析 pg_get_expr(relpartbound) 中的分区上界；默认分区返回 null
+     */
+    static LocalDateTime upperBound(String boundExpression) {
+        if (boundExpression == null) {
+            return null;
+        }
+        Matcher matcher = UPPER_BOUND.matcher(boundExpression);
+        if (!matcher.find()) {
+            return null;
+        }
+        String value = matcher.group(1);
+        return LocalDateTime.parse(value.substring(0, Math.min(19, value.length())), BOUND_FORMAT);
+    }
+
+    @FunctionalInterface
+    private interface SqlFunction<T> {
+        T apply(Connection connection) throws SQLException;
+    }
+}
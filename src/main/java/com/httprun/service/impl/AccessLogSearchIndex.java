@@ -0,0 +1,144 @@
+package com.httprun.service.impl;
+
+import com.httprun.entity.AccessLog;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+
+/**
+ * 访问日志关键词检索
+ *
+ * 每条日志写入时生成 search_text（路径、命令名与脱敏后的请求参数，小写），关键词检索只匹配该列：
+ * <ul>
+ * <li>PostgreSQL：search_text 上建 pg_trgm GIN 索引（V8），{@code LIKE '%kw%'} 由索引提供服务</li>
+ * <li>SQLite：启动时建立 FTS5 trigram 倒排索引 access_logs_fts，由触发器随 access_logs 增删同步；
+ *     关键词至少 3 个字符时先查倒排索引得到匹配 id；不足 3 个字符或匹配数超过
+ *     httprun.access-log.search-max-matches 时退化为 LIKE</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class AccessLogSearchIndex implements ApplicationRunner {
+
+    /** search_text 中请求参数的最大长度，与 V8 回填语句一致 */
+    static final int MAX_REQUEST_CHARS = 2000;
+    static final String FTS_TABLE = "access_logs_fts";
+    /** trigram 分词器要求的最短关键词长度 */
+    private static final int MIN_FTS_KEYWORD = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxFtsMatches;
+
+    private volatile boolean ftsEnabled;
+
+    public AccessLogSearchIndex(JdbcTemplate jdbcTemplate,
+            @Value("${httprun.access-log.search-max-matches:10000}") int maxFtsMatches) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxFtsMatches = Math.max(1, maxFtsMatches);
+    }
+
+    /**
+     * 生成检索文本：lower(concat_ws(' ', path, command_name, left(request, 2000)))
+     */
+    public static String searchText(AccessLog accessLog) {
+        StringJoiner joiner = new StringJoiner(" ");
+        if (accessLog.getPath() != null) {
+            joiner.add(accessLog.getPath());
+        }
+        if (accessLog.getCommandName() != null) {
+            joiner.add(accessLog.getCommandName());
+        }
+        String request = accessLog.getRequest();
+        if (request != null) {
+            joiner.add(request.length() > MAX_REQUEST_CHARS ? request.substring(0, MAX_REQUEST_CHARS) : request);
+        }
+        return joiner.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * SQLite 下建立 FTS5 倒排索引（表由 Hibernate ddl-auto 创建，需在启动完成后执行）
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            String product = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            if ("SQLite".equalsIgnoreCase(product)) {
+                createSqliteIndex();
+                ftsEnabled = true;
+            }
+        } catch (Exception e) {
+            log.warn("Failed to prepare access log search index, falling back to LIKE", e);
+        }
+    }
+
+    /**
+     * 构造关键词检索条件
+     */
+    public Predicate keywordPredicate(Root<AccessLog> root, CriteriaBuilder cb, String keyword) {
+        String normalized = keyword.trim().toLowerCase(Locale.ROOT);
+        if (ftsEnabled && normalized.length() >= MIN_FTS_KEYWORD) {
+            List<Long> ids = jdbcTemplate.queryForList(
+                    "SELECT rowid FROM " + FTS_TABLE + " WHERE " + FTS_TABLE + " MATCH ? LIMIT ?",
+                    Long.class, "\"" + normalized.replace("\"", "\"\"") + "\"", maxFtsMatches + 1);
+            if (ids.size() <= maxFtsMatches) {
+                return ids.isEmpty() ? cb.disjunction() : root.get("id").in(ids);
+            }
+            // 匹配过多时截取部分 id 会与其他筛选条件、游标组合后漏掉结果，改用 LIKE 保证正确
+            log.debug("Keyword '{}' matches more than {} access logs, falling back to LIKE", normalized,
+                    maxFtsMatches);
+        }
+        return cb.like(root.get("searchText"), "%" + escapeLike(normalized) + "%", '\\');
+    }
+
+    private void createSqliteIndex() {
+        Integer existing = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM sqlite_master WHERE name = ?", Integer.class, FTS_TABLE);
+        // 先建立倒排索引与触发器，回填失败不影响后续写入的日志走倒排索引
+        jdbcTemplate.execute("CREATE VIRTUAL TABLE IF NOT EXISTS " + FTS_TABLE
+                + " USING fts5(search_text, content='', contentless_delete=1, tokenize='trigram')");
+        jdbcTemplate.execute("CREATE TRIGGER IF NOT EXISTS access_logs_fts_ai AFTER INSERT ON access_logs "
+                + "WHEN new.search_text IS NOT NULL BEGIN "
+                + "INSERT INTO " + FTS_TABLE + "(rowid, search_text) VALUES (new.id, new.search_text); END");
+        jdbcTemplate.execute("CREATE TRIGGER IF NOT EXISTS access_logs_fts_ad AFTER DELETE ON access_logs BEGIN "
+                + "DELETE FROM " + FTS_TABLE + " WHERE rowid = old.id; END");
+        if (existing == null || existing == 0) {
+            backfillSearchText();
+            int indexed = jdbcTemplate.update("INSERT INTO " + FTS_TABLE + "(rowid, search_text) "
+                    + "SELECT id, search_text FROM access_logs WHERE search_text IS NOT NULL");
+            log.info("Built access log search index ({} rows)", indexed);
+        }
+    }
+
+    /**
+     * 补齐升级前写入的日志的检索文本（请求内容位于 access_log_payloads）
+     */
+    private void backfillSearchText() {
+        try {
+            int updated = jdbcTemplate.update("UPDATE access_logs SET search_text = lower(path "
+                    + "|| coalesce(' ' || command_name, '') "
+                    + "|| coalesce(' ' || (SELECT substr(p.request, 1, " + MAX_REQUEST_CHARS + ") "
+                    + "FROM access_log_payloads p WHERE p.id = access_logs.id), '')) WHERE search_text IS NULL");
+            if (updated > 0) {
+                log.info("Backfilled search text for {} access logs", updated);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to backfill access log search text, older logs stay unsearchable: {}", e.getMessage());
+        }
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
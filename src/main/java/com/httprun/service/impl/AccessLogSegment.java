@@ -0,0 +1,281 @@
+package com.httprun.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.httprun.entity.AccessLog;
+import com.httprun.util.KeysetCursor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 访问日志归档段文件（只追加写入一次，之后只读）
+ *
+ * 文件结构：
+ * <pre>
+ * "HRAL" 版本号(1)
+ * 块 0 .. 块 n-1：按 (created_at, id) 升序的日志，每行一条 JSON，整块 Deflate 压缩
+ * 稀疏索引：每块的偏移、长度、行数、首尾 (created_at, id)、Token 布隆位图、命令执行行数
+ * 尾部：索引偏移(8) 块数(4) "HRAL"
+ * </pre>
+ * 读取时只加载尾部索引；查询按索引跳过时间范围、游标或 Token 不匹配的块，
+ * 命中的块通过内存映射（FileChannel.map）读取后解压。
+ */
+public final class AccessLogSegment {
+
+    static final String EXTENSION = ".seg";
+    private static final int MAGIC = 0x4852414C;
+    private static final byte VERSION = 1;
+    private static final int HEADER_BYTES = 5;
+    private static final int FOOTER_BYTES = 16;
+    private static final int INDEX_ENTRY_BYTES = 8 + 4 + 4 + 8 * 4 + 8 + 4;
+    private static final ObjectMapper MAPPER = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    private final Path path;
+    private final List<Block> blocks;
+
+    private AccessLogSegment(Path path, List<Block> blocks) {
+        this.path = path;
+        this.blocks = blocks;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public List<Block> getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * 段内最新一行的 created_at
+     */
+    public LocalDateTime getLastCreatedAt() {
+        return blocks.isEmpty() ? null : blocks.get(blocks.size() - 1).lastCreatedAt();
+    }
+
+    /**
+     * 打开段文件并读取稀疏索引
+     *
+     * @throws IOException 文件不完整或格式无效
+     */
+    public static AccessLogSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + FOOTER_BYTES) {
+                throw new IOException("Truncated access log segment: " + path);
+            }
+            MappedByteBuffer footer = channel.map(FileChannel.MapMode.READ_ONLY, size - FOOTER_BYTES, FOOTER_BYTES);
+            long indexOffset = footer.getLong();
+            int count = footer.getInt();
+            if (footer.getInt() != MAGIC || indexOffset < HEADER_BYTES
+                    || indexOffset + (long) count * INDEX_ENTRY_BYTES != size - FOOTER_BYTES) {
+                throw new IOException("Corrupt access log segment: " + path);
+            }
+            MappedByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset,
+                    (long) count * INDEX_ENTRY_BYTES);
+            List<Block> blocks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                blocks.add(new Block(index.getLong(), index.getInt(), index.getInt(),
+                        fromMicros(index.getLong()), index.getLong(), fromMicros(index.getLong()), index.getLong(),
+                        index.getLong(), index.getInt()));
+            }
+            return new AccessLogSegment(path, Collections.unmodifiableList(blocks));
+        }
+    }
+
+    /**
+     * 以内存映射方式读取并解压一个块
+     */
+    public List<AccessLog> read(Block block) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer compressed = channel.map(FileChannel.MapMode.READ_ONLY, block.offset(), block.length());
+            byte[] json = inflate(compressed);
+            List<AccessLog> rows = new ArrayList<>(block.rows());
+            int start = 0;
+            for (int i = 0; i < json.length; i++) {
+                if (json[i] == '\n') {
+                    rows.add(MAPPER.readValue(json, start, i - start, AccessLog.class));
+                    start = i + 1;
+                }
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * Token 是否可能出现在块中（布隆位图，可能误判为存在，不会漏判）
+     */
+    public static boolean mayContainToken(Block block, String tokenId) {
+        long bits = tokenBits(tokenId);
+        return (block.tokenBloom() & bits) == bits;
+    }
+
+    private static long tokenBits(String tokenId) {
+        int h = tokenId.hashCode() * 0x9E3779B9;
+        return (1L << (h & 63)) | (1L << ((h >>> 6) & 63));
+    }
+
+    private static byte[] inflate(ByteBuffer compressed) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.remaining() * 4);
+            byte[] chunk = new byte[16 * 1024];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(chunk);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated access log block");
+                }
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt access log block", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * 索引中的时间以微秒存储（与 PostgreSQL timestamp 精度一致，范围删除不会因截断漏掉行）
+     */
+    private static long toMicros(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1_000;
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+
+    /**
+     * 比较两行的排序键 (created_at, id)
+     */
+    static int compareKey(LocalDateTime createdAt, long id, LocalDateTime otherCreatedAt, long otherId) {
+        int c = createdAt.compareTo(otherCreatedAt);
+        return c != 0 ? c : Long.compare(id, otherId);
+    }
+
+    /**
+     * 稀疏索引项
+     */
+    public record Block(long offset, int length, int rows, LocalDateTime firstCreatedAt, long firstId,
+            LocalDateTime lastCreatedAt, long lastId, long tokenBloom, int commandRows) {
+
+        /**
+         * 块内是否有排在游标之后（更早）的行
+         */
+        boolean hasRowsBefore(KeysetCursor cursor) {
+            return compareKey(firstCreatedAt, firstId, cursor.createdAt(), cursor.id()) < 0;
+        }
+    }
+
+    /**
+     * 段文件写入器：按 (created_at, id) 升序逐块追加，finish() 写入索引与尾部
+     */
+    public static final class Writer implements Closeable {
+        private final FileChannel channel;
+        private final List<Block> blocks = new ArrayList<>();
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        private long position = HEADER_BYTES;
+
+        public Writer(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).put(VERSION).flip();
+            writeFully(header);
+        }
+
+        /**
+         * 追加一个块（rows 须非空且按 (created_at, id) 升序）
+         */
+        public void append(List<AccessLog> rows) throws IOException {
+            ByteArrayOutputStream json = new ByteArrayOutputStream(rows.size() * 512);
+            long bloom = 0;
+            int commandRows = 0;
+            for (AccessLog row : rows) {
+                json.write(MAPPER.writeValueAsBytes(row));
+                json.write('\n');
+                if (row.getTokenId() != null) {
+                    bloom |= tokenBits(row.getTokenId());
+                }
+                if (row.getCommandName() != null && !row.getCommandName().isEmpty()) {
+                    commandRows++;
+                }
+            }
+            byte[] compressed = deflate(json.toByteArray());
+            writeFully(ByteBuffer.wrap(compressed));
+            AccessLog first = rows.get(0);
+            AccessLog last = rows.get(rows.size() - 1);
+            blocks.add(new Block(position, compressed.length, rows.size(), first.getCreatedAt(), first.getId(),
+                    last.getCreatedAt(), last.getId(), bloom, commandRows));
+            position += compressed.length;
+        }
+
+        public int blockCount() {
+            return blocks.size();
+        }
+
+        /**
+         * 写入索引与尾部并落盘
+         */
+        public void finish() throws IOException {
+            ByteBuffer index = ByteBuffer.allocate(blocks.size() * INDEX_ENTRY_BYTES + FOOTER_BYTES);
+            for (Block block : blocks) {
+                index.putLong(block.offset()).putInt(block.length()).putInt(block.rows())
+                        .putLong(toMicros(block.firstCreatedAt())).putLong(block.firstId())
+                        .putLong(toMicros(block.lastCreatedAt())).putLong(block.lastId())
+                        .putLong(block.tokenBloom()).putInt(block.commandRows());
+            }
+            index.putLong(position).putInt(blocks.size()).putInt(MAGIC).flip();
+            writeFully(index);
+            channel.force(true);
+        }
+
+        /**
+         * 关闭文件；未调用 finish() 的段没有尾部，打开时会被判定为不完整
+         */
+        @Override
+        public void close() throws IOException {
+            deflater.end();
+            channel.close();
+        }
+
+        private byte[] deflate(byte[] input) {
+            deflater.reset();
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, input.length / 4));
+            byte[] chunk = new byte[16 * 1024];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
@@ -1,20 +1,42 @@
 package com.httprun.service.impl;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.httprun.dto.AuditContext;
+import com.httprun.dto.response.CursorPage;
 import com.httprun.entity.AccessLog;
+import com.httprun.entity.AccessLogPayload;
+import com.httprun.enums.ExportFormat;
+import com.httprun.repository.AccessLogPayloadRepository;
 import com.httprun.repository.AccessLogRepository;
 import com.httprun.service.AccessLogService;
+import com.httprun.util.KeysetCursor;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
 
 /**
  * 访问日志服务实现
@@ -24,11 +46,27 @@ import java.time.LocalDateTime;
 @RequiredArgsConstructor
 public class AccessLogServiceImpl implements AccessLogService {
 
+    /** 游标分页单页最大行数 */
+    private static final int MAX_CURSOR_PAGE_SIZE = 500;
+    /** 批量删除时单条 DELETE 的 ID 数上限（IN 列表长度） */
+    private static final int DELETE_CHUNK_SIZE = 500;
+    /** 导出时每次从服务端游标取回的行数，也是清空持久化上下文的间隔 */
+    private static final int EXPORT_FETCH_SIZE = 500;
+
     private final AccessLogRepository accessLogRepository;
+    private final AccessLogPayloadRepository payloadRepository;
+    private final OutputBlobStore blobStore;
+    private final AccessLogWriter accessLogWriter;
+    private final AccessLogPartitionManager partitionManager;
+    private final AccessLogSearchIndex searchIndex;
+    private final AccessLogArchiver archiver;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
 
+    /**
+     * 记录访问日志：只放入批量写入器的缓冲区，由写入线程批量落库
+     */
     @Override
-    @Async
-    @Transactional
     public void logAccess(AuditContext context) {
         AccessLog accessLog = new AccessLog();
         accessLog.setTokenId(context.getTokenId());
@@ -44,22 +82,20 @@ public class AccessLogServiceImpl implements AccessLogService {
         accessLog.setRequestId(context.getRequestId());
         accessLog.setCommandName(context.getCommandName());
 
-        accessLog.setRequest(context.getRequest());
-        // 限制响应内容长度
+        // 限制请求 / 响应内容长度，避免大请求体在写入缓冲区中长时间占用内存
+        accessLog.setRequest(truncate(context.getRequest(), 65000));
         accessLog.setResponse(truncate(context.getResponse(), 65000));
         accessLog.setStatusCode(context.getStatusCode());
         accessLog.setDuration(context.getDuration());
 
-        accessLogRepository.save(accessLog);
+        accessLogWriter.enqueue(accessLog);
 
-        log.debug("Logged access: path={}, ip={}, source={}, statusCode={}, duration={}ms",
+        log.debug("Queued access: path={}, ip={}, source={}, statusCode={}, duration={}ms",
                 context.getPath(), context.getIp(), context.getSource(),
                 context.getStatusCode(), context.getDuration());
     }
 
     @Override
-    @Async
-    @Transactional
     public void logAccess(String tokenId, String path, String ip, String method,
             String request, String response, Integer statusCode, Long duration) {
         // 兼容旧版调用，转换为 AuditContext
@@ -132,11 +168,13 @@ public class AccessLogServiceImpl implements AccessLogService {
         return accessLogRepository.findBySource(source, pageRequest);
     }
 
+    /**
+     * 清理过期日志：PostgreSQL 整分区删除，SQLite 分批删除（不在单个事务中执行）
+     */
     @Override
-    @Transactional
     public int cleanOldLogs(int retentionDays) {
         LocalDateTime cutoffTime = LocalDateTime.now().minusDays(retentionDays);
-        int deleted = accessLogRepository.deleteByCreatedAtBefore(cutoffTime);
+        int deleted = (int) Math.min(Integer.MAX_VALUE, partitionManager.purgeOlderThan(cutoffTime));
         log.info("Cleaned {} old access logs older than {} days", deleted, retentionDays);
         return deleted;
     }
@@ -158,78 +196,198 @@ public class AccessLogServiceImpl implements AccessLogService {
                 pageSize,
                 Sort.by(Sort.Direction.DESC, "createdAt"));
 
-        // 使用 Specification 动态构建查询条件
-        return accessLogRepository.findAll((root, query, cb) -> {
-            java.util.List<jakarta.persistence.criteria.Predicate> predicates = new java.util.ArrayList<>();
+        return accessLogRepository.findAll(AccessLogSpecifications.matching(searchIndex,
+                tokenId, commandName, status, startTime, endTime, keyword, commandOnly), pageRequest);
+    }
 
-            // 只查询命令执行记录（commandName 不为空）
-            if (commandOnly) {
-                predicates.add(cb.and(
-                        cb.isNotNull(root.get("commandName")),
-                        cb.notEqual(root.get("commandName"), "")));
-            }
+    /**
+     * 键集分页：按 (createdAt, id) 倒序，多取一行判断是否还有下一页，不执行 COUNT 与 OFFSET
+     */
+    @Override
+    public CursorPage<AccessLog> searchLogsByCursor(String tokenId, String commandName, String status,
+            LocalDateTime startTime, LocalDateTime endTime, String keyword, boolean commandOnly,
+            String cursor, int limit, boolean withTotal) {
+        int size = Math.min(Math.max(1, limit), MAX_CURSOR_PAGE_SIZE);
+        Specification<AccessLog> spec = AccessLogSpecifications.matching(searchIndex,
+                tokenId, commandName, status, startTime, endTime, keyword, commandOnly);
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        if (after != null) {
+            spec = spec.and(AccessLogSpecifications.after(after));
+        }
 
-            // Token 筛选
-            if (tokenId != null && !tokenId.isEmpty()) {
-                predicates.add(cb.equal(root.get("tokenId"), tokenId));
-            }
+        List<AccessLog> rows = accessLogRepository.findBy(spec, query -> query
+                .sortBy(Sort.by(Sort.Direction.DESC, "createdAt").and(Sort.by(Sort.Direction.DESC, "id")))
+                .limit(size + 1)
+                .all());
+        if (archiver.hasSegments()) {
+            rows = mergeArchived(rows, archiver.search(AccessLogSpecifications.matchingInMemory(
+                    tokenId, commandName, status, startTime, endTime, keyword, commandOnly),
+                    tokenId, commandOnly, startTime, endTime, after, size + 1), size + 1);
+        }
+        boolean hasMore = rows.size() > size;
+        List<AccessLog> items = hasMore ? rows.subList(0, size) : rows;
 
-            // 命令名称筛选
-            if (commandName != null && !commandName.isEmpty()) {
-                predicates.add(cb.equal(root.get("commandName"), commandName));
-            }
+        String nextCursor = null;
+        if (hasMore) {
+            AccessLog last = items.get(items.size() - 1);
+            nextCursor = new KeysetCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        Long approximateTotal = withTotal && AccessLogSpecifications.unfiltered(
+                tokenId, commandName, status, startTime, endTime, keyword, commandOnly)
+                        ? partitionManager.estimateRowCount()
+                        : null;
+
+        return CursorPage.<AccessLog>builder()
+                .items(items)
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .approximateTotal(approximateTotal)
+                .build();
+    }
 
-            // 状态筛选
-            if (status != null && !status.isEmpty()) {
-                if ("success".equalsIgnoreCase(status)) {
-                    predicates.add(cb.between(root.get("statusCode"), 200, 299));
-                } else if ("error".equalsIgnoreCase(status)) {
-                    predicates.add(cb.greaterThanOrEqualTo(root.get("statusCode"), 400));
+    /**
+     * 只读事务内以前向游标读取（PostgreSQL 仅在关闭自动提交时按 fetch size 分批取回），
+     * 每 {@value #EXPORT_FETCH_SIZE} 行清空一次持久化上下文，内存占用与导出行数无关
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public long exportLogs(String tokenId, String commandName, String status,
+            LocalDateTime startTime, LocalDateTime endTime, String keyword, boolean commandOnly,
+            ExportFormat format, OutputStream out) throws IOException {
+        Specification<AccessLog> spec = AccessLogSpecifications.matching(searchIndex,
+                tokenId, commandName, status, startTime, endTime, keyword, commandOnly);
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<AccessLog> query = cb.createQuery(AccessLog.class);
+        Root<AccessLog> root = query.from(AccessLog.class);
+        Predicate where = spec.toPredicate(root, query, cb);
+        if (where != null) {
+            query.where(where);
+        }
+        query.orderBy(cb.desc(root.get("createdAt")), cb.desc(root.get("id")));
+
+        AccessLogExportWriter writer = new AccessLogExportWriter(format, objectMapper, out);
+        List<AccessLog> chunk = new ArrayList<>(EXPORT_FETCH_SIZE);
+        AccessLog last = null;
+        try (Stream<AccessLog> rows = entityManager.createQuery(query)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, EXPORT_FETCH_SIZE)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream()) {
+            Iterator<AccessLog> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == EXPORT_FETCH_SIZE || !iterator.hasNext()) {
+                    last = writeWithPayloads(chunk, writer);
+                    entityManager.clear();
                 }
             }
+        }
+        if (archiver.hasSegments()) {
+            // 归档删除按 (createdAt, id) 升序进行，排在数据库最后一行之后的归档日志不会与已导出的行重复
+            KeysetCursor before = last != null ? new KeysetCursor(last.getCreatedAt(), last.getId()) : null;
+            archiver.scan(AccessLogSpecifications.matchingInMemory(tokenId, commandName, status, startTime, endTime,
+                    keyword, commandOnly), tokenId, commandOnly, startTime, endTime, before, writer::write);
+        }
+        writer.flush();
+        log.info("Exported {} access logs as {}", writer.getRows(), format);
+        return writer.getRows();
+    }
 
-            // 时间范围筛选
-            if (startTime != null) {
-                predicates.add(cb.greaterThanOrEqualTo(root.get("createdAt"), startTime));
-            }
-            if (endTime != null) {
-                predicates.add(cb.lessThanOrEqualTo(root.get("createdAt"), endTime));
-            }
-
-            // 关键词搜索（路径或命令名称）
-            if (keyword != null && !keyword.isEmpty()) {
-                String pattern = "%" + keyword.toLowerCase() + "%";
-                predicates.add(cb.or(
-                        cb.like(cb.lower(root.get("path")), pattern),
-                        cb.like(cb.lower(root.get("commandName")), pattern)));
+    /**
+     * 为一批按时间倒序的日志加载请求 / 响应内容（按时间范围裁剪分区）后写出，返回最后一行并清空批次
+     */
+    private AccessLog writeWithPayloads(List<AccessLog> chunk, AccessLogExportWriter writer) throws IOException {
+        AccessLog first = chunk.get(0);
+        AccessLog last = chunk.get(chunk.size() - 1);
+        Map<Long, AccessLogPayload> payloads = new HashMap<>();
+        for (AccessLogPayload payload : payloadRepository.findByIdInAndCreatedAtBetween(
+                chunk.stream().map(AccessLog::getId).toList(), last.getCreatedAt(), first.getCreatedAt())) {
+            payloads.put(payload.getId(), payload);
+        }
+        Map<String, String> outputs = blobStore.loadAll(
+                payloads.values().stream().map(AccessLogPayload::getResponseHash).toList());
+        for (AccessLog row : chunk) {
+            AccessLogPayload payload = payloads.get(row.getId());
+            if (payload != null) {
+                row.setRequest(payload.getRequest());
+                row.setResponse(payload.getResponse() != null ? payload.getResponse()
+                        : outputs.get(payload.getResponseHash()));
             }
+            writer.write(row);
+        }
+        chunk.clear();
+        return last;
+    }
 
-            return cb.and(predicates.toArray(new jakarta.persistence.criteria.Predicate[0]));
-        }, pageRequest);
+    /**
+     * 合并数据库与归档段的结果：按 (createdAt, id) 降序、按 id 去重（归档删除完成前两处可能同时存在）
+     */
+    private static List<AccessLog> mergeArchived(List<AccessLog> live, List<AccessLog> archived, int limit) {
+        if (archived.isEmpty()) {
+            return live;
+        }
+        Map<Long, AccessLog> byId = new LinkedHashMap<>();
+        live.forEach(row -> byId.put(row.getId(), row));
+        for (AccessLog row : archived) {
+            // 列表只返回元数据，与数据库中的行一致
+            row.setRequest(null);
+            row.setResponse(null);
+            byId.putIfAbsent(row.getId(), row);
+        }
+        List<AccessLog> merged = new ArrayList<>(byId.values());
+        merged.sort(AccessLogArchiver.KEY_DESC);
+        return merged.size() > limit ? merged.subList(0, limit) : merged;
     }
 
     @Override
     @Transactional
     public void deleteLog(Long id) {
+        List<Object[]> references = payloadRepository.countResponseHashesByIdIn(List.of(id));
+        payloadRepository.deleteByIdIn(List.of(id));
         accessLogRepository.deleteById(id);
+        releaseOutputs(references);
         log.info("Deleted access log: id={}", id);
     }
 
     @Override
     @Transactional
     public int deleteLogs(java.util.List<Long> ids) {
+        return deleteLogs(ids, null);
+    }
+
+    @Override
+    @Transactional
+    public int deleteLogs(java.util.List<Long> ids, String ownerTokenId) {
         if (ids == null || ids.isEmpty()) {
             return 0;
         }
-        accessLogRepository.deleteAllById(ids);
-        log.info("Deleted {} access logs", ids.size());
-        return ids.size();
+        List<Long> distinct = ids.stream().filter(Objects::nonNull).distinct().toList();
+        int deleted = 0;
+        for (int from = 0; from < distinct.size(); from += DELETE_CHUNK_SIZE) {
+            List<Long> chunk = distinct.subList(from, Math.min(distinct.size(), from + DELETE_CHUNK_SIZE));
+            // 内容行按相同条件先删除（所有权以 access_logs.token_id 判断）
+            if (ownerTokenId != null) {
+                List<Object[]> references = payloadRepository.countResponseHashesByIdInAndTokenId(chunk, ownerTokenId);
+                payloadRepository.deleteByIdInAndTokenId(chunk, ownerTokenId);
+                deleted += accessLogRepository.deleteByIdInAndTokenId(chunk, ownerTokenId);
+                releaseOutputs(references);
+            } else {
+                List<Object[]> references = payloadRepository.countResponseHashesByIdIn(chunk);
+                payloadRepository.deleteByIdIn(chunk);
+                deleted += accessLogRepository.deleteByIdIn(chunk);
+                releaseOutputs(references);
+            }
+        }
+        log.info("Deleted {} of {} requested access logs", deleted, distinct.size());
+        return deleted;
     }
 
     @Override
     @Transactional
     public int deleteLogsByToken(String tokenId) {
+        List<Object[]> references = payloadRepository.countResponseHashesByTokenId(tokenId);
+        payloadRepository.deleteByTokenId(tokenId);
         int deleted = accessLogRepository.deleteByTokenId(tokenId);
+        releaseOutputs(references);
         log.info("Deleted {} access logs for token: {}", deleted, tokenId);
         return deleted;
     }
@@ -239,13 +397,49 @@ public class AccessLogServiceImpl implements AccessLogService {
         return accessLogRepository.findById(id).orElse(null);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public AccessLog getLogDetail(Long id, LocalDateTime createdAt) {
+        if (createdAt == null) {
+            AccessLog row = accessLogRepository.findById(id).orElse(null);
+            if (row != null) {
+                payloadRepository.findByIdAndCreatedAt(id, row.getCreatedAt()).ifPresent(payload -> attach(row, payload));
+            }
+            return row;
+        }
+        AccessLog row = accessLogRepository.findByIdAndCreatedAt(id, createdAt).orElse(null);
+        if (row != null) {
+            payloadRepository.findByIdAndCreatedAt(id, createdAt).ifPresent(payload -> attach(row, payload));
+            return row;
+        }
+        return archiver.hasSegments() ? archiver.find(id, createdAt) : null;
+    }
+
+    private void attach(AccessLog row, AccessLogPayload payload) {
+        row.setRequest(payload.getRequest());
+        row.setResponse(payload.getResponse() != null ? payload.getResponse()
+                : blobStore.load(payload.getResponseHash()));
+    }
+
+    /**
+     * 释放已删除日志对命令输出的引用
+     *
+     * @param references 删除前统计的 [response_hash, count]
+     */
+    private void releaseOutputs(List<Object[]> references) {
+        Map<String, Long> counts = new HashMap<>();
+        for (Object[] reference : references) {
+            counts.merge((String) reference[0], ((Number) reference[1]).longValue(), Long::sum);
+        }
+        blobStore.release(counts);
+    }
+
     /**
      * 定时清理任务 - 每天凌晨 2 点执行
      */
     @Scheduled(cron = "0 0 2 * * ?")
-    @Transactional
     public void scheduledCleanup() {
-        int deleted = cleanOldLogs(30); // 保留 30 天
+        int deleted = cleanOldLogs(partitionManager.getRetentionDays());
         log.info("Scheduled cleanup: removed {} old access logs", deleted);
     }
 
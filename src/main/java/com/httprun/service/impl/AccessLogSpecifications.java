@@ -0,0 +1,130 @@
+package com.httprun.service.impl;
+
+import com.httprun.entity.AccessLog;
+import com.httprun.util.KeysetCursor;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 访问日志查询条件
+ */
+final class AccessLogSpecifications {
+
+    private AccessLogSpecifications() {
+    }
+
+    /**
+     * 多条件筛选（条件为空时忽略）
+     */
+    static Specification<AccessLog> matching(AccessLogSearchIndex searchIndex, String tokenId, String commandName,
+            String status, LocalDateTime startTime, LocalDateTime endTime, String keyword, boolean commandOnly) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+
+            // 只查询命令执行记录（commandName 不为空）
+            if (commandOnly) {
+                predicates.add(cb.and(
+                        cb.isNotNull(root.get("commandName")),
+                        cb.notEqual(root.get("commandName"), "")));
+            }
+
+            // Token 筛选
+            if (tokenId != null && !tokenId.isEmpty()) {
+                predicates.add(cb.equal(root.get("tokenId"), tokenId));
+            }
+
+            // 命令名称筛选
+            if (commandName != null && !commandName.isEmpty()) {
+                predicates.add(cb.equal(root.get("commandName"), commandName));
+            }
+
+            // 状态筛选
+            if (status != null && !status.isEmpty()) {
+                if ("success".equalsIgnoreCase(status)) {
+                    predicates.add(cb.between(root.get("statusCode"), 200, 299));
+                } else if ("error".equalsIgnoreCase(status)) {
+                    predicates.add(cb.greaterThanOrEqualTo(root.get("statusCode"), 400));
+                }
+            }
+
+            // 时间范围筛选
+            if (startTime != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("createdAt"), startTime));
+            }
+            if (endTime != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("createdAt"), endTime));
+            }
+
+            // 关键词搜索（路径、命令名称或请求参数），由检索索引提供服务
+            if (keyword != null && !keyword.isBlank()) {
+                predicates.add(searchIndex.keywordPredicate(root, cb, keyword));
+            }
+
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    /**
+     * 与 {@link #matching} 语义相同的内存筛选，用于归档段中的日志（关键词按检索文本子串匹配）
+     */
+    static java.util.function.Predicate<AccessLog> matchingInMemory(String tokenId, String commandName,
+            String status, LocalDateTime startTime, LocalDateTime endTime, String keyword, boolean commandOnly) {
+        String normalized = keyword != null && !keyword.isBlank() ? keyword.trim().toLowerCase(Locale.ROOT) : null;
+        return log -> {
+            if (commandOnly && isEmpty(log.getCommandName())) {
+                return false;
+            }
+            if (!isEmpty(tokenId) && !tokenId.equals(log.getTokenId())) {
+                return false;
+            }
+            if (!isEmpty(commandName) && !commandName.equals(log.getCommandName())) {
+                return false;
+            }
+            if (!isEmpty(status)) {
+                Integer code = log.getStatusCode();
+                if ("success".equalsIgnoreCase(status) && (code == null || code < 200 || code > 299)) {
+                    return false;
+                }
+                if ("error".equalsIgnoreCase(status) && (code == null || code < 400)) {
+                    return false;
+                }
+            }
+            if (startTime != null && log.getCreatedAt().isBefore(startTime)) {
+                return false;
+            }
+            if (endTime != null && log.getCreatedAt().isAfter(endTime)) {
+                return false;
+            }
+            return normalized == null || AccessLogSearchIndex.searchText(log).contains(normalized);
+        };
+    }
+
+    /**
+     * 键集条件：排在游标之后的行，即 (createdAt, id) &lt; (cursor.createdAt, cursor.id)
+     */
+    static Specification<AccessLog> after(KeysetCursor cursor) {
+        return (root, query, cb) -> cb.or(
+                cb.lessThan(root.get("createdAt"), cursor.createdAt()),
+                cb.and(
+                        cb.equal(root.get("createdAt"), cursor.createdAt()),
+                        cb.lessThan(root.get("id"), cursor.id())));
+    }
+
+    /**
+     * 是否未附加任何筛选条件
+     */
+    static boolean unfiltered(String tokenId, String commandName, String status, LocalDateTime startTime,
+            LocalDateTime endTime, String keyword, boolean commandOnly) {
+        return !commandOnly && isEmpty(tokenId) && isEmpty(commandName) && isEmpty(status)
+                && startTime == null && endTime == null && (keyword == null || keyword.isBlank());
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
+    }
+}
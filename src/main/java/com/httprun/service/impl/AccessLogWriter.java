@@ -0,0 +1,391 @@
+package com.httprun.service.impl;
+
+import com.httprun.entity.AccessLog;
+import com.httprun.util.MpscRingBuffer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 访问日志批量写入器
+ *
+ * 请求线程只把日志放入有界的 {@link MpscRingBuffer}，由专用写入线程批量取出，
+ * 以一条多行 INSERT 写入 access_logs（请求 / 响应内容另以一条多行 INSERT 写入 access_log_payloads，
+ * 响应内容经 {@link OutputBlobStore} 去重后只写哈希引用）。
+ * 积压达到批量大小时由生产者唤醒写入线程，否则按刷新间隔定时写入。缓冲区除条数上限外还按估算的内存占用设字节预算，
+ * 条数或字节任一超限时直接丢弃并计数，请求线程永远不会执行数据库写入。
+ * 应用关闭时写入线程退出前会写完缓冲区中剩余的日志。
+ *
+ * 主键由 {@link PooledIdAllocator} 按批预分配（PostgreSQL 每 50 行一次 nextval），
+ * 写入前即可知道每行的 id。写入成功的批次交给 {@link CommandStatsAggregator} 增量汇总执行统计。
+ */
+@Slf4j
+@Component
+public class AccessLogWriter {
+
+    static final String ID_SEQUENCE = "access_logs_id_seq";
+    static final int ID_ALLOCATION_SIZE = 50;
+    private static final String INSERT_PREFIX = "INSERT INTO access_logs (id, token_id, path, ip, method, "
+            + "user_agent, referer, source, forwarded_for, request_id, command_name, status_code, "
+            + "duration, created_at, search_text) VALUES ";
+    private static final String ROW_PLACEHOLDERS = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final int[] ROW_TYPES = { Types.BIGINT, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR,
+            Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR,
+            Types.VARCHAR, Types.INTEGER, Types.BIGINT, Types.TIMESTAMP, Types.VARCHAR };
+    private static final String PAYLOAD_INSERT_PREFIX = "INSERT INTO access_log_payloads (id, created_at, request, "
+            + "response, response_hash) VALUES ";
+    private static final String PAYLOAD_ROW_PLACEHOLDERS = "(?, ?, ?, ?, ?)";
+    private static final int[] PAYLOAD_ROW_TYPES = { Types.BIGINT, Types.TIMESTAMP, Types.VARCHAR, Types.VARCHAR,
+            Types.VARCHAR };
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+    /** 单条日志对象头、非字符串字段与引用的估算开销 */
+    private static final long ENTRY_OVERHEAD_BYTES = 256;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PooledIdAllocator idAllocator;
+    private final MpscRingBuffer<AccessLog> buffer;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    /** 高水位：积压超过容量的 3/4 视为写入跟不上 */
+    private final int highWatermark;
+    private final long maxPendingBytes;
+    /** 缓冲区中日志的估算内存占用，入队时预占、取出时释放 */
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final String fullBatchSql;
+
+    private final Counter written;
+    private final Counter dropped;
+    private final Counter failed;
+    private final Counter backpressure;
+    private final Timer flushTimer;
+
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+    private volatile boolean running;
+    private volatile Thread writerThread;
+    private CommandStatsAggregator statsAggregator;
+    private OutputBlobStore blobStore;
+
+    public AccessLogWriter(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+            @Value("${httprun.access-log.buffer-capacity:8192}") int bufferCapacity,
+            @Value("${httprun.access-log.batch-size:50}") int batchSize,
+            @Value("${httprun.access-log.flush-interval-ms:500}") long flushIntervalMs,
+            @Value("${httprun.access-log.buffer-max-bytes:67108864}") long maxPendingBytes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.idAllocator = new PooledIdAllocator(jdbcTemplate, ID_SEQUENCE, "access_logs", ID_ALLOCATION_SIZE);
+        this.buffer = new MpscRingBuffer<>(bufferCapacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.highWatermark = buffer.capacity() - buffer.capacity() / 4;
+        this.maxPendingBytes = maxPendingBytes;
+        this.fullBatchSql = insertSql(INSERT_PREFIX, ROW_PLACEHOLDERS, this.batchSize);
+
+        this.written = Counter.builder("httprun.accesslog.written")
+                .description("Access log rows written by the batch writer")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("httprun.accesslog.dropped")
+                .description("Access log entries dropped because the buffer was full or over its byte budget")
+                .register(meterRegistry);
+        this.failed = Counter.builder("httprun.accesslog.failed")
+                .description("Access log rows lost because a batch insert failed")
+                .register(meterRegistry);
+        this.backpressure = Counter.builder("httprun.accesslog.backpressure")
+                .description("Access log entries enqueued while the buffer was above its high watermark")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("httprun.accesslog.flush")
+                .description("Time spent writing one access log batch")
+                .register(meterRegistry);
+        Gauge.builder("httprun.accesslog.queue.size", buffer, MpscRingBuffer::size)
+                .description("Access log entries waiting to be written")
+                .register(meterRegistry);
+        Gauge.builder("httprun.accesslog.queue.bytes", pendingBytes, AtomicLong::get)
+                .description("Estimated heap bytes held by access log entries waiting to be written")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 写入成功的批次交给统计汇总（setter 注入使本组件先于汇总组件关闭，关闭时写完的日志仍会被汇总）
+     */
+    @Autowired(required = false)
+    public void setStatsAggregator(CommandStatsAggregator statsAggregator) {
+        this.statsAggregator = statsAggregator;
+    }
+
+    /**
+     * 响应内容去重存储；未注入时响应原样写入 access_log_payloads.response
+     */
+    @Autowired(required = false)
+    public void setBlobStore(OutputBlobStore blobStore) {
+        this.blobStore = blobStore;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        Thread thread = new Thread(this::writeLoop, "access-log-writer");
+        thread.setDaemon(true);
+        writerThread = thread;
+        thread.start();
+        log.info("Access log writer started (capacity={}, maxBytes={}, batchSize={}, flushIntervalMs={})",
+                buffer.capacity(), maxPendingBytes, batchSize, TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos));
+    }
+
+    /**
+     * 停止写入线程并写完剩余日志（在 DataSource 关闭之前执行）
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        Thread thread = writerThread;
+        if (thread == null) {
+            return;
+        }
+        LockSupport.unpark(thread);
+        try {
+            thread.join(SHUTDOWN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            log.warn("Access log writer did not finish within {}ms, {} entries may be lost",
+                    SHUTDOWN_TIMEOUT_MS, buffer.size());
+        }
+    }
+
+    /**
+     * 提交一条访问日志（非阻塞）
+     *
+     * @return 缓冲区已满或超出字节预算被丢弃时返回 false
+     */
+    public boolean enqueue(AccessLog accessLog) {
+        if (accessLog.getCreatedAt() == null) {
+            accessLog.setCreatedAt(LocalDateTime.now());
+        }
+        long bytes = estimateBytes(accessLog);
+        if (pendingBytes.addAndGet(bytes) > maxPendingBytes) {
+            pendingBytes.addAndGet(-bytes);
+            dropped.increment();
+            log.debug("Access log buffer over byte budget, dropped entry for path {}", accessLog.getPath());
+            return false;
+        }
+        if (!buffer.offer(accessLog)) {
+            pendingBytes.addAndGet(-bytes);
+            dropped.increment();
+            log.debug("Access log buffer full, dropped entry for path {}", accessLog.getPath());
+            return false;
+        }
+        int size = buffer.size();
+        if (size >= highWatermark) {
+            backpressure.increment();
+        }
+        if (size >= batchSize && wakeupPending.compareAndSet(false, true)) {
+            Thread thread = writerThread;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 当前积压的日志数量
+     */
+    public int pending() {
+        return buffer.size();
+    }
+
+    /**
+     * 当前积压日志的估算内存占用（字节）
+     */
+    public long pendingBytes() {
+        return pendingBytes.get();
+    }
+
+    private void writeLoop() {
+        List<AccessLog> batch = new ArrayList<>(batchSize);
+        while (running) {
+            if (buffer.size() < batchSize) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+            wakeupPending.set(false);
+            drain(batch);
+        }
+        // 关闭时写完剩余日志
+        drain(batch);
+        log.info("Access log writer stopped");
+    }
+
+    /**
+     * 按批量大小取出并写入缓冲区中的全部日志
+     */
+    void drain(List<AccessLog> batch) {
+        while (buffer.drainTo(batch, batchSize) > 0) {
+            long bytes = 0;
+            for (AccessLog entry : batch) {
+                bytes += estimateBytes(entry);
+            }
+            pendingBytes.addAndGet(-bytes);
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * 估算一条日志在缓冲区中的内存占用：固定开销加上各字符串字段按 UTF-16 计的长度
+     *
+     * 只读取入队前已确定的字段（search_text 在写入线程中才生成），入队与取出时的估算值一致。
+     */
+    static long estimateBytes(AccessLog entry) {
+        return ENTRY_OVERHEAD_BYTES + 2L * (length(entry.getRequest()) + length(entry.getResponse())
+                + length(entry.getPath()) + length(entry.getUserAgent()) + length(entry.getReferer())
+                + length(entry.getForwardedFor()) + length(entry.getCommandName()) + length(entry.getTokenId()));
+    }
+
+    private static long length(String s) {
+        return s != null ? s.length() : 0;
+    }
+
+    private void writeBatch(List<AccessLog> batch) {
+        int rows = batch.size();
+        Object[] args = new Object[rows * ROW_TYPES.length];
+        int[] types = new int[args.length];
+        long start = System.nanoTime();
+        int i = 0;
+        try {
+            for (AccessLog entry : batch) {
+                if (entry.getId() == null) {
+                    entry.setId(idAllocator.nextId());
+                }
+                args[i++] = entry.getId();
+                args[i++] = entry.getTokenId();
+                args[i++] = entry.getPath();
+                args[i++] = entry.getIp();
+                args[i++] = entry.getMethod();
+                args[i++] = entry.getUserAgent();
+                args[i++] = entry.getReferer();
+                args[i++] = entry.getSource();
+                args[i++] = entry.getForwardedFor();
+                args[i++] = entry.getRequestId();
+                args[i++] = entry.getCommandName();
+                args[i++] = entry.getStatusCode();
+                args[i++] = entry.getDuration();
+                args[i++] = Timestamp.valueOf(entry.getCreatedAt());
+                if (entry.getSearchText() == null) {
+                    entry.setSearchText(AccessLogSearchIndex.searchText(entry));
+                }
+                args[i++] = entry.getSearchText();
+            }
+            for (int row = 0; row < rows; row++) {
+                System.arraycopy(ROW_TYPES, 0, types, row * ROW_TYPES.length, ROW_TYPES.length);
+            }
+
+            // 先写内容再写元数据：元数据写入失败只会留下无主的内容行（随保留期清理），不会出现缺内容的日志
+            writePayloads(batch);
+            String sql = rows == batchSize ? fullBatchSql : insertSql(INSERT_PREFIX, ROW_PLACEHOLDERS, rows);
+            jdbcTemplate.update(sql, args, types);
+            written.increment(rows);
+        } catch (Exception e) {
+            failed.increment(rows);
+            log.warn("Failed to write {} access logs: {}", rows, e.getMessage());
+            return;
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (statsAggregator != null) {
+            try {
+                statsAggregator.record(batch);
+            } catch (Exception e) {
+                log.warn("Failed to aggregate command stats for {} access logs: {}", rows, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 以一条多行 INSERT 写入批次中有请求或响应内容的行，响应内容先存入 output_blobs，只写哈希引用
+     */
+    private void writePayloads(List<AccessLog> batch) {
+        List<String> hashes = null;
+        if (blobStore != null) {
+            List<String> responses = new ArrayList<>(batch.size());
+            for (AccessLog entry : batch) {
+                responses.add(entry.getResponse());
+            }
+            hashes = blobStore.store(responses);
+        }
+        List<Object> args = new ArrayList<>(batch.size() * PAYLOAD_ROW_TYPES.length);
+        for (int i = 0; i < batch.size(); i++) {
+            AccessLog entry = batch.get(i);
+            String hash = hashes != null ? hashes.get(i) : null;
+            if (entry.getRequest() != null || entry.getResponse() != null) {
+                args.add(entry.getId());
+                args.add(Timestamp.valueOf(entry.getCreatedAt()));
+                args.add(entry.getRequest());
+                args.add(hash == null ? entry.getResponse() : null);
+                args.add(hash);
+            }
+        }
+        int rows = args.size() / PAYLOAD_ROW_TYPES.length;
+        if (rows == 0) {
+            return;
+        }
+        int[] types = new int[args.size()];
+        for (int row = 0; row < rows; row++) {
+            System.arraycopy(PAYLOAD_ROW_TYPES, 0, types, row * PAYLOAD_ROW_TYPES.length, PAYLOAD_ROW_TYPES.length);
+        }
+        try {
+            jdbcTemplate.update(insertSql(PAYLOAD_INSERT_PREFIX, PAYLOAD_ROW_PLACEHOLDERS, rows), args.toArray(),
+                    types);
+        } catch (RuntimeException e) {
+            // 内容行未写入，撤回本批增加的引用
+            if (hashes != null) {
+                releaseQuietly(hashes);
+            }
+            throw e;
+        }
+    }
+
+    private void releaseQuietly(List<String> hashes) {
+        Map<String, Long> references = new HashMap<>();
+        for (String hash : hashes) {
+            if (hash != null) {
+                references.merge(hash, 1L, Long::sum);
+            }
+        }
+        try {
+            blobStore.release(references);
+        } catch (Exception e) {
+            log.warn("Failed to release {} output blob references: {}", references.size(), e.getMessage());
+        }
+    }
+
+    private static String insertSql(String prefix, String placeholders, int rows) {
+        StringBuilder sql = new StringBuilder(prefix.length() + rows * (placeholders.length() + 2));
+        sql.append(prefix);
+        for (int row = 0; row < rows; row++) {
+            if (row > 0) {
+                sql.append(", ");
+            }
+            sql.append(placeholders);
+        }
+        return sql.toString();
+    }
+}
@@ -16,12 +16,17 @@ import com.httprun.exception.BusinessException;
 import com.httprun.executor.CommandExecutor;
 import com.httprun.executor.CommandTemplate;
 import com.httprun.executor.LocalCommandExecutor;
+import com.httprun.executor.RenderedCommand;
 import com.httprun.executor.SshCommandExecutor;
 import com.httprun.repository.CommandRepository;
 import com.httprun.repository.CommandVersionRepository;
+import com.httprun.security.ExecutionRateLimiter;
+import com.httprun.security.SecurityUtils;
+import com.httprun.security.TokenPolicy;
 import com.httprun.service.CommandService;
 import com.httprun.util.CommandSecurityValidator;
 import com.httprun.util.CryptoUtils;
+import com.httprun.util.CurrentCommandHolder;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -33,7 +38,6 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -55,6 +59,10 @@ public class CommandServiceImpl implements CommandService {
     private final CryptoUtils cryptoUtils;
     private final CommandSecurityValidator securityValidator;
     private final ObjectMapper objectMapper;
+    private final ExecutionRateLimiter rateLimiter;
+    private final LiveExecutionStats liveExecutionStats;
+    private final ExecutionRecorder executionRecorder;
+    private final ExecutionOutputStore executionOutputStore;
 
     // 自注入代理引用，用于 importCommands 中绕过 self-call 限制，使每条命令拥有独立事务
     @Lazy
@@ -82,6 +90,8 @@ public class CommandServiceImpl implements CommandService {
         command.setRemoteConfig(encryptRemoteConfig(request.getRemoteConfig()));
         command.setGroupName(request.getGroupName());
         command.setTimeoutSeconds(request.getTimeoutSeconds() != null ? request.getTimeoutSeconds() : 30);
+        command.setRateLimitPerMinute(positiveOrNull(request.getRateLimitPerMinute()));
+        commandTemplate.applyDangerAnalysis(command);
 
         command = commandRepository.save(command);
         return toResponse(command);
@@ -99,8 +109,9 @@ public class CommandServiceImpl implements CommandService {
         Command command = commandRepository.findByName(name)
                 .orElseThrow(() -> new BusinessException("Command not found: " + name));
 
-        // 更新前保存版本快照
-        saveVersionSnapshot(command, request.getChangeNote());
+        // 更新前保存版本快照，当前配置版本号随之递增
+        Integer snapshotVersion = saveVersionSnapshot(command, request.getChangeNote());
+        command.setConfigVersion(snapshotVersion != null ? snapshotVersion + 1 : command.getConfigVersion() + 1);
 
         // 更新命令信息
         if (request.getPath() != null) {
@@ -128,6 +139,10 @@ public class CommandServiceImpl implements CommandService {
         if (request.getTimeoutSeconds() != null) {
             command.setTimeoutSeconds(request.getTimeoutSeconds());
         }
+        if (request.getRateLimitPerMinute() != null) {
+            command.setRateLimitPerMinute(positiveOrNull(request.getRateLimitPerMinute()));
+        }
+        commandTemplate.applyDangerAnalysis(command);
 
         command = commandRepository.save(command);
         return toResponse(command);
@@ -153,10 +168,12 @@ public class CommandServiceImpl implements CommandService {
 
     @Override
     @Transactional
-    public CommandExecutionResult runCommand(RunCommandRequest request, String tokenSubject, String allowedGroups) {
+    public CommandExecutionResult runCommand(RunCommandRequest request, TokenPolicy policy) {
         // 1. 查询命令
         Command command = commandRepository.findByName(request.getName())
                 .orElseThrow(() -> new BusinessException("Command not found: " + request.getName()));
+        // 登记给访问日志切面用于请求脱敏，避免再次查询
+        CurrentCommandHolder.set(command);
 
         // 2. 检查命令状态
         if (command.getStatus() != CommandStatus.ACTIVE) {
@@ -164,42 +181,32 @@ public class CommandServiceImpl implements CommandService {
         }
 
         // 3. 检查权限（优先级：admin > allowedGroups > subject 命令名列表）
-        if (tokenSubject != null && !tokenSubject.equals("admin")) {
-            boolean permitted = false;
-            if (allowedGroups != null && !allowedGroups.isBlank()) {
-                // 分组授权：命令所属分组在允许分组列表中
-                List<String> groups = Arrays.asList(allowedGroups.split(","));
-                permitted = command.getGroupName() != null && groups.contains(command.getGroupName());
-            }
-            if (!permitted) {
-                // 原有 subject 命令名列表校验（仅当 allowedGroups 未配置时）
-                if (allowedGroups == null || allowedGroups.isBlank()) {
-                    List<String> allowedCommands = Arrays.asList(tokenSubject.split(","));
-                    if (!allowedCommands.contains(command.getName())) {
-                        return CommandExecutionResult.error("Permission denied");
-                    }
-                } else {
-                    return CommandExecutionResult
-                            .error("Permission denied: command does not match token's allowed groups");
-                }
-            }
+        switch (policy.authorize(command.getName(), command.getGroupName())) {
+            case DENIED:
+                return CommandExecutionResult.error("Permission denied");
+            case DENIED_BY_GROUP:
+                return CommandExecutionResult
+                        .error("Permission denied: command does not match token's allowed groups");
+            default:
+                break;
         }
 
-        // 4. 验证参数
+        // 4. 频率限制（超限抛出 RateLimitExceededException，返回 429）
+        rateLimiter.acquire(policy, command);
+
+        // 5. 验证参数
         commandTemplate.validateParams(command, request);
 
-        // 5. 渲染命令模板（带脱敏）
-        String[] rendered = commandTemplate.renderWithMasking(command, request);
-        String actualCommand = rendered[0]; // 实际执行的命令
-        String maskedCommand = rendered[1]; // 脱敏后的日志
-        log.info("Executing command: {} (masked)", maskedCommand);
+        // 6. 渲染命令模板（预编译计划，同时产出 argv 与脱敏日志）
+        RenderedCommand rendered = commandTemplate.renderCommand(command, request);
+        log.info("Executing command: {} (masked)", rendered.maskedCommandLine());
 
-        // 6. 选择执行器并执行（null 视为本地执行）
+        // 7. 选择执行器并执行（null 视为本地执行）
         ExecutionMode mode = command.getExecutionMode() != null ? command.getExecutionMode() : ExecutionMode.LOCAL;
         CommandExecutor executor = selectExecutor(mode);
         int timeout = request.getTimeout() != null ? request.getTimeout() : command.getTimeoutSeconds();
 
-        // 7. SSH 模式：使用命令中持久化的 remoteConfig，支持 host/username 参数化模板（{{.host}} 等）
+        // 8. SSH 模式：使用命令中持久化的 remoteConfig，支持 host/username 参数化模板（{{.host}} 等）
         if (mode == ExecutionMode.SSH) {
             RemoteConfig cmdRemote = command.getRemoteConfig();
             if (cmdRemote == null) {
@@ -213,7 +220,37 @@ public class CommandServiceImpl implements CommandService {
             request.setRemoteConfig(resolvedRemote);
         }
 
-        return executor.execute(actualCommand, request, timeout);
+        LiveExecutionStats.Execution execution = liveExecutionStats.begin(command.getName());
+        CommandExecutionResult result = null;
+        try {
+            result = executor.execute(rendered, request, timeout);
+            return result;
+        } finally {
+            execution.finish(result == null || result.getExitCode() != 0 || result.getError() != null);
+            if (result != null) {
+                recordExecution(command, mode, request, result);
+            }
+        }
+    }
+
+    /**
+     * 登记结构化执行记录，并把落盘的完整输出归档到该记录下；失败不影响执行结果
+     */
+    private void recordExecution(Command command, ExecutionMode mode, RunCommandRequest request,
+            CommandExecutionResult result) {
+        Long executionId = null;
+        String tokenId = SecurityUtils.getCurrentUserName();
+        try {
+            String targetHost = mode == ExecutionMode.SSH && request.getRemoteConfig() != null
+                    ? request.getRemoteConfig().getHost()
+                    : null;
+            executionId = executionRecorder.record(command.getName(), command.getConfigVersion(), mode, targetHost,
+                    tokenId, result);
+        } catch (Exception e) {
+            log.warn("Failed to record execution of {}: {}", command.getName(), e.getMessage());
+        }
+        executionOutputStore.commit(executionId, tokenId, result);
+        result.setExecutionId(executionId);
     }
 
     private CommandExecutor selectExecutor(ExecutionMode mode) {
@@ -241,9 +278,9 @@ public class CommandServiceImpl implements CommandService {
             });
         }
         RemoteConfig resolved = new RemoteConfig();
-        resolved.setHost(renderSimpleTemplate(config.getHost(), paramMap));
+        resolved.setHost(CommandTemplate.renderInline(config.getHost(), paramMap));
         resolved.setPort(config.getPort());
-        resolved.setUsername(renderSimpleTemplate(config.getUsername(), paramMap));
+        resolved.setUsername(CommandTemplate.renderInline(config.getUsername(), paramMap));
         resolved.setPassword(config.getPassword());
         resolved.setPrivateKey(config.getPrivateKey());
         resolved.setSshKeyId(config.getSshKeyId());
@@ -251,26 +288,6 @@ public class CommandServiceImpl implements CommandService {
         return resolved;
     }
 
-    /**
-     * 简单模板渲染：将 {{.varName}} 或 {{varName}} 替换为 paramMap 中的值。
-     */
-    private String renderSimpleTemplate(String template, Map<String, String> paramMap) {
-        if (template == null || !template.contains("{{")) {
-            return template;
-        }
-        java.util.regex.Pattern pattern = java.util.regex.Pattern
-                .compile("\\{\\{\\s*\\.?([a-zA-Z_][a-zA-Z0-9_]*)\\s*}}");
-        java.util.regex.Matcher matcher = pattern.matcher(template);
-        StringBuffer sb = new StringBuffer();
-        while (matcher.find()) {
-            String varName = matcher.group(1);
-            String value = paramMap.getOrDefault(varName, "");
-            matcher.appendReplacement(sb, java.util.regex.Matcher.quoteReplacement(value));
-        }
-        matcher.appendTail(sb);
-        return sb.toString();
-    }
-
     /**
      * 更新时：合并 host/port/username，仅对新填写的密码/私钥加密，已有加密值保留（避免二次加密）
      */
@@ -428,6 +445,7 @@ public class CommandServiceImpl implements CommandService {
         req.setExecutionMode(command.getExecutionMode());
         req.setGroupName(command.getGroupName());
         req.setTimeoutSeconds(command.getTimeoutSeconds());
+        req.setRateLimitPerMinute(command.getRateLimitPerMinute());
         // 导出远程配置时，密码和私钥置空（避免暴露加密密文，需在目标系统重新配置）
         if (command.getRemoteConfig() != null) {
             RemoteConfig exported = new RemoteConfig();
@@ -456,19 +474,30 @@ public class CommandServiceImpl implements CommandService {
         response.setRemoteConfig(maskRemoteConfig(command.getRemoteConfig()));
         response.setGroupName(command.getGroupName());
         response.setTimeoutSeconds(command.getTimeoutSeconds());
+        response.setRateLimitPerMinute(command.getRateLimitPerMinute());
         response.setCreatedAt(command.getCreatedAt());
         response.setUpdatedAt(command.getUpdatedAt());
 
-        // 设置危险等级和警告信息
-        int dangerLevel = commandTemplate.detectDangerLevel(command);
-        response.setDangerLevel(dangerLevel);
-        if (dangerLevel > 0) {
-            response.setDangerWarning(commandTemplate.getDangerWarning(command));
+        // 设置危险等级和警告信息（创建/更新时已持久化，尚未回填的历史数据才即时计算）
+        if (command.getDangerLevel() != null) {
+            response.setDangerLevel(command.getDangerLevel());
+            response.setDangerWarning(command.getDangerWarning());
+        } else {
+            int dangerLevel = commandTemplate.detectDangerLevel(command);
+            response.setDangerLevel(dangerLevel);
+            response.setDangerWarning(commandTemplate.getDangerWarning(command, dangerLevel));
         }
 
         return response;
     }
 
+    /**
+     * 频率限制：非正数视为不限流
+     */
+    private static Integer positiveOrNull(Integer value) {
+        return value != null && value > 0 ? value : null;
+    }
+
     /**
      * 加密远程配置中的敏感信息（密码和私钥）
      */
@@ -523,8 +552,10 @@ public class CommandServiceImpl implements CommandService {
 
     /**
      * 在更新前保存当前命令配置到版本历史
+     *
+     * @return 快照的版本号，保存失败时返回 null
      */
-    private void saveVersionSnapshot(Command command, String changeNote) {
+    private Integer saveVersionSnapshot(Command command, String changeNote) {
         try {
             CreateCommandRequest snapshot = toExportRequest(command);
             String snapshotJson = objectMapper.writeValueAsString(snapshot);
@@ -543,8 +574,10 @@ public class CommandServiceImpl implements CommandService {
             commandVersionRepository.save(version);
 
             log.debug("Saved version {} for command '{}'", nextVersion, command.getName());
+            return nextVersion;
         } catch (Exception e) {
             log.warn("Failed to save version snapshot for command '{}': {}", command.getName(), e.getMessage());
+            return null;
         }
     }
 
@@ -0,0 +1,449 @@
+package com.httprun.service.impl;
+
+import com.httprun.entity.AccessLog;
+import com.httprun.util.LatencySketch;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 命令执行统计汇总
+ *
+ * 访问日志批量写入成功后，命令执行记录按 (小时/天, 命令, Token, 状态码) 在内存中聚合，
+ * 定时合并进 command_stats_rollups（读出、合并草图、写回，PostgreSQL 下 SELECT ... FOR UPDATE 锁行，
+ * 多节点并发合并同一行不会丢失更新）。合并失败的增量放回内存，下次重试。
+ *
+ * created_at 早于 command_stats_state.rollup_start 的历史日志由启动后的后台回填任务按 (created_at, id) 键集分批汇总，
+ * 每批与回填游标在同一事务提交，可中断续跑且不会重复计数。主键按节点成块预分配，与写入顺序不一致，
+ * 因此早于 rollup_start 却迟到写入的日志按其位置分流：落在游标之后的留给回填读取，
+ * 游标已越过（或回填已完成）的由写入路径计入；批次执行期间到达的先暂存，批次提交后按新游标判断。
+ */
+@Slf4j
+@Component
+public class CommandStatsAggregator implements ApplicationRunner {
+
+    public static final String HOUR = "HOUR";
+    public static final String DAY = "DAY";
+    static final int STATE_ID = 1;
+
+    private static final Comparator<RollupKey> KEY_ORDER = Comparator.comparing(RollupKey::granularity)
+            .thenComparing(RollupKey::bucketStart)
+            .thenComparing(RollupKey::commandName)
+            .thenComparing(RollupKey::tokenId)
+            .thenComparingInt(RollupKey::statusCode);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int backfillChunkSize;
+    private final int hourlyRetentionDays;
+    private final Counter mergeFailures;
+
+    private final Object lock = new Object();
+    private Map<RollupKey, RollupDelta> pending = new HashMap<>();
+    private volatile LocalDateTime rollupStart;
+    private Boolean postgres;
+
+    /** 以下回填状态只在 lock 内读写：已提交的回填游标（尚未读取时为 null）、是否已完成、是否有批次执行中 */
+    private BackfillCursor backfillCursor;
+    private boolean backfillDone;
+    private boolean backfillChunkRunning;
+    /** 回填批次执行期间到达的迟到日志 */
+    private final List<AccessLog> lateDuringChunk = new ArrayList<>();
+
+    public CommandStatsAggregator(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${httprun.stats.backfill-chunk-size:5000}") int backfillChunkSize,
+            @Value("${httprun.stats.hourly-retention-days:90}") int hourlyRetentionDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.backfillChunkSize = Math.max(1, backfillChunkSize);
+        this.hourlyRetentionDays = hourlyRetentionDays;
+        this.mergeFailures = Counter.builder("httprun.stats.rollup.failed")
+                .description("Command stats rollup merges that failed and were re-queued")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 启动后在后台回填历史日志
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        Thread thread = new Thread(this::backfill, "command-stats-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 汇总一批已写入的访问日志（由 AccessLogWriter 写入线程调用）
+     */
+    public void record(List<AccessLog> batch) {
+        LocalDateTime start = rollupStart();
+        if (start == null) {
+            return;
+        }
+        synchronized (lock) {
+            for (AccessLog entry : batch) {
+                // 非命令执行的请求不计入
+                if (entry.getCommandName() == null || entry.getCommandName().isEmpty()) {
+                    continue;
+                }
+                if (!entry.getCreatedAt().isBefore(start)) {
+                    accumulate(pending, entry);
+                } else if (backfillDone || (backfillCursor != null && backfillCursor.covers(entry))) {
+                    // rollup_start 之前的迟到日志，回填已越过其位置
+                    accumulate(pending, entry);
+                } else if (backfillChunkRunning) {
+                    lateDuringChunk.add(entry);
+                }
+                // 其余情况回填尚未到达该位置，之后的批次会读到它
+            }
+        }
+    }
+
+    /**
+     * 将内存中的增量合并进汇总表 - 默认每 10 秒执行
+     */
+    @Scheduled(fixedDelayString = "${httprun.stats.flush-interval-ms:10000}")
+    public void flush() {
+        Map<RollupKey, RollupDelta> deltas;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            deltas = pending;
+            pending = new HashMap<>();
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> mergeAll(deltas));
+        } catch (Exception e) {
+            mergeFailures.increment();
+            log.warn("Failed to merge {} command stats rollups, will retry: {}", deltas.size(), e.getMessage());
+            synchronized (lock) {
+                deltas.forEach((key, delta) -> pending.merge(key, delta, RollupDelta::merge));
+            }
+        }
+    }
+
+    /**
+     * 关闭前合并剩余增量（AccessLogWriter 依赖本组件，先于本组件关闭并写完缓冲区）
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * 清理过期的小时级汇总（天级汇总永久保留）- 每天凌晨 3:30 执行
+     */
+    @Scheduled(cron = "0 30 3 * * ?")
+    public void purgeHourlyRollups() {
+        int deleted = jdbcTemplate.update("DELETE FROM command_stats_rollups WHERE granularity = ? AND bucket_start < ?",
+                HOUR, Timestamp.valueOf(LocalDateTime.now().minusDays(hourlyRetentionDays)));
+        if (deleted > 0) {
+            log.info("Purged {} hourly command stats rollups", deleted);
+        }
+    }
+
+    /**
+     * 回填 rollup_start 之前的命令执行日志，直到完成（启动后由后台线程调用）
+     */
+    public void backfill() {
+        try {
+            if (rollupStart() == null) {
+                return;
+            }
+            long total = 0;
+            while (true) {
+                int rows = runBackfillChunk();
+                if (rows == 0) {
+                    break;
+                }
+                total += rows;
+            }
+            if (total > 0) {
+                log.info("Backfilled command stats rollups from {} access logs", total);
+            }
+        } catch (Exception e) {
+            log.warn("Command stats backfill interrupted, will resume on next startup", e);
+        }
+    }
+
+    /**
+     * 在事务中回填一批，提交后发布新游标，并计入批次执行期间到达、已被游标越过却未被本批读到的迟到日志
+     *
+     * @return 本批汇总的日志数，回填完成时返回 0
+     */
+    private int runBackfillChunk() {
+        synchronized (lock) {
+            backfillChunkRunning = true;
+        }
+        ChunkResult result = null;
+        try {
+            result = transactionTemplate.execute(status -> backfillChunk());
+            return result != null ? result.ids().size() : 0;
+        } finally {
+            synchronized (lock) {
+                backfillChunkRunning = false;
+                if (result != null) {
+                    backfillCursor = result.cursor();
+                    backfillDone = result.done();
+                    for (AccessLog entry : lateDuringChunk) {
+                        if ((backfillDone || (backfillCursor != null && backfillCursor.covers(entry)))
+                                && !result.ids().contains(entry.getId())) {
+                            accumulate(pending, entry);
+                        }
+                    }
+                }
+                // 事务失败时游标未推进，暂存的日志仍在游标之后，下次回填会读到
+                lateDuringChunk.clear();
+            }
+        }
+    }
+
+    /**
+     * 回填一批：锁定状态行，读取游标之后的一批日志并合并，推进游标
+     */
+    private ChunkResult backfillChunk() {
+        BackfillState state = jdbcTemplate.queryForObject("SELECT rollup_start, backfill_last_id, backfilled_at, "
+                + "backfill_cursor_at, backfill_cursor_id FROM command_stats_state WHERE id = ?" + forUpdate(),
+                (rs, rowNum) -> {
+                    Timestamp cursorAt = rs.getTimestamp(4);
+                    return new BackfillState(rs.getTimestamp(1).toLocalDateTime(), rs.getLong(2),
+                            rs.getTimestamp(3) != null,
+                            cursorAt != null ? new BackfillCursor(cursorAt.toLocalDateTime(), rs.getLong(5)) : null);
+                }, STATE_ID);
+        if (state == null) {
+            return null;
+        }
+        if (state.completed()) {
+            return new ChunkResult(Set.of(), state.cursor(), true);
+        }
+        String sql = "SELECT id, token_id, command_name, status_code, duration, created_at FROM access_logs "
+                + "WHERE created_at < ? AND id > ? AND command_name IS NOT NULL AND command_name <> '' ";
+        List<Object> args = new ArrayList<>(List.of(Timestamp.valueOf(state.rollupStart()), state.legacyLastId()));
+        if (state.cursor() != null) {
+            sql += "AND (created_at > ? OR (created_at = ? AND id > ?)) ";
+            Timestamp cursorAt = Timestamp.valueOf(state.cursor().createdAt());
+            args.add(cursorAt);
+            args.add(cursorAt);
+            args.add(state.cursor().id());
+        }
+        args.add(backfillChunkSize);
+        List<AccessLog> rows = jdbcTemplate.query(sql + "ORDER BY created_at, id LIMIT ?",
+                (rs, rowNum) -> toAccessLog(rs), args.toArray());
+        if (rows.isEmpty()) {
+            jdbcTemplate.update("UPDATE command_stats_state SET backfilled_at = ? WHERE id = ?",
+                    Timestamp.valueOf(LocalDateTime.now()), STATE_ID);
+            return new ChunkResult(Set.of(), state.cursor(), true);
+        }
+        Map<RollupKey, RollupDelta> deltas = new HashMap<>();
+        Set<Long> ids = new HashSet<>();
+        for (AccessLog row : rows) {
+            accumulate(deltas, row);
+            ids.add(row.getId());
+        }
+        mergeAll(deltas);
+        AccessLog last = rows.get(rows.size() - 1);
+        jdbcTemplate.update("UPDATE command_stats_state SET backfill_cursor_at = ?, backfill_cursor_id = ? "
+                + "WHERE id = ?", Timestamp.valueOf(last.getCreatedAt()), last.getId(), STATE_ID);
+        return new ChunkResult(ids, new BackfillCursor(last.getCreatedAt(), last.getId()), false);
+    }
+
+    /**
+     * 历史日志是否已回填完成（归档任务在此之前不移走数据库中的日志）
+     */
+    public boolean isBackfillComplete() {
+        try {
+            Integer completed = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM command_stats_state "
+                    + "WHERE id = ? AND backfilled_at IS NOT NULL", Integer.class, STATE_ID);
+            return completed != null && completed > 0;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * 读取增量汇总起点；首次运行（SQLite 开发库，无迁移脚本）时以当前时间初始化
+     */
+    LocalDateTime rollupStart() {
+        LocalDateTime start = rollupStart;
+        if (start != null) {
+            return start;
+        }
+        try {
+            jdbcTemplate.update("INSERT INTO command_stats_state (id, rollup_start, backfill_last_id) "
+                    + "VALUES (?, ?, 0) ON CONFLICT DO NOTHING", STATE_ID, Timestamp.valueOf(LocalDateTime.now()));
+            Timestamp stored = jdbcTemplate.queryForObject(
+                    "SELECT rollup_start FROM command_stats_state WHERE id = ?", Timestamp.class, STATE_ID);
+            rollupStart = stored != null ? stored.toLocalDateTime() : null;
+        } catch (Exception e) {
+            log.warn("Command stats state unavailable, skipping rollup: {}", e.getMessage());
+        }
+        return rollupStart;
+    }
+
+    /**
+     * 按固定顺序逐行合并（多节点同时合并时加锁顺序一致，不会死锁）
+     */
+    private void mergeAll(Map<RollupKey, RollupDelta> deltas) {
+        Map<RollupKey, RollupDelta> ordered = new TreeMap<>(KEY_ORDER);
+        ordered.putAll(deltas);
+        ordered.forEach(this::merge);
+    }
+
+    private void merge(RollupKey key, RollupDelta delta) {
+        Object[] keyArgs = { key.granularity(), Timestamp.valueOf(key.bucketStart()), key.commandName(),
+                key.tokenId(), key.statusCode() };
+        String where = " WHERE granularity = ? AND bucket_start = ? AND command_name = ? AND token_id = ? "
+                + "AND status_code = ?";
+        jdbcTemplate.update("INSERT INTO command_stats_rollups (granularity, bucket_start, command_name, token_id, "
+                + "status_code, exec_count, error_count, duration_sum) VALUES (?, ?, ?, ?, ?, 0, 0, 0) "
+                + "ON CONFLICT DO NOTHING", keyArgs);
+        RollupDelta current = jdbcTemplate.queryForObject("SELECT exec_count, error_count, duration_sum, duration_min, "
+                + "duration_max, latency_sketch FROM command_stats_rollups" + where + forUpdate(),
+                (rs, rowNum) -> {
+                    RollupDelta stored = new RollupDelta();
+                    stored.count = rs.getLong(1);
+                    stored.errorCount = rs.getLong(2);
+                    stored.durationSum = rs.getLong(3);
+                    stored.durationMin = nullableLong(rs, 4);
+                    stored.durationMax = nullableLong(rs, 5);
+                    stored.sketch = LatencySketch.fromBytes(rs.getBytes(6));
+                    return stored;
+                }, keyArgs);
+        RollupDelta merged = current.merge(delta);
+        jdbcTemplate.update("UPDATE command_stats_rollups SET exec_count = ?, error_count = ?, duration_sum = ?, "
+                + "duration_min = ?, duration_max = ?, latency_sketch = ?" + where,
+                merged.count, merged.errorCount, merged.durationSum, merged.durationMin, merged.durationMax,
+                merged.sketch.toBytes(), key.granularity(), Timestamp.valueOf(key.bucketStart()), key.commandName(),
+                key.tokenId(), key.statusCode());
+    }
+
+    private static void accumulate(Map<RollupKey, RollupDelta> deltas, AccessLog entry) {
+        String tokenId = entry.getTokenId() != null ? entry.getTokenId() : "";
+        int statusCode = entry.getStatusCode() != null ? entry.getStatusCode() : 0;
+        LocalDateTime hour = entry.getCreatedAt().truncatedTo(ChronoUnit.HOURS);
+        deltas.computeIfAbsent(new RollupKey(HOUR, hour, entry.getCommandName(), tokenId, statusCode),
+                k -> new RollupDelta()).add(statusCode, entry.getDuration());
+        deltas.computeIfAbsent(new RollupKey(DAY, hour.truncatedTo(ChronoUnit.DAYS), entry.getCommandName(),
+                tokenId, statusCode), k -> new RollupDelta()).add(statusCode, entry.getDuration());
+    }
+
+    private static AccessLog toAccessLog(ResultSet rs) throws SQLException {
+        AccessLog row = new AccessLog();
+        row.setId(rs.getLong(1));
+        row.setTokenId(rs.getString(2));
+        row.setCommandName(rs.getString(3));
+        int status = rs.getInt(4);
+        row.setStatusCode(rs.wasNull() ? null : status);
+        row.setDuration(nullableLong(rs, 5));
+        row.setCreatedAt(rs.getTimestamp(6).toLocalDateTime());
+        return row;
+    }
+
+    private static Long nullableLong(ResultSet rs, int column) throws SQLException {
+        long value = rs.getLong(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private String forUpdate() {
+        if (postgres == null) {
+            postgres = "PostgreSQL".equalsIgnoreCase(jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName()));
+        }
+        return postgres ? " FOR UPDATE" : "";
+    }
+
+    record RollupKey(String granularity, LocalDateTime bucketStart, String commandName, String tokenId,
+            int statusCode) {
+    }
+
+    /**
+     * @param legacyLastId V15 之前按 id 回填的进度，id 不大于它的日志已计入
+     */
+    private record BackfillState(LocalDateTime rollupStart, long legacyLastId, boolean completed,
+            BackfillCursor cursor) {
+    }
+
+    /**
+     * 回填游标：已汇总到的 (created_at, id) 位置
+     */
+    private record BackfillCursor(LocalDateTime createdAt, long id) {
+
+        /**
+         * 日志是否位于游标处或之前（回填已越过）
+         */
+        boolean covers(AccessLog entry) {
+            int order = entry.getCreatedAt().compareTo(createdAt);
+            return order < 0 || (order == 0 && entry.getId() != null && entry.getId() <= id);
+        }
+    }
+
+    /**
+     * 一批回填的结果
+     *
+     * @param ids 本批读取的日志 id
+     */
+    private record ChunkResult(Set<Long> ids, BackfillCursor cursor, boolean done) {
+    }
+
+    /**
+     * 一个汇总行的增量（耗时为空的记录只计次数，不计入耗时统计）
+     */
+    static final class RollupDelta {
+        long count;
+        long errorCount;
+        long durationSum;
+        Long durationMin;
+        Long durationMax;
+        LatencySketch sketch = new LatencySketch();
+
+        void add(int statusCode, Long duration) {
+            count++;
+            if (statusCode >= 400) {
+                errorCount++;
+            }
+            if (duration != null) {
+                durationSum += duration;
+                durationMin = durationMin == null ? duration : Math.min(durationMin, duration);
+                durationMax = durationMax == null ? duration : Math.max(durationMax, duration);
+                sketch.add(duration);
+            }
+        }
+
+        RollupDelta merge(RollupDelta other) {
+            count += other.count;
+            errorCount += other.errorCount;
+            durationSum += other.durationSum;
+            durationMin = durationMin == null ? other.durationMin
+                    : other.durationMin == null ? durationMin : Math.min(durationMin, other.durationMin);
+            durationMax = durationMax == null ? other.durationMax
+                    : other.durationMax == null ? durationMax : Math.max(durationMax, other.durationMax);
+            sketch.merge(other.sketch);
+            return this;
+        }
+    }
+}
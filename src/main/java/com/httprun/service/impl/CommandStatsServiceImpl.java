@@ -0,0 +1,155 @@
+package com.httprun.service.impl;
+
+import com.httprun.dto.response.CommandStatsResponse;
+import com.httprun.dto.response.LiveCommandStatsResponse;
+import com.httprun.entity.CommandStatsRollup;
+import com.httprun.enums.ErrorCode;
+import com.httprun.exception.BusinessException;
+import com.httprun.repository.CommandStatsRollupRepository;
+import com.httprun.service.CommandStatsService;
+import com.httprun.util.LatencySketch;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * 命令执行统计服务实现
+ *
+ * 只读取 command_stats_rollups，查询范围内的汇总行数与访问日志量无关；
+ * 最近约 10 秒内（httprun.stats.flush-interval-ms）写入的执行记录尚在内存中，不计入结果。
+ * 实时统计来自当前节点的 {@link LiveExecutionStats}。
+ */
+@Service
+@RequiredArgsConstructor
+public class CommandStatsServiceImpl implements CommandStatsService {
+
+    private final CommandStatsRollupRepository rollupRepository;
+    private final LiveExecutionStats liveExecutionStats;
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<CommandStatsResponse> summarize(String granularity, LocalDateTime start, LocalDateTime end,
+            String commandName) {
+        String level = normalizeGranularity(granularity);
+        LocalDateTime to = end != null ? end : LocalDateTime.now();
+        LocalDateTime from = start != null ? start : to.minusDays(7);
+        List<CommandStatsRollup> rows = commandName != null && !commandName.isEmpty()
+                ? rollupRepository.findByCommandNameAndGranularityAndBucketStartGreaterThanEqualAndBucketStartLessThan(
+                        commandName, level, from, to)
+                : rollupRepository.findByGranularityAndBucketStartGreaterThanEqualAndBucketStartLessThan(level, from, to);
+        List<CommandStatsResponse> result = aggregate(rows, CommandStatsRollup::getCommandName, false);
+        result.sort(Comparator.comparingLong(CommandStatsResponse::getCount).reversed()
+                .thenComparing(CommandStatsResponse::getCommandName));
+        return result;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<CommandStatsResponse> series(String commandName, String granularity, LocalDateTime start,
+            LocalDateTime end) {
+        if (commandName == null || commandName.isEmpty()) {
+            throw new BusinessException(ErrorCode.INVALID_PARAMETER, "commandName is required");
+        }
+        String level = normalizeGranularity(granularity);
+        LocalDateTime to = end != null ? end : LocalDateTime.now();
+        LocalDateTime from = start != null ? start
+                : CommandStatsAggregator.HOUR.equals(level) ? to.minusHours(24) : to.minusDays(30);
+        List<CommandStatsRollup> rows = rollupRepository
+                .findByCommandNameAndGranularityAndBucketStartGreaterThanEqualAndBucketStartLessThan(
+                        commandName, level, from, to);
+        return aggregate(rows, CommandStatsRollup::getBucketStart, true);
+    }
+
+    @Override
+    public List<LiveCommandStatsResponse> live() {
+        return liveExecutionStats.snapshot();
+    }
+
+    /**
+     * 按分组键合并汇总行（跨 Token、状态码），分位数由合并后的草图估算
+     */
+    private static <K extends Comparable<K>> List<CommandStatsResponse> aggregate(List<CommandStatsRollup> rows,
+            Function<CommandStatsRollup, K> groupBy, boolean withBucket) {
+        Map<K, Accumulator> groups = new TreeMap<>();
+        for (CommandStatsRollup row : rows) {
+            groups.computeIfAbsent(groupBy.apply(row), k -> new Accumulator(row)).add(row);
+        }
+        List<CommandStatsResponse> result = new ArrayList<>(groups.size());
+        for (Accumulator group : groups.values()) {
+            result.add(group.toResponse(withBucket));
+        }
+        return result;
+    }
+
+    private static String normalizeGranularity(String granularity) {
+        String level = granularity != null ? granularity.toUpperCase(Locale.ROOT) : CommandStatsAggregator.DAY;
+        if (!CommandStatsAggregator.HOUR.equals(level) && !CommandStatsAggregator.DAY.equals(level)) {
+            throw new BusinessException(ErrorCode.INVALID_PARAMETER, "granularity must be HOUR or DAY");
+        }
+        return level;
+    }
+
+    private static final class Accumulator {
+        private final String commandName;
+        private final LocalDateTime bucketStart;
+        private final LatencySketch sketch = new LatencySketch();
+        private long count;
+        private long errorCount;
+        private long durationSum;
+        private Long durationMin;
+        private Long durationMax;
+
+        Accumulator(CommandStatsRollup first) {
+            this.commandName = first.getCommandName();
+            this.bucketStart = first.getBucketStart();
+        }
+
+        void add(CommandStatsRollup row) {
+            count += row.getExecCount();
+            errorCount += row.getErrorCount();
+            durationSum += row.getDurationSum();
+            if (row.getDurationMin() != null) {
+                durationMin = durationMin == null ? row.getDurationMin() : Math.min(durationMin, row.getDurationMin());
+            }
+            if (row.getDurationMax() != null) {
+                durationMax = durationMax == null ? row.getDurationMax() : Math.max(durationMax, row.getDurationMax());
+            }
+            sketch.merge(LatencySketch.fromBytes(row.getLatencySketch()));
+        }
+
+        CommandStatsResponse toResponse(boolean withBucket) {
+            long timed = sketch.getCount();
+            return CommandStatsResponse.builder()
+                    .commandName(commandName)
+                    .bucketStart(withBucket ? bucketStart : null)
+                    .count(count)
+                    .errorCount(errorCount)
+                    .avgDuration(timed > 0 ? Math.round((double) durationSum / timed) : null)
+                    .minDuration(durationMin)
+                    .maxDuration(durationMax)
+                    .p50Duration(clamp(sketch.quantile(0.5)))
+                    .p95Duration(clamp(sketch.quantile(0.95)))
+                    .p99Duration(clamp(sketch.quantile(0.99)))
+                    .build();
+        }
+
+        /**
+         * 分位数估算值限制在实际最小 / 最大耗时之间
+         */
+        private Long clamp(Long estimate) {
+            if (estimate == null || durationMin == null || durationMax == null) {
+                return estimate;
+            }
+            return Math.max(durationMin, Math.min(durationMax, estimate));
+        }
+    }
+}
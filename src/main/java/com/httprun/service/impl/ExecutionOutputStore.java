@@ -0,0 +1,160 @@
+package com.httprun.service.impl;
+
+import com.httprun.config.ExecutionOutputConfig;
+import com.httprun.dto.response.CommandExecutionResult;
+import com.httprun.enums.OutputStreamType;
+import com.httprun.util.OutputSpillFile;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 落盘的命令完整输出存储
+ *
+ * 执行器把超过阈值的输出写入临时目录（httprun.execution-output.dir/tmp），执行结束后按执行记录 ID
+ * 移动到 {@code <dir>/<id / 10000>/<id>.stdout|stderr}（连同记录了归属 Token 的 .idx 行索引）；
+ * 没有执行记录的输出直接删除（记入告警日志并计入 httprun.execution.output.discarded），执行记录批量写入失败时由 {@link ExecutionRecorder} 调用 {@link #delete} 清理。
+ * 超过保留期的文件与残留的临时文件由定时任务删除。文件保存在本节点磁盘上。
+ */
+@Slf4j
+@Component
+public class ExecutionOutputStore {
+
+    private static final long SHARD_SIZE = 10_000;
+    private static final Duration TEMP_FILE_MAX_AGE = Duration.ofDays(1);
+
+    private final ExecutionOutputConfig config;
+    private final Path root;
+    private final Counter spilled;
+    private final Counter spilledBytes;
+    private final Counter purged;
+    private final Counter discarded;
+
+    public ExecutionOutputStore(ExecutionOutputConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.root = Path.of(config.getDir());
+        this.spilled = Counter.builder("httprun.execution.output.spilled")
+                .description("Command outputs spilled to disk because they exceeded the inline threshold")
+                .register(meterRegistry);
+        this.spilledBytes = Counter.builder("httprun.execution.output.spilled.bytes")
+                .description("Bytes of command output kept on disk")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.purged = Counter.builder("httprun.execution.output.purged")
+                .description("Spilled output files deleted by retention")
+                .register(meterRegistry);
+        this.discarded = Counter.builder("httprun.execution.output.discarded")
+                .description("Spilled outputs deleted because their execution record was dropped")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 把执行结果中的落盘输出归档到执行记录下
+     *
+     * @param executionId 执行记录 ID，为 null（记录被丢弃）时删除落盘文件
+     * @param owner       执行者的 Token 名称，读取输出时据此鉴权
+     */
+    public void commit(Long executionId, String owner, CommandExecutionResult result) {
+        commit(executionId, owner, OutputStreamType.STDOUT, result.getStdoutSpill());
+        commit(executionId, owner, OutputStreamType.STDERR, result.getStderrSpill());
+        result.setStdoutSpill(null);
+        result.setStderrSpill(null);
+    }
+
+    private void commit(Long executionId, String owner, OutputStreamType type, OutputSpillFile spill) {
+        if (spill == null) {
+            return;
+        }
+        if (executionId == null) {
+            // 执行记录缓冲区已满被丢弃，输出没有可引用的 ID
+            log.warn("Discarded {} bytes of {} because the execution record was dropped", spill.size(),
+                    type.getSuffix());
+            discarded.increment();
+            spill.delete();
+            return;
+        }
+        try {
+            spill.moveTo(path(executionId, type), owner);
+            spilled.increment();
+            spilledBytes.increment(spill.size());
+        } catch (IOException e) {
+            log.warn("Failed to store {} of execution {}: {}", type.getSuffix(), executionId, e.getMessage());
+            spill.delete();
+        }
+    }
+
+    /**
+     * 执行输出的落盘文件，不存在（未超过阈值或已过期）时返回 null
+     */
+    public Path locate(long executionId, OutputStreamType type) {
+        Path path = path(executionId, type);
+        return Files.isRegularFile(path) ? path : null;
+    }
+
+    /**
+     * 删除执行记录的全部落盘输出（执行记录未能入库时调用）
+     */
+    public void delete(long executionId) {
+        for (OutputStreamType type : OutputStreamType.values()) {
+            OutputSpillFile.deleteQuietly(path(executionId, type));
+        }
+    }
+
+    /**
+     * 删除超过保留期的输出与残留的临时文件 - 每小时第 50 分钟执行
+     *
+     * @return 删除的输出文件数
+     */
+    @Scheduled(cron = "0 50 * * * ?")
+    public int purgeExpired() {
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        Instant now = Instant.now();
+        FileTime outputCutoff = FileTime.from(now.minus(Duration.ofDays(config.getRetentionDays())));
+        FileTime tempCutoff = FileTime.from(now.minus(TEMP_FILE_MAX_AGE));
+        Path tempDir = config.spillDirectory();
+        int deleted = 0;
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root, 2)) {
+            files = walk.filter(Files::isRegularFile)
+                    .filter(file -> !file.getFileName().toString().endsWith(".idx"))
+                    .toList();
+        } catch (IOException e) {
+            log.warn("Failed to scan execution output directory {}: {}", root, e.getMessage());
+            return 0;
+        }
+        for (Path file : files) {
+            try {
+                boolean temp = tempDir != null && file.getParent().equals(tempDir);
+                if (Files.getLastModifiedTime(file).compareTo(temp ? tempCutoff : outputCutoff) < 0) {
+                    OutputSpillFile.deleteQuietly(file);
+                    deleted++;
+                }
+            } catch (IOException e) {
+                log.debug("Skipping execution output {}: {}", file, e.getMessage());
+            }
+        }
+        if (deleted > 0) {
+            purged.increment(deleted);
+            log.info("Purged {} expired execution output files", deleted);
+        }
+        return deleted;
+    }
+
+    private Path path(long executionId, OutputStreamType type) {
+        return root.resolve(Long.toString(executionId / SHARD_SIZE))
+                .resolve(executionId + "." + type.getSuffix());
+    }
+}
@@ -0,0 +1,157 @@
+package com.httprun.service.impl;
+
+import com.httprun.dto.response.CursorPage;
+import com.httprun.dto.response.OutputLinePage;
+import com.httprun.entity.ExecutionRecord;
+import com.httprun.enums.OutputStreamType;
+import com.httprun.repository.ExecutionRecordRepository;
+import com.httprun.service.ExecutionRecordService;
+import com.httprun.util.KeysetCursor;
+import com.httprun.util.OutputSpillFile;
+import jakarta.persistence.criteria.Predicate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 命令执行记录与落盘完整输出查询服务实现
+ *
+ * 键集分页按 (createdAt, id) 倒序，每个筛选条件都有以 created_at 结尾的复合索引可用；
+ * 最近约 1 秒内（httprun.execution-record.flush-interval-ms）结束的执行尚在写入缓冲区中，不计入结果。
+ */
+@Service
+@RequiredArgsConstructor
+public class ExecutionRecordServiceImpl implements ExecutionRecordService {
+
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int MAX_OUTPUT_LINES = 5000;
+    private static final int MAX_OUTPUT_PAGE_BYTES = 1024 * 1024;
+
+    private final ExecutionRecordRepository recordRepository;
+    private final ExecutionOutputStore outputStore;
+
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<ExecutionRecord> searchRecords(String commandName, String targetHost, Integer exitCode,
+            Boolean failed, LocalDateTime start, LocalDateTime end, String cursor, int limit) {
+        int size = Math.min(Math.max(1, limit), MAX_PAGE_SIZE);
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        Specification<ExecutionRecord> spec = (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (commandName != null && !commandName.isEmpty()) {
+                predicates.add(cb.equal(root.get("commandName"), commandName));
+            }
+            if (targetHost != null && !targetHost.isEmpty()) {
+                predicates.add(cb.equal(root.get("targetHost"), targetHost));
+            }
+            if (exitCode != null) {
+                predicates.add(cb.equal(root.get("exitCode"), exitCode));
+            }
+            if (failed != null) {
+                predicates.add(cb.equal(root.get("failed"), failed));
+            }
+            if (start != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("createdAt"), start));
+            }
+            if (end != null) {
+                predicates.add(cb.lessThan(root.get("createdAt"), end));
+            }
+            if (after != null) {
+                predicates.add(cb.or(
+                        cb.lessThan(root.get("createdAt"), after.createdAt()),
+                        cb.and(cb.equal(root.get("createdAt"), after.createdAt()),
+                                cb.lessThan(root.get("id"), after.id()))));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+
+        List<ExecutionRecord> rows = recordRepository.findBy(spec, q -> q
+                .sortBy(Sort.by(Sort.Direction.DESC, "createdAt").and(Sort.by(Sort.Direction.DESC, "id")))
+                .limit(size + 1)
+                .all());
+        boolean hasMore = rows.size() > size;
+        List<ExecutionRecord> items = hasMore ? rows.subList(0, size) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            ExecutionRecord last = items.get(items.size() - 1);
+            nextCursor = new KeysetCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return CursorPage.<ExecutionRecord>builder()
+                .items(items)
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    @Override
+    public String getOutputOwner(Long id, OutputStreamType type) {
+        Path path = outputStore.locate(id, type);
+        if (path == null) {
+            return null;
+        }
+        try {
+            String owner = OutputSpillFile.readIndex(path).owner();
+            return owner != null ? owner : "";
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public OutputLinePage readOutputLines(Long id, OutputStreamType type, long fromLine, int limit) {
+        Path path = outputStore.locate(id, type);
+        if (path == null) {
+            return null;
+        }
+        int size = Math.min(Math.max(1, limit), MAX_OUTPUT_LINES);
+        try {
+            OutputSpillFile.Lines page = OutputSpillFile.readLines(path, Math.max(0, fromLine), size,
+                    MAX_OUTPUT_PAGE_BYTES);
+            return OutputLinePage.builder()
+                    .executionId(id)
+                    .stream(type.getSuffix())
+                    .fromLine(Math.max(0, fromLine))
+                    .lines(page.lines())
+                    .nextLine(page.nextLine())
+                    .hasMore(page.hasMore())
+                    .totalLines(page.index().lines())
+                    .totalBytes(page.index().size())
+                    .build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Long getOutputSize(Long id, OutputStreamType type) {
+        Path path = outputStore.locate(id, type);
+        if (path == null) {
+            return null;
+        }
+        try {
+            return OutputSpillFile.readIndex(path).size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void transferOutput(Long id, OutputStreamType type, long offset, long length, OutputStream out)
+            throws IOException {
+        Path path = outputStore.locate(id, type);
+        if (path != null) {
+            OutputSpillFile.transferTo(path, offset, length, Channels.newChannel(out));
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.httprun.service.impl;
+
+import com.httprun.dto.response.CommandExecutionResult;
+import com.httprun.entity.ExecutionRecord;
+import com.httprun.enums.ExecutionMode;
+import com.httprun.util.MpscRingBuffer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 命令执行记录写入器
+ *
+ * 请求线程只把执行结果整理成 {@link ExecutionRecord} 放入有界的 {@link MpscRingBuffer}（缓冲区满时丢弃并计数），
+ * 定时任务批量写入 execution_records。主键由 {@link PooledIdAllocator} 在入队时分配，调用方可立即引用该记录；
+ * 先预占缓冲区槽位再分配主键，缓冲区满时不会消耗主键。
+ * 过期记录按 httprun.access-log.retention-days 分批删除。批量写入失败时一并删除这些记录的落盘输出，避免遗留无主文件。
+ */
+@Slf4j
+@Component
+public class ExecutionRecorder {
+
+    static final String ID_SEQUENCE = "execution_records_id_seq";
+    static final int ID_ALLOCATION_SIZE = 50;
+    private static final int ERROR_MAX_LENGTH = 500;
+    private static final String INSERT_SQL = "INSERT INTO execution_records (id, command_name, command_version, "
+            + "execution_mode, target_host, token_id, exit_code, failed, duration_ms, queue_wait_ms, stdout_bytes, "
+            + "stderr_bytes, stdout_truncated, stderr_truncated, error, created_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PooledIdAllocator idAllocator;
+    private final MpscRingBuffer<ExecutionRecord> buffer;
+    /** 已预占的槽位数（缓冲区中的记录加上正在入队的记录），不超过缓冲区容量 */
+    private final AtomicInteger reserved = new AtomicInteger();
+    private final int batchSize;
+    private final int retentionDays;
+    private final int purgeChunkSize;
+
+    private final Counter written;
+    private final Counter dropped;
+    private final Counter failed;
+
+    private ExecutionOutputStore outputStore;
+
+    public ExecutionRecorder(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+            @Value("${httprun.execution-record.buffer-capacity:4096}") int bufferCapacity,
+            @Value("${httprun.execution-record.batch-size:200}") int batchSize,
+            @Value("${httprun.access-log.retention-days:30}") int retentionDays,
+            @Value("${httprun.access-log.retention-chunk-size:5000}") int purgeChunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.idAllocator = new PooledIdAllocator(jdbcTemplate, ID_SEQUENCE, "execution_records", ID_ALLOCATION_SIZE);
+        this.buffer = new MpscRingBuffer<>(bufferCapacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.retentionDays = retentionDays;
+        this.purgeChunkSize = Math.max(1, purgeChunkSize);
+
+        this.written = Counter.builder("httprun.execution.record.written")
+                .description("Execution records written to execution_records")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("httprun.execution.record.dropped")
+                .description("Execution records dropped because the buffer was full")
+                .register(meterRegistry);
+        this.failed = Counter.builder("httprun.execution.record.failed")
+                .description("Execution records lost because a batch insert failed")
+                .register(meterRegistry);
+    }
+
+    @Autowired(required = false)
+    public void setOutputStore(ExecutionOutputStore outputStore) {
+        this.outputStore = outputStore;
+    }
+
+    /**
+     * 登记一次执行结果（非阻塞）
+     *
+     * @param targetHost SSH 目标主机，本地执行传 null
+     * @return 记录 ID；缓冲区已满被丢弃时返回 null
+     */
+    public Long record(String commandName, Integer commandVersion, ExecutionMode mode, String targetHost,
+            String tokenId, CommandExecutionResult result) {
+        ExecutionRecord record = newRecord(commandName, commandVersion, mode, targetHost, tokenId,
+                result.getExitCode(), result.getDuration(), result.getError());
+        record.setQueueWaitMs(result.getQueueWait());
+        record.setStdoutBytes(utf8Length(result.getStdout()));
+        record.setStderrBytes(utf8Length(result.getStderr()));
+        record.setStdoutTruncated(result.isStdoutTruncated());
+        record.setStderrTruncated(result.isStderrTruncated());
+        return enqueue(record);
+    }
+
+    /**
+     * 登记一次流式执行（WebSocket 推送，输出不在服务端保留，只记录推送的字节数）
+     *
+     * @param targetHost SSH 目标主机，本地执行传 null
+     * @return 记录 ID；缓冲区已满被丢弃时返回 null
+     */
+    public Long recordStreamed(String commandName, Integer commandVersion, ExecutionMode mode, String targetHost,
+            String tokenId, int exitCode, long durationMs, long stdoutBytes, long stderrBytes, String error) {
+        ExecutionRecord record = newRecord(commandName, commandVersion, mode, targetHost, tokenId, exitCode,
+                durationMs, error);
+        record.setQueueWaitMs(0L);
+        record.setStdoutBytes(stdoutBytes);
+        record.setStderrBytes(stderrBytes);
+        record.setStdoutTruncated(false);
+        record.setStderrTruncated(false);
+        return enqueue(record);
+    }
+
+    private static ExecutionRecord newRecord(String commandName, Integer commandVersion, ExecutionMode mode,
+            String targetHost, String tokenId, int exitCode, long durationMs, String error) {
+        ExecutionRecord record = new ExecutionRecord();
+        record.setCommandName(commandName);
+        record.setCommandVersion(commandVersion);
+        record.setExecutionMode(mode != null ? mode : ExecutionMode.LOCAL);
+        record.setTargetHost(targetHost);
+        record.setTokenId(tokenId);
+        int code = error != null && exitCode == 0 ? -1 : exitCode;
+        record.setExitCode(code);
+        record.setFailed(code != 0);
+        record.setDurationMs(durationMs);
+        record.setError(error != null && error.length() > ERROR_MAX_LENGTH ? error.substring(0, ERROR_MAX_LENGTH)
+                : error);
+        record.setCreatedAt(LocalDateTime.now());
+        return record;
+    }
+
+    private Long enqueue(ExecutionRecord record) {
+        if (!reserveSlot()) {
+            dropped.increment();
+            return null;
+        }
+        try {
+            record.setId(idAllocator.nextId());
+        } catch (RuntimeException e) {
+            reserved.decrementAndGet();
+            throw e;
+        }
+        // 已预占槽位，写入必然成功
+        buffer.offer(record);
+        return record.getId();
+    }
+
+    private boolean reserveSlot() {
+        int capacity = buffer.capacity();
+        while (true) {
+            int current = reserved.get();
+            if (current >= capacity) {
+                return false;
+            }
+            if (reserved.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 批量写入缓冲区中的记录 - 默认每秒执行
+     */
+    @Scheduled(fixedDelayString = "${httprun.execution-record.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        List<ExecutionRecord> batch = new ArrayList<>(batchSize);
+        int drained;
+        while ((drained = buffer.drainTo(batch, batchSize)) > 0) {
+            reserved.addAndGet(-drained);
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * 关闭前写完剩余记录
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * 分批删除超过保留期的记录 - 每天凌晨 2:30 执行
+     *
+     * @return 删除的行数
+     */
+    @Scheduled(cron = "0 30 2 * * ?")
+    public int purgeExpired() {
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minusDays(retentionDays));
+        int total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update("DELETE FROM execution_records WHERE id IN (SELECT id FROM "
+                    + "execution_records WHERE created_at < ? LIMIT ?)", cutoff, purgeChunkSize);
+            total += deleted;
+        } while (deleted >= purgeChunkSize);
+        if (total > 0) {
+            log.info("Purged {} execution records older than {} days", total, retentionDays);
+        }
+        return total;
+    }
+
+    /**
+     * 当前积压的记录数量
+     */
+    public int pending() {
+        return buffer.size();
+    }
+
+    private void writeBatch(List<ExecutionRecord> batch) {
+        List<Object[]> args = new ArrayList<>(batch.size());
+        for (ExecutionRecord r : batch) {
+            args.add(new Object[] { r.getId(), r.getCommandName(), r.getCommandVersion(),
+                    r.getExecutionMode().name(), r.getTargetHost(), r.getTokenId(), r.getExitCode(), r.getFailed(),
+                    r.getDurationMs(), r.getQueueWaitMs(), r.getStdoutBytes(), r.getStderrBytes(),
+                    r.getStdoutTruncated(), r.getStderrTruncated(), r.getError(),
+                    Timestamp.valueOf(r.getCreatedAt()) });
+        }
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, args);
+            written.increment(batch.size());
+        } catch (Exception e) {
+            failed.increment(batch.size());
+            log.warn("Failed to write {} execution records: {}", batch.size(), e.getMessage());
+            if (outputStore != null) {
+                for (ExecutionRecord r : batch) {
+                    if (Boolean.TRUE.equals(r.getStdoutTruncated()) || Boolean.TRUE.equals(r.getStderrTruncated())) {
+                        outputStore.delete(r.getId());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 不分配数组地计算字符串的 UTF-8 字节数
+     */
+    public static long utf8Length(String s) {
+        if (s == null) {
+            return 0;
+        }
+        long bytes = 0;
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,163 @@
+package com.httprun.service.impl;
+
+import com.httprun.dto.response.LiveCommandStatsResponse;
+import com.httprun.util.SlidingLatencyWindow;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 命令执行实时统计（节点内存，重启后清零）
+ *
+ * 每个命令一个 {@link SlidingLatencyWindow}（15 秒槽位，保留 15 分钟），提供 1m / 5m / 15m
+ * 滑动窗口内的执行速率、失败数与耗时分位数，另有正在执行的数量。同时以 Micrometer
+ * DistributionSummary（httprun.command.execution.duration）与 Gauge（httprun.command.inflight）按命令发布。
+ *
+ * 跟踪的命令数上限为 httprun.stats.live.max-commands，超出后的命令合并计入 {@value #OVERFLOW_COMMAND}，
+ * 单个命令最多占用约 66KB（61 个槽位 × 136 个直方图桶），内存有界。
+ */
+@Slf4j
+@Component
+public class LiveExecutionStats {
+
+    static final String OVERFLOW_COMMAND = "(other)";
+    static final long SLOT_MILLIS = 15_000;
+    /** 15 分钟加当前未满的槽位 */
+    static final int SLOTS = 61;
+    private static final Map<String, Duration> WINDOWS = windows();
+
+    private final MeterRegistry meterRegistry;
+    private final int maxCommands;
+    private final Map<String, CommandStats> commands = new ConcurrentHashMap<>();
+
+    public LiveExecutionStats(MeterRegistry meterRegistry,
+            @Value("${httprun.stats.live.max-commands:256}") int maxCommands) {
+        this.meterRegistry = meterRegistry;
+        this.maxCommands = Math.max(1, maxCommands);
+    }
+
+    /**
+     * 开始一次执行，返回的句柄须在执行结束时调用 {@link Execution#finish(boolean)}
+     */
+    public Execution begin(String commandName) {
+        CommandStats stats = statsFor(commandName);
+        stats.inFlight.incrementAndGet();
+        return new Execution(stats, System.currentTimeMillis());
+    }
+
+    /**
+     * 各命令当前的实时统计，按 1 分钟执行次数降序
+     */
+    public List<LiveCommandStatsResponse> snapshot() {
+        long now = System.currentTimeMillis();
+        List<LiveCommandStatsResponse> result = new ArrayList<>(commands.size());
+        commands.forEach((name, stats) -> {
+            Map<String, LiveCommandStatsResponse.WindowStats> windows = new LinkedHashMap<>();
+            WINDOWS.forEach((label, window) -> {
+                SlidingLatencyWindow.Snapshot snapshot = stats.window.snapshot(window.toMillis(), now);
+                windows.put(label, LiveCommandStatsResponse.WindowStats.builder()
+                        .count(snapshot.getCount())
+                        .errorCount(snapshot.getErrors())
+                        .ratePerSecond(Math.round(snapshot.ratePerSecond() * 1000) / 1000.0)
+                        .p50Duration(snapshot.quantile(0.5))
+                        .p95Duration(snapshot.quantile(0.95))
+                        .p99Duration(snapshot.quantile(0.99))
+                        .build());
+            });
+            result.add(LiveCommandStatsResponse.builder()
+                    .commandName(name)
+                    .inFlight(stats.inFlight.get())
+                    .windows(windows)
+                    .build());
+        });
+        result.sort(Comparator.comparingLong((LiveCommandStatsResponse r) -> r.getWindows().get("1m").getCount())
+                .reversed().thenComparing(LiveCommandStatsResponse::getCommandName));
+        return result;
+    }
+
+    private CommandStats statsFor(String commandName) {
+        CommandStats stats = commands.get(commandName);
+        if (stats != null) {
+            return stats;
+        }
+        String key = commands.size() >= maxCommands ? OVERFLOW_COMMAND : commandName;
+        return commands.computeIfAbsent(key, this::register);
+    }
+
+    private CommandStats register(String commandName) {
+        CommandStats stats = new CommandStats();
+        stats.summary = DistributionSummary.builder("httprun.command.execution.duration")
+                .description("Command execution duration")
+                .baseUnit("milliseconds")
+                .tag("command", commandName)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .distributionStatisticExpiry(Duration.ofMinutes(1))
+                .register(meterRegistry);
+        Gauge.builder("httprun.command.inflight", stats.inFlight, AtomicInteger::get)
+                .description("Command executions currently running")
+                .tag("command", commandName)
+                .register(meterRegistry);
+        if (OVERFLOW_COMMAND.equals(commandName)) {
+            log.warn("Live execution stats reached {} commands, further commands are counted as {}",
+                    maxCommands, OVERFLOW_COMMAND);
+        }
+        return stats;
+    }
+
+    private static Map<String, Duration> windows() {
+        Map<String, Duration> windows = new LinkedHashMap<>();
+        windows.put("1m", Duration.ofMinutes(1));
+        windows.put("5m", Duration.ofMinutes(5));
+        windows.put("15m", Duration.ofMinutes(15));
+        return windows;
+    }
+
+    private static final class CommandStats {
+        final SlidingLatencyWindow window = new SlidingLatencyWindow(SLOT_MILLIS, SLOTS);
+        final AtomicInteger inFlight = new AtomicInteger();
+        DistributionSummary summary;
+    }
+
+    /**
+     * 一次进行中的执行
+     */
+    public final class Execution {
+        private final CommandStats stats;
+        private final long startMillis;
+        private boolean finished;
+
+        private Execution(CommandStats stats, long startMillis) {
+            this.stats = stats;
+            this.startMillis = startMillis;
+        }
+
+        /**
+         * 结束执行并记录耗时（重复调用无效）
+         *
+         * @param failed 执行是否失败（非 0 退出码、超时或异常）
+         */
+        public void finish(boolean failed) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            long now = System.currentTimeMillis();
+            long duration = Math.max(0, now - startMillis);
+            stats.inFlight.decrementAndGet();
+            stats.window.record(duration, failed, now);
+            stats.summary.record(duration);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.httprun.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 内容寻址的命令输出存储（output_blobs）
+ *
+ * 输出按 UTF-8 内容的 SHA-256 去重，首次出现时 Deflate 压缩后写入（压缩后不变小则原样保存），
+ * 再次出现只增加引用计数。access_log_payloads 只保存哈希引用。
+ * 引用计数随日志删除、分区过期、归档减少，归零的内容立即删除；清理任务另行扫描删除残留的零引用内容。
+ *
+ * 并发安全：增加引用先 UPDATE 已有行，未命中再以 INSERT ... ON CONFLICT 累加写入；
+ * 删除零引用内容的 DELETE 会重新检查 ref_count，不会删掉刚被引用的内容。
+ * 同一批次按哈希排序更新，多个节点同时写入时加锁顺序一致。
+ */
+@Component
+public class OutputBlobStore {
+
+    private static final int CHUNK_SIZE = 500;
+    private static final String INCREMENT_SQL = "UPDATE output_blobs SET ref_count = ref_count + ?, "
+            + "last_referenced_at = ? WHERE hash = ?";
+    private static final String INSERT_SQL = "INSERT INTO output_blobs (hash, content, compressed, raw_size, "
+            + "ref_count, created_at, last_referenced_at) VALUES (?, ?, ?, ?, ?, ?, ?) ON CONFLICT (hash) DO UPDATE "
+            + "SET ref_count = output_blobs.ref_count + excluded.ref_count, "
+            + "last_referenced_at = excluded.last_referenced_at";
+    private static final String DECREMENT_SQL = "UPDATE output_blobs SET ref_count = ref_count - ? WHERE hash = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Counter savedBytes;
+    private final Counter storedBytes;
+    private final Counter dedupHits;
+    private final Counter collected;
+
+    public OutputBlobStore(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.savedBytes = Counter.builder("httprun.output.blob.saved.bytes")
+                .description("Output bytes not written thanks to deduplication and compression")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.storedBytes = Counter.builder("httprun.output.blob.stored.bytes")
+                .description("Bytes written to the output blob store")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.dedupHits = Counter.builder("httprun.output.blob.dedup.hits")
+                .description("Outputs stored as a reference to an existing blob")
+                .register(meterRegistry);
+        this.collected = Counter.builder("httprun.output.blob.collected")
+                .description("Output blobs deleted after their last reference was removed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 保存一批输出并各增加一次引用
+     *
+     * @return 与 outputs 一一对应的哈希；null 或空输出对应 null
+     */
+    public List<String> store(List<String> outputs) {
+        List<String> hashes = new ArrayList<>(outputs.size());
+        Map<String, Pending> pending = new TreeMap<>();
+        for (String output : outputs) {
+            if (output == null || output.isEmpty()) {
+                hashes.add(null);
+                continue;
+            }
+            byte[] raw = output.getBytes(StandardCharsets.UTF_8);
+            String hash = sha256(raw);
+            hashes.add(hash);
+            pending.computeIfAbsent(hash, h -> new Pending(raw)).refs++;
+        }
+        if (pending.isEmpty()) {
+            return hashes;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> increments = new ArrayList<>(pending.size());
+        pending.forEach((hash, p) -> increments.add(new Object[] { p.refs, now, hash }));
+        int[] updated = jdbcTemplate.batchUpdate(INCREMENT_SQL, increments);
+
+        List<Object[]> inserts = new ArrayList<>();
+        long saved = 0;
+        long stored = 0;
+        long hits = 0;
+        int i = 0;
+        for (Map.Entry<String, Pending> entry : pending.entrySet()) {
+            Pending p = entry.getValue();
+            long rawTotal = (long) p.raw.length * p.refs;
+            // 驱动未返回更新行数时按未命中处理：ON CONFLICT 保证不会丢内容，最多多计一次引用
+            if (updated[i++] > 0) {
+                saved += rawTotal;
+                hits += p.refs;
+                continue;
+            }
+            byte[] compressed = deflate(p.raw);
+            boolean useCompressed = compressed.length < p.raw.length;
+            byte[] content = useCompressed ? compressed : p.raw;
+            inserts.add(new Object[] { entry.getKey(), content, useCompressed, p.raw.length, p.refs, now, now });
+            stored += content.length;
+            saved += rawTotal - content.length;
+            hits += p.refs - 1;
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, inserts);
+        }
+        savedBytes.increment(saved);
+        storedBytes.increment(stored);
+        dedupHits.increment(hits);
+        return hashes;
+    }
+
+    /**
+     * 读取一条输出
+     *
+     * @return 不存在时返回 null
+     */
+    public String load(String hash) {
+        if (hash == null) {
+            return null;
+        }
+        List<String> result = jdbcTemplate.query("SELECT content, compressed FROM output_blobs WHERE hash = ?",
+                (rs, rowNum) -> decode(rs.getBytes(1), rs.getBoolean(2)), hash);
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    /**
+     * 批量读取输出
+     *
+     * @return 哈希到内容的映射，不存在的哈希不在结果中
+     */
+    public Map<String, String> loadAll(Collection<String> hashes) {
+        List<String> distinct = hashes.stream().filter(h -> h != null).distinct().toList();
+        Map<String, String> result = new HashMap<>(distinct.size() * 2);
+        for (int from = 0; from < distinct.size(); from += CHUNK_SIZE) {
+            List<String> chunk = distinct.subList(from, Math.min(distinct.size(), from + CHUNK_SIZE));
+            jdbcTemplate.query("SELECT hash, content, compressed FROM output_blobs WHERE hash IN ("
+                    + placeholders(chunk.size()) + ")",
+                    rs -> {
+                        result.put(rs.getString(1), decode(rs.getBytes(2), rs.getBoolean(3)));
+                    }, chunk.toArray());
+        }
+        return result;
+    }
+
+    /**
+     * 统计 access_log_payloads（或其分区）中满足条件的行对各输出的引用数，须在删除这些行之前调用
+     *
+     * @param table     表名或分区名
+     * @param condition 附加条件（不含 WHERE），为空时统计整表
+     */
+    public Map<String, Long> countReferences(String table, String condition, Object... args) {
+        String sql = "SELECT response_hash, COUNT(*) FROM " + table + " WHERE response_hash IS NOT NULL"
+                + (condition == null ? "" : " AND (" + condition + ")") + " GROUP BY response_hash";
+        Map<String, Long> references = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            references.put(rs.getString(1), rs.getLong(2));
+        }, args);
+        return references;
+    }
+
+    /**
+     * 减少引用并删除引用数归零的输出
+     *
+     * @param references 哈希到减少次数的映射
+     */
+    public void release(Map<String, Long> references) {
+        if (references.isEmpty()) {
+            return;
+        }
+        Map<String, Long> sorted = new TreeMap<>(references);
+        List<Object[]> decrements = new ArrayList<>(sorted.size());
+        sorted.forEach((hash, count) -> decrements.add(new Object[] { count, hash }));
+        jdbcTemplate.batchUpdate(DECREMENT_SQL, decrements);
+
+        List<String> hashes = new ArrayList<>(sorted.keySet());
+        long deleted = 0;
+        for (int from = 0; from < hashes.size(); from += CHUNK_SIZE) {
+            List<String> chunk = hashes.subList(from, Math.min(hashes.size(), from + CHUNK_SIZE));
+            deleted += jdbcTemplate.update("DELETE FROM output_blobs WHERE ref_count <= 0 AND hash IN ("
+                    + placeholders(chunk.size()) + ")", chunk.toArray());
+        }
+        collected.increment(deleted);
+    }
+
+    /**
+     * 删除所有引用数已归零的输出（兜底清理写入失败等情况留下的内容）
+     *
+     * @return 删除的行数
+     */
+    public int collectGarbage() {
+        int deleted = jdbcTemplate.update("DELETE FROM output_blobs WHERE ref_count <= 0");
+        collected.increment(deleted);
+        return deleted;
+    }
+
+    /**
+     * 解码存储内容
+     */
+    public static String decode(byte[] content, boolean compressed) {
+        return new String(compressed ? inflate(content) : content, StandardCharsets.UTF_8);
+    }
+
+    static String sha256(byte[] raw) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(raw));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 2));
+            byte[] chunk = new byte[16 * 1024];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] compressed) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+            byte[] chunk = new byte[16 * 1024];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(chunk);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated output blob");
+                }
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt output blob", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private static final class Pending {
+        private final byte[] raw;
+        private int refs;
+
+        private Pending(byte[] raw) {
+            this.raw = raw;
+        }
+    }
+}
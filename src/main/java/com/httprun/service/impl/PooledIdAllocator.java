@@ -0,0 +1,66 @@
+package com.httprun.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * 批量主键分配器（与 Hibernate pooled 优化器语义一致）
+ *
+ * PostgreSQL：序列以 allocationSize 为步长递增，每次 nextval 返回值 v 代表区间 (v - allocationSize, v]，
+ * 一次往返即可为一整批行分配主键，与实体上 {@code @SequenceGenerator(allocationSize = ...)} 的分配互不冲突。
+ * SQLite（单进程开发环境）：启动后首次分配时读取 MAX(id)，之后在内存中递增。
+ */
+@Slf4j
+public class PooledIdAllocator {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String sequenceName;
+    private final String tableName;
+    private final int allocationSize;
+
+    private Boolean postgres;
+    /** 当前区间内下一个可用 id */
+    private long next = 1;
+    /** 当前区间上界（含） */
+    private long hi;
+
+    public PooledIdAllocator(JdbcTemplate jdbcTemplate, String sequenceName, String tableName, int allocationSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sequenceName = sequenceName;
+        this.tableName = tableName;
+        this.allocationSize = allocationSize;
+    }
+
+    /**
+     * 分配下一个主键
+     */
+    public synchronized long nextId() {
+        if (next > hi) {
+            allocate();
+        }
+        return next++;
+    }
+
+    private void allocate() {
+        if (postgres == null) {
+            String product = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            postgres = "PostgreSQL".equalsIgnoreCase(product);
+        }
+        if (postgres) {
+            Long value = jdbcTemplate.queryForObject("SELECT nextval(?)", Long.class, sequenceName);
+            if (value == null) {
+                throw new IllegalStateException("Sequence " + sequenceName + " returned no value");
+            }
+            hi = value;
+            // 序列初始值小于步长时（新建库）只使用 [1, value]，下一次分配从 value + 1 开始
+            next = Math.max(next, Math.max(1, value - allocationSize + 1));
+        } else {
+            Long max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + tableName, Long.class);
+            next = (max != null ? max : 0) + 1;
+            hi = Long.MAX_VALUE;
+            log.debug("Allocating {} ids in memory starting at {}", tableName, next);
+        }
+    }
+}
@@ -3,10 +3,15 @@ package com.httprun.service.impl;
 import com.httprun.dto.request.CreateTokenRequest;
 import com.httprun.dto.response.RevokeTokenResponse;
 import com.httprun.entity.Token;
+import com.httprun.entity.TokenRevocationEvent;
 import com.httprun.exception.BusinessException;
 import com.httprun.enums.ErrorCode;
 import com.httprun.repository.TokenRepository;
+import com.httprun.security.ActiveToken;
 import com.httprun.security.JwtTokenProvider;
+import com.httprun.security.TokenDigest;
+import com.httprun.security.TokenRegistry;
+import com.httprun.security.TokenRevocationSync;
 import com.httprun.service.TokenService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -16,10 +21,11 @@ import org.springframework.data.domain.Sort;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.Instant;
 import java.util.List;
-import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
@@ -32,6 +38,8 @@ public class TokenServiceImpl implements TokenService {
 
     private final TokenRepository tokenRepository;
     private final JwtTokenProvider jwtTokenProvider;
+    private final TokenRegistry tokenRegistry;
+    private final TokenRevocationSync tokenRevocationSync;
 
     @Override
     @Transactional
@@ -69,9 +77,11 @@ public class TokenServiceImpl implements TokenService {
         token.setIssuedAt(now);
         token.setExpiresAt(expiresAt);
         token.setJwtToken(jwtToken);
+        token.setJwtDigest(TokenDigest.of(jwtToken));
         token.setRevoked(false);
 
         token = tokenRepository.save(token);
+        registerAfterCommit(token);
 
         log.info("Created token: id={}, name={}, isAdmin={}", token.getId(), name, isAdmin);
 
@@ -122,6 +132,7 @@ public class TokenServiceImpl implements TokenService {
         token.setIssuedAt(now);
         token.setExpiresAt(expiresAt);
         token.setJwtToken(jwtToken);
+        token.setJwtDigest(TokenDigest.of(jwtToken));
         token.setRevoked(false);
 
         // 设置时间范围限制
@@ -137,6 +148,7 @@ public class TokenServiceImpl implements TokenService {
         }
 
         token.setRemark(request.getRemark());
+        token.setRateLimitPerMinute(request.getRateLimitPerMinute());
 
         // 设置允许的命令分组范围
         if (request.getAllowedGroups() != null && !request.getAllowedGroups().isEmpty()) {
@@ -144,6 +156,7 @@ public class TokenServiceImpl implements TokenService {
         }
 
         token = tokenRepository.save(token);
+        registerAfterCommit(token);
 
         log.info(
                 "Created token with time restrictions: id={}, name={}, isAdmin={}, startTime={}, endTime={}, weekdays={}",
@@ -186,6 +199,8 @@ public class TokenServiceImpl implements TokenService {
         token.setRevoked(true);
         tokenRepository.save(token);
         tokenRepository.flush(); // 确保撤销操作立即写入数据库
+        // 写入撤销变更日志并立即从本节点注册表移除，其他节点增量同步
+        tokenRevocationSync.publish(List.of(revocationEvent(token)));
 
         log.info("Revoked token: id={}, name={}, wasAdmin={}", token.getId(), token.getName(), wasAdmin);
 
@@ -248,10 +263,12 @@ public class TokenServiceImpl implements TokenService {
         token.setIssuedAt(now);
         token.setExpiresAt(expiresAt);
         token.setJwtToken(jwtToken);
+        token.setJwtDigest(TokenDigest.of(jwtToken));
         token.setRevoked(false);
         token.setRemark(request.getRemark());
 
         Token savedToken = tokenRepository.save(token);
+        registerAfterCommit(savedToken);
         log.info("Admin token saved to database: id={}, name={}, jwtToken length={}",
                 savedToken.getId(), savedToken.getName(), savedToken.getJwtToken().length());
         return savedToken;
@@ -263,10 +280,35 @@ public class TokenServiceImpl implements TokenService {
         if (ids == null || ids.isEmpty()) {
             return;
         }
+        List<TokenRevocationEvent> events = tokenRepository.findAllById(ids).stream()
+                .map(this::revocationEvent)
+                .collect(Collectors.toList());
         int count = tokenRepository.deleteByIdIn(ids);
+        tokenRevocationSync.publish(events);
         log.info("Deleted {} tokens", count);
     }
 
+    private TokenRevocationEvent revocationEvent(Token token) {
+        String digest = token.getJwtDigest() != null ? token.getJwtDigest() : TokenDigest.of(token.getJwtToken());
+        return new TokenRevocationEvent(digest, token.getId());
+    }
+
+    /**
+     * 事务提交后登记到内存注册表，避免回滚的 Token 被放行
+     */
+    private void registerAfterCommit(Token token) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    tokenRegistry.register(token);
+                }
+            });
+        } else {
+            tokenRegistry.register(token);
+        }
+    }
+
     @Override
     public boolean validateToken(String jwtToken) {
         // 先验证 JWT 签名
@@ -274,25 +316,24 @@ public class TokenServiceImpl implements TokenService {
             return false;
         }
 
-        // 再检查数据库中的状态
+        // 再检查撤销状态与有效期（内存注册表）
         long now = Instant.now().getEpochSecond();
-        return tokenRepository.findValidToken(jwtToken, now).isPresent();
+        return tokenRegistry.find(TokenDigest.of(jwtToken))
+                .filter(token -> token.expiresAt() == null || token.expiresAt() > now)
+                .isPresent();
     }
 
     @Override
     public boolean validateTokenTimeRange(String jwtToken) {
-        Optional<Token> tokenOpt = tokenRepository.findByJwtToken(jwtToken);
-        if (tokenOpt.isEmpty()) {
-            return false;
-        }
-
-        Token token = tokenOpt.get();
-        return token.isWithinAllowedTimeRange();
+        // 使用注册表中预编译的策略
+        return tokenRegistry.find(TokenDigest.of(jwtToken))
+                .map(ActiveToken::isWithinAllowedTimeRange)
+                .orElse(false);
     }
 
     @Override
     public Token getTokenByJwt(String jwtToken) {
-        return tokenRepository.findByJwtToken(jwtToken)
+        return tokenRepository.findByJwtDigest(TokenDigest.of(jwtToken))
                 .orElseThrow(() -> new BusinessException(ErrorCode.TOKEN_NOT_FOUND));
     }
 
@@ -301,7 +342,11 @@ public class TokenServiceImpl implements TokenService {
     @Scheduled(cron = "0 0 * * * *") // 每小时执行一次
     public int cleanExpiredTokens() {
         long now = Instant.now().getEpochSecond();
+        List<TokenRevocationEvent> events = tokenRepository.findByExpiresAtBeforeAndRevokedFalse(now).stream()
+                .map(this::revocationEvent)
+                .collect(Collectors.toList());
         int count = tokenRepository.revokeExpiredTokens(now);
+        tokenRevocationSync.publish(events);
         if (count > 0) {
             log.info("Cleaned {} expired tokens", count);
         }
@@ -1,5 +1,7 @@
 package com.httprun.util;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.httprun.entity.Command;
 import com.httprun.entity.ParamDefine;
 import com.httprun.exception.SecurityException;
@@ -46,62 +48,18 @@ public class CommandSecurityValidator {
     };
 
     /**
-     * 命令注入攻击模式（正则表达式）
+     * 命令注入攻击模式扫描器
+     * 危险字符与注入模式（命令替换、换行/空字节注入、IFS 与花括号绕过、base64 解码执行、
+     * 路径遍历及其 URL 编码变体、敏感系统路径等）被编译为单次线性扫描，详见 {@link InjectionScanner}
      */
-    private static final List<Pattern> INJECTION_PATTERNS = Arrays.asList(
-            // 命令替换
-            Pattern.compile("\\$\\([^)]*\\)"), // $(command)
-            Pattern.compile("`[^`]*`"), // `command`
-            Pattern.compile("\\$\\{[^}]*}"), // ${variable}
+    private static final InjectionScanner INJECTION_SCANNER = new InjectionScanner(DANGEROUS_CHARS);
 
-            // 命令连接
-            Pattern.compile("&&"), // cmd1 && cmd2
-            Pattern.compile("\\|\\|"), // cmd1 || cmd2
-            Pattern.compile("\\|(?!\\|)"), // cmd1 | cmd2 (pipe)
-            Pattern.compile(";"), // cmd1; cmd2
-
-            // 换行注入
-            Pattern.compile("\\r?\\n"), // newline injection
-            Pattern.compile("%0[aAdD]"), // URL encoded newline
-
-            // 空字节注入
-            Pattern.compile("\\x00"), // null byte
-            Pattern.compile("%00"), // URL encoded null
-
-            // 常见绕过技巧
-            Pattern.compile("\\$IFS"), // IFS绕过空格
-            Pattern.compile("\\{.*,.*\\}"), // bash brace expansion
-            Pattern.compile("\\$\\{!.*\\}"), // indirect variable
-            Pattern.compile("\\$\\(\\(.*\\)\\)"), // arithmetic expansion
-
-            // Base64 编码执行
-            Pattern.compile("base64\\s+-d"), // base64 decode
-            Pattern.compile("\\|\\s*sh"), // pipe to shell
-            Pattern.compile("\\|\\s*bash"), // pipe to bash
-
-            // 路径遍历攻击模式（增强）
-            Pattern.compile("\\.\\./"), // directory traversal ../
-            Pattern.compile("\\.\\.\\\\"), // Windows路径遍历 ..\\
-            Pattern.compile("%2e%2e[/%5c]", Pattern.CASE_INSENSITIVE), // URL编码路径遍历
-            Pattern.compile("%252e%252e", Pattern.CASE_INSENSITIVE), // 双重URL编码
-            Pattern.compile("\\.\\.%c0%af"), // 畸形UTF-8编码
-            Pattern.compile("\\.\\.%c1%9c"), // 畸形UTF-8编码
-            Pattern.compile("/etc/"), // sensitive path
-            Pattern.compile("/root/"), // root home
-            Pattern.compile("/home/[^/]+/\\."), // hidden files in home
-            Pattern.compile("^/\\.\\."), // 以 /.. 开头
-            Pattern.compile("(?:^|/)\\.\\.(?:/|$)"), // 任意位置的 ..
-
-            // 特殊文件操作
-            Pattern.compile(">/dev/"), // device files
-            Pattern.compile("/proc/"), // proc filesystem
-            Pattern.compile("/sys/"), // sys filesystem
-            Pattern.compile("/boot/"), // boot partition
-            Pattern.compile("/var/log/"), // system logs
-
-            // Windows 敏感路径
-            Pattern.compile("[a-zA-Z]:\\\\windows", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("[a-zA-Z]:\\\\system32", Pattern.CASE_INSENSITIVE));
+    /**
+     * 参数校验计划缓存（按命令 ID）
+     */
+    private final Cache<Long, ParamValidationPlan> validationPlans = Caffeine.newBuilder()
+            .maximumSize(4096)
+            .build();
 
     // ===== 参数白名单验证模式 =====
 
@@ -236,24 +194,20 @@ public class CommandSecurityValidator {
             return;
         }
 
-        // 1. 检查危险字符
-        for (String dangerous : DANGEROUS_CHARS) {
-            if (value.contains(dangerous)) {
-                log.warn("Security: Dangerous character '{}' found in parameter '{}', value: {}",
-                        dangerous, paramName, maskValue(value));
-                throw new SecurityException(
-                        String.format("参数 '%s' 包含不允许的字符: %s", paramName, dangerous));
-            }
+        // 1-2. 单次扫描检查危险字符和注入攻击模式
+        int result = INJECTION_SCANNER.scan(value);
+        if (result >= 0) {
+            String dangerous = DANGEROUS_CHARS[result];
+            log.warn("Security: Dangerous character '{}' found in parameter '{}', value: {}",
+                    dangerous, paramName, maskValue(value));
+            throw new SecurityException(
+                    String.format("参数 '%s' 包含不允许的字符: %s", paramName, dangerous));
         }
-
-        // 2. 检查注入攻击模式
-        for (Pattern pattern : INJECTION_PATTERNS) {
-            if (pattern.matcher(value).find()) {
-                log.warn("Security: Injection pattern detected in parameter '{}', pattern: {}, value: {}",
-                        paramName, pattern.pattern(), maskValue(value));
-                throw new SecurityException(
-                        String.format("参数 '%s' 包含可疑的命令注入模式", paramName));
-            }
+        if (result == InjectionScanner.INJECTION) {
+            log.warn("Security: Injection pattern detected in parameter '{}', value: {}",
+                    paramName, maskValue(value));
+            throw new SecurityException(
+                    String.format("参数 '%s' 包含可疑的命令注入模式", paramName));
         }
 
         // 3. 检查长度（防止缓冲区溢出攻击）
@@ -277,13 +231,8 @@ public class CommandSecurityValidator {
             return;
         }
 
-        // 获取参数定义，用于类型检查
-        Map<String, ParamDefine> paramDefines = new HashMap<>();
-        if (command.getCommandConfig() != null && command.getCommandConfig().getParams() != null) {
-            for (ParamDefine def : command.getCommandConfig().getParams()) {
-                paramDefines.put(def.getName(), def);
-            }
-        }
+        // 参数定义来自按命令版本缓存的校验计划，用于类型检查
+        ParamValidationPlan plan = getValidationPlan(command);
 
         for (Map.Entry<String, Object> entry : params.entrySet()) {
             String paramName = entry.getKey();
@@ -292,66 +241,54 @@ public class CommandSecurityValidator {
             if (value != null) {
                 String strValue = String.valueOf(value);
 
-                // 基本安全校验
+                // 基础安全校验
                 validateParamValue(paramName, strValue);
 
                 // 根据参数类型进行额外校验
-                ParamDefine def = paramDefines.get(paramName);
-                if (def != null) {
-                    validateParamType(paramName, strValue, def);
+                ParamValidationPlan.ParamRule rule = plan.rule(paramName);
+                if (rule != null) {
+                    validateParamType(paramName, strValue, rule);
                 }
             }
         }
     }
 
+    /**
+     * 获取命令的参数校验计划
+     * 按命令 ID 缓存，命令更新（updatedAt 变化）后自动重新编译
+     */
+    public ParamValidationPlan getValidationPlan(Command command) {
+        List<ParamDefine> params = command.getCommandConfig() != null ? command.getCommandConfig().getParams() : null;
+        if (command.getId() == null) {
+            return ParamValidationPlan.compile(params, command.getUpdatedAt(), this::mapTypeToWhitelist,
+                    PARAM_WHITELIST_PATTERNS);
+        }
+        ParamValidationPlan cached = validationPlans.getIfPresent(command.getId());
+        if (cached != null && cached.isCompiledFrom(command.getUpdatedAt())) {
+            return cached;
+        }
+        ParamValidationPlan plan = ParamValidationPlan.compile(params, command.getUpdatedAt(),
+                this::mapTypeToWhitelist, PARAM_WHITELIST_PATTERNS);
+        validationPlans.put(command.getId(), plan);
+        return plan;
+    }
+
     /**
      * 根据参数类型进行校验
      */
-    private void validateParamType(String name, String value, ParamDefine def) {
-        String type = def.getType();
-        if (type == null) {
-            return;
+    private void validateParamType(String name, String value, ParamValidationPlan.ParamRule rule) {
+        if (!rule.typeCheck.accepts(value)) {
+            throw new SecurityException(String.format(rule.typeCheck.message, name));
         }
+    }
 
-        switch (type.toLowerCase()) {
-            case "integer":
-            case "int":
-            case "number":
-                if (!value.matches("^-?\\d+$")) {
-                    throw new SecurityException(
-                            String.format("参数 '%s' 必须是整数", name));
-                }
-                break;
-            case "boolean":
-            case "bool":
-                if (!value.matches("^(true|false|1|0|yes|no)$")) {
-                    throw new SecurityException(
-                            String.format("参数 '%s' 必须是布尔值", name));
-                }
-                break;
-            case "path":
-            case "file":
-                // 路径参数需要额外检查路径遍历
-                if (value.contains("..") || value.startsWith("/etc") || value.startsWith("/root")) {
-                    throw new SecurityException(
-                            String.format("参数 '%s' 包含不允许的路径", name));
-                }
-                break;
-            case "ip":
-            case "ipaddress":
-                if (!value.matches("^\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}$")
-                        && !value.matches("^[a-fA-F0-9:]+$")) {
-                    throw new SecurityException(
-                            String.format("参数 '%s' 必须是有效的 IP 地址", name));
-                }
-                break;
-            case "hostname":
-                if (!value.matches("^[a-zA-Z0-9][a-zA-Z0-9\\-\\.]*[a-zA-Z0-9]$")
-                        || value.length() > 253) {
-                    throw new SecurityException(
-                            String.format("参数 '%s' 必须是有效的主机名", name));
-                }
-                break;
+    /**
+     * 校验枚举型参数的取值
+     */
+    private void validateAllowedValue(String name, String value, ParamValidationPlan.ParamRule rule) {
+        if (rule.allowedValues != null && !rule.allowedValues.contains(value)) {
+            log.warn("Security: Parameter '{}' value not in allowed options, value: {}", name, maskValue(value));
+            throw new SecurityException(String.format("参数 '%s' 的值不在允许的选项范围内", name));
         }
     }
 
@@ -718,13 +655,20 @@ public class CommandSecurityValidator {
         if (params == null || params.isEmpty()) {
             return;
         }
+        performFullSecurityCheck(getValidationPlan(command), params, strictMode);
+    }
 
-        // 获取参数定义
-        Map<String, ParamDefine> paramDefines = new HashMap<>();
-        if (command.getCommandConfig() != null && command.getCommandConfig().getParams() != null) {
-            for (ParamDefine def : command.getCommandConfig().getParams()) {
-                paramDefines.put(def.getName(), def);
-            }
+    /**
+     * 使用预编译的校验计划执行完整的命令安全校验
+     *
+     * @param plan       参数校验计划
+     * @param params     参数映射
+     * @param strictMode 是否启用严格模式（严格模式下会进行白名单验证）
+     * @throws SecurityException 如果检测到安全威胁
+     */
+    public void performFullSecurityCheck(ParamValidationPlan plan, Map<String, Object> params, boolean strictMode) {
+        if (params == null || params.isEmpty()) {
+            return;
         }
 
         for (Map.Entry<String, Object> entry : params.entrySet()) {
@@ -746,26 +690,29 @@ public class CommandSecurityValidator {
             }
 
             // 3. 根据参数类型进行校验
-            ParamDefine def = paramDefines.get(paramName);
-            if (def != null) {
-                String type = def.getType();
-                if (type != null) {
+            ParamValidationPlan.ParamRule rule = plan.rule(paramName);
+            if (rule != null) {
+                if (rule.typed) {
                     // 类型校验
-                    validateParamType(paramName, strValue, def);
+                    validateParamType(paramName, strValue, rule);
 
                     // 路径类型额外进行路径遍历检查
-                    if (type.equalsIgnoreCase("path") || type.equalsIgnoreCase("file")) {
+                    if (rule.pathSecurity) {
                         validatePathSecurity(paramName, strValue);
                     }
 
                     // 严格模式下进行白名单验证
-                    if (strictMode) {
-                        String whitelistType = mapTypeToWhitelist(type);
-                        if (whitelistType != null) {
-                            validateWithWhitelist(paramName, strValue, whitelistType);
-                        }
+                    if (strictMode && rule.whitelist != null && !strValue.isEmpty()
+                            && !rule.whitelist.matcher(strValue).matches()) {
+                        log.warn("Security: Parameter '{}' failed whitelist validation (type={}), value: {}",
+                                paramName, rule.whitelistType, maskValue(strValue));
+                        throw new SecurityException(
+                                String.format("参数 '%s' 格式不符合要求（期望格式: %s）", paramName, rule.whitelistType));
                     }
                 }
+
+                // 4. 枚举型参数的可选值校验
+                validateAllowedValue(paramName, strValue, rule);
             }
         }
 
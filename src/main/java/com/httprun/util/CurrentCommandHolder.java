@@ -0,0 +1,29 @@
+package com.httprun.util;
+
+import com.httprun.entity.Command;
+
+/**
+ * 当前请求已加载的命令定义
+ *
+ * 命令执行服务登记已查询到的 Command，访问日志切面直接用它对请求参数脱敏，不再按名称重复查询数据库。
+ * 放在 util 包中，服务层与切面都只依赖它而不互相依赖；由切面在请求结束时清理。
+ */
+public final class CurrentCommandHolder {
+
+    private static final ThreadLocal<Command> CURRENT = new ThreadLocal<>();
+
+    private CurrentCommandHolder() {
+    }
+
+    public static void set(Command command) {
+        CURRENT.set(command);
+    }
+
+    public static Command get() {
+        return CURRENT.get();
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+}
@@ -0,0 +1,44 @@
+package com.httprun.util;
+
+import com.httprun.enums.ErrorCode;
+import com.httprun.exception.BusinessException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * 键集分页游标：上一页最后一行的 (createdAt, id)
+ *
+ * 对外为不透明的 URL 安全 Base64 字符串，客户端只需原样回传。
+ */
+public record KeysetCursor(LocalDateTime createdAt, long id) {
+
+    private static final String VERSION = "v1";
+
+    public String encode() {
+        String raw = VERSION + "|" + createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标，空值表示第一页
+     *
+     * @throws BusinessException 游标格式无效
+     */
+    public static KeysetCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            if (parts.length != 3 || !VERSION.equals(parts[0])) {
+                throw new IllegalArgumentException("unsupported cursor");
+            }
+            return new KeysetCursor(LocalDateTime.parse(parts[1]), Long.parseLong(parts[2]));
+        } catch (RuntimeException e) {
+            throw new BusinessException(ErrorCode.INVALID_PARAMETER, "Invalid cursor");
+        }
+    }
+}
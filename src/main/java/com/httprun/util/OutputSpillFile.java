@@ -0,0 +1,344 @@
+package com.httprun.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 落盘的命令输出文件（UTF-8）及其稀疏行偏移索引
+ *
+ * 写入时每 {@link #LINE_INDEX_INTERVAL} 行记录一次行首字节偏移，{@link #finish()} 时写入同名 .idx 文件；
+ * 移动到最终位置时索引中同时记录输出的归属（Token 名称），读取时据此鉴权，无需等待执行记录入库。
+ * 按行读取先由索引定位到不超过起始行的最近检查点，再以 FileChannel 定位读取向后扫描；
+ * 按字节范围读取使用 transferTo。两种方式都不会把整个文件读入堆内存。
+ * 写入端非线程安全，由 OutputCapture 在其锁内调用。
+ */
+public final class OutputSpillFile {
+
+    public static final int LINE_INDEX_INTERVAL = 1024;
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final int INDEX_MAGIC = 0x4F555458;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+    private Path path;
+    /** 上次写入末尾未配对的高代理字符 */
+    private char pendingHigh;
+    private long size;
+    private long newlines;
+    private byte lastByte = '\n';
+    private long[] checkpoints = new long[16];
+    private int checkpointCount;
+    private boolean finished;
+    private String owner;
+
+    private OutputSpillFile(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * 在指定目录下创建临时落盘文件（目录不存在时创建）
+     */
+    public static OutputSpillFile create(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        return new OutputSpillFile(Files.createTempFile(directory, "spill-", ".out"));
+    }
+
+    /**
+     * 追加 text[start, end) 的内容
+     */
+    public void write(CharSequence text, int start, int end) throws IOException {
+        if (start >= end) {
+            return;
+        }
+        CharBuffer in;
+        if (pendingHigh != 0) {
+            in = CharBuffer.allocate(end - start + 1);
+            in.put(pendingHigh).append(text, start, end).flip();
+            pendingHigh = 0;
+        } else {
+            in = CharBuffer.wrap(text, start, end);
+        }
+        encode(in, false);
+        if (in.hasRemaining()) {
+            // 只可能剩下一个等待配对的高代理字符
+            pendingHigh = in.get();
+        }
+    }
+
+    /**
+     * 结束写入，关闭文件并写出行索引
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        try {
+            CharBuffer tail = pendingHigh != 0 ? CharBuffer.wrap(new char[] { pendingHigh }) : CharBuffer.allocate(0);
+            encode(tail, true);
+            while (encoder.flush(bytes).isOverflow()) {
+                drain();
+            }
+            drain();
+        } finally {
+            channel.close();
+        }
+        writeIndex(indexPath(path));
+    }
+
+    /**
+     * 移动到目标位置（目标目录不存在时创建），并在目标索引中记录归属
+     *
+     * 先写目标索引再移动数据文件，数据文件可见时索引必然已就绪。
+     *
+     * @param owner 输出归属的 Token 名称，可为空
+     */
+    public void moveTo(Path target, String owner) throws IOException {
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        Path oldIndex = indexPath(path);
+        this.owner = owner;
+        writeIndex(indexPath(target));
+        Files.move(path, target, StandardCopyOption.REPLACE_EXISTING);
+        path = target;
+        Files.deleteIfExists(oldIndex);
+    }
+
+    /**
+     * 删除文件及索引（忽略错误）
+     */
+    public void delete() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // 关闭失败不影响删除
+        }
+        deleteQuietly(path);
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    /**
+     * 已写入的字节数
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * 已写入的行数（最后一行没有换行符时同样计入）
+     */
+    public long lines() {
+        return newlines + (lastByte != '\n' ? 1 : 0);
+    }
+
+    /**
+     * 删除落盘文件及其索引（忽略错误）
+     */
+    public static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(indexPath(path));
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // 由过期清理兜底
+        }
+    }
+
+    /**
+     * 读取文件的行索引
+     */
+    public static Index readIndex(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(indexPath(path)))) {
+            if (in.readInt() != INDEX_MAGIC) {
+                throw new IOException("Invalid output index: " + indexPath(path));
+            }
+            int interval = in.readInt();
+            long size = in.readLong();
+            long lines = in.readLong();
+            long[] offsets = new long[in.readInt()];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = in.readLong();
+            }
+            String owner = in.readUTF();
+            return new Index(interval, size, lines, offsets, owner.isEmpty() ? null : owner);
+        }
+    }
+
+    /**
+     * 从 fromLine（0 起）开始读取至多 limit 行
+     *
+     * @param maxBytes 本页累计字节上限（至少返回一行），单行超过上限时截断
+     */
+    public static Lines readLines(Path path, long fromLine, int limit, int maxBytes) throws IOException {
+        Index index = readIndex(path);
+        if (fromLine >= index.lines() || limit <= 0) {
+            return new Lines(index, List.of(), fromLine, false);
+        }
+        int checkpoint = (int) Math.min(fromLine / index.interval(), index.offsets().length);
+        long position = checkpoint == 0 ? 0 : index.offsets()[checkpoint - 1];
+        long line = (long) checkpoint * index.interval();
+
+        List<String> result = new ArrayList<>(Math.min(limit, 1024));
+        ByteArrayOutputStream current = new ByteArrayOutputStream();
+        long pageBytes = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            scan:
+            while (position < index.size()) {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                position += read;
+                byte[] array = buffer.array();
+                for (int i = 0; i < read; i++) {
+                    byte b = array[i];
+                    if (line < fromLine) {
+                        if (b == '\n') {
+                            line++;
+                        }
+                        continue;
+                    }
+                    if (b == '\n') {
+                        result.add(current.toString(StandardCharsets.UTF_8));
+                        pageBytes += current.size() + 1;
+                        current.reset();
+                        line++;
+                        if (result.size() >= limit || pageBytes >= maxBytes) {
+                            break scan;
+                        }
+                    } else if (current.size() < maxBytes) {
+                        current.write(b);
+                    }
+                }
+            }
+        }
+        if (current.size() > 0 && result.size() < limit && line < index.lines()) {
+            // 文件末尾没有换行符的最后一行
+            result.add(current.toString(StandardCharsets.UTF_8));
+            line++;
+        }
+        return new Lines(index, result, fromLine + result.size(), line < index.lines());
+    }
+
+    /**
+     * 把 [offset, offset + length) 范围内的字节写入目标通道
+     *
+     * @return 实际写出的字节数
+     */
+    public static long transferTo(Path path, long offset, long length, WritableByteChannel target)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long end = Math.min(channel.size(), offset + length);
+            long position = offset;
+            while (position < end) {
+                long sent = channel.transferTo(position, end - position, target);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+            }
+            return Math.max(0, position - offset);
+        }
+    }
+
+    private void encode(CharBuffer in, boolean endOfInput) throws IOException {
+        while (true) {
+            CoderResult result = encoder.encode(in, bytes, endOfInput);
+            if (result.isOverflow()) {
+                drain();
+            } else {
+                break;
+            }
+        }
+        if (bytes.position() >= BUFFER_SIZE / 2) {
+            drain();
+        }
+    }
+
+    /**
+     * 把编码缓冲区写入文件，并为跨过检查点的行记录偏移
+     */
+    private void drain() throws IOException {
+        bytes.flip();
+        int length = bytes.remaining();
+        byte[] array = bytes.array();
+        for (int i = 0; i < length; i++) {
+            if (array[i] == '\n') {
+                newlines++;
+                if (newlines % LINE_INDEX_INTERVAL == 0) {
+                    if (checkpointCount == checkpoints.length) {
+                        checkpoints = Arrays.copyOf(checkpoints, checkpointCount * 2);
+                    }
+                    checkpoints[checkpointCount++] = size + i + 1;
+                }
+            }
+        }
+        if (length > 0) {
+            lastByte = array[length - 1];
+        }
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        size += length;
+        bytes.clear();
+    }
+
+    private void writeIndex(Path indexPath) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(indexPath))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(LINE_INDEX_INTERVAL);
+            out.writeLong(size);
+            out.writeLong(lines());
+            out.writeInt(checkpointCount);
+            for (int i = 0; i < checkpointCount; i++) {
+                out.writeLong(checkpoints[i]);
+            }
+            out.writeUTF(owner != null ? owner : "");
+        }
+    }
+
+    private static Path indexPath(Path path) {
+        return path.resolveSibling(path.getFileName() + INDEX_SUFFIX);
+    }
+
+    /**
+     * 行索引：offsets[k] 为第 (k + 1) * interval 行（0 起）的行首字节偏移
+     *
+     * @param owner 输出归属的 Token 名称，未记录时为 null
+     */
+    public record Index(int interval, long size, long lines, long[] offsets, String owner) {
+    }
+
+    /**
+     * 一页按行读取的结果
+     *
+     * @param nextLine 下一页的起始行
+     */
+    public record Lines(Index index, List<String> lines, long nextLine, boolean hasMore) {
+    }
+}
@@ -0,0 +1,216 @@
+package com.httprun.util;
+
+import com.httprun.entity.ParamDefine;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * 参数校验计划
+ *
+ * 由 CommandConfig.params 按命令版本编译一次：参数类型在编译时解析为快速校验器，
+ * 白名单正则直接引用预编译的 Pattern，枚举型参数的可选值转为 HashSet，
+ * 请求时只需按参数名 O(1) 取出规则执行。
+ */
+public final class ParamValidationPlan {
+
+    /**
+     * 参数类型校验（与原 String.matches 正则语义一致的手写解析器）
+     */
+    enum TypeCheck {
+        NONE(null),
+        /** ^-?\d+$ */
+        INTEGER("参数 '%s' 必须是整数"),
+        /** ^(true|false|1|0|yes|no)$ */
+        BOOLEAN("参数 '%s' 必须是布尔值"),
+        /** 不允许 .. 以及 /etc、/root 开头 */
+        PATH("参数 '%s' 包含不允许的路径"),
+        /** ^\d{1,3}(\.\d{1,3}){3}$ 或 ^[a-fA-F0-9:]+$ */
+        IP("参数 '%s' 必须是有效的 IP 地址"),
+        /** ^[a-zA-Z0-9][a-zA-Z0-9\-\.]*[a-zA-Z0-9]$ 且长度不超过 253 */
+        HOSTNAME("参数 '%s' 必须是有效的主机名");
+
+        private static final Set<String> BOOLEAN_VALUES = Set.of("true", "false", "1", "0", "yes", "no");
+
+        final String message;
+
+        TypeCheck(String message) {
+            this.message = message;
+        }
+
+        boolean accepts(String value) {
+            return switch (this) {
+                case NONE -> true;
+                case INTEGER -> isInteger(value);
+                case BOOLEAN -> BOOLEAN_VALUES.contains(value);
+                case PATH -> !value.contains("..") && !value.startsWith("/etc") && !value.startsWith("/root");
+                case IP -> isDottedQuad(value) || isHexColon(value);
+                case HOSTNAME -> isHostname(value);
+            };
+        }
+
+        static TypeCheck of(String lowerType) {
+            return switch (lowerType) {
+                case "integer", "int", "number" -> INTEGER;
+                case "boolean", "bool" -> BOOLEAN;
+                case "path", "file" -> PATH;
+                case "ip", "ipaddress" -> IP;
+                case "hostname" -> HOSTNAME;
+                default -> NONE;
+            };
+        }
+    }
+
+    /**
+     * 单个参数的校验规则
+     */
+    static final class ParamRule {
+        final String name;
+        final boolean required;
+        /** 是否声明了类型（未声明类型时跳过类型相关校验） */
+        final boolean typed;
+        final TypeCheck typeCheck;
+        /** path/file 类型需要额外的路径遍历检查 */
+        final boolean pathSecurity;
+        final String whitelistType;
+        final Pattern whitelist;
+        /** 可选值集合，null 表示不限制 */
+        final Set<String> allowedValues;
+
+        ParamRule(ParamDefine def, Function<String, String> whitelistMapper, Map<String, Pattern> whitelists) {
+            this.name = def.getName();
+            this.required = def.isRequired();
+            String type = def.getType();
+            this.typed = type != null;
+            String lowerType = type != null ? type.toLowerCase() : "";
+            this.typeCheck = TypeCheck.of(lowerType);
+            this.pathSecurity = lowerType.equals("path") || lowerType.equals("file");
+            this.whitelistType = typed ? whitelistMapper.apply(type) : null;
+            this.whitelist = whitelistType != null ? whitelists.get(whitelistType) : null;
+            this.allowedValues = def.getOptions() != null && !def.getOptions().isEmpty()
+                    ? new HashSet<>(def.getOptions())
+                    : null;
+        }
+    }
+
+    private final LocalDateTime version;
+    private final Map<String, ParamRule> rules;
+    private final List<String> requiredParamNames;
+
+    private ParamValidationPlan(LocalDateTime version, Map<String, ParamRule> rules, List<String> requiredParamNames) {
+        this.version = version;
+        this.rules = rules;
+        this.requiredParamNames = requiredParamNames;
+    }
+
+    static ParamValidationPlan compile(List<ParamDefine> params, LocalDateTime version,
+            Function<String, String> whitelistMapper, Map<String, Pattern> whitelists) {
+        Map<String, ParamRule> rules = new HashMap<>();
+        List<String> required = new ArrayList<>();
+        if (params != null) {
+            for (ParamDefine def : params) {
+                ParamRule rule = new ParamRule(def, whitelistMapper, whitelists);
+                rules.put(rule.name, rule);
+                if (rule.required) {
+                    required.add(rule.name);
+                }
+            }
+        }
+        return new ParamValidationPlan(version, rules, List.copyOf(required));
+    }
+
+    boolean isCompiledFrom(LocalDateTime updatedAt) {
+        return updatedAt != null && Objects.equals(version, updatedAt);
+    }
+
+    ParamRule rule(String name) {
+        return rules.get(name);
+    }
+
+    /**
+     * 必填参数名称（按定义顺序）
+     */
+    public List<String> requiredParamNames() {
+        return requiredParamNames;
+    }
+
+    // ===== 快速解析器 =====
+
+    private static boolean isInteger(String value) {
+        int start = value.startsWith("-") ? 1 : 0;
+        if (value.length() == start) {
+            return false;
+        }
+        for (int i = start; i < value.length(); i++) {
+            if (!isDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDottedQuad(String value) {
+        int groups = 0;
+        int digits = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (isDigit(c)) {
+                if (++digits > 3) {
+                    return false;
+                }
+            } else if (c == '.') {
+                if (digits == 0 || ++groups > 3) {
+                    return false;
+                }
+                digits = 0;
+            } else {
+                return false;
+            }
+        }
+        return groups == 3 && digits > 0;
+    }
+
+    private static boolean isHexColon(String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (!isDigit(c) && !(c >= 'a' && c <= 'f') && !(c >= 'A' && c <= 'F') && c != ':') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isHostname(String value) {
+        int length = value.length();
+        if (length < 2 || length > 253
+                || !isAsciiAlphanumeric(value.charAt(0)) || !isAsciiAlphanumeric(value.charAt(length - 1))) {
+            return false;
+        }
+        for (int i = 1; i < length - 1; i++) {
+            char c = value.charAt(i);
+            if (!isAsciiAlphanumeric(c) && c != '-' && c != '.') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isAsciiAlphanumeric(char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+}
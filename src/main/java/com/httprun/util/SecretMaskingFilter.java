@@ -0,0 +1,269 @@
+package com.httprun.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 命令输出敏感值流式脱敏过滤器
+ *
+ * 以本次执行的敏感参数值构建 Aho-Corasick 自动机，输出按任意分块写入，
+ * 每个字符只处理一次（O(n)），跨分块边界的敏感值同样能被识别。
+ * 过滤器本身不可变、可在多个输出流间共享；每个输出流通过 {@link #newStream()} 获取独立的扫描状态。
+ *
+ * 为了识别跨分块的匹配，流只会输出已确定不可能成为匹配一部分的字符，
+ * 最多暂存与当前自动机深度相同（不超过最长敏感值长度）的尾部字符。
+ * 相互重叠或相邻的命中区间合并为一个 ***。
+ */
+public final class SecretMaskingFilter {
+
+    private static final String MASK = "***";
+
+    /** 不包含任何敏感值的过滤器，原样输出 */
+    public static final SecretMaskingFilter NONE = new SecretMaskingFilter(List.of());
+
+    /** goto 表：每个状态的出边字符（升序）及对应的目标状态，按字符二分查找 */
+    private final char[][] edgeChars;
+    private final int[][] edgeTargets;
+    private final int[] fail;
+    private final int[] depth;
+    /** 以该状态结尾的最长敏感值长度，0 表示无命中 */
+    private final int[] matchLength;
+
+    private SecretMaskingFilter(List<String> secrets) {
+        // 1. 构建 trie（每个状态的出边暂存为 字符 / 目标 两个并列列表）
+        List<StringBuilder> labels = new ArrayList<>();
+        List<int[]> targets = new ArrayList<>();
+        List<Integer> depths = new ArrayList<>();
+        List<Boolean> terminal = new ArrayList<>();
+        labels.add(new StringBuilder());
+        targets.add(new int[2]);
+        depths.add(0);
+        terminal.add(false);
+        for (String secret : secrets) {
+            int state = 0;
+            for (int i = 0; i < secret.length(); i++) {
+                char c = secret.charAt(i);
+                StringBuilder label = labels.get(state);
+                int edge = label.indexOf(String.valueOf(c));
+                if (edge >= 0) {
+                    state = targets.get(state)[edge];
+                    continue;
+                }
+                int next = depths.size();
+                int[] edges = targets.get(state);
+                if (label.length() == edges.length) {
+                    edges = Arrays.copyOf(edges, edges.length * 2);
+                    targets.set(state, edges);
+                }
+                edges[label.length()] = next;
+                label.append(c);
+                labels.add(new StringBuilder());
+                targets.add(new int[2]);
+                depths.add(depths.get(state) + 1);
+                terminal.add(false);
+                state = next;
+            }
+            terminal.set(state, true);
+        }
+
+        int size = depths.size();
+        edgeChars = new char[size][];
+        edgeTargets = new int[size][];
+        fail = new int[size];
+        depth = new int[size];
+        matchLength = new int[size];
+        for (int i = 0; i < size; i++) {
+            depth[i] = depths.get(i);
+            sortEdges(i, labels.get(i), targets.get(i));
+        }
+
+        // 2. BFS 计算失败链接与最长命中长度
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int child : edgeTargets[0]) {
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            matchLength[state] = terminal.get(state) ? depth[state] : matchLength[fail[state]];
+            char[] chars = edgeChars[state];
+            int[] children = edgeTargets[state];
+            for (int i = 0; i < chars.length; i++) {
+                fail[children[i]] = state == 0 ? 0 : step(fail[state], chars[i]);
+                queue.add(children[i]);
+            }
+        }
+    }
+
+    /**
+     * 按字符升序整理一个状态的出边（出边数量很少，插入排序即可）
+     */
+    private void sortEdges(int state, StringBuilder label, int[] targets) {
+        int count = label.length();
+        char[] chars = new char[count];
+        int[] next = new int[count];
+        for (int i = 0; i < count; i++) {
+            char c = label.charAt(i);
+            int target = targets[i];
+            int j = i;
+            while (j > 0 && chars[j - 1] > c) {
+                chars[j] = chars[j - 1];
+                next[j] = next[j - 1];
+                j--;
+            }
+            chars[j] = c;
+            next[j] = target;
+        }
+        edgeChars[state] = chars;
+        edgeTargets[state] = next;
+    }
+
+    /**
+     * 根据敏感值构建过滤器（忽略 null 与空字符串）
+     */
+    public static SecretMaskingFilter of(Collection<String> secrets) {
+        if (secrets == null || secrets.isEmpty()) {
+            return NONE;
+        }
+        Set<String> distinct = new LinkedHashSet<>();
+        for (String secret : secrets) {
+            if (secret != null && !secret.isEmpty()) {
+                distinct.add(secret);
+            }
+        }
+        return distinct.isEmpty() ? NONE : new SecretMaskingFilter(new ArrayList<>(distinct));
+    }
+
+    /**
+     * 是否不包含任何敏感值
+     */
+    public boolean isEmpty() {
+        return depth.length == 1;
+    }
+
+    /**
+     * 对完整文本脱敏
+     */
+    public String mask(String text) {
+        if (text == null || text.isEmpty() || isEmpty()) {
+            return text;
+        }
+        StringBuilder out = new StringBuilder(text.length());
+        Stream stream = newStream();
+        stream.write(text, out);
+        stream.finish(out);
+        return out.toString();
+    }
+
+    /**
+     * 创建一个新的流式扫描状态
+     */
+    public Stream newStream() {
+        return new Stream();
+    }
+
+    private int step(int state, char c) {
+        while (true) {
+            int edge = Arrays.binarySearch(edgeChars[state], c);
+            if (edge >= 0) {
+                return edgeTargets[state][edge];
+            }
+            if (state == 0) {
+                return 0;
+            }
+            state = fail[state];
+        }
+    }
+
+    /**
+     * 单个输出流的扫描状态（非线程安全）
+     */
+    public final class Stream {
+
+        private final StringBuilder pending = new StringBuilder();
+        /** 命中区间 [start, end]（绝对位置，按 end 递增） */
+        private final Deque<long[]> maskedRanges = new ArrayDeque<>();
+        private int state;
+        /** 下一个输入字符的绝对位置 */
+        private long position;
+        /** pending 第一个字符的绝对位置 */
+        private long pendingBase;
+        /** pending 中下一个待输出字符的下标 */
+        private int cursor;
+        /** 上一个输出的字符是否处于命中区间内（用于合并相邻区间） */
+        private boolean inMask;
+
+        private Stream() {
+        }
+
+        /**
+         * 写入一段输出，并将可以确定的部分追加到 out
+         */
+        public void write(CharSequence chunk, StringBuilder out) {
+            if (isEmpty()) {
+                out.append(chunk);
+                return;
+            }
+            for (int i = 0; i < chunk.length(); i++) {
+                char c = chunk.charAt(i);
+                state = step(state, c);
+                pending.append(c);
+                position++;
+                int length = matchLength[state];
+                if (length > 0) {
+                    addRange(position - length, position - 1);
+                }
+            }
+            // 当前自动机深度之前的字符不可能再成为任何匹配的一部分
+            emit(position - depth[state], out);
+        }
+
+        /**
+         * 输入结束，输出所有暂存字符
+         */
+        public void finish(StringBuilder out) {
+            emit(position, out);
+            state = 0;
+        }
+
+        private void addRange(long start, long end) {
+            long[] last = maskedRanges.peekLast();
+            if (last != null && start <= last[1] + 1) {
+                last[1] = Math.max(last[1], end);
+            } else {
+                maskedRanges.addLast(new long[] { start, end });
+            }
+        }
+
+        private void emit(long limit, StringBuilder out) {
+            while (pendingBase + cursor < limit) {
+                long index = pendingBase + cursor;
+                long[] range = maskedRanges.peekFirst();
+                if (range != null && range[0] <= index) {
+                    if (!inMask) {
+                        out.append(MASK);
+                        inMask = true;
+                    }
+                    if (index >= range[1]) {
+                        maskedRanges.pollFirst();
+                    }
+                } else {
+                    out.append(pending.charAt(cursor));
+                    inMask = false;
+                }
+                cursor++;
+            }
+            // 已输出部分不少于剩余部分时再压缩，保证整体拷贝量为 O(n)
+            if (cursor > 0 && cursor >= pending.length() - cursor) {
+                pending.delete(0, cursor);
+                pendingBase += cursor;
+                cursor = 0;
+            }
+        }
+    }
+}
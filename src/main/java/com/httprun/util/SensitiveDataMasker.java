@@ -165,7 +165,7 @@ public class SensitiveDataMasker {
     /**
      * 获取命令中定义的敏感参数名称集合
      */
-    private static Set<String> getSensitiveParamNames(Command command) {
+    public static Set<String> getSensitiveParamNames(Command command) {
         if (command == null || command.getCommandConfig() == null
                 || command.getCommandConfig().getParams() == null) {
             return Set.of();
@@ -0,0 +1,170 @@
+package com.httprun.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁滑动时间窗口：执行次数、失败次数与耗时直方图
+ *
+ * 时间按固定宽度切成槽位，环形数组保存最近 slots 个槽位。每个槽位带有其时间序号（epoch），
+ * 写入时若环上的槽位已过期，以 CAS 换成新槽位，竞争失败的线程重读后写入胜出者；
+ * 计数使用 LongAdder，直方图使用 AtomicLongArray，写入路径不加锁。
+ *
+ * 直方图按对数分桶（相邻桶边界比 1.1，相对误差约 5%），超出范围的取值计入最后一个桶。
+ * 每个槽位在首次写入时才分配，空闲时不占用直方图内存。
+ */
+public final class SlidingLatencyWindow {
+
+    private static final double GAMMA = 1.1;
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    /** 1.1^135 ≈ 3.9e5，覆盖 1ms ~ 6.5 分钟 */
+    static final int HISTOGRAM_BUCKETS = 136;
+
+    private final long slotMillis;
+    private final AtomicReferenceArray<Slot> ring;
+
+    /**
+     * @param slotMillis 槽位宽度（毫秒）
+     * @param slots      保留的槽位数，决定可查询的最长窗口
+     */
+    public SlidingLatencyWindow(long slotMillis, int slots) {
+        this.slotMillis = slotMillis;
+        this.ring = new AtomicReferenceArray<>(slots);
+    }
+
+    /**
+     * 记录一次执行
+     */
+    public void record(long durationMillis, boolean failed, long nowMillis) {
+        Slot slot = slotFor(nowMillis / slotMillis);
+        if (slot == null) {
+            return;
+        }
+        slot.count.increment();
+        if (failed) {
+            slot.errors.increment();
+        }
+        slot.histogram.incrementAndGet(bucket(durationMillis));
+    }
+
+    /**
+     * 汇总截至 nowMillis 的最近 windowMillis（按槽位取整，含当前未满的槽位）
+     */
+    public Snapshot snapshot(long windowMillis, long nowMillis) {
+        long current = nowMillis / slotMillis;
+        int windowSlots = (int) Math.min(ring.length(), Math.max(1, windowMillis / slotMillis));
+        long count = 0;
+        long errors = 0;
+        long[] histogram = new long[HISTOGRAM_BUCKETS];
+        for (int i = 0; i < windowSlots; i++) {
+            long epoch = current - i;
+            Slot slot = ring.get(index(epoch));
+            if (slot == null || slot.epoch != epoch) {
+                continue;
+            }
+            count += slot.count.sum();
+            errors += slot.errors.sum();
+            for (int b = 0; b < HISTOGRAM_BUCKETS; b++) {
+                histogram[b] += slot.histogram.get(b);
+            }
+        }
+        // 实际覆盖时长：完整的历史槽位加当前槽位已经过的部分
+        long coveredMillis = (windowSlots - 1) * slotMillis + (nowMillis % slotMillis) + 1;
+        return new Snapshot(count, errors, coveredMillis, histogram);
+    }
+
+    private Slot slotFor(long epoch) {
+        int index = index(epoch);
+        while (true) {
+            Slot slot = ring.get(index);
+            if (slot != null && slot.epoch == epoch) {
+                return slot;
+            }
+            if (slot != null && slot.epoch > epoch) {
+                // 线程在槽位切换前取得时间，该槽位已被更新的时间占用，丢弃这次记录
+                return null;
+            }
+            Slot fresh = new Slot(epoch);
+            if (ring.compareAndSet(index, slot, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    private int index(long epoch) {
+        return (int) Math.floorMod(epoch, (long) ring.length());
+    }
+
+    static int bucket(long value) {
+        if (value <= 1) {
+            return 0;
+        }
+        return (int) Math.min(HISTOGRAM_BUCKETS - 1, Math.ceil(Math.log(value) / LOG_GAMMA));
+    }
+
+    private static final class Slot {
+        final long epoch;
+        final LongAdder count = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final AtomicLongArray histogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+
+        Slot(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+
+    /**
+     * 窗口汇总结果
+     */
+    public static final class Snapshot {
+        private final long count;
+        private final long errors;
+        private final long coveredMillis;
+        private final long[] histogram;
+
+        Snapshot(long count, long errors, long coveredMillis, long[] histogram) {
+            this.count = count;
+            this.errors = errors;
+            this.coveredMillis = coveredMillis;
+            this.histogram = histogram;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * 每秒执行次数
+         */
+        public double ratePerSecond() {
+            return count * 1000.0 / coveredMillis;
+        }
+
+        /**
+         * 估算耗时分位数（毫秒）；窗口内没有执行时返回 null
+         */
+        public Long quantile(double quantile) {
+            if (count == 0) {
+                return null;
+            }
+            long total = 0;
+            for (long c : histogram) {
+                total += c;
+            }
+            long rank = (long) Math.floor(Math.max(0, Math.min(1, quantile)) * (total - 1));
+            long seen = 0;
+            for (int b = 0; b < HISTOGRAM_BUCKETS; b++) {
+                seen += histogram[b];
+                if (seen > rank) {
+                    return b == 0 ? 1L : Math.round(2 * Math.pow(GAMMA, b) / (GAMMA + 1));
+                }
+            }
+            return null;
+        }
+    }
+}
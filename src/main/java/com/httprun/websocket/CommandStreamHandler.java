@@ -9,7 +9,13 @@ import com.httprun.enums.CommandStatus;
 import com.httprun.enums.ExecutionMode;
 import com.httprun.exception.BusinessException;
 import com.httprun.executor.CommandTemplate;
+import com.httprun.executor.RenderedCommand;
 import com.httprun.repository.CommandRepository;
+import com.httprun.security.ExecutionRateLimiter;
+import com.httprun.security.TokenPolicy;
+import com.httprun.service.impl.ExecutionRecorder;
+import com.httprun.service.impl.LiveExecutionStats;
+import com.httprun.util.SecretMaskingFilter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -22,17 +28,16 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 命令流 WebSocket 处理器
- * 实时推送命令执行输出到客户端
+ * 实时推送命令执行输出到客户端，执行结束后与同步执行一样登记结构化执行记录
  */
 @Slf4j
 @Component
@@ -43,6 +48,9 @@ public class CommandStreamHandler extends TextWebSocketHandler {
     private final CommandTemplate commandTemplate;
     private final ObjectMapper objectMapper;
     private final com.httprun.executor.SshCommandExecutor sshCommandExecutor;
+    private final ExecutionRateLimiter rateLimiter;
+    private final LiveExecutionStats liveExecutionStats;
+    private final ExecutionRecorder executionRecorder;
 
     // 存储活跃的执行进程，支持取消
     private final Map<String, Process> activeProcesses = new ConcurrentHashMap<>();
@@ -90,8 +98,7 @@ public class CommandStreamHandler extends TextWebSocketHandler {
      */
     private void handleRunCommand(WebSocketSession session, StreamRequest request) {
         String sessionId = session.getId();
-        String subject = (String) session.getAttributes().get("subject");
-        boolean isAdmin = Boolean.TRUE.equals(session.getAttributes().get("isAdmin"));
+        TokenPolicy policy = (TokenPolicy) session.getAttributes().get("policy");
 
         try {
             // 1. 查询命令
@@ -104,28 +111,15 @@ public class CommandStreamHandler extends TextWebSocketHandler {
                 return;
             }
 
-            // 3. 检查权限
-            if (!isAdmin && subject != null) {
-                String allowedGroups = (String) session.getAttributes().get("allowedGroups");
-                boolean permitted = false;
-                if (allowedGroups != null && !allowedGroups.isBlank()) {
-                    java.util.List<String> groups = java.util.Arrays.asList(allowedGroups.split(","));
-                    permitted = command.getGroupName() != null && groups.contains(command.getGroupName());
-                }
-                if (!permitted) {
-                    if (allowedGroups == null || allowedGroups.isBlank()) {
-                        List<String> allowedCommands = Arrays.asList(subject.split(","));
-                        if (!allowedCommands.contains(command.getName())) {
-                            sendError(session, "Permission denied");
-                            return;
-                        }
-                    } else {
-                        sendError(session, "Permission denied");
-                        return;
-                    }
-                }
+            // 3. 检查权限（握手时已预编译为 TokenPolicy）
+            if (policy.authorize(command.getName(), command.getGroupName()) != TokenPolicy.Decision.PERMITTED) {
+                sendError(session, "Permission denied");
+                return;
             }
 
+            // 频率限制（超限时以 BusinessException 形式返回错误消息）
+            rateLimiter.acquire(policy, command);
+
             // 4. 构建 RunCommandRequest
             RunCommandRequest runRequest = new RunCommandRequest();
             runRequest.setName(request.getName());
@@ -137,11 +131,9 @@ public class CommandStreamHandler extends TextWebSocketHandler {
             // 5. 验证参数
             commandTemplate.validateParams(command, runRequest);
 
-            // 6. 渲染命令模板
-            String[] rendered = commandTemplate.renderWithMasking(command, runRequest);
-            String actualCommand = rendered[0];
-            String maskedCommand = rendered[1];
-            log.info("Streaming command: {} (masked)", maskedCommand);
+            // 6. 渲染命令模板（预编译计划，同时产出 argv 与脱敏日志）
+            RenderedCommand rendered = commandTemplate.renderCommand(command, runRequest);
+            log.info("Streaming command: {} (masked)", rendered.maskedCommandLine());
 
             // 7. 发送开始信号
             sendMessage(session, new StreamMessage("start", null, null, null));
@@ -168,13 +160,21 @@ public class CommandStreamHandler extends TextWebSocketHandler {
                 // SSH 流式执行在独立线程中进行，注册取消回调
                 Thread t = new Thread(() -> {
                     long startTime = System.currentTimeMillis();
+                    LiveExecutionStats.Execution execution = liveExecutionStats.begin(command.getName());
+                    AtomicLong stdoutBytes = new AtomicLong();
+                    AtomicLong stderrBytes = new AtomicLong();
+                    int exit = -1;
+                    String error = null;
                     try {
-                        int exit = sshCommandExecutor.executeStreaming(reqRemote, actualCommand, timeout,
+                        exit = sshCommandExecutor.executeStreaming(reqRemote, rendered.commandLine(), timeout,
                                 (type, line) -> {
+                                    String masked = rendered.outputMasker().mask(line);
                                     if ("stdout".equals(type)) {
-                                        sendMessage(session, new StreamMessage("stdout", line, null, null));
+                                        stdoutBytes.addAndGet(lineBytes(masked));
+                                        sendMessage(session, new StreamMessage("stdout", masked, null, null));
                                     } else {
-                                        sendMessage(session, new StreamMessage("stderr", null, line, null));
+                                        stderrBytes.addAndGet(lineBytes(masked));
+                                        sendMessage(session, new StreamMessage("stderr", null, masked, null));
                                     }
                                 }, (cancelFn) -> activeCancelCallbacks.put(sessionId, cancelFn));
 
@@ -182,15 +182,19 @@ public class CommandStreamHandler extends TextWebSocketHandler {
                         sendComplete(session, exit, duration);
                     } catch (Exception e) {
                         log.error("SSH stream execution error", e);
+                        error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
                         sendError(session, e.getMessage());
                         sendComplete(session, -1, System.currentTimeMillis() - startTime);
                     } finally {
+                        execution.finish(exit != 0);
                         activeCancelCallbacks.remove(sessionId);
+                        recordExecution(session, command, ExecutionMode.SSH, reqRemote.getHost(), exit,
+                                System.currentTimeMillis() - startTime, stdoutBytes.get(), stderrBytes.get(), error);
                     }
                 }, "ssh-stream-" + sessionId);
                 t.start();
             } else {
-                executeWithStreaming(session, actualCommand, timeout);
+                executeWithStreaming(session, command, rendered.argv(), rendered.outputMasker(), timeout);
             }
 
         } catch (BusinessException e) {
@@ -203,15 +207,21 @@ public class CommandStreamHandler extends TextWebSocketHandler {
 
     /**
      * 流式执行命令
+     * 敏感参数值不含换行（参数校验拦截 \n/\r），因此按行脱敏即可覆盖所有命中
      */
-    private void executeWithStreaming(WebSocketSession session, String command, int timeoutSeconds) {
+    private void executeWithStreaming(WebSocketSession session, Command command, List<String> cmdArgs,
+            SecretMaskingFilter outputMasker, int timeoutSeconds) {
         String sessionId = session.getId();
         long startTime = System.currentTimeMillis();
+        LiveExecutionStats.Execution execution = liveExecutionStats.begin(command.getName());
+        AtomicLong stdoutBytes = new AtomicLong();
+        AtomicLong stderrBytes = new AtomicLong();
+        int exitCode = -1;
+        String error = null;
 
         try {
-            // 1. 解析命令
-            List<String> cmdArgs = parseCommand(command);
-            log.debug("Executing stream command: {}", cmdArgs);
+            // 1. 参数列表由预编译模板生成，无需重新解析
+            log.debug("Executing stream command: {} args", cmdArgs.size());
 
             // 2. 构建进程
             ProcessBuilder processBuilder = new ProcessBuilder(cmdArgs);
@@ -232,7 +242,9 @@ public class CommandStreamHandler extends TextWebSocketHandler {
                         new InputStreamReader(process.getInputStream(), charset))) {
                     String line;
                     while ((line = reader.readLine()) != null) {
-                        sendMessage(session, new StreamMessage("stdout", line, null, null));
+                        String masked = outputMasker.mask(line);
+                        stdoutBytes.addAndGet(lineBytes(masked));
+                        sendMessage(session, new StreamMessage("stdout", masked, null, null));
                     }
                 } catch (IOException e) {
                     if (!e.getMessage().contains("closed")) {
@@ -247,7 +259,9 @@ public class CommandStreamHandler extends TextWebSocketHandler {
                         new InputStreamReader(process.getErrorStream(), charset))) {
                     String line;
                     while ((line = reader.readLine()) != null) {
-                        sendMessage(session, new StreamMessage("stderr", null, line, null));
+                        String masked = outputMasker.mask(line);
+                        stderrBytes.addAndGet(lineBytes(masked));
+                        sendMessage(session, new StreamMessage("stderr", null, masked, null));
                     }
                 } catch (IOException e) {
                     if (!e.getMessage().contains("closed")) {
@@ -265,7 +279,8 @@ public class CommandStreamHandler extends TextWebSocketHandler {
             if (!finished) {
                 process.destroyForcibly();
                 process.waitFor(5, TimeUnit.SECONDS);
-                sendError(session, "Command timeout after " + timeoutSeconds + " seconds");
+                error = "Command timeout after " + timeoutSeconds + " seconds";
+                sendError(session, error);
                 sendComplete(session, -1, System.currentTimeMillis() - startTime);
                 return;
             }
@@ -275,23 +290,48 @@ public class CommandStreamHandler extends TextWebSocketHandler {
             stderrThread.join(5000);
 
             // 7. 发送完成信号
-            int exitCode = process.exitValue();
+            exitCode = process.exitValue();
             long duration = System.currentTimeMillis() - startTime;
             sendComplete(session, exitCode, duration);
 
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            sendError(session, "Execution interrupted");
+            error = "Execution interrupted";
+            sendError(session, error);
             sendComplete(session, -1, System.currentTimeMillis() - startTime);
         } catch (Exception e) {
             log.error("Stream execution error", e);
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
             sendError(session, e.getMessage());
             sendComplete(session, -1, System.currentTimeMillis() - startTime);
         } finally {
+            execution.finish(exitCode != 0);
             activeProcesses.remove(sessionId);
+            recordExecution(session, command, ExecutionMode.LOCAL, null, exitCode,
+                    System.currentTimeMillis() - startTime, stdoutBytes.get(), stderrBytes.get(), error);
+        }
+    }
+
+    /**
+     * 登记流式执行的结构化执行记录；失败不影响推送
+     */
+    private void recordExecution(WebSocketSession session, Command command, ExecutionMode mode, String targetHost,
+            int exitCode, long duration, long stdoutBytes, long stderrBytes, String error) {
+        try {
+            executionRecorder.recordStreamed(command.getName(), command.getConfigVersion(), mode, targetHost,
+                    (String) session.getAttributes().get("name"), exitCode, duration, stdoutBytes, stderrBytes, error);
+        } catch (Exception e) {
+            log.warn("Failed to record streamed execution of {}: {}", command.getName(), e.getMessage());
         }
     }
 
+    /**
+     * 推送的一行输出（含换行符）的 UTF-8 字节数
+     */
+    private static long lineBytes(String line) {
+        return ExecutionRecorder.utf8Length(line) + 1;
+    }
+
     /**
      * 处理取消请求
      */
@@ -358,46 +398,6 @@ public class CommandStreamHandler extends TextWebSocketHandler {
         sendMessage(session, msg);
     }
 
-    /**
-     * 解析命令字符串为参数列表
-     */
-    private List<String> parseCommand(String command) {
-        List<String> args = new ArrayList<>();
-        StringBuilder current = new StringBuilder();
-        boolean inQuote = false;
-        char quoteChar = 0;
-
-        for (int i = 0; i < command.length(); i++) {
-            char c = command.charAt(i);
-
-            if (inQuote) {
-                if (c == quoteChar) {
-                    inQuote = false;
-                } else {
-                    current.append(c);
-                }
-            } else {
-                if (c == '"' || c == '\'') {
-                    inQuote = true;
-                    quoteChar = c;
-                } else if (Character.isWhitespace(c)) {
-                    if (current.length() > 0) {
-                        args.add(current.toString());
-                        current = new StringBuilder();
-                    }
-                } else {
-                    current.append(c);
-                }
-            }
-        }
-
-        if (current.length() > 0) {
-            args.add(current.toString());
-        }
-
-        return args;
-    }
-
     /**
      * 解析 remoteConfig 中的模板变量（host/username 支持 {{.paramName}} 格式）。
      * 密码和私钥不做模板处理，保持安全。
@@ -412,9 +412,9 @@ public class CommandStreamHandler extends TextWebSocketHandler {
             });
         }
         RemoteConfig resolved = new RemoteConfig();
-        resolved.setHost(renderSimpleTemplate(config.getHost(), paramMap));
+        resolved.setHost(CommandTemplate.renderInline(config.getHost(), paramMap));
         resolved.setPort(config.getPort());
-        resolved.setUsername(renderSimpleTemplate(config.getUsername(), paramMap));
+        resolved.setUsername(CommandTemplate.renderInline(config.getUsername(), paramMap));
         resolved.setPassword(config.getPassword());
         resolved.setPrivateKey(config.getPrivateKey());
         resolved.setSshKeyId(config.getSshKeyId());
@@ -422,26 +422,6 @@ public class CommandStreamHandler extends TextWebSocketHandler {
         return resolved;
     }
 
-    /**
-     * 简单模板渲染：将 {{.varName}} 或 {{varName}} 替换为 paramMap 中的值。
-     */
-    private String renderSimpleTemplate(String template, Map<String, String> paramMap) {
-        if (template == null || !template.contains("{{")) {
-            return template;
-        }
-        java.util.regex.Pattern pattern = java.util.regex.Pattern
-                .compile("\\{\\{\\s*\\.?([a-zA-Z_][a-zA-Z0-9_]*)\\s*}}");
-        java.util.regex.Matcher matcher = pattern.matcher(template);
-        StringBuffer sb = new StringBuffer();
-        while (matcher.find()) {
-            String varName = matcher.group(1);
-            String value = paramMap.getOrDefault(varName, "");
-            matcher.appendReplacement(sb, java.util.regex.Matcher.quoteReplacement(value));
-        }
-        matcher.appendTail(sb);
-        return sb.toString();
-    }
-
     /**
      * 流式请求 DTO
      */
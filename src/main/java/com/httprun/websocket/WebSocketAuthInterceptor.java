@@ -1,8 +1,10 @@
 package com.httprun.websocket;
 
-import com.httprun.entity.Token;
-import com.httprun.repository.TokenRepository;
+import com.httprun.security.ActiveToken;
 import com.httprun.security.JwtTokenProvider;
+import com.httprun.security.TokenRegistry;
+import com.httprun.security.VerifiedClaims;
+import io.jsonwebtoken.JwtException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.server.ServerHttpRequest;
@@ -25,34 +27,47 @@ import java.util.Optional;
 public class WebSocketAuthInterceptor implements HandshakeInterceptor {
 
     private final JwtTokenProvider jwtTokenProvider;
-    private final TokenRepository tokenRepository;
+    private final TokenRegistry tokenRegistry;
 
     @Override
     public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
             WebSocketHandler wsHandler, Map<String, Object> attributes) {
         try {
             String token = extractToken(request);
-            if (token == null || !jwtTokenProvider.validateToken(token)) {
+            VerifiedClaims claims = null;
+            if (token != null) {
+                try {
+                    claims = jwtTokenProvider.verify(token);
+                } catch (JwtException e) {
+                    log.debug("WebSocket token verification failed: {}", e.getMessage());
+                }
+            }
+            if (claims == null) {
                 log.warn("WebSocket handshake rejected: Invalid token");
                 return false;
             }
 
+            // 与 HTTP 认证一致：已撤销或不存在的 Token 拒绝握手
+            Optional<ActiveToken> activeToken = tokenRegistry.find(claims.digest(), claims.issuedAt());
+            if (activeToken.isEmpty()) {
+                log.warn("WebSocket handshake rejected: Token not found or revoked");
+                return false;
+            }
+
             // 将用户信息存入 attributes，供 Handler 使用
-            String subject = jwtTokenProvider.getSubject(token);
-            boolean isAdmin = jwtTokenProvider.isAdmin(token);
-            String name = jwtTokenProvider.getName(token);
+            String subject = claims.subject();
+            boolean isAdmin = claims.admin();
+            String name = claims.name();
 
             attributes.put("subject", subject);
             attributes.put("isAdmin", isAdmin);
             attributes.put("name", name);
             attributes.put("token", token);
 
-            // 从数据库获取 allowedGroups
-            Optional<Token> tokenEntityOpt = tokenRepository.findByJwtToken(token);
-            if (tokenEntityOpt.isPresent()) {
-                Token tokenEntity = tokenEntityOpt.get();
-                attributes.put("allowedGroups", tokenEntity.getAllowedGroups());
+            if (activeToken.get().allowedGroups() != null) {
+                attributes.put("allowedGroups", activeToken.get().allowedGroups());
             }
+            attributes.put("policy", activeToken.get().policy());
 
             log.debug("WebSocket handshake accepted for user: {}", name);
             return true;
@@ -0,0 +1,34 @@
+-- ============================================================
+-- V10: 命令执行统计汇总表
+-- 按小时 / 按天汇总每个命令、Token、状态码的执行次数、失败次数、耗时总和 / 最小 / 最大值
+-- 及可合并的耗时分位数草图（LatencySketch），统计接口只读该表，不扫描 access_logs。
+-- 迁移时间之后写入的日志由 CommandStatsAggregator 增量汇总，之前的日志由后台回填任务
+-- 按 id 分批汇总（进度记录在 command_stats_state，可中断续跑）。
+-- ============================================================
+CREATE TABLE IF NOT EXISTS command_stats_rollups (
+    granularity    VARCHAR(8)   NOT NULL,
+    bucket_start   TIMESTAMP    NOT NULL,
+    command_name   VARCHAR(100) NOT NULL,
+    token_id       VARCHAR(500) NOT NULL,
+    status_code    INT          NOT NULL,
+    exec_count     BIGINT       NOT NULL,
+    error_count    BIGINT       NOT NULL,
+    duration_sum   BIGINT       NOT NULL,
+    duration_min   BIGINT,
+    duration_max   BIGINT,
+    latency_sketch BYTEA,
+    PRIMARY KEY (granularity, bucket_start, command_name, token_id, status_code)
+);
+
+CREATE INDEX IF NOT EXISTS idx_stats_command_bucket ON command_stats_rollups (command_name, granularity, bucket_start);
+
+CREATE TABLE IF NOT EXISTS command_stats_state (
+    id               INT       PRIMARY KEY,
+    rollup_start     TIMESTAMP NOT NULL,
+    backfill_last_id BIGINT    NOT NULL DEFAULT 0,
+    backfilled_at    TIMESTAMP
+);
+
+-- 增量汇总起点：迁移执行的时间（新版本应用开始写日志之前）
+INSERT INTO command_stats_state (id, rollup_start, backfill_last_id) VALUES (1, CURRENT_TIMESTAMP, 0)
+ON CONFLICT DO NOTHING;
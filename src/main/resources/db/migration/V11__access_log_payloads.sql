@@ -0,0 +1,38 @@
+-- ============================================================
+-- V11: access_logs 的请求 / 响应内容拆分到 access_log_payloads
+-- 列表查询只读取 access_logs 中的元数据，大字段（TOAST）只在查看详情与导出时按 (id, created_at) 读取。
+-- access_log_payloads 与 access_logs 同样按天范围分区，分区名后缀与范围一一对应，
+-- 由 AccessLogPartitionManager 一并提前创建与过期删除。
+-- 已有内容在迁移中复制，随后删除 access_logs 的 request、response 列（仅修改元数据，旧行空间随分区过期释放）。
+-- ============================================================
+CREATE TABLE access_log_payloads (
+    id         BIGINT    NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    request    TEXT,
+    response   TEXT,
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- 按 access_logs 现有分区（含 legacy 与默认分区）建立同范围的分区
+DO $$
+DECLARE
+    part RECORD;
+BEGIN
+    FOR part IN
+        SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) AS bound
+        FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'access_logs'::regclass
+    LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF access_log_payloads %s',
+                       'access_log_payloads' || substr(part.relname, length('access_logs') + 1), part.bound);
+    END LOOP;
+END $$;
+
+CREATE TABLE IF NOT EXISTS access_log_payloads_default PARTITION OF access_log_payloads DEFAULT;
+
+INSERT INTO access_log_payloads (id, created_at, request, response)
+SELECT id, created_at, request, response
+FROM access_logs
+WHERE request IS NOT NULL OR response IS NOT NULL;
+
+ALTER TABLE access_logs DROP COLUMN request, DROP COLUMN response;
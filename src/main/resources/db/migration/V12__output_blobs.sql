@@ -0,0 +1,20 @@
+-- ============================================================
+-- V12: 内容寻址的命令输出存储
+-- 响应内容按 SHA-256 去重后 Deflate 压缩存入 output_blobs，access_log_payloads 只保存哈希引用。
+-- ref_count 随日志写入增加，随日志删除 / 分区过期 / 归档减少，归零后由 OutputBlobStore 删除。
+-- 迁移前写入的响应仍保存在 access_log_payloads.response 中，随保留期自然过期，不做回迁。
+-- ============================================================
+CREATE TABLE IF NOT EXISTS output_blobs (
+    hash               VARCHAR(64) PRIMARY KEY,
+    content            BYTEA       NOT NULL,
+    compressed         BOOLEAN     NOT NULL,
+    raw_size           INT         NOT NULL,
+    ref_count          BIGINT      NOT NULL,
+    created_at         TIMESTAMP   NOT NULL,
+    last_referenced_at TIMESTAMP   NOT NULL
+);
+
+ALTER TABLE access_log_payloads ADD COLUMN response_hash VARCHAR(64);
+
+-- 引用数归零的内容由清理任务扫描删除
+CREATE INDEX IF NOT EXISTS idx_output_blobs_unreferenced ON output_blobs (hash) WHERE ref_count <= 0;
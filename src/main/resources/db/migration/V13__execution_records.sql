@@ -0,0 +1,34 @@
+-- ============================================================
+-- V13: 结构化命令执行记录
+-- 每次实际调用执行器写入一行（退出码、耗时、排队时间、输出字节数与截断标记、目标主机），
+-- "某主机最近一小时的失败执行" 等查询走索引，不再解析 access_log_payloads 中的响应 JSON。
+-- 由 ExecutionRecorder 批量写入，按 httprun.access-log.retention-days 分批清理。
+-- ============================================================
+CREATE TABLE IF NOT EXISTS execution_records (
+    id               BIGSERIAL    PRIMARY KEY,
+    command_name     VARCHAR(100) NOT NULL,
+    command_version  INT,
+    execution_mode   VARCHAR(20)  NOT NULL,
+    target_host      VARCHAR(255),
+    token_id         VARCHAR(500),
+    exit_code        INT          NOT NULL,
+    failed           BOOLEAN      NOT NULL,
+    duration_ms      BIGINT       NOT NULL,
+    queue_wait_ms    BIGINT       NOT NULL,
+    stdout_bytes     BIGINT       NOT NULL,
+    stderr_bytes     BIGINT       NOT NULL,
+    stdout_truncated BOOLEAN      NOT NULL,
+    stderr_truncated BOOLEAN      NOT NULL,
+    error            VARCHAR(500),
+    created_at       TIMESTAMP    NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_exec_created ON execution_records (created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_exec_command_created ON execution_records (command_name, created_at DESC);
+CREATE INDEX IF NOT EXISTS idx_exec_host_created ON execution_records (target_host, created_at DESC);
+CREATE INDEX IF NOT EXISTS idx_exec_exit_created ON execution_records (exit_code, created_at DESC);
+-- 失败执行通常只占少数，部分索引体积小
+CREATE INDEX IF NOT EXISTS idx_exec_failed_created ON execution_records (created_at DESC) WHERE failed;
+
+-- 主键由 ExecutionRecorder 按批预分配（pooled 语义，与 access_logs_id_seq 相同）
+ALTER SEQUENCE IF EXISTS execution_records_id_seq INCREMENT BY 50;
@@ -0,0 +1,11 @@
+-- ============================================================
+-- V14: commands 记录当前配置版本号
+-- 执行记录直接引用已加载命令的 config_version，不再每次执行查询 command_versions 的最大版本号。
+-- 已有命令回填为版本历史中的最大版本号 + 1（与更新时的快照编号规则一致）。
+-- ============================================================
+ALTER TABLE commands ADD COLUMN IF NOT EXISTS config_version INT NOT NULL DEFAULT 1;
+
+UPDATE commands c
+SET config_version = v.max_version + 1
+FROM (SELECT command_name, MAX(version) AS max_version FROM command_versions GROUP BY command_name) v
+WHERE v.command_name = c.name;
@@ -0,0 +1,9 @@
+-- ============================================================
+-- V15: 执行统计回填改为按 (created_at, id) 键集推进
+-- access_logs 主键按节点成块预分配（每块 50 个），id 顺序与 created_at 顺序不一致，
+-- 按 id 游标回填会漏掉 created_at 早于 rollup_start、但在游标越过其 id 之后才写入的日志。
+-- 新游标记录已汇总到的 (created_at, id) 位置；backfill_last_id 保留为旧版按 id 回填的进度，
+-- id 不大于它的日志已被旧版回填计入，新回填跳过，不会重复计数。
+-- ============================================================
+ALTER TABLE command_stats_state ADD COLUMN IF NOT EXISTS backfill_cursor_at TIMESTAMP;
+ALTER TABLE command_stats_state ADD COLUMN IF NOT EXISTS backfill_cursor_id BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,6 @@
+-- V2: 命令危险等级持久化
+-- 危险等级在创建/更新命令时计算并写入，命令列表直接读取，不再逐条执行正则检测
+-- 已有数据保持为 NULL，由应用启动时的回填任务（CommandDangerLevelBackfill）分批补齐
+
+ALTER TABLE commands ADD COLUMN IF NOT EXISTS danger_level   INT;
+ALTER TABLE commands ADD COLUMN IF NOT EXISTS danger_warning VARCHAR(200);
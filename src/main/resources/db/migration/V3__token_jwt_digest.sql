@@ -0,0 +1,15 @@
+-- ============================================================
+-- V3: tokens 新增 jwt_digest（JWT 的 SHA-256 摘要）
+-- 认证时按定长摘要查找，替代 TEXT 列 jwt_token 上的唯一约束
+-- ============================================================
+ALTER TABLE tokens ADD COLUMN IF NOT EXISTS jwt_digest VARCHAR(64);
+
+UPDATE tokens
+SET jwt_digest = encode(sha256(convert_to(jwt_token, 'UTF8')), 'hex')
+WHERE jwt_digest IS NULL;
+
+ALTER TABLE tokens ALTER COLUMN jwt_digest SET NOT NULL;
+
+CREATE UNIQUE INDEX IF NOT EXISTS idx_token_jwt_digest ON tokens (jwt_digest);
+
+ALTER TABLE tokens DROP CONSTRAINT IF EXISTS uk_token_jwt;
@@ -0,0 +1,12 @@
+-- ============================================================
+-- V4: token_revocation_events 表
+-- Token 撤销变更日志，各节点增量拉取（PostgreSQL 额外通过 LISTEN/NOTIFY 即时唤醒）
+-- ============================================================
+CREATE TABLE IF NOT EXISTS token_revocation_events (
+    id          BIGSERIAL   PRIMARY KEY,
+    jwt_digest  VARCHAR(64) NOT NULL,
+    token_id    BIGINT,
+    created_at  TIMESTAMP   NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_revocation_created ON token_revocation_events (created_at);
@@ -0,0 +1,6 @@
+-- V5: 命令执行频率限制
+-- Token 与命令分别可配置每分钟允许的执行次数，NULL 表示不限流
+-- 限流状态只保存在各节点内存中（GCRA 令牌桶），数据库仅保存配额
+
+ALTER TABLE tokens   ADD COLUMN IF NOT EXISTS rate_limit_per_minute INT;
+ALTER TABLE commands ADD COLUMN IF NOT EXISTS rate_limit_per_minute INT;
@@ -0,0 +1,6 @@
+-- V6: access_logs 主键改为 pooled 序列分配
+-- 序列步长改为 50：每次 nextval 返回值 v 代表区间 (v - 50, v]，
+-- 批量写入器与 Hibernate（allocationSize = 50）一次往返即可为 50 行分配主键，多行 INSERT 不再逐行取号。
+-- 列默认值保持 nextval，手工插入的行取得的 v 不会落入其他分配者的区间。
+
+ALTER SEQUENCE IF EXISTS access_logs_id_seq INCREMENT BY 50;
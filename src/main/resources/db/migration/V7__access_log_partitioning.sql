@@ -0,0 +1,80 @@
+-- ============================================================
+-- V7: access_logs 按天范围分区
+-- 保留期清理改为整分区 DROP，不再对大表执行 DELETE（膨胀、长时间持锁）。
+-- 原表改名为 access_logs_legacy 并整体挂载为 [MINVALUE, 最新数据次日) 分区，无需搬迁数据；
+-- 超过保留期后由 AccessLogPartitionManager 整体删除。
+-- 后续分区（access_logs_pYYYYMMDD）由 AccessLogPartitionManager 提前创建，默认分区兜底。
+-- 分区表主键必须包含分区键，主键改为 (id, created_at)，另建 id 普通索引供按 id 查询。
+-- ============================================================
+ALTER TABLE access_logs RENAME TO access_logs_legacy;
+ALTER TABLE access_logs_legacy RENAME CONSTRAINT access_logs_pkey TO access_logs_legacy_pkey;
+ALTER INDEX IF EXISTS idx_accesslog_token        RENAME TO idx_accesslog_legacy_token;
+ALTER INDEX IF EXISTS idx_accesslog_path         RENAME TO idx_accesslog_legacy_path;
+ALTER INDEX IF EXISTS idx_accesslog_created      RENAME TO idx_accesslog_legacy_created;
+ALTER INDEX IF EXISTS idx_accesslog_ip           RENAME TO idx_accesslog_legacy_ip;
+ALTER INDEX IF EXISTS idx_accesslog_source       RENAME TO idx_accesslog_legacy_source;
+ALTER INDEX IF EXISTS idx_accesslog_request_id   RENAME TO idx_accesslog_legacy_request_id;
+ALTER INDEX IF EXISTS idx_accesslog_command_name RENAME TO idx_accesslog_legacy_command_name;
+
+CREATE TABLE access_logs (
+    id            BIGINT       NOT NULL DEFAULT nextval('access_logs_id_seq'),
+    token_id      VARCHAR(500),
+    path          VARCHAR(200) NOT NULL,
+    ip            VARCHAR(50),
+    method        VARCHAR(20),
+    request       TEXT,
+    response      TEXT,
+    status_code   INT,
+    duration      BIGINT,
+    user_agent    VARCHAR(500),
+    referer       VARCHAR(500),
+    source        VARCHAR(20),
+    forwarded_for VARCHAR(200),
+    request_id    VARCHAR(50),
+    command_name  VARCHAR(100),
+    created_at    TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- 序列归属新表，删除旧分区时不会连带删除序列
+ALTER TABLE access_logs_legacy ALTER COLUMN id DROP DEFAULT;
+ALTER SEQUENCE access_logs_id_seq OWNED BY access_logs.id;
+
+CREATE INDEX IF NOT EXISTS idx_accesslog_id           ON access_logs (id);
+CREATE INDEX IF NOT EXISTS idx_accesslog_token        ON access_logs (token_id);
+CREATE INDEX IF NOT EXISTS idx_accesslog_path         ON access_logs (path);
+CREATE INDEX IF NOT EXISTS idx_accesslog_created      ON access_logs (created_at);
+CREATE INDEX IF NOT EXISTS idx_accesslog_ip           ON access_logs (ip);
+CREATE INDEX IF NOT EXISTS idx_accesslog_source       ON access_logs (source);
+CREATE INDEX IF NOT EXISTS idx_accesslog_request_id   ON access_logs (request_id);
+CREATE INDEX IF NOT EXISTS idx_accesslog_command_name ON access_logs (command_name);
+
+-- 挂载旧表并预建 7 天的分区。
+-- 上界取旧表最新数据所在日期的次日（不早于迁移当天），迁移当天已写入的日志同样落在旧表分区内，
+-- 预建分区从该上界开始，避免与旧表分区重叠。
+-- CHECK 约束先以 NOT VALID 添加再单独 VALIDATE（扫描一次旧表，只持 SHARE UPDATE EXCLUSIVE 锁），
+-- ATTACH 复用已校验的约束，不再重复扫描。
+DO $$
+DECLARE
+    boundary DATE;
+    d        DATE;
+BEGIN
+    SELECT GREATEST(CURRENT_DATE, COALESCE((date_trunc('day', max(created_at)) + interval '1 day')::date, CURRENT_DATE))
+      INTO boundary
+      FROM access_logs_legacy;
+
+    EXECUTE format('ALTER TABLE access_logs_legacy ADD CONSTRAINT access_logs_legacy_range CHECK (created_at < %L) NOT VALID',
+                   boundary::timestamp);
+    ALTER TABLE access_logs_legacy VALIDATE CONSTRAINT access_logs_legacy_range;
+    EXECUTE format('ALTER TABLE access_logs ATTACH PARTITION access_logs_legacy FOR VALUES FROM (MINVALUE) TO (%L)',
+                   boundary::timestamp);
+    ALTER TABLE access_logs_legacy DROP CONSTRAINT access_logs_legacy_range;
+
+    FOR i IN 0..7 LOOP
+        d := boundary + i;
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF access_logs FOR VALUES FROM (%L) TO (%L)',
+                       'access_logs_p' || to_char(d, 'YYYYMMDD'), d::timestamp, (d + 1)::timestamp);
+    END LOOP;
+END $$;
+
+CREATE TABLE IF NOT EXISTS access_logs_default PARTITION OF access_logs DEFAULT;
@@ -0,0 +1,20 @@
+-- ============================================================
+-- V8: access_logs 关键词检索索引
+-- search_text = lower(concat_ws(' ', path, command_name, left(request, 2000)))，由批量写入器写入；
+-- pg_trgm GIN 索引使 search_text LIKE '%kw%' 无需全表扫描（关键词至少 3 个字符时生效）。
+-- 创建扩展需要数据库超级用户或已被授予 CREATE 权限。
+--
+-- 执行代价：回填 UPDATE 会重写所有已有行（产生等量死元组与 WAL），GIN 索引构建期间持 SHARE 锁阻塞写入；
+-- 分区表父表不支持 CREATE INDEX CONCURRENTLY。日志量较大时应在维护窗口执行，或预先在各分区上
+-- CONCURRENTLY 建好同名索引后挂载到父表索引（IF NOT EXISTS 使本迁移跳过重建），并在迁移后执行 VACUUM。
+-- 保留期内未回填的旧日志只是无法被关键词检索，不影响其他查询。
+-- ============================================================
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+ALTER TABLE access_logs ADD COLUMN IF NOT EXISTS search_text TEXT;
+
+UPDATE access_logs
+SET search_text = lower(concat_ws(' ', path, command_name, left(request, 2000)))
+WHERE search_text IS NULL;
+
+CREATE INDEX IF NOT EXISTS idx_accesslog_search_trgm ON access_logs USING gin (search_text gin_trgm_ops);
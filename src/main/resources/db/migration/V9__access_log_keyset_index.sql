@@ -0,0 +1,6 @@
+-- ============================================================
+-- V9: access_logs 键集分页索引
+-- 游标分页按 (created_at DESC, id DESC) 排序并以 (created_at, id) < (?, ?) 定位，
+-- 复合索引使每页只读取 limit + 1 行，无需排序。
+-- ============================================================
+CREATE INDEX IF NOT EXISTS idx_accesslog_created_id ON access_logs (created_at DESC, id DESC);
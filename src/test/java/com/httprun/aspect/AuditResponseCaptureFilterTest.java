@@ -0,0 +1,98 @@
+package com.httprun.aspect;
+
+import com.httprun.dto.AuditContext;
+import com.httprun.service.AccessLogService;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * AuditResponseCaptureFilter 单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+class AuditResponseCaptureFilterTest {
+
+    @Mock
+    private AccessLogService accessLogService;
+
+    private AuditResponseCaptureFilter filter;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @BeforeEach
+    void setUp() {
+        filter = new AuditResponseCaptureFilter(accessLogService);
+        request = new MockHttpServletRequest("POST", "/api/run");
+        response = new MockHttpServletResponse();
+    }
+
+    @Test
+    @DisplayName("响应写出后补齐响应体与实际状态码再提交日志")
+    void completesPendingContextWithWrittenBody() throws Exception {
+        filter.doFilter(request, response, chain(429, "{\"code\":429,\"message\":\"限流\"}", true));
+
+        ArgumentCaptor<AuditContext> captor = ArgumentCaptor.forClass(AuditContext.class);
+        verify(accessLogService).logAccess(captor.capture());
+        assertThat(captor.getValue().getResponse()).isEqualTo("{\"code\":429,\"message\":\"限流\"}");
+        assertThat(captor.getValue().getStatusCode()).isEqualTo(429);
+        assertThat(response.getContentAsString(StandardCharsets.UTF_8)).isEqualTo("{\"code\":429,\"message\":\"限流\"}");
+    }
+
+    @Test
+    @DisplayName("超长响应完整写给客户端，日志只保留前缀")
+    void truncatesCapturedBodyOnly() throws Exception {
+        String body = "x".repeat(AuditResponseCaptureFilter.MAX_CAPTURE_BYTES + 1000);
+
+        filter.doFilter(request, response, chain(200, body, true));
+
+        ArgumentCaptor<AuditContext> captor = ArgumentCaptor.forClass(AuditContext.class);
+        verify(accessLogService).logAccess(captor.capture());
+        assertThat(captor.getValue().getResponse())
+                .hasSize(AuditResponseCaptureFilter.MAX_CAPTURE_BYTES + "...[truncated]".length())
+                .endsWith("...[truncated]");
+        assertThat(response.getContentAsString()).hasSize(body.length());
+    }
+
+    @Test
+    @DisplayName("切面未登记审计上下文的请求不采集也不记录")
+    void skipsRequestsWithoutPendingContext() throws Exception {
+        filter.doFilter(request, response, chain(200, "[]", false));
+
+        verify(accessLogService, never()).logAccess(any());
+        assertThat(response.getContentAsString()).isEqualTo("[]");
+    }
+
+    private MockFilterChain chain(int status, String body, boolean audited) {
+        return new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                if (audited) {
+                    assertThat(req.getAttribute(AuditResponseCaptureFilter.CAPTURE_ACTIVE_ATTRIBUTE)).isNotNull();
+                    req.setAttribute(AuditResponseCaptureFilter.PENDING_AUDIT_ATTRIBUTE,
+                            AuditContext.builder().path("/api/run").method("POST").statusCode(200).build());
+                }
+                resp.setStatus(status);
+                resp.setCharacterEncoding("UTF-8");
+                resp.getOutputStream().write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        });
+    }
+}
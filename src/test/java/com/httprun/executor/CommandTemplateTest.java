@@ -9,6 +9,7 @@ import com.httprun.util.CommandSecurityValidator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -198,4 +199,59 @@ class CommandTemplateTest {
                 .isInstanceOf(IllegalArgumentException.class)
                 .hasMessageContaining("Command configuration is not set");
     }
+
+    @Test
+    void renderCommand_shouldKeepParamValueAsSingleArgument() {
+        // Given
+        commandConfig.setCommand("grep -r \"{{.target}} end\" {{.count}} -p {{password}}");
+        RunCommandRequest request = new RunCommandRequest();
+        request.setParams(List.of(param("target", "a b 'c'"), param("count", "x y"), param("password", "s3cret")));
+
+        // When
+        RenderedCommand rendered = commandTemplate.renderCommand(testCommand, request);
+
+        // Then
+        assertThat(rendered.argv()).containsExactly("grep", "-r", "a b 'c' end", "x y", "-p", "s3cret");
+        assertThat(rendered.commandLine()).isEqualTo("grep -r \"a b 'c' end\" x y -p s3cret");
+        assertThat(rendered.maskedCommandLine()).isEqualTo("grep -r \"a b 'c' end\" x y -p ***");
+    }
+
+    @Test
+    void renderCommand_shouldDropEmptyArguments() {
+        // Given
+        commandConfig.setCommand("ls {{.target}} {{.missing}} -l");
+        RunCommandRequest request = new RunCommandRequest();
+        request.setParams(List.of(param("target", "/tmp")));
+
+        // When
+        RenderedCommand rendered = commandTemplate.renderCommand(testCommand, request);
+
+        // Then
+        assertThat(rendered.argv()).containsExactly("ls", "/tmp", "-l");
+    }
+
+    @Test
+    void renderCommand_shouldRecompileWhenCommandVersionChanges() {
+        // Given
+        testCommand.setId(1L);
+        testCommand.setUpdatedAt(LocalDateTime.of(2024, 1, 1, 0, 0));
+        RunCommandRequest request = new RunCommandRequest();
+        request.setParams(List.of(param("target", "example.com"), param("password", "p")));
+        assertThat(commandTemplate.renderCommand(testCommand, request).argv()).startsWith("ping");
+
+        // When
+        commandConfig.setCommand("echo {{.target}}");
+        testCommand.setUpdatedAt(LocalDateTime.of(2024, 1, 2, 0, 0));
+
+        // Then
+        assertThat(commandTemplate.renderCommand(testCommand, request).argv())
+                .containsExactly("echo", "example.com");
+    }
+
+    private RunCommandRequest.ParamInput param(String name, Object value) {
+        RunCommandRequest.ParamInput input = new RunCommandRequest.ParamInput();
+        input.setName(name);
+        input.setValue(value);
+        return input;
+    }
 }
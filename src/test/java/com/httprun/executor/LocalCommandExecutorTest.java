@@ -2,11 +2,13 @@ package com.httprun.executor;
 
 import com.httprun.dto.request.RunCommandRequest;
 import com.httprun.dto.response.CommandExecutionResult;
+import com.httprun.util.SecretMaskingFilter;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.EnabledOnOs;
 import org.junit.jupiter.api.condition.OS;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -41,6 +43,18 @@ class LocalCommandExecutorTest {
         assertTrue(result.getStdout().contains("hello"));
     }
 
+    @Test
+    @EnabledOnOs({ OS.LINUX, OS.MAC })
+    void testExecute_RenderedCommandMasksSecretsInOutput() {
+        RenderedCommand rendered = new RenderedCommand(List.of("echo", "token=s3cr3t", "s3cr3t"),
+                "echo token=s3cr3t s3cr3t", "echo token=*** ***", SecretMaskingFilter.of(List.of("s3cr3t")));
+
+        CommandExecutionResult result = executor.execute(rendered, request, 30);
+
+        assertEquals(0, result.getExitCode());
+        assertEquals("token=*** ***", result.getStdout());
+    }
+
     @Test
     @EnabledOnOs(OS.WINDOWS)
     void testExecute_WindowsEcho() {
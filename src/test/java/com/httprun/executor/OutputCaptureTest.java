@@ -0,0 +1,69 @@
+package com.httprun.executor;
+
+import com.httprun.dto.response.CommandExecutionResult;
+import com.httprun.util.OutputSpillFile;
+import com.httprun.util.SecretMaskingFilter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * OutputCapture 落盘测试
+ */
+class OutputCaptureTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("超过阈值后完整输出（已脱敏）写入磁盘，执行结果只保留开头部分")
+    void spillsMaskedOutputBeyondThreshold() throws Exception {
+        OutputCapture stdout = new OutputCapture(SecretMaskingFilter.of(List.of("s3cret")), tempDir, 64);
+        OutputCapture stderr = new OutputCapture(SecretMaskingFilter.NONE, tempDir, 64);
+        StringBuilder expected = new StringBuilder();
+        OutputStream out = stdout.asOutputStream(StandardCharsets.UTF_8);
+        for (int i = 0; i < 200; i++) {
+            String line = "row " + i + " token=s3cret 数据\n";
+            out.write(line.getBytes(StandardCharsets.UTF_8));
+            expected.append(line.replace("s3cret", "***"));
+        }
+        stderr.write("warn");
+
+        CommandExecutionResult result = OutputCapture.resultBuilder(stdout, stderr).build();
+
+        assertThat(result.isStdoutTruncated()).isTrue();
+        assertThat(result.getStdout().getBytes(StandardCharsets.UTF_8).length).isLessThanOrEqualTo(64);
+        assertThat(expected.toString()).startsWith(result.getStdout());
+        OutputSpillFile spill = result.getStdoutSpill();
+        assertThat(spill).isNotNull();
+        assertThat(Files.readString(spill.path())).isEqualTo(expected.toString());
+        assertThat(OutputSpillFile.readIndex(spill.path()).lines()).isEqualTo(200);
+
+        assertThat(result.isStderrTruncated()).isFalse();
+        assertThat(result.getStderr()).isEqualTo("warn");
+        assertThat(result.getStderrSpill()).isNull();
+
+        stdout.discard();
+        assertThat(Files.exists(spill.path())).isFalse();
+    }
+
+    @Test
+    @DisplayName("未指定落盘目录时不截断")
+    void keepsEverythingInMemoryWithoutSpillDirectory() {
+        OutputCapture capture = new OutputCapture(SecretMaskingFilter.NONE);
+        String text = "x".repeat(10_000);
+        capture.write(text);
+
+        assertThat(capture.finish()).isEqualTo(text);
+        assertThat(capture.isTruncated()).isFalse();
+        assertThat(capture.getSpill()).isNull();
+    }
+}
@@ -0,0 +1,150 @@
+package com.httprun.security;
+
+import com.httprun.entity.Command;
+import com.httprun.entity.Token;
+import com.httprun.exception.RateLimitExceededException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * ExecutionRateLimiter 单元测试
+ */
+class ExecutionRateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+    private SimpleMeterRegistry meterRegistry;
+    private ExecutionRateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        limiter = new ExecutionRateLimiter(meterRegistry, 1000, now::get);
+    }
+
+    @Test
+    @DisplayName("桶容量为每分钟配额，按配额速率恢复")
+    void burstThenRefill() {
+        for (int i = 0; i < 6; i++) {
+            assertThat(limiter.tryAcquire("k", 6)).isZero();
+        }
+        long wait = limiter.tryAcquire("k", 6);
+        assertThat(wait).isEqualTo(TimeUnit.SECONDS.toNanos(10));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertThat(limiter.tryAcquire("k", 6)).isZero();
+        assertThat(limiter.tryAcquire("k", 6)).isPositive();
+    }
+
+    @Test
+    @DisplayName("Token 超限抛出异常并给出重试秒数")
+    void tokenLimitExceeded() {
+        TokenPolicy policy = TokenPolicy.of(token(1L, 2));
+        Command command = command("deploy", null);
+
+        limiter.acquire(policy, command);
+        limiter.acquire(policy, command);
+        assertThatThrownBy(() -> limiter.acquire(policy, command))
+                .isInstanceOf(RateLimitExceededException.class)
+                .satisfies(e -> assertThat(((RateLimitExceededException) e).getRetryAfterSeconds()).isEqualTo(30));
+
+        assertThat(meterRegistry.get("httprun.ratelimit.rejected").tag("scope", "token").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("命令限流在所有 Token 间共享")
+    void commandLimitSharedAcrossTokens() {
+        Command command = command("deploy", 1);
+
+        limiter.acquire(TokenPolicy.of(token(1L, null)), command);
+        assertThatThrownBy(() -> limiter.acquire(TokenPolicy.of(token(2L, null)), command))
+                .isInstanceOf(RateLimitExceededException.class);
+        limiter.acquire(TokenPolicy.of(token(2L, null)), command("other", 1));
+
+        assertThat(meterRegistry.get("httprun.ratelimit.rejected").tag("scope", "command").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("命令限流拒绝时不消耗 Token 配额")
+    void commandRejectionRefundsTokenPermit() {
+        TokenPolicy policy = TokenPolicy.of(token(1L, 2));
+        Command throttled = command("deploy", 1);
+
+        limiter.acquire(policy, throttled);
+        for (int i = 0; i < 5; i++) {
+            assertThatThrownBy(() -> limiter.acquire(policy, throttled))
+                    .isInstanceOf(RateLimitExceededException.class)
+                    .hasMessageContaining("command deploy");
+        }
+        // Token 每分钟 2 次：只消耗了第一次成功执行的许可
+        limiter.acquire(policy, command("other", null));
+        assertThatThrownBy(() -> limiter.acquire(policy, command("other", null)))
+                .hasMessageContaining("token rate limit");
+
+        assertThat(meterRegistry.get("httprun.ratelimit.rejected").tag("scope", "command").counter().count())
+                .isEqualTo(5.0);
+    }
+
+    @Test
+    @DisplayName("未配置限流时不创建桶")
+    void unlimitedSkipsBuckets() {
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire(TokenPolicy.of(token(1L, null)), command("deploy", null));
+        }
+        assertThat(meterRegistry.get("httprun.ratelimit.buckets").gauge().value()).isZero();
+    }
+
+    @Test
+    @DisplayName("并发获取不超过配额")
+    void concurrentAcquireHonoursLimit() throws Exception {
+        int threads = 8;
+        AtomicInteger granted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < 100; i++) {
+                    if (limiter.tryAcquire("shared", 50) == 0) {
+                        granted.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(granted.get()).isEqualTo(50);
+    }
+
+    private static Token token(Long id, Integer rateLimitPerMinute) {
+        Token token = new Token();
+        token.setId(id);
+        token.setSubject("deploy");
+        token.setIsAdmin(false);
+        token.setRateLimitPerMinute(rateLimitPerMinute);
+        return token;
+    }
+
+    private static Command command(String name, Integer rateLimitPerMinute) {
+        Command command = new Command();
+        command.setName(name);
+        command.setRateLimitPerMinute(rateLimitPerMinute);
+        return command;
+    }
+}
@@ -0,0 +1,75 @@
+package com.httprun.security;
+
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * JwtTokenProvider 单元测试
+ */
+class JwtTokenProviderTest {
+
+    private static final String SECRET = "test-secret-key-for-jwt-provider-at-least-32-bytes";
+
+    private JwtTokenProvider provider;
+
+    @BeforeEach
+    void setUp() {
+        provider = new JwtTokenProvider(SECRET);
+    }
+
+    @Test
+    @DisplayName("验签后返回完整声明，重复验证命中缓存")
+    void shouldVerifyAndCacheClaims() {
+        long expiresAt = System.currentTimeMillis() / 1000 + 3600;
+        String token = provider.generateToken("cmd-a,cmd-b", "alice", false, expiresAt);
+
+        VerifiedClaims claims = provider.verify(token);
+
+        assertThat(claims.name()).isEqualTo("alice");
+        assertThat(claims.subject()).isEqualTo("cmd-a,cmd-b");
+        assertThat(claims.admin()).isFalse();
+        assertThat(claims.expiresAt().getEpochSecond()).isEqualTo(expiresAt);
+        assertThat(provider.verify(token)).isSameAs(claims);
+        assertThat(provider.validateToken(token)).isTrue();
+    }
+
+    @Test
+    @DisplayName("永久 Token 没有过期时间")
+    void shouldVerifyTokenWithoutExpiration() {
+        String token = provider.generateToken("admin", "root", true, null);
+
+        VerifiedClaims claims = provider.verify(token);
+
+        assertThat(claims.admin()).isTrue();
+        assertThat(claims.expiresAt()).isNull();
+    }
+
+    @Test
+    @DisplayName("过期、篡改或其他密钥签发的 Token 验证失败且不被缓存")
+    void shouldRejectInvalidTokens() {
+        String expired = provider.generateToken("cmd", "bob", false, System.currentTimeMillis() / 1000 - 10);
+        String valid = provider.generateToken("cmd", "bob", false, null);
+        String tampered = valid.substring(0, valid.length() - 2) + (valid.endsWith("A") ? "BB" : "AA");
+        String foreign = new JwtTokenProvider(SECRET + "-other").generateToken("cmd", "bob", false, null);
+
+        assertThatThrownBy(() -> provider.verify(expired)).isInstanceOf(JwtException.class);
+        assertThatThrownBy(() -> provider.verify(tampered)).isInstanceOf(JwtException.class);
+        assertThatThrownBy(() -> provider.verify(foreign)).isInstanceOf(JwtException.class);
+        assertThat(provider.validateToken(expired)).isFalse();
+        assertThat(provider.validateToken(tampered)).isFalse();
+    }
+
+    @Test
+    @DisplayName("摘要为 64 位十六进制且对相同输入稳定")
+    void shouldComputeStableDigest() {
+        String digest = TokenDigest.of("abc");
+
+        assertThat(digest).hasSize(64).isEqualTo(TokenDigest.of("abc"));
+        assertThat(digest).isEqualTo("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+    }
+}
@@ -0,0 +1,114 @@
+package com.httprun.security;
+
+import com.httprun.entity.Token;
+import com.httprun.security.TokenPolicy.Decision;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * TokenPolicy 单元测试
+ */
+class TokenPolicyTest {
+
+    /** 2024-01-01 为周一 */
+    private static final LocalDateTime MONDAY_NOON = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    @Test
+    @DisplayName("只有管理员 Token 不受命令限制")
+    void onlyAdminIsUnrestricted() {
+        Token token = token("cmd-a", "ops");
+        token.setIsAdmin(true);
+        assertThat(TokenPolicy.of(token).authorize("other", "dev")).isEqualTo(Decision.PERMITTED);
+        assertThat(TokenPolicy.of(token).isAdmin()).isTrue();
+    }
+
+    @Test
+    @DisplayName("subject 为 admin 或 null 的非管理员 Token 不视为不受限")
+    void adminSubjectIsNotUnrestricted() {
+        TokenPolicy adminSubject = TokenPolicy.of(token("admin", null));
+        assertThat(adminSubject.isAdmin()).isFalse();
+        assertThat(adminSubject.authorize("admin", null)).isEqualTo(Decision.PERMITTED);
+        assertThat(adminSubject.authorize("any", null)).isEqualTo(Decision.DENIED);
+
+        TokenPolicy noSubject = TokenPolicy.of(token(null, null));
+        assertThat(noSubject.authorize("any", null)).isEqualTo(Decision.DENIED);
+        assertThat(TokenPolicy.of(token(null, "ops")).authorize("any", "ops")).isEqualTo(Decision.PERMITTED);
+    }
+
+    @Test
+    @DisplayName("未配置分组时按命令名列表授权")
+    void authorizesByCommandList() {
+        TokenPolicy policy = TokenPolicy.of(token("cmd-a,cmd-b", null));
+
+        assertThat(policy.authorize("cmd-b", null)).isEqualTo(Decision.PERMITTED);
+        assertThat(policy.authorize("cmd-c", null)).isEqualTo(Decision.DENIED);
+    }
+
+    @Test
+    @DisplayName("配置分组后只按分组授权")
+    void groupsTakePrecedence() {
+        TokenPolicy policy = TokenPolicy.of(token("cmd-a", "ops,dev"));
+
+        assertThat(policy.authorize("cmd-x", "dev")).isEqualTo(Decision.PERMITTED);
+        assertThat(policy.authorize("cmd-a", "prod")).isEqualTo(Decision.DENIED_BY_GROUP);
+        assertThat(policy.authorize("cmd-a", null)).isEqualTo(Decision.DENIED_BY_GROUP);
+    }
+
+    @Test
+    @DisplayName("星期限制按位掩码判断")
+    void weekdayMask() {
+        Token token = token("cmd-a", null);
+        token.setAllowedWeekdays("1, 3,5");
+        TokenPolicy policy = TokenPolicy.of(token);
+
+        assertThat(policy.isWithinTimeWindow(MONDAY_NOON)).isTrue();
+        assertThat(policy.isWithinTimeWindow(MONDAY_NOON.plusDays(1))).isFalse();
+        assertThat(policy.isWithinTimeWindow(MONDAY_NOON.plusDays(2))).isTrue();
+
+        token.setAllowedWeekdays("x");
+        assertThat(TokenPolicy.of(token).isWithinTimeWindow(MONDAY_NOON)).isFalse();
+    }
+
+    @Test
+    @DisplayName("每日时段包含边界且支持跨夜")
+    void dailyWindow() {
+        Token token = token("cmd-a", null);
+        token.setAllowedStartTime("09:00");
+        token.setAllowedEndTime("18:00");
+        TokenPolicy policy = TokenPolicy.of(token);
+
+        assertThat(policy.isWithinTimeWindow(MONDAY_NOON)).isTrue();
+        assertThat(policy.isWithinTimeWindow(MONDAY_NOON.withHour(18).withMinute(0))).isTrue();
+        assertThat(policy.isWithinTimeWindow(MONDAY_NOON.withHour(18).withMinute(0).withSecond(1))).isFalse();
+        assertThat(policy.isWithinTimeWindow(MONDAY_NOON.withHour(8).withMinute(59))).isFalse();
+
+        token.setAllowedStartTime("22:00");
+        token.setAllowedEndTime("06:00");
+        TokenPolicy overnight = TokenPolicy.of(token);
+        assertThat(overnight.isWithinTimeWindow(MONDAY_NOON.withHour(23))).isTrue();
+        assertThat(overnight.isWithinTimeWindow(MONDAY_NOON.withHour(5))).isTrue();
+        assertThat(overnight.isWithinTimeWindow(MONDAY_NOON)).isFalse();
+    }
+
+    @Test
+    @DisplayName("无法解析的时段配置一律拒绝")
+    void invalidWindowDenies() {
+        Token token = token("cmd-a", null);
+        token.setAllowedStartTime("9am");
+        token.setAllowedEndTime("18:00");
+
+        assertThat(TokenPolicy.of(token).isWithinTimeWindow(MONDAY_NOON)).isFalse();
+    }
+
+    private static Token token(String subject, String allowedGroups) {
+        Token token = new Token();
+        token.setSubject(subject);
+        token.setAllowedGroups(allowedGroups);
+        token.setIsAdmin(false);
+        return token;
+    }
+}
@@ -0,0 +1,112 @@
+package com.httprun.security;
+
+import com.httprun.entity.Token;
+import com.httprun.repository.TokenRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * TokenRegistry 单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+class TokenRegistryTest {
+
+    @Mock
+    private TokenRepository tokenRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private TokenRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new TokenRegistry(tokenRepository, transactionTemplate, new SimpleMeterRegistry());
+    }
+
+    @Test
+    @DisplayName("启动时回填摘要并加载有效 Token，之后查找不访问数据库")
+    void shouldWarmUpAndServeFromMemory() {
+        Token legacy = token(1L, "jwt-1", null);
+        when(transactionTemplate.execute(any())).thenAnswer(inv -> inv.<TransactionCallback<?>>getArgument(0)
+                .doInTransaction(null));
+        when(tokenRepository.findByJwtDigestIsNull()).thenReturn(List.of(legacy));
+        when(tokenRepository.findByRevokedFalseOrderByCreatedAtDesc()).thenReturn(List.of(legacy));
+
+        registry.run(null);
+
+        verify(tokenRepository).updateJwtDigest(1L, TokenDigest.of("jwt-1"));
+        assertThat(registry.find(TokenDigest.of("jwt-1"))).map(ActiveToken::id).contains(1L);
+        verify(tokenRepository, never()).findByJwtDigest(any());
+    }
+
+    @Test
+    @DisplayName("未命中时查库一次，不存在的摘要进入否定缓存")
+    void shouldFallBackToDatabaseOnceForUnknownDigest() {
+        String digest = TokenDigest.of("unknown");
+        when(tokenRepository.findByJwtDigest(digest)).thenReturn(Optional.empty());
+
+        assertThat(registry.find(digest)).isEmpty();
+        assertThat(registry.find(digest)).isEmpty();
+
+        verify(tokenRepository, times(1)).findByJwtDigest(digest);
+    }
+
+    @Test
+    @DisplayName("加载完成后，早于加载时刻签发的未知 Token 直接拒绝，不查库")
+    void shouldAnswerOlderTokensFromRegistryAlone() {
+        when(transactionTemplate.execute(any())).thenReturn(0);
+        when(tokenRepository.findByRevokedFalseOrderByCreatedAtDesc()).thenReturn(List.of());
+        registry.run(null);
+        String stale = TokenDigest.of("stale");
+        String fresh = TokenDigest.of("fresh");
+        when(tokenRepository.findByJwtDigest(fresh)).thenReturn(Optional.of(token(2L, "fresh", null)));
+
+        assertThat(registry.find(stale, Instant.now().minus(Duration.ofDays(1)))).isEmpty();
+        assertThat(registry.find(fresh, Instant.now())).map(ActiveToken::id).contains(2L);
+
+        verify(tokenRepository, never()).findByJwtDigest(stale);
+        verify(tokenRepository).findByJwtDigest(fresh);
+    }
+
+    @Test
+    @DisplayName("撤销同步生效，之后不再回退查库")
+    void shouldApplyRevocationsSynchronously() {
+        registry.register(token(1L, "jwt-1", null));
+        registry.register(token(2L, "jwt-2", null));
+        assertThat(registry.size()).isEqualTo(2);
+
+        registry.revoke(TokenDigest.of("jwt-1"));
+
+        assertThat(registry.size()).isEqualTo(1);
+        assertThat(registry.find(TokenDigest.of("jwt-1"))).isEmpty();
+        assertThat(registry.find(TokenDigest.of("jwt-2"))).isPresent();
+        verify(tokenRepository, never()).findByJwtDigest(any());
+    }
+
+    private static Token token(Long id, String jwt, Long expiresAt) {
+        Token token = new Token();
+        token.setId(id);
+        token.setName("t" + id);
+        token.setJwtToken(jwt);
+        token.setExpiresAt(expiresAt);
+        token.setRevoked(false);
+        return token;
+    }
+}
@@ -0,0 +1,123 @@
+package com.httprun.security;
+
+import com.httprun.entity.TokenRevocationEvent;
+import com.httprun.repository.TokenRevocationEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * TokenRevocationSync 单元测试（SQLite 场景，仅轮询）
+ */
+@ExtendWith(MockitoExtension.class)
+class TokenRevocationSyncTest {
+
+    @Mock
+    private TokenRevocationEventRepository eventRepository;
+
+    @Mock
+    private TokenRegistry tokenRegistry;
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private DataSource dataSource;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TokenRevocationSync sync;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        meterRegistry = new SimpleMeterRegistry();
+        when(dataSource.getConnection().getMetaData().getDatabaseProductName()).thenReturn("SQLite");
+        when(eventRepository.findMaxId()).thenReturn(10L);
+        when(eventRepository.findIdsGreaterThan(anyLong())).thenReturn(LongStream.rangeClosed(1, 10).boxed().toList());
+        sync = new TokenRevocationSync(eventRepository, tokenRegistry, dataSource, meterRegistry, 24);
+        sync.init();
+    }
+
+    @Test
+    @DisplayName("从启动时的最大 id 开始增量拉取并应用到注册表")
+    void shouldApplyNewEventsIncrementally() {
+        when(eventRepository.findByIdGreaterThanOrderByIdAsc(eq(10L), any()))
+                .thenReturn(List.of(event(11L, "d1"), event(12L, "d2")));
+
+        sync.poll();
+
+        verify(tokenRegistry).revoke("d1");
+        verify(tokenRegistry).revoke("d2");
+        assertThat(sync.getLastSeenId()).isEqualTo(12L);
+        assertThat(meterRegistry.get("httprun.token.revocation.lag").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("跳过的较小 id 记为缺口，晚提交后按 id 补上且只应用一次，不依赖事件时间")
+    void shouldPickUpLateCommittedEventsOnce() {
+        when(eventRepository.findByIdGreaterThanOrderByIdAsc(eq(10L), any())).thenReturn(List.of(event(12L, "d2")));
+        sync.poll();
+        assertThat(sync.pendingGapCount()).isEqualTo(1);
+
+        // id=11 的事务在 id=12 之后才提交，且由时钟偏慢的节点写入
+        TokenRevocationEvent late = event(11L, "d1");
+        late.setCreatedAt(LocalDateTime.now().minusHours(1));
+        when(eventRepository.findAllById(List.of(11L))).thenReturn(List.of(late));
+        when(eventRepository.findByIdGreaterThanOrderByIdAsc(eq(12L), any())).thenReturn(List.of());
+        sync.poll();
+        sync.poll();
+
+        verify(tokenRegistry, times(1)).revoke("d1");
+        verify(tokenRegistry, times(1)).revoke("d2");
+        verify(eventRepository, times(1)).findAllById(any());
+        assertThat(sync.pendingGapCount()).isZero();
+        assertThat(sync.getLastSeenId()).isEqualTo(12L);
+    }
+
+    @Test
+    @DisplayName("启动时最近 id 中尚不存在的记为缺口")
+    void shouldTrackMissingIdsAtStartup() {
+        when(eventRepository.findIdsGreaterThan(anyLong())).thenReturn(List.of(8L, 10L));
+        TokenRevocationSync restarted = new TokenRevocationSync(eventRepository, tokenRegistry, dataSource,
+                meterRegistry, 24);
+        restarted.init();
+        assertThat(restarted.pendingGapCount()).isEqualTo(8);
+
+        when(eventRepository.findAllById(any())).thenReturn(List.of(event(9L, "d9")));
+        restarted.poll();
+
+        verify(tokenRegistry).revoke("d9");
+        assertThat(restarted.pendingGapCount()).isEqualTo(7);
+    }
+
+    @Test
+    @DisplayName("发布事件时写入变更日志并立即更新本节点注册表")
+    void shouldPersistAndApplyPublishedEvents() {
+        TokenRevocationEvent event = new TokenRevocationEvent("d9", 9L);
+
+        sync.publish(List.of(event));
+
+        verify(eventRepository).saveAll(List.of(event));
+        verify(tokenRegistry).revoke("d9");
+        verify(eventRepository, never()).findByIdGreaterThanOrderByIdAsc(anyLong(), any());
+    }
+
+    private static TokenRevocationEvent event(Long id, String digest) {
+        TokenRevocationEvent event = new TokenRevocationEvent(digest, id);
+        event.setId(id);
+        event.setCreatedAt(LocalDateTime.now().minusSeconds(1));
+        return event;
+    }
+}
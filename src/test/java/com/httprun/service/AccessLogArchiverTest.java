@@ -0,0 +1,192 @@
+package com.httprun.service;
+
+import com.httprun.entity.AccessLog;
+import com.httprun.service.impl.AccessLogArchiver;
+import com.httprun.service.impl.AccessLogPartitionManager;
+import com.httprun.service.impl.AccessLogSegment;
+import com.httprun.service.impl.CommandStatsAggregator;
+import com.httprun.service.impl.OutputBlobStore;
+import com.httprun.util.KeysetCursor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * AccessLogArchiver 单元测试（SQLite 临时库 + 临时归档目录）
+ */
+class AccessLogArchiverTest {
+
+    @TempDir
+    Path tempDir;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private Path archiveDir;
+    private CommandStatsAggregator statsAggregator;
+    private OutputBlobStore blobStore;
+    private AccessLogArchiver archiver;
+    private final LocalDateTime base = LocalDateTime.now().minusDays(20).withNano(123_000_000);
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:sqlite:" + tempDir.resolve("archive.db"), true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE access_logs (id integer primary key, token_id varchar(500), "
+                + "path varchar(200) not null, ip varchar(50), method varchar(20), user_agent varchar(500), "
+                + "referer varchar(500), source varchar(20), forwarded_for varchar(200), request_id varchar(50), "
+                + "command_name varchar(100), search_text text, status_code integer, duration bigint, "
+                + "created_at timestamp not null)");
+        jdbcTemplate.execute("CREATE TABLE access_log_payloads (id integer primary key, "
+                + "created_at timestamp not null, request text, response text, response_hash varchar(64))");
+        OutputBlobStoreTest.createTable(jdbcTemplate);
+        archiveDir = tempDir.resolve("segments");
+        statsAggregator = mock(CommandStatsAggregator.class);
+        when(statsAggregator.isBackfillComplete()).thenReturn(true);
+        blobStore = new OutputBlobStore(jdbcTemplate, new SimpleMeterRegistry());
+        archiver = new AccessLogArchiver(jdbcTemplate, blobStore, mock(AccessLogPartitionManager.class), statsAggregator,
+                new SimpleMeterRegistry(), true, archiveDir.toString(), 7, 4, 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.destroy();
+    }
+
+    @Test
+    @DisplayName("归档将早于截止时间的日志写入段文件并从数据库删除，游标查询可按顺序读回")
+    void archivesColdRowsAndSearchesSegments() throws Exception {
+        for (int id = 1; id <= 25; id++) {
+            insert(id, id % 2 == 0 ? "alice" : "bob", id % 5 == 0 ? null : "deploy", base.plusMinutes(id));
+        }
+        insert(26, "alice", "deploy", LocalDateTime.now());
+
+        long archived = archiver.archive(LocalDateTime.now().minusDays(7));
+
+        assertThat(archived).isEqualTo(25);
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM access_logs", Long.class)).containsExactly(26L);
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM access_log_payloads", Long.class)).containsExactly(26L);
+        assertThat(jdbcTemplate.queryForList("SELECT ref_count FROM output_blobs", Long.class)).containsExactly(1L);
+        try (var files = Files.list(archiveDir)) {
+            assertThat(files.map(p -> p.getFileName().toString()))
+                    .hasSize(4).allMatch(name -> name.endsWith(".seg"));
+        }
+
+        List<AccessLog> firstPage = archiver.search(row -> true, null, false, null, null, null, 6);
+        assertThat(firstPage).extracting(AccessLog::getId).containsExactly(25L, 24L, 23L, 22L, 21L, 20L);
+        assertThat(firstPage.get(0).getCreatedAt()).isEqualTo(base.plusMinutes(25));
+        assertThat(firstPage.get(0).getPath()).isEqualTo("/api/run");
+        assertThat(firstPage.get(0).getRequest()).isEqualTo("{\"id\":25}");
+        assertThat(firstPage.get(0).getResponse()).isEqualTo("ok");
+        assertThat(archiver.find(7L, base.plusMinutes(7)).getRequest()).isEqualTo("{\"id\":7}");
+        assertThat(archiver.find(7L, base.plusMinutes(8))).isNull();
+
+        AccessLog last = firstPage.get(firstPage.size() - 1);
+        List<AccessLog> nextPage = archiver.search(row -> true, null, false, null, null,
+                new KeysetCursor(last.getCreatedAt(), last.getId()), 6);
+        assertThat(nextPage).extracting(AccessLog::getId).containsExactly(19L, 18L, 17L, 16L, 15L, 14L);
+
+        LocalDateTime from = base.plusMinutes(3);
+        LocalDateTime to = base.plusMinutes(12);
+        List<AccessLog> aliceCommands = archiver.search(row -> "alice".equals(row.getTokenId())
+                && row.getCommandName() != null && !row.getCreatedAt().isBefore(from) && !row.getCreatedAt().isAfter(to),
+                "alice", true, from, to, null, 10);
+        assertThat(aliceCommands).extracting(AccessLog::getId).containsExactly(12L, 8L, 6L, 4L);
+    }
+
+    @Test
+    @DisplayName("逐块扫描按 (created_at, id) 降序输出游标之后的全部匹配日志")
+    void scansSegmentsInDescendingOrder() throws Exception {
+        for (int id = 1; id <= 25; id++) {
+            insert(id, id % 2 == 0 ? "alice" : "bob", "deploy", base.plusMinutes(id));
+        }
+        archiver.archive(LocalDateTime.now().minusDays(7));
+
+        List<Long> ids = new ArrayList<>();
+        archiver.scan(row -> "bob".equals(row.getTokenId()), "bob", true, null, null,
+                new KeysetCursor(base.plusMinutes(20), 20L), row -> ids.add(row.getId()));
+
+        assertThat(ids).containsExactly(19L, 17L, 15L, 13L, 11L, 9L, 7L, 5L, 3L, 1L);
+    }
+
+    @Test
+    @DisplayName("启动时补做已生效段的数据库删除，并丢弃未生效的临时文件")
+    void recoversInterruptedArchives() throws Exception {
+        for (int id = 1; id <= 3; id++) {
+            insert(id, "alice", "deploy", base.plusMinutes(id));
+        }
+        Files.createDirectories(archiveDir);
+        AccessLog row = new AccessLog();
+        row.setId(1L);
+        row.setPath("/api/run");
+        row.setCreatedAt(base.plusMinutes(1));
+        try (AccessLogSegment.Writer writer = new AccessLogSegment.Writer(archiveDir.resolve("done.seg"))) {
+            writer.append(List.of(row));
+            writer.finish();
+        }
+        Files.createFile(archiveDir.resolve("done.pending"));
+        Files.createFile(archiveDir.resolve("broken.tmp"));
+        Files.createFile(archiveDir.resolve("broken.pending"));
+
+        archiver.run(null);
+
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM access_logs ORDER BY id", Long.class))
+                .containsExactly(2L, 3L);
+        try (var files = Files.list(archiveDir)) {
+            assertThat(files.map(p -> p.getFileName().toString())).containsExactly("done.seg");
+        }
+        assertThat(archiver.hasSegments()).isTrue();
+        assertThat(archiver.search(r -> true, null, false, null, null, null, 10))
+                .extracting(AccessLog::getId).containsExactly(1L);
+    }
+
+    @Test
+    @DisplayName("查询前发现其他节点写入或删除的段")
+    void discoversSegmentsWrittenByOtherNodes() throws Exception {
+        AccessLogArchiver otherNode = new AccessLogArchiver(jdbcTemplate, blobStore,
+                mock(AccessLogPartitionManager.class), statsAggregator, new SimpleMeterRegistry(), true,
+                archiveDir.toString(), 7, 4, 10);
+        otherNode.run(null);
+        assertThat(otherNode.hasSegments()).isFalse();
+
+        for (int id = 1; id <= 5; id++) {
+            insert(id, "alice", "deploy", base.plusMinutes(id));
+        }
+        archiver.archive(LocalDateTime.now().minusDays(7));
+
+        assertThat(otherNode.hasSegments()).isTrue();
+        assertThat(otherNode.find(3L, base.plusMinutes(3))).isNotNull();
+
+        try (var files = Files.list(archiveDir)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+
+        assertThat(otherNode.hasSegments()).isFalse();
+    }
+
+    private void insert(long id, String tokenId, String command, LocalDateTime createdAt) {
+        jdbcTemplate.update("INSERT INTO access_logs (id, token_id, path, method, command_name, status_code, "
+                + "duration, created_at) VALUES (?, ?, '/api/run', 'POST', ?, 200, ?, ?)",
+                id, tokenId, command, id * 10, Timestamp.valueOf(createdAt));
+        jdbcTemplate.update("INSERT INTO access_log_payloads (id, created_at, request, response_hash) "
+                + "VALUES (?, ?, ?, ?)", id, Timestamp.valueOf(createdAt), "{\"id\":" + id + "}",
+                blobStore.store(List.of("ok")).get(0));
+    }
+}
@@ -0,0 +1,79 @@
+package com.httprun.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.httprun.entity.AccessLog;
+import com.httprun.enums.ExportFormat;
+import com.httprun.exception.BusinessException;
+import com.httprun.service.impl.AccessLogExportWriter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * AccessLogExportWriter 单元测试
+ */
+class AccessLogExportWriterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    @Test
+    @DisplayName("NDJSON 每行一个完整 JSON 对象")
+    void writesNdjsonLines() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AccessLogExportWriter writer = new AccessLogExportWriter(ExportFormat.NDJSON, objectMapper, out);
+        writer.write(log(1L, "deploy", "{\"env\":\"prod\"}"));
+        writer.write(log(2L, "backup", null));
+        writer.flush();
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(objectMapper.readTree(lines[0]).get("commandName").asText()).isEqualTo("deploy");
+        assertThat(objectMapper.readTree(lines[1]).get("id").asLong()).isEqualTo(2L);
+        assertThat(writer.getRows()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("CSV 带表头，含逗号、引号、换行的单元格加引号，公式前缀被转义")
+    void writesEscapedCsv() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AccessLogExportWriter writer = new AccessLogExportWriter(ExportFormat.CSV, objectMapper, out);
+        AccessLog row = log(7L, "=cmd|' /C calc'!A0", "a,\"b\"\nc");
+        writer.write(row);
+        writer.flush();
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\r\n");
+        assertThat(lines[0]).startsWith("id,created_at,token_id,command_name,status_code");
+        assertThat(lines[1]).startsWith("7,2026-03-01T08:30,ops,\"'=cmd|' /C calc'!A0\",200,15,");
+        assertThat(out.toString(StandardCharsets.UTF_8)).contains("\"a,\"\"b\"\"\nc\"");
+    }
+
+    @Test
+    @DisplayName("导出格式不区分大小写，未知格式抛出参数错误")
+    void parsesFormat() {
+        assertThat(ExportFormat.of("CSV")).isEqualTo(ExportFormat.CSV);
+        assertThat(ExportFormat.of(null)).isEqualTo(ExportFormat.NDJSON);
+        assertThatThrownBy(() -> ExportFormat.of("xlsx")).isInstanceOf(BusinessException.class);
+    }
+
+    private static AccessLog log(Long id, String command, String request) {
+        AccessLog row = new AccessLog();
+        row.setId(id);
+        row.setTokenId("ops");
+        row.setCommandName(command);
+        row.setStatusCode(200);
+        row.setDuration(15L);
+        row.setPath("/api/run");
+        row.setRequest(request);
+        row.setCreatedAt(LocalDateTime.of(2026, 3, 1, 8, 30));
+        return row;
+    }
+}
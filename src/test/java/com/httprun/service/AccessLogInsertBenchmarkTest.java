@@ -0,0 +1,136 @@
+package com.httprun.service;
+
+import com.httprun.entity.AccessLog;
+import com.httprun.service.impl.AccessLogWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 访问日志写入吞吐基准（默认不运行）
+ *
+ * 对比逐行 INSERT 取自增主键（原 IDENTITY 写法）与预分配主键的多行 INSERT：
+ * <pre>
+ * mvn test -Dtest=AccessLogInsertBenchmarkTest -Dhttprun.benchmark=true
+ * mvn test -Dtest=AccessLogInsertBenchmarkTest -Dhttprun.benchmark=true \
+ *     -Dhttprun.benchmark.pg-url=jdbc:postgresql://localhost:5432/httprun?user=httprun&amp;password=...
+ * </pre>
+ * PostgreSQL 需已执行 Flyway 迁移（V6 将 access_logs_id_seq 步长改为 50）。
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "httprun.benchmark", matches = "true")
+class AccessLogInsertBenchmarkTest {
+
+    private static final int ROWS = 20_000;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("SQLite：逐行插入 vs 批量写入器")
+    void sqlite() {
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+                "jdbc:sqlite:" + tempDir.resolve("bench.db"), true);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE access_logs (id integer primary key, token_id varchar(500), "
+                + "path varchar(200) not null, ip varchar(50), method varchar(20), user_agent varchar(500), "
+                + "referer varchar(500), source varchar(20), forwarded_for varchar(200), request_id varchar(50), "
+                + "command_name varchar(100), request TEXT, response TEXT, status_code integer, duration bigint, "
+                + "created_at timestamp not null, search_text TEXT)");
+        run("SQLite", jdbcTemplate);
+        dataSource.destroy();
+    }
+
+    @Test
+    @DisplayName("PostgreSQL：逐行插入 vs 批量写入器")
+    @EnabledIfSystemProperty(named = "httprun.benchmark.pg-url", matches = ".+")
+    void postgres() {
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+                System.getProperty("httprun.benchmark.pg-url"), true);
+        run("PostgreSQL", new JdbcTemplate(dataSource));
+        dataSource.destroy();
+    }
+
+    private void run(String database, JdbcTemplate jdbcTemplate) {
+        double rowByRow = measure(jdbcTemplate, () -> insertRowByRow(jdbcTemplate));
+        double batched = measure(jdbcTemplate, () -> insertBatched(jdbcTemplate));
+        String summary = String.format("[%s] row-by-row: %.0f rows/s, batched writer: %.0f rows/s (%.1fx)",
+                database, rowByRow, batched, batched / rowByRow);
+        log.info(summary);
+        assertThat(batched).as(summary).isPositive();
+    }
+
+    /**
+     * 计时执行一轮写入，先确认 ROWS 行全部落库（写入器关闭等待有上限，卡住的刷新不能算作通过）再计算吞吐
+     */
+    private static double measure(JdbcTemplate jdbcTemplate, Runnable insert) {
+        long before = countRows(jdbcTemplate);
+        long start = System.nanoTime();
+        insert.run();
+        long elapsed = System.nanoTime() - start;
+        assertThat(countRows(jdbcTemplate) - before).as("rows persisted").isEqualTo(ROWS);
+        return ROWS / (elapsed / 1e9);
+    }
+
+    private static long countRows(JdbcTemplate jdbcTemplate) {
+        Long count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM access_logs WHERE path LIKE '/api/run/bench-%'", Long.class);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * 原写法：每行一次往返，由数据库生成主键并取回
+     */
+    private static void insertRowByRow(JdbcTemplate jdbcTemplate) {
+        String sql = "INSERT INTO access_logs (token_id, path, ip, method, status_code, duration, created_at) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+        for (int i = 0; i < ROWS; i++) {
+            int row = i;
+            jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+                ps.setString(1, "bench");
+                ps.setString(2, "/api/run/bench-" + row);
+                ps.setString(3, "127.0.0.1");
+                ps.setString(4, "POST");
+                ps.setInt(5, 200);
+                ps.setLong(6, 10L);
+                ps.setTimestamp(7, Timestamp.valueOf(LocalDateTime.now()));
+                return ps;
+            }, new GeneratedKeyHolder());
+        }
+    }
+
+    /**
+     * 新写法：批量写入器，主键按批预分配，多行 INSERT
+     */
+    private static void insertBatched(JdbcTemplate jdbcTemplate) {
+        AccessLogWriter writer = new AccessLogWriter(jdbcTemplate, new SimpleMeterRegistry(), ROWS, 50, 5,
+                Long.MAX_VALUE);
+        writer.start();
+        for (int i = 0; i < ROWS; i++) {
+            AccessLog accessLog = new AccessLog();
+            accessLog.setTokenId("bench");
+            accessLog.setPath("/api/run/bench-" + i);
+            accessLog.setIp("127.0.0.1");
+            accessLog.setMethod("POST");
+            accessLog.setStatusCode(200);
+            accessLog.setDuration(10L);
+            writer.enqueue(accessLog);
+        }
+        writer.shutdown();
+    }
+}
@@ -0,0 +1,92 @@
+package com.httprun.service;
+
+import com.httprun.service.impl.AccessLogPartitionManager;
+import com.httprun.service.impl.OutputBlobStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * AccessLogPartitionManager 单元测试（SQLite 分批删除路径）
+ */
+class AccessLogPartitionManagerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private OutputBlobStore blobStore;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:sqlite:" + tempDir.resolve("retention.db"), true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE access_logs (id integer primary key, path varchar(200) not null, "
+                + "created_at timestamp not null)");
+        jdbcTemplate.execute("CREATE TABLE access_log_payloads (id integer primary key, "
+                + "created_at timestamp not null, request text, response text, response_hash varchar(64))");
+        OutputBlobStoreTest.createTable(jdbcTemplate);
+        blobStore = new OutputBlobStore(jdbcTemplate, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.destroy();
+    }
+
+    @Test
+    @DisplayName("SQLite 下按批删除过期日志及其内容，保留未过期日志，并释放对命令输出的引用")
+    void deletesExpiredRowsInChunks() {
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 7; i++) {
+            insert(i, now.minusDays(40), i % 2 == 0 ? "expired-only" : "shared");
+        }
+        insert(100, now.minusDays(1), "shared");
+        insert(101, now, null);
+        AccessLogPartitionManager manager = new AccessLogPartitionManager(jdbcTemplate, blobStore, meterRegistry, 30, 7, 3);
+
+        long removed = manager.purgeOlderThan(now.minusDays(30));
+
+        assertThat(removed).isEqualTo(7);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM access_logs", Long.class)).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM access_log_payloads", Long.class)).isEqualTo(2);
+        assertThat(meterRegistry.get("httprun.accesslog.purged").counter().count()).isEqualTo(7.0);
+        assertThat(jdbcTemplate.queryForList("SELECT ref_count FROM output_blobs", Long.class)).containsExactly(1L);
+        assertThat(blobStore.load(jdbcTemplate.queryForObject(
+                "SELECT response_hash FROM access_log_payloads WHERE id = 100", String.class))).isEqualTo("shared");
+    }
+
+    @Test
+    @DisplayName("SQLite 下不创建分区")
+    void maintainPartitionsIsNoOpOnSqlite() {
+        AccessLogPartitionManager manager = new AccessLogPartitionManager(jdbcTemplate, blobStore, meterRegistry, 30, 7, 100);
+
+        manager.maintainPartitions();
+
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM sqlite_master WHERE name LIKE 'access_logs_p%'", Long.class)).isZero();
+        assertThat(manager.purgeOlderThan(LocalDateTime.now())).isZero();
+    }
+
+    private void insert(long id, LocalDateTime createdAt, String output) {
+        jdbcTemplate.update("INSERT INTO access_logs (id, path, created_at) VALUES (?, ?, ?)",
+                id, "/api/run", Timestamp.valueOf(createdAt));
+        String hash = output == null ? null : blobStore.store(List.of(output)).get(0);
+        jdbcTemplate.update("INSERT INTO access_log_payloads (id, created_at, request, response_hash) "
+                + "VALUES (?, ?, ?, ?)", id, Timestamp.valueOf(createdAt), "{}", hash);
+    }
+}
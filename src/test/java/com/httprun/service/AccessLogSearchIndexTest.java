@@ -0,0 +1,135 @@
+package com.httprun.service;
+
+import com.httprun.entity.AccessLog;
+import com.httprun.service.impl.AccessLogSearchIndex;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * AccessLogSearchIndex 单元测试
+ */
+class AccessLogSearchIndexTest {
+
+    @TempDir
+    java.nio.file.Path tempDir;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private AccessLogSearchIndex searchIndex;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:sqlite:" + tempDir.resolve("search.db"), true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE access_logs (id integer primary key, path varchar(200) not null, "
+                + "command_name varchar(100), search_text TEXT, created_at timestamp not null)");
+        jdbcTemplate.execute("CREATE TABLE access_log_payloads (id integer primary key, created_at timestamp "
+                + "not null, request TEXT, response TEXT, response_hash varchar(64))");
+        // 升级前写入、没有检索文本的旧日志，请求内容位于 access_log_payloads
+        jdbcTemplate.update("INSERT INTO access_logs (id, path, command_name, created_at) VALUES "
+                + "(1, '/api/run', 'Deploy-App', CURRENT_TIMESTAMP)");
+        jdbcTemplate.update("INSERT INTO access_log_payloads (id, created_at, request) VALUES "
+                + "(1, CURRENT_TIMESTAMP, '{\"env\":\"prod\"}')");
+        searchIndex = new AccessLogSearchIndex(jdbcTemplate, 100);
+        searchIndex.run(new DefaultApplicationArguments());
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.destroy();
+    }
+
+    @Test
+    @DisplayName("检索文本包含路径、命令名与请求参数并转为小写")
+    void buildsLowerCaseSearchText() {
+        AccessLog accessLog = new AccessLog();
+        accessLog.setPath("/api/run");
+        accessLog.setCommandName("Deploy-App");
+        accessLog.setRequest("{\"Env\":\"prod\"}");
+
+        assertThat(AccessLogSearchIndex.searchText(accessLog)).isEqualTo("/api/run deploy-app {\"env\":\"prod\"}");
+    }
+
+    @Test
+    @DisplayName("SQLite 下通过倒排索引检索，旧日志已回填，删除后同步移出索引")
+    void searchesSqliteInvertedIndex() {
+        jdbcTemplate.update("INSERT INTO access_logs (id, path, command_name, search_text, created_at) VALUES "
+                + "(2, '/api/run', 'backup', '/api/run backup', CURRENT_TIMESTAMP), "
+                + "(3, '/api/run', 'deploy-db', '/api/run deploy-db', CURRENT_TIMESTAMP)");
+
+        assertThat(matchedIds("DEPLOY")).containsExactlyInAnyOrder(1L, 3L);
+        assertThat(matchedIds("prod")).containsExactly(1L);
+
+        jdbcTemplate.update("DELETE FROM access_logs WHERE id = 3");
+        assertThat(matchedIds("deploy")).containsExactly(1L);
+    }
+
+    @Test
+    @DisplayName("倒排索引匹配数超过上限时退化为 LIKE，不截取部分 id")
+    @SuppressWarnings("unchecked")
+    void tooManyMatchesFallBackToLike() {
+        jdbcTemplate.update("INSERT INTO access_logs (id, path, command_name, search_text, created_at) VALUES "
+                + "(2, '/api/run', 'deploy-db', '/api/run deploy-db', CURRENT_TIMESTAMP)");
+        AccessLogSearchIndex capped = new AccessLogSearchIndex(jdbcTemplate, 1);
+        capped.run(new DefaultApplicationArguments());
+        Root<AccessLog> root = mock(Root.class);
+        CriteriaBuilder cb = mock(CriteriaBuilder.class);
+        Path<Object> searchText = mock(Path.class);
+        when(root.get("searchText")).thenReturn(searchText);
+
+        capped.keywordPredicate(root, cb, "deploy");
+
+        verify(cb).like(any(), eq("%deploy%"), eq('\\'));
+        verify(root, never()).get("id");
+    }
+
+    @Test
+    @DisplayName("不足 3 个字符的关键词退化为转义后的 LIKE")
+    @SuppressWarnings("unchecked")
+    void shortKeywordFallsBackToLike() {
+        Root<AccessLog> root = mock(Root.class);
+        CriteriaBuilder cb = mock(CriteriaBuilder.class);
+        Path<Object> searchText = mock(Path.class);
+        when(root.get("searchText")).thenReturn(searchText);
+
+        searchIndex.keywordPredicate(root, cb, "A_");
+
+        verify(cb).like(any(), eq("%a\\_%"), eq('\\'));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Long> matchedIds(String keyword) {
+        Root<AccessLog> root = mock(Root.class);
+        CriteriaBuilder cb = mock(CriteriaBuilder.class);
+        Path<Object> id = mock(Path.class);
+        when(root.get("id")).thenReturn(id);
+        when(id.in(anyCollection())).thenReturn(mock(Predicate.class));
+        when(cb.disjunction()).thenReturn(mock(Predicate.class));
+
+        searchIndex.keywordPredicate(root, cb, keyword);
+
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(id).in(captor.capture());
+        return List.copyOf((Collection<Long>) captor.getValue());
+    }
+}
@@ -1,12 +1,21 @@
 package com.httprun.service;
 
 import com.httprun.dto.AuditContext;
+import com.httprun.dto.response.CursorPage;
 import com.httprun.entity.AccessLog;
+import com.httprun.entity.AccessLogPayload;
+import com.httprun.repository.AccessLogPayloadRepository;
 import com.httprun.repository.AccessLogRepository;
+import com.httprun.service.impl.AccessLogArchiver;
+import com.httprun.service.impl.AccessLogPartitionManager;
 import com.httprun.service.impl.AccessLogServiceImpl;
+import com.httprun.service.impl.AccessLogWriter;
+import com.httprun.service.impl.OutputBlobStore;
+import com.httprun.util.KeysetCursor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -14,9 +23,11 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
@@ -32,6 +43,21 @@ class AccessLogServiceTest {
     @Mock
     private AccessLogRepository accessLogRepository;
 
+    @Mock
+    private AccessLogPayloadRepository payloadRepository;
+
+    @Mock
+    private OutputBlobStore blobStore;
+
+    @Mock
+    private AccessLogWriter accessLogWriter;
+
+    @Mock
+    private AccessLogPartitionManager partitionManager;
+
+    @Mock
+    private AccessLogArchiver archiver;
+
     @InjectMocks
     private AccessLogServiceImpl accessLogService;
 
@@ -67,7 +93,11 @@ class AccessLogServiceTest {
         accessLogService.logAccess(testContext);
 
         // Then
-        verify(accessLogRepository, timeout(1000)).save(any(AccessLog.class));
+        ArgumentCaptor<AccessLog> captor = ArgumentCaptor.forClass(AccessLog.class);
+        verify(accessLogWriter).enqueue(captor.capture());
+        assertThat(captor.getValue().getCommandName()).isEqualTo("deploy-app");
+        assertThat(captor.getValue().getSource()).isEqualTo("WEB");
+        verify(accessLogRepository, never()).save(any(AccessLog.class));
     }
 
     @Test
@@ -77,7 +107,7 @@ class AccessLogServiceTest {
                 "{}", "{\"status\":\"ok\"}", 200, 100L);
 
         // Then
-        verify(accessLogRepository, timeout(1000)).save(any(AccessLog.class));
+        verify(accessLogWriter).enqueue(any(AccessLog.class));
     }
 
     @Test
@@ -147,14 +177,125 @@ class AccessLogServiceTest {
     @Test
     void cleanOldLogs_shouldDeleteOldRecords() {
         // Given
-        when(accessLogRepository.deleteByCreatedAtBefore(any(LocalDateTime.class)))
-                .thenReturn(50);
+        when(partitionManager.purgeOlderThan(any(LocalDateTime.class)))
+                .thenReturn(50L);
 
         // When
         int deleted = accessLogService.cleanOldLogs(30);
 
         // Then
         assertThat(deleted).isEqualTo(50);
-        verify(accessLogRepository).deleteByCreatedAtBefore(any(LocalDateTime.class));
+        verify(partitionManager).purgeOlderThan(any(LocalDateTime.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void searchLogsByCursor_shouldReturnNextCursorWithoutCount() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        List<AccessLog> rows = new java.util.ArrayList<>();
+        for (long id = 3; id >= 1; id--) {
+            AccessLog row = new AccessLog();
+            row.setId(id);
+            row.setCreatedAt(now.minusSeconds(3 - id));
+            rows.add(row);
+        }
+        when(accessLogRepository.findBy(any(Specification.class), any())).thenReturn(rows);
+
+        // When
+        CursorPage<AccessLog> result = accessLogService.searchLogsByCursor(
+                null, null, null, null, null, null, true, null, 2, true);
+
+        // Then
+        assertThat(result.getItems()).extracting(AccessLog::getId).containsExactly(3L, 2L);
+        assertThat(result.isHasMore()).isTrue();
+        assertThat(KeysetCursor.decode(result.getNextCursor()))
+                .isEqualTo(new KeysetCursor(rows.get(1).getCreatedAt(), 2L));
+        // 附加了 commandOnly 筛选，不提供估算总数
+        assertThat(result.getApproximateTotal()).isNull();
+        verify(accessLogRepository, never()).count(any(Specification.class));
+        verifyNoInteractions(partitionManager);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void deleteLogs_shouldDeleteOwnedRowsInChunks() {
+        // Given: 1200 个 ID（含重复），按 500 个一批删除
+        List<Long> ids = new java.util.ArrayList<>();
+        for (long id = 1; id <= 1200; id++) {
+            ids.add(id);
+        }
+        ids.add(1L);
+        when(accessLogRepository.deleteByIdInAndTokenId(any(), eq("test-token"))).thenReturn(400, 300, 10);
+
+        // When
+        int deleted = accessLogService.deleteLogs(ids, "test-token");
+
+        // Then
+        assertThat(deleted).isEqualTo(710);
+        ArgumentCaptor<java.util.Collection<Long>> chunks = ArgumentCaptor.forClass(java.util.Collection.class);
+        verify(accessLogRepository, times(3)).deleteByIdInAndTokenId(chunks.capture(), eq("test-token"));
+        verify(payloadRepository, times(3)).deleteByIdInAndTokenId(any(), eq("test-token"));
+        assertThat(chunks.getAllValues()).extracting(java.util.Collection::size).containsExactly(500, 500, 200);
+        verify(accessLogRepository, never()).deleteByIdIn(any());
+        verify(accessLogRepository, never()).findById(any());
+    }
+
+    @Test
+    void deleteLogs_withoutOwnerShouldNotFilterByToken() {
+        // Given
+        when(accessLogRepository.deleteByIdIn(List.of(1L, 2L))).thenReturn(1);
+        when(payloadRepository.countResponseHashesByIdIn(List.of(1L, 2L)))
+                .thenReturn(List.<Object[]>of(new Object[] { "h1", 2L }));
+
+        // When
+        int deleted = accessLogService.deleteLogs(List.of(1L, 2L));
+
+        // Then
+        assertThat(deleted).isEqualTo(1);
+        verify(accessLogRepository, never()).deleteByIdInAndTokenId(any(), any());
+        verify(payloadRepository).deleteByIdIn(List.of(1L, 2L));
+        verify(blobStore).release(java.util.Map.of("h1", 2L));
+    }
+
+    @Test
+    void getLogDetail_shouldLoadDeduplicatedResponse() {
+        // Given
+        LocalDateTime createdAt = LocalDateTime.now();
+        AccessLogPayload payload = new AccessLogPayload();
+        payload.setId(1L);
+        payload.setCreatedAt(createdAt);
+        payload.setResponseHash("h1");
+        when(accessLogRepository.findByIdAndCreatedAt(1L, createdAt)).thenReturn(Optional.of(testLog));
+        when(payloadRepository.findByIdAndCreatedAt(1L, createdAt)).thenReturn(Optional.of(payload));
+        when(blobStore.load("h1")).thenReturn("healthy");
+
+        // When
+        AccessLog detail = accessLogService.getLogDetail(1L, createdAt);
+
+        // Then
+        assertThat(detail.getResponse()).isEqualTo("healthy");
+    }
+
+    @Test
+    void getLogDetail_shouldAttachPayloadFromSamePartition() {
+        // Given
+        LocalDateTime createdAt = LocalDateTime.now();
+        AccessLogPayload payload = new AccessLogPayload();
+        payload.setId(1L);
+        payload.setCreatedAt(createdAt);
+        payload.setRequest("{\"params\":[]}");
+        payload.setResponse("ok");
+        when(accessLogRepository.findByIdAndCreatedAt(1L, createdAt)).thenReturn(Optional.of(testLog));
+        when(payloadRepository.findByIdAndCreatedAt(1L, createdAt)).thenReturn(Optional.of(payload));
+
+        // When
+        AccessLog detail = accessLogService.getLogDetail(1L, createdAt);
+
+        // Then
+        assertThat(detail.getRequest()).isEqualTo("{\"params\":[]}");
+        assertThat(detail.getResponse()).isEqualTo("ok");
+        verify(accessLogRepository, never()).findById(any());
+        verifyNoInteractions(archiver);
     }
 }
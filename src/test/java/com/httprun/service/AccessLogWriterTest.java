@@ -0,0 +1,197 @@
+package com.httprun.service;
+
+import com.httprun.entity.AccessLog;
+import com.httprun.service.impl.AccessLogWriter;
+import com.httprun.service.impl.OutputBlobStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+/**
+ * AccessLogWriter 单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+class AccessLogWriterTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private AccessLogWriter writer;
+
+    @AfterEach
+    void tearDown() {
+        if (writer != null) {
+            writer.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("攒满一批后以单条多行 INSERT 写入")
+    void writesFullBatchAsMultiRowInsert() {
+        writer = new AccessLogWriter(jdbcTemplate, meterRegistry, 64, 3, 60_000, 1 << 20);
+        writer.start();
+
+        for (int i = 0; i < 3; i++) {
+            writer.enqueue(accessLog("/api/run/" + i));
+        }
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate, timeout(2000)).update(sql.capture(), args.capture(), any(int[].class));
+        assertThat(sql.getValue()).startsWith("INSERT INTO access_logs").contains("), (");
+        assertThat(args.getValue()).hasSize(3 * 15).contains("/api/run/0", "/api/run/2");
+    }
+
+    @Test
+    @DisplayName("请求 / 响应内容先以多行 INSERT 写入 access_log_payloads，再写元数据")
+    void writesPayloadsBeforeMetadata() {
+        writer = new AccessLogWriter(jdbcTemplate, meterRegistry, 64, 50, 60_000, 1 << 20);
+        writer.start();
+        AccessLog withPayload = accessLog("/api/run/a");
+        withPayload.setRequest("{\"params\":[]}");
+        writer.enqueue(withPayload);
+        writer.enqueue(accessLog("/api/run/b"));
+
+        writer.shutdown();
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate, times(2)).update(sql.capture(), args.capture(), any(int[].class));
+        assertThat(sql.getAllValues().get(0)).startsWith("INSERT INTO access_log_payloads").doesNotContain("), (");
+        assertThat(args.getAllValues().get(0)).hasSize(5).contains("{\"params\":[]}");
+        assertThat(sql.getAllValues().get(1)).startsWith("INSERT INTO access_logs").doesNotContain("request,");
+        assertThat(args.getAllValues().get(1)).hasSize(2 * 15).doesNotContain("{\"params\":[]}");
+    }
+
+    @Test
+    @DisplayName("响应内容存入输出存储后只写哈希引用，内容行写入失败时撤回引用")
+    void storesResponsesAsBlobReferences() {
+        OutputBlobStore blobStore = mock(OutputBlobStore.class);
+        when(blobStore.store(List.of("pong"))).thenReturn(List.of("h1"));
+        lenient().when(jdbcTemplate.update(startsWith("INSERT INTO access_log_payloads"), any(Object[].class),
+                any(int[].class)))
+                .thenReturn(1)
+                .thenThrow(new RuntimeException("db down"));
+        writer = new AccessLogWriter(jdbcTemplate, meterRegistry, 64, 1, 60_000, 1 << 20);
+        writer.setBlobStore(blobStore);
+        writer.start();
+        AccessLog first = accessLog("/api/run/a");
+        first.setResponse("pong");
+        AccessLog second = accessLog("/api/run/b");
+        second.setResponse("pong");
+        writer.enqueue(first);
+        writer.enqueue(second);
+
+        writer.shutdown();
+
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate, times(2)).update(startsWith("INSERT INTO access_log_payloads"), args.capture(),
+                any(int[].class));
+        assertThat(args.getAllValues().get(0)).containsSequence(null, "h1").doesNotContain("pong");
+        verify(blobStore).release(Map.of("h1", 1L));
+        assertThat(meterRegistry.get("httprun.accesslog.failed").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("未攒满时按刷新间隔写入")
+    void flushesPartialBatchOnInterval() {
+        writer = new AccessLogWriter(jdbcTemplate, meterRegistry, 64, 50, 50, 1 << 20);
+        writer.start();
+
+        writer.enqueue(accessLog("/api/run/a"));
+
+        verify(jdbcTemplate, timeout(2000)).update(anyString(), any(Object[].class), any(int[].class));
+    }
+
+    @Test
+    @DisplayName("关闭时写完缓冲区中的剩余日志")
+    void flushesOnShutdown() {
+        writer = new AccessLogWriter(jdbcTemplate, meterRegistry, 64, 50, 60_000, 1 << 20);
+        writer.start();
+        for (int i = 0; i < 5; i++) {
+            writer.enqueue(accessLog("/api/run/" + i));
+        }
+
+        writer.shutdown();
+
+        verify(jdbcTemplate).update(anyString(), any(Object[].class), any(int[].class));
+        assertThat(writer.pending()).isZero();
+        assertThat(meterRegistry.get("httprun.accesslog.written").counter().count()).isEqualTo(5.0);
+    }
+
+    @Test
+    @DisplayName("缓冲区满时丢弃并计数")
+    void dropsWhenFull() {
+        writer = new AccessLogWriter(jdbcTemplate, meterRegistry, 2, 50, 60_000, 1 << 20);
+
+        assertThat(writer.enqueue(accessLog("/a"))).isTrue();
+        assertThat(writer.enqueue(accessLog("/b"))).isTrue();
+        assertThat(writer.enqueue(accessLog("/c"))).isFalse();
+
+        assertThat(meterRegistry.get("httprun.accesslog.dropped").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("httprun.accesslog.queue.size").gauge().value()).isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("积压内容超出字节预算时丢弃并计数，写入后释放预算")
+    void dropsWhenOverByteBudget() {
+        writer = new AccessLogWriter(jdbcTemplate, meterRegistry, 64, 50, 60_000, 3500);
+        writer.start();
+        AccessLog large = accessLog("/large");
+        large.setRequest("x".repeat(1500));
+
+        assertThat(writer.enqueue(accessLog("/a"))).isTrue();
+        assertThat(writer.enqueue(accessLog("/b"))).isTrue();
+        assertThat(writer.enqueue(large)).isFalse();
+        assertThat(writer.pending()).isEqualTo(2);
+        assertThat(meterRegistry.get("httprun.accesslog.dropped").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("httprun.accesslog.queue.bytes").gauge().value())
+                .isEqualTo((double) writer.pendingBytes());
+
+        writer.shutdown();
+
+        assertThat(writer.pendingBytes()).isZero();
+        assertThat(writer.enqueue(large)).isTrue();
+    }
+
+    @Test
+    @DisplayName("写入失败时计数并继续处理后续批次")
+    void countsFailedBatches() {
+        when(jdbcTemplate.update(anyString(), any(Object[].class), any(int[].class)))
+                .thenThrow(new RuntimeException("db down"))
+                .thenReturn(1);
+        writer = new AccessLogWriter(jdbcTemplate, meterRegistry, 64, 1, 60_000, 1 << 20);
+        writer.start();
+
+        writer.enqueue(accessLog("/a"));
+        writer.enqueue(accessLog("/b"));
+        writer.shutdown();
+
+        assertThat(meterRegistry.get("httprun.accesslog.failed").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("httprun.accesslog.written").counter().count()).isEqualTo(1.0);
+    }
+
+    private static AccessLog accessLog(String path) {
+        AccessLog accessLog = new AccessLog();
+        accessLog.setPath(path);
+        accessLog.setMethod("POST");
+        accessLog.setStatusCode(200);
+        return accessLog;
+    }
+}
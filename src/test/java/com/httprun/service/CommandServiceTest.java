@@ -91,6 +91,19 @@ class CommandServiceTest {
         verify(commandRepository).findAll();
     }
 
+    @Test
+    void testListAllCommands_shouldUseStoredDangerLevel() {
+        testCommand.setDangerLevel(2);
+        testCommand.setDangerWarning("此命令将删除文件或目录，操作不可逆！");
+        when(commandRepository.findAll()).thenReturn(List.of(testCommand));
+
+        List<CommandResponse> result = commandService.listAllCommands();
+
+        assertEquals(2, result.get(0).getDangerLevel());
+        assertEquals("此命令将删除文件或目录，操作不可逆！", result.get(0).getDangerWarning());
+        verify(commandTemplate, never()).detectDangerLevel(any(Command.class));
+    }
+
     @Test
     void testListCommandsByNames() {
         List<String> names = Arrays.asList("test-command");
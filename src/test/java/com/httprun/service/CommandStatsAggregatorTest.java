@@ -0,0 +1,154 @@
+package com.httprun.service;
+
+import com.httprun.entity.AccessLog;
+import com.httprun.service.impl.CommandStatsAggregator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * CommandStatsAggregator 单元测试（SQLite 临时库）
+ */
+class CommandStatsAggregatorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private CommandStatsAggregator aggregator;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:sqlite:" + tempDir.resolve("stats.db"), true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE access_logs (id integer primary key, token_id varchar(500), "
+                + "command_name varchar(100), status_code integer, duration bigint, created_at timestamp not null)");
+        jdbcTemplate.execute("CREATE TABLE command_stats_rollups (granularity varchar(8) not null, "
+                + "bucket_start timestamp not null, command_name varchar(100) not null, token_id varchar(500) not null, "
+                + "status_code integer not null, exec_count bigint not null, error_count bigint not null, "
+                + "duration_sum bigint not null, duration_min bigint, duration_max bigint, latency_sketch blob, "
+                + "primary key (granularity, bucket_start, command_name, token_id, status_code))");
+        jdbcTemplate.execute("CREATE TABLE command_stats_state (id integer primary key, rollup_start timestamp not null, "
+                + "backfill_last_id bigint not null, backfilled_at timestamp, backfill_cursor_at timestamp, "
+                + "backfill_cursor_id bigint not null default 0)");
+        aggregator = new CommandStatsAggregator(jdbcTemplate,
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)), new SimpleMeterRegistry(), 2, 90);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.destroy();
+    }
+
+    @Test
+    @DisplayName("写入批次按小时和天增量合并，多次合并累加计数与极值")
+    void mergesWrittenBatchesIncrementally() {
+        LocalDateTime now = LocalDateTime.now().plusSeconds(1);
+        aggregator.record(List.of(log(1, "deploy", 200, 40L, now), log(2, "deploy", 500, 120L, now),
+                log(3, null, 200, 5L, now)));
+        aggregator.flush();
+        aggregator.record(List.of(log(4, "deploy", 200, 10L, now)));
+        aggregator.flush();
+
+        Map<String, Long> ok = rollup("HOUR", "deploy", 200);
+        assertThat(ok.get("exec_count")).isEqualTo(2L);
+        assertThat(ok.get("duration_sum")).isEqualTo(50L);
+        assertThat(ok.get("duration_min")).isEqualTo(10L);
+        assertThat(ok.get("duration_max")).isEqualTo(40L);
+        assertThat(rollup("DAY", "deploy", 500).get("error_count")).isEqualTo(1L);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM command_stats_rollups", Integer.class))
+                .isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("回填只汇总增量起点之前的日志，分批推进且重复执行不会重复计数")
+    void backfillsHistoricalLogsOnce() {
+        LocalDateTime start = LocalDateTime.now().withNano(0);
+        jdbcTemplate.update("INSERT INTO command_stats_state (id, rollup_start, backfill_last_id) VALUES (1, ?, 0)",
+                Timestamp.valueOf(start));
+        LocalDateTime before = start.minusDays(2);
+        for (int id = 1; id <= 5; id++) {
+            jdbcTemplate.update("INSERT INTO access_logs VALUES (?, 'ops', ?, 200, ?, ?)", id,
+                    id == 3 ? null : "backup", id * 10L, Timestamp.valueOf(before));
+        }
+        // 增量起点之后的日志由写入路径汇总，回填不应计入
+        jdbcTemplate.update("INSERT INTO access_logs VALUES (6, 'ops', 'backup', 200, 99, ?)",
+                Timestamp.valueOf(start.plusMinutes(1)));
+
+        aggregator.backfill();
+        aggregator.backfill();
+
+        Map<String, Long> day = rollup("DAY", "backup", 200);
+        assertThat(day.get("exec_count")).isEqualTo(4L);
+        assertThat(day.get("duration_sum")).isEqualTo(10L + 20 + 40 + 50);
+        assertThat(jdbcTemplate.queryForObject("SELECT backfill_cursor_id FROM command_stats_state", Long.class))
+                .isEqualTo(5L);
+    }
+
+    @Test
+    @DisplayName("增量起点前的迟到日志按 (created_at, id) 位置分流，id 乱序时不漏计也不重复计")
+    void countsLatePreStartLogsExactlyOnce() {
+        LocalDateTime start = LocalDateTime.now().withNano(0);
+        // id 不大于 backfill_last_id 的日志已由旧版按 id 回填计入
+        jdbcTemplate.update("INSERT INTO command_stats_state (id, rollup_start, backfill_last_id) VALUES (1, ?, 1)",
+                Timestamp.valueOf(start));
+        insert(1, start.minusDays(2));
+        insert(10, start.minusDays(2));
+        insert(11, start.minusDays(2));
+        // 其他节点预分配的小 id，回填开始前写入：留给回填读取，写入路径不计
+        AccessLog early = insert(3, start.minusMinutes(1));
+        aggregator.record(List.of(early));
+
+        aggregator.backfill();
+        // 回填完成后才写入的更小 id：由写入路径计入
+        AccessLog late = insert(2, start.minusSeconds(30));
+        aggregator.record(List.of(late));
+        aggregator.flush();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT SUM(exec_count) FROM command_stats_rollups "
+                + "WHERE granularity = 'DAY' AND command_name = 'backup'", Long.class)).isEqualTo(4L);
+        assertThat(jdbcTemplate.queryForObject("SELECT backfill_cursor_id FROM command_stats_state", Long.class))
+                .isEqualTo(3L);
+    }
+
+    private AccessLog insert(long id, LocalDateTime createdAt) {
+        jdbcTemplate.update("INSERT INTO access_logs VALUES (?, 'ops', 'backup', 200, 10, ?)", id,
+                Timestamp.valueOf(createdAt));
+        return log(id, "backup", 200, 10L, createdAt);
+    }
+
+    private Map<String, Long> rollup(String granularity, String command, int status) {
+        return jdbcTemplate.queryForObject("SELECT exec_count, error_count, duration_sum, duration_min, duration_max "
+                + "FROM command_stats_rollups WHERE granularity = ? AND command_name = ? AND status_code = ?",
+                (rs, rowNum) -> Map.of("exec_count", rs.getLong(1), "error_count", rs.getLong(2),
+                        "duration_sum", rs.getLong(3), "duration_min", rs.getLong(4), "duration_max", rs.getLong(5)),
+                granularity, command, status);
+    }
+
+    private static AccessLog log(long id, String command, int status, Long duration, LocalDateTime createdAt) {
+        AccessLog entry = new AccessLog();
+        entry.setId(id);
+        entry.setTokenId("ops");
+        entry.setCommandName(command);
+        entry.setStatusCode(status);
+        entry.setDuration(duration);
+        entry.setCreatedAt(createdAt);
+        return entry;
+    }
+}
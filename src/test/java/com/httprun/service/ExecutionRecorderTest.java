@@ -0,0 +1,178 @@
+package com.httprun.service;
+
+import com.httprun.dto.response.CommandExecutionResult;
+import com.httprun.enums.ExecutionMode;
+import com.httprun.service.impl.ExecutionOutputStore;
+import com.httprun.service.impl.ExecutionRecorder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * ExecutionRecorder 单元测试（SQLite 临时库）
+ */
+class ExecutionRecorderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:sqlite:" + tempDir.resolve("records.db"), true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE execution_records (id integer primary key, command_name varchar(100) "
+                + "not null, command_version integer, execution_mode varchar(20) not null, target_host varchar(255), "
+                + "token_id varchar(500), exit_code integer not null, failed boolean not null, duration_ms bigint "
+                + "not null, queue_wait_ms bigint not null, stdout_bytes bigint not null, stderr_bytes bigint not null, "
+                + "stdout_truncated boolean not null, stderr_truncated boolean not null, error varchar(500), "
+                + "created_at timestamp not null)");
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.destroy();
+    }
+
+    private ExecutionRecorder recorder(int capacity) {
+        return new ExecutionRecorder(jdbcTemplate, meterRegistry, capacity, 2, 30, 2);
+    }
+
+    @Test
+    @DisplayName("入队即分配 ID，刷新后写入退出码、排队时间与 UTF-8 字节数")
+    void flushWritesStructuredRecords() {
+        ExecutionRecorder recorder = recorder(16);
+        CommandExecutionResult ok = CommandExecutionResult.builder()
+                .stdout("héllo 你好 😀").stderr("").exitCode(0).duration(120).queueWait(15).build();
+        CommandExecutionResult failed = CommandExecutionResult.builder()
+                .stdout("").stderr("boom").exitCode(2).duration(30).build();
+        CommandExecutionResult error = CommandExecutionResult.builder()
+                .error("x".repeat(800)).duration(5).build();
+
+        Long first = recorder.record("deploy", 3, ExecutionMode.SSH, "10.0.0.1", "ops", ok);
+        Long second = recorder.record("deploy", 3, ExecutionMode.SSH, "10.0.0.1", "ops", failed);
+        Long third = recorder.record("backup", null, null, null, null, error);
+        assertThat(first).isNotNull();
+        assertThat(second).isEqualTo(first + 1);
+        assertThat(third).isEqualTo(first + 2);
+        assertThat(recorder.pending()).isEqualTo(3);
+
+        recorder.flush();
+
+        assertThat(recorder.pending()).isZero();
+        Map<String, Object> row = jdbcTemplate.queryForMap("SELECT * FROM execution_records WHERE id = ?", first);
+        assertThat(row.get("command_version")).isEqualTo(3);
+        assertThat(row.get("execution_mode")).isEqualTo("SSH");
+        assertThat(row.get("target_host")).isEqualTo("10.0.0.1");
+        assertThat(((Number) row.get("queue_wait_ms")).longValue()).isEqualTo(15);
+        assertThat(((Number) row.get("stdout_bytes")).longValue())
+                .isEqualTo("héllo 你好 😀".getBytes(StandardCharsets.UTF_8).length);
+        assertThat(jdbcTemplate.queryForObject("SELECT failed FROM execution_records WHERE id = ?", Boolean.class,
+                first)).isFalse();
+        assertThat(jdbcTemplate.queryForObject("SELECT failed FROM execution_records WHERE id = ?", Boolean.class,
+                second)).isTrue();
+
+        Map<String, Object> errorRow = jdbcTemplate.queryForMap("SELECT * FROM execution_records WHERE id = ?",
+                third);
+        assertThat(errorRow.get("exit_code")).isEqualTo(-1);
+        assertThat(errorRow.get("execution_mode")).isEqualTo("LOCAL");
+        assertThat((String) errorRow.get("error")).hasSize(500);
+        assertThat(meterRegistry.get("httprun.execution.record.written").counter().count()).isEqualTo(3.0);
+    }
+
+    @Test
+    @DisplayName("流式执行按推送的字节数登记，异常结束记为失败")
+    void recordsStreamedExecutions() {
+        ExecutionRecorder recorder = recorder(16);
+
+        Long ok = recorder.recordStreamed("tail", 4, ExecutionMode.SSH, "10.0.0.2", "ops", 0, 900, 42, 3, null);
+        Long broken = recorder.recordStreamed("tail", 4, ExecutionMode.SSH, "10.0.0.2", "ops", 0, 10, 0, 0,
+                "connection reset");
+        recorder.flush();
+
+        Map<String, Object> row = jdbcTemplate.queryForMap("SELECT * FROM execution_records WHERE id = ?", ok);
+        assertThat(row.get("command_version")).isEqualTo(4);
+        assertThat(row.get("target_host")).isEqualTo("10.0.0.2");
+        assertThat(row.get("exit_code")).isEqualTo(0);
+        assertThat(((Number) row.get("duration_ms")).longValue()).isEqualTo(900);
+        assertThat(((Number) row.get("stdout_bytes")).longValue()).isEqualTo(42);
+        assertThat(((Number) row.get("stderr_bytes")).longValue()).isEqualTo(3);
+        assertThat(jdbcTemplate.queryForObject("SELECT exit_code FROM execution_records WHERE id = ?",
+                Integer.class, broken)).isEqualTo(-1);
+    }
+
+    @Test
+    @DisplayName("缓冲区满时丢弃并计数，不消耗主键")
+    void dropsWhenBufferFull() {
+        ExecutionRecorder recorder = recorder(2);
+        CommandExecutionResult ok = CommandExecutionResult.builder().stdout("ok").build();
+
+        Long first = recorder.record("a", 1, ExecutionMode.LOCAL, null, null, ok);
+        Long second = recorder.record("a", 1, ExecutionMode.LOCAL, null, null, ok);
+        assertThat(first).isNotNull();
+        assertThat(second).isEqualTo(first + 1);
+        assertThat(recorder.record("a", 1, ExecutionMode.LOCAL, null, null, ok)).isNull();
+
+        recorder.flush();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM execution_records", Long.class)).isEqualTo(2);
+        assertThat(meterRegistry.get("httprun.execution.record.dropped").counter().count()).isEqualTo(1.0);
+        assertThat(recorder.record("a", 1, ExecutionMode.LOCAL, null, null, ok)).isEqualTo(second + 1);
+    }
+
+    @Test
+    @DisplayName("批量写入失败时删除这些记录的落盘输出")
+    void deletesSpilledOutputWhenBatchFails() {
+        ExecutionRecorder recorder = recorder(16);
+        ExecutionOutputStore outputStore = mock(ExecutionOutputStore.class);
+        recorder.setOutputStore(outputStore);
+        Long spilled = recorder.record("a", 1, ExecutionMode.LOCAL, null, "ops",
+                CommandExecutionResult.builder().stdout("head").stdoutTruncated(true).build());
+        Long inline = recorder.record("a", 1, ExecutionMode.LOCAL, null, "ops",
+                CommandExecutionResult.builder().stdout("ok").build());
+        jdbcTemplate.execute("DROP TABLE execution_records");
+
+        recorder.flush();
+
+        verify(outputStore).delete(spilled);
+        verify(outputStore, never()).delete(inline);
+        assertThat(meterRegistry.get("httprun.execution.record.failed").counter().count()).isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("分批删除超过保留期的记录")
+    void purgesExpiredRecordsInChunks() {
+        ExecutionRecorder recorder = recorder(16);
+        Timestamp old = Timestamp.valueOf(LocalDateTime.now().minusDays(40));
+        for (int i = 1; i <= 5; i++) {
+            jdbcTemplate.update("INSERT INTO execution_records (id, command_name, execution_mode, exit_code, failed, "
+                    + "duration_ms, queue_wait_ms, stdout_bytes, stderr_bytes, stdout_truncated, stderr_truncated, "
+                    + "created_at) VALUES (?, 'old', 'LOCAL', 0, false, 1, 0, 0, 0, false, false, ?)", i, old);
+        }
+        recorder.record("fresh", 1, ExecutionMode.LOCAL, null, null,
+                CommandExecutionResult.builder().stdout("ok").build());
+        recorder.flush();
+
+        assertThat(recorder.purgeExpired()).isEqualTo(5);
+        assertThat(jdbcTemplate.queryForList("SELECT command_name FROM execution_records", String.class))
+                .containsExactly("fresh");
+    }
+}
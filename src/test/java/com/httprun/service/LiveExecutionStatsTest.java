@@ -0,0 +1,55 @@
+package com.httprun.service;
+
+import com.httprun.dto.response.LiveCommandStatsResponse;
+import com.httprun.service.impl.LiveExecutionStats;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * LiveExecutionStats 单元测试
+ */
+class LiveExecutionStatsTest {
+
+    @Test
+    @DisplayName("跟踪正在执行数与滑动窗口统计，并发布 Micrometer 指标")
+    void tracksInFlightAndWindows() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        LiveExecutionStats stats = new LiveExecutionStats(registry, 10);
+
+        LiveExecutionStats.Execution running = stats.begin("deploy");
+        stats.begin("deploy").finish(false);
+        LiveExecutionStats.Execution failed = stats.begin("deploy");
+        failed.finish(true);
+        failed.finish(true);
+
+        List<LiveCommandStatsResponse> snapshot = stats.snapshot();
+        assertThat(snapshot).hasSize(1);
+        assertThat(snapshot.get(0).getInFlight()).isEqualTo(1);
+        assertThat(snapshot.get(0).getWindows()).containsOnlyKeys("1m", "5m", "15m");
+        assertThat(snapshot.get(0).getWindows().get("1m").getCount()).isEqualTo(2);
+        assertThat(snapshot.get(0).getWindows().get("15m").getErrorCount()).isEqualTo(1);
+        assertThat(registry.get("httprun.command.execution.duration").tag("command", "deploy").summary().count())
+                .isEqualTo(2);
+
+        running.finish(false);
+        assertThat(registry.get("httprun.command.inflight").tag("command", "deploy").gauge().value()).isZero();
+    }
+
+    @Test
+    @DisplayName("超过命令数上限的命令合并计入 (other)")
+    void boundsTrackedCommands() {
+        LiveExecutionStats stats = new LiveExecutionStats(new SimpleMeterRegistry(), 2);
+
+        for (String name : List.of("a", "b", "c", "d")) {
+            stats.begin(name).finish(false);
+        }
+
+        assertThat(stats.snapshot()).extracting(LiveCommandStatsResponse::getCommandName)
+                .containsExactlyInAnyOrder("a", "b", "(other)");
+    }
+}
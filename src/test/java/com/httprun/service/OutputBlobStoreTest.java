@@ -0,0 +1,88 @@
+package com.httprun.service;
+
+import com.httprun.service.impl.OutputBlobStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * OutputBlobStore 单元测试（SQLite 临时库）
+ */
+class OutputBlobStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private OutputBlobStore store;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:sqlite:" + tempDir.resolve("blobs.db"), true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        createTable(jdbcTemplate);
+        store = new OutputBlobStore(jdbcTemplate, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.destroy();
+    }
+
+    static void createTable(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.execute("CREATE TABLE output_blobs (hash varchar(64) primary key, content blob not null, "
+                + "compressed boolean not null, raw_size integer not null, ref_count bigint not null, "
+                + "created_at timestamp not null, last_referenced_at timestamp not null)");
+    }
+
+    @Test
+    @DisplayName("相同输出只存一份并累加引用，重复与压缩节省的字节计入指标")
+    void deduplicatesAndCompresses() {
+        String healthy = "OK ".repeat(200);
+        List<String> hashes = store.store(Arrays.asList(healthy, null, healthy, "", "tiny"));
+        store.store(List.of(healthy));
+
+        assertThat(hashes.get(0)).hasSize(64).isEqualTo(hashes.get(2));
+        assertThat(hashes.get(1)).isNull();
+        assertThat(hashes.get(3)).isNull();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM output_blobs", Long.class)).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject("SELECT ref_count FROM output_blobs WHERE hash = ?", Long.class,
+                hashes.get(0))).isEqualTo(3);
+        assertThat(jdbcTemplate.queryForObject("SELECT compressed FROM output_blobs WHERE hash = ?", Boolean.class,
+                hashes.get(4))).isFalse();
+        assertThat(store.load(hashes.get(0))).isEqualTo(healthy);
+        assertThat(store.loadAll(hashes)).containsEntry(hashes.get(4), "tiny").hasSize(2);
+        assertThat(meterRegistry.get("httprun.output.blob.dedup.hits").counter().count()).isEqualTo(2.0);
+        assertThat(meterRegistry.get("httprun.output.blob.saved.bytes").counter().count())
+                .isGreaterThan(2.0 * healthy.length());
+    }
+
+    @Test
+    @DisplayName("释放引用后引用数归零的输出被删除，仍被引用的保留")
+    void releasesAndCollects() {
+        List<String> hashes = store.store(List.of("a", "a", "b"));
+
+        store.release(Map.of(hashes.get(0), 1L, hashes.get(2), 1L));
+
+        assertThat(jdbcTemplate.queryForList("SELECT hash FROM output_blobs", String.class))
+                .containsExactly(hashes.get(0));
+        jdbcTemplate.update("UPDATE output_blobs SET ref_count = 0");
+        assertThat(store.collectGarbage()).isEqualTo(1);
+        assertThat(store.load(hashes.get(0))).isNull();
+        assertThat(meterRegistry.get("httprun.output.blob.collected").counter().count()).isEqualTo(2.0);
+    }
+}
@@ -0,0 +1,70 @@
+package com.httprun.service;
+
+import com.httprun.service.impl.PooledIdAllocator;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * PooledIdAllocator 单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+class PooledIdAllocatorTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("PostgreSQL 下每次 nextval 分配一个 (v - size, v] 区间")
+    @SuppressWarnings("unchecked")
+    void postgresAllocatesPooledRanges() {
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn("PostgreSQL");
+        when(jdbcTemplate.queryForObject("SELECT nextval(?)", Long.class, "seq"))
+                .thenReturn(150L, 200L);
+        PooledIdAllocator allocator = new PooledIdAllocator(jdbcTemplate, "seq", "t", 50);
+
+        assertThat(allocator.nextId()).isEqualTo(101L);
+        for (int i = 0; i < 49; i++) {
+            allocator.nextId();
+        }
+        assertThat(allocator.nextId()).isEqualTo(151L);
+        verify(jdbcTemplate, times(2)).queryForObject("SELECT nextval(?)", Long.class, "seq");
+    }
+
+    @Test
+    @DisplayName("新建序列初始值小于步长时不分配非正数 id")
+    @SuppressWarnings("unchecked")
+    void postgresFreshSequence() {
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn("PostgreSQL");
+        when(jdbcTemplate.queryForObject("SELECT nextval(?)", Long.class, "seq"))
+                .thenReturn(1L, 51L);
+        PooledIdAllocator allocator = new PooledIdAllocator(jdbcTemplate, "seq", "t", 50);
+
+        assertThat(allocator.nextId()).isEqualTo(1L);
+        assertThat(allocator.nextId()).isEqualTo(2L);
+    }
+
+    @Test
+    @DisplayName("SQLite 下从 MAX(id) 开始在内存中递增")
+    @SuppressWarnings("unchecked")
+    void sqliteContinuesFromMaxId() {
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn("SQLite");
+        when(jdbcTemplate.queryForObject("SELECT MAX(id) FROM t", Long.class)).thenReturn(7L);
+        PooledIdAllocator allocator = new PooledIdAllocator(jdbcTemplate, "seq", "t", 50);
+
+        assertThat(allocator.nextId()).isEqualTo(8L);
+        for (int i = 0; i < 100; i++) {
+            allocator.nextId();
+        }
+        assertThat(allocator.nextId()).isEqualTo(109L);
+        verify(jdbcTemplate, times(1)).queryForObject("SELECT MAX(id) FROM t", Long.class);
+    }
+}
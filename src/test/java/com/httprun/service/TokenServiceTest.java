@@ -4,7 +4,11 @@ import com.httprun.entity.Token;
 import com.httprun.enums.ErrorCode;
 import com.httprun.exception.BusinessException;
 import com.httprun.repository.TokenRepository;
+import com.httprun.security.ActiveToken;
 import com.httprun.security.JwtTokenProvider;
+import com.httprun.security.TokenDigest;
+import com.httprun.security.TokenRegistry;
+import com.httprun.security.TokenRevocationSync;
 import com.httprun.service.impl.TokenServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -40,6 +44,12 @@ class TokenServiceTest {
     @Mock
     private JwtTokenProvider jwtTokenProvider;
 
+    @Mock
+    private TokenRegistry tokenRegistry;
+
+    @Mock
+    private TokenRevocationSync tokenRevocationSync;
+
     @InjectMocks
     private TokenServiceImpl tokenService;
 
@@ -72,6 +82,7 @@ class TokenServiceTest {
         assertThat(result).isNotNull();
         verify(jwtTokenProvider).generateToken(eq("user123"), eq("test-token"), eq(false), anyLong());
         verify(tokenRepository).save(any(Token.class));
+        verify(tokenRegistry).register(testToken);
     }
 
     @Test
@@ -153,6 +164,8 @@ class TokenServiceTest {
 
         // Then
         verify(tokenRepository).save(argThat(token -> Boolean.TRUE.equals(token.getRevoked())));
+        verify(tokenRevocationSync).publish(argThat(events -> events.size() == 1
+                && events.iterator().next().getJwtDigest().equals(TokenDigest.of("jwt-token-12345"))));
     }
 
     @Test
@@ -170,6 +183,7 @@ class TokenServiceTest {
     void deleteTokens_shouldDeleteMultipleTokens() {
         // Given
         List<Long> ids = List.of(1L, 2L, 3L);
+        when(tokenRepository.findAllById(ids)).thenReturn(List.of(testToken));
         when(tokenRepository.deleteByIdIn(ids)).thenReturn(3);
 
         // When
@@ -177,6 +191,7 @@ class TokenServiceTest {
 
         // Then
         verify(tokenRepository).deleteByIdIn(ids);
+        verify(tokenRevocationSync).publish(argThat(events -> events.size() == 1));
     }
 
     @Test
@@ -193,8 +208,8 @@ class TokenServiceTest {
         // Given
         String jwtToken = "valid-jwt";
         when(jwtTokenProvider.validateToken(jwtToken)).thenReturn(true);
-        when(tokenRepository.findValidToken(eq(jwtToken), anyLong()))
-                .thenReturn(Optional.of(testToken));
+        when(tokenRegistry.find(TokenDigest.of(jwtToken)))
+                .thenReturn(Optional.of(ActiveToken.of(testToken)));
 
         // When
         boolean result = tokenService.validateToken(jwtToken);
@@ -214,14 +229,14 @@ class TokenServiceTest {
 
         // Then
         assertThat(result).isFalse();
-        verify(tokenRepository, never()).findValidToken(any(), anyLong());
+        verify(tokenRegistry, never()).find(any());
     }
 
     @Test
     void getTokenByJwt_shouldReturnToken() {
         // Given
         String jwtToken = "jwt-token-12345";
-        when(tokenRepository.findByJwtToken(jwtToken)).thenReturn(Optional.of(testToken));
+        when(tokenRepository.findByJwtDigest(TokenDigest.of(jwtToken))).thenReturn(Optional.of(testToken));
 
         // When
         Token result = tokenService.getTokenByJwt(jwtToken);
@@ -234,7 +249,7 @@ class TokenServiceTest {
     @Test
     void getTokenByJwt_whenNotFound_shouldThrowException() {
         // Given
-        when(tokenRepository.findByJwtToken("invalid")).thenReturn(Optional.empty());
+        when(tokenRepository.findByJwtDigest(TokenDigest.of("invalid"))).thenReturn(Optional.empty());
 
         // When / Then
         assertThatThrownBy(() -> tokenService.getTokenByJwt("invalid"))
@@ -245,6 +260,7 @@ class TokenServiceTest {
     @Test
     void cleanExpiredTokens_shouldRevokeExpiredTokens() {
         // Given
+        when(tokenRepository.findByExpiresAtBeforeAndRevokedFalse(anyLong())).thenReturn(List.of(testToken));
         when(tokenRepository.revokeExpiredTokens(anyLong())).thenReturn(5);
 
         // When
@@ -253,5 +269,7 @@ class TokenServiceTest {
         // Then
         assertThat(result).isEqualTo(5);
         verify(tokenRepository).revokeExpiredTokens(anyLong());
+        verify(tokenRevocationSync).publish(argThat(events -> events.size() == 1
+                && events.iterator().next().getTokenId().equals(1L)));
     }
 }
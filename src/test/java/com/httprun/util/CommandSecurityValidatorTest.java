@@ -9,6 +9,7 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
+import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -378,4 +379,72 @@ class CommandSecurityValidatorTest {
             assertDoesNotThrow(() -> validator.performFullSecurityCheck(command, params, false));
         }
     }
+
+    // ========== 参数校验计划测试 ==========
+    @Nested
+    @DisplayName("参数校验计划测试")
+    class ValidationPlanTests {
+
+        private Command createCommand(ParamDefine... defines) {
+            Command command = new Command();
+            command.setId(1L);
+            command.setUpdatedAt(LocalDateTime.of(2024, 1, 1, 0, 0));
+            CommandConfig config = new CommandConfig();
+            config.setCommand("echo {{.input}}");
+            config.setParams(Arrays.asList(defines));
+            command.setCommandConfig(config);
+            return command;
+        }
+
+        private ParamDefine define(String name, String type) {
+            ParamDefine def = new ParamDefine();
+            def.setName(name);
+            def.setType(type);
+            return def;
+        }
+
+        @Test
+        @DisplayName("类型快速解析器与原正则语义一致")
+        void shouldParseTypesLikeRegex() {
+            Command command = createCommand(define("n", "int"), define("b", "bool"), define("ip", "ip"),
+                    define("h", "hostname"));
+
+            assertDoesNotThrow(() -> validator.validateAllParams(command,
+                    Map.of("n", "-12", "b", "yes", "ip", "10.0.0.1", "h", "web-01.example.com")));
+            assertDoesNotThrow(() -> validator.validateAllParams(command, Map.of("ip", "fe80::1")));
+            assertThrows(SecurityException.class, () -> validator.validateAllParams(command, Map.of("n", "-")));
+            assertThrows(SecurityException.class, () -> validator.validateAllParams(command, Map.of("b", "TRUE")));
+            assertThrows(SecurityException.class,
+                    () -> validator.validateAllParams(command, Map.of("ip", "1.2.3.4444")));
+            assertThrows(SecurityException.class, () -> validator.validateAllParams(command, Map.of("h", "a")));
+            assertThrows(SecurityException.class, () -> validator.validateAllParams(command, Map.of("h", "-a")));
+        }
+
+        @Test
+        @DisplayName("枚举型参数只允许配置的可选值")
+        void shouldRestrictOptions() {
+            ParamDefine env = define("env", "string");
+            env.setOptions(Arrays.asList("dev", "prod"));
+            Command command = createCommand(env);
+
+            assertDoesNotThrow(() -> validator.performFullSecurityCheck(command, Map.of("env", "prod"), true));
+            SecurityException e = assertThrows(SecurityException.class,
+                    () -> validator.performFullSecurityCheck(command, Map.of("env", "staging"), true));
+            assertTrue(e.getMessage().contains("允许的选项"));
+        }
+
+        @Test
+        @DisplayName("命令更新后重新编译校验计划")
+        void shouldRecompileOnUpdate() {
+            ParamDefine count = define("count", "string");
+            Command command = createCommand(count);
+            assertDoesNotThrow(() -> validator.performFullSecurityCheck(command, Map.of("count", "abc"), false));
+
+            count.setType("int");
+            command.setUpdatedAt(LocalDateTime.of(2024, 1, 2, 0, 0));
+
+            assertThrows(SecurityException.class,
+                    () -> validator.performFullSecurityCheck(command, Map.of("count", "abc"), false));
+        }
+    }
 }
@@ -0,0 +1,152 @@
+package com.httprun.util;
+
+import com.httprun.exception.SecurityException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * InjectionScanner 差分测试
+ * 与原先逐个 contains + 正则循环的实现逐条比对校验结果（含错误信息）
+ */
+class InjectionScannerTest {
+
+    private CommandSecurityValidator validator;
+
+    @BeforeEach
+    void setUp() {
+        validator = new CommandSecurityValidator();
+    }
+
+    @Test
+    @DisplayName("典型输入与原实现结果一致")
+    void shouldMatchLegacyOnKnownInputs() {
+        List<String> inputs = List.of(
+                "localhost", "google.com", "a b c", "hello-world_1.0",
+                "a;b", "a|b", "a||b", "a&&b", "`id`", "$(id)", "${HOME}", "$((1+1))", "a<b", "a>b", "a>>b",
+                "a\nb", "a\rb", "a\\b", "a|b;c", ">>;",
+                "%0a", "%0A", "%0D", "%00", "\u0000", "$IFS", "$ifs",
+                "{a,b}", "{a ,b}", "{,}", "}{,", "{a,b",
+                "base64 -d", "base64\t\t-d", "base64-d", "base64 --d", "BASE64 -d", "base64 base64 -d",
+                "../x", "..", "a/..", "a/.. ", "a/..\u0085", "...", "a..", "/..x", "/.", "x/../",
+                "%2e%2e/", "%2E%2E%5c", "%2e%2eC", "%2e%2e5", "%252E%252e", "..%c0%af", "..%C0%AF", "..%c1%9c",
+                "/etc/passwd", "/ETC/passwd", "/etc", "/root/.ssh", "/proc/1", "/sys/x", "/boot/x", "/var/log/x",
+                "/home/u/.ssh", "/home//.", "/home/u/x/.", "/home/home/x/.", "/home/a/b", "/HOME/u/.x",
+                "c:windows", "中文参数", "emoji 😀", "");
+        for (String input : inputs) {
+            assertThat(outcome(() -> validator.validateParamValue("p", input)))
+                    .as("input: %s", input)
+                    .isEqualTo(outcome(() -> LegacyValidator.validateParamValue("p", input)));
+        }
+    }
+
+    @Test
+    @DisplayName("随机组合输入与原实现结果一致")
+    void shouldMatchLegacyOnRandomInputs() {
+        String[] fragments = {
+                "a", "Z", "0", "5", "c", "C", "d", "e", "E", " ", "\t", "\u000B", "-", "-d", "/", ".", "..", ",",
+                "{", "}", "%", "%2e", "%2E", "%0", "%5c", "%c0%af", "%25", "2e", "$", "IFS", "base64", "home",
+                "/home/", "etc", "/etc/", "root", "proc", "var/log", " ", "\u0085", "é", "中", ";", "|", "&",
+                ">", "<", "\\", "`", "(", ")", "\n", "\r", "\u0000" };
+        Random random = new Random(20240601L);
+        for (int n = 0; n < 20_000; n++) {
+            StringBuilder sb = new StringBuilder();
+            int length = 1 + random.nextInt(8);
+            for (int i = 0; i < length; i++) {
+                // 让危险字符出现得少一些，保证后续的注入模式分支也被充分覆盖
+                int bound = random.nextInt(4) == 0 ? fragments.length : fragments.length - 10;
+                sb.append(fragments[random.nextInt(bound)]);
+            }
+            String input = sb.toString();
+            assertThat(outcome(() -> validator.validateParamValue("p", input)))
+                    .as("input: %s", input)
+                    .isEqualTo(outcome(() -> LegacyValidator.validateParamValue("p", input)));
+        }
+    }
+
+    private static String outcome(Runnable check) {
+        try {
+            check.run();
+            return "OK";
+        } catch (SecurityException e) {
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * 原 CommandSecurityValidator#validateParamValue 的实现（作为差分基准）
+     */
+    private static final class LegacyValidator {
+
+        private static final String[] DANGEROUS_CHARS = {
+                ";", "|", "&", "`", "$(", "${", "$((", "<", ">", ">>", "<<", "\n", "\r", "\\",
+        };
+
+        private static final List<Pattern> INJECTION_PATTERNS = Arrays.asList(
+                Pattern.compile("\\$\\([^)]*\\)"),
+                Pattern.compile("`[^`]*`"),
+                Pattern.compile("\\$\\{[^}]*}"),
+                Pattern.compile("&&"),
+                Pattern.compile("\\|\\|"),
+                Pattern.compile("\\|(?!\\|)"),
+                Pattern.compile(";"),
+                Pattern.compile("\\r?\\n"),
+                Pattern.compile("%0[aAdD]"),
+                Pattern.compile("\\x00"),
+                Pattern.compile("%00"),
+                Pattern.compile("\\$IFS"),
+                Pattern.compile("\\{.*,.*\\}"),
+                Pattern.compile("\\$\\{!.*\\}"),
+                Pattern.compile("\\$\\(\\(.*\\)\\)"),
+                Pattern.compile("base64\\s+-d"),
+                Pattern.compile("\\|\\s*sh"),
+                Pattern.compile("\\|\\s*bash"),
+                Pattern.compile("\\.\\./"),
+                Pattern.compile("\\.\\.\\\\"),
+                Pattern.compile("%2e%2e[/%5c]", Pattern.CASE_INSENSITIVE),
+                Pattern.compile("%252e%252e", Pattern.CASE_INSENSITIVE),
+                Pattern.compile("\\.\\.%c0%af"),
+                Pattern.compile("\\.\\.%c1%9c"),
+                Pattern.compile("/etc/"),
+                Pattern.compile("/root/"),
+                Pattern.compile("/home/[^/]+/\\."),
+                Pattern.compile("^/\\.\\."),
+                Pattern.compile("(?:^|/)\\.\\.(?:/|$)"),
+                Pattern.compile(">/dev/"),
+                Pattern.compile("/proc/"),
+                Pattern.compile("/sys/"),
+                Pattern.compile("/boot/"),
+                Pattern.compile("/var/log/"),
+                Pattern.compile("[a-zA-Z]:\\\\windows", Pattern.CASE_INSENSITIVE),
+                Pattern.compile("[a-zA-Z]:\\\\system32", Pattern.CASE_INSENSITIVE));
+
+        static void validateParamValue(String paramName, String value) {
+            if (value == null || value.isEmpty()) {
+                return;
+            }
+            for (String dangerous : DANGEROUS_CHARS) {
+                if (value.contains(dangerous)) {
+                    throw new SecurityException(
+                            String.format("参数 '%s' 包含不允许的字符: %s", paramName, dangerous));
+                }
+            }
+            for (Pattern pattern : INJECTION_PATTERNS) {
+                if (pattern.matcher(value).find()) {
+                    throw new SecurityException(
+                            String.format("参数 '%s' 包含可疑的命令注入模式", paramName));
+                }
+            }
+            if (value.length() > 10000) {
+                throw new SecurityException(
+                        String.format("参数 '%s' 长度超过限制（最大 10000 字符）", paramName));
+            }
+        }
+    }
+}
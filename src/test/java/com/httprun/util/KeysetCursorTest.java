@@ -0,0 +1,44 @@
+package com.httprun.util;
+
+import com.httprun.exception.BusinessException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * KeysetCursor 单元测试
+ */
+class KeysetCursorTest {
+
+    @Test
+    @DisplayName("编码后可原样解析，且为 URL 安全字符串")
+    void roundTrips() {
+        KeysetCursor cursor = new KeysetCursor(LocalDateTime.of(2026, 10, 19, 8, 30, 15, 123_000_000), 4242L);
+
+        String encoded = cursor.encode();
+
+        assertThat(encoded).matches("[A-Za-z0-9_-]+");
+        assertThat(KeysetCursor.decode(encoded)).isEqualTo(cursor);
+    }
+
+    @Test
+    @DisplayName("空游标表示第一页")
+    void blankMeansFirstPage() {
+        assertThat(KeysetCursor.decode(null)).isNull();
+        assertThat(KeysetCursor.decode(" ")).isNull();
+    }
+
+    @Test
+    @DisplayName("无效游标返回参数错误")
+    void rejectsInvalidCursor() {
+        assertThatThrownBy(() -> KeysetCursor.decode("not a cursor"))
+                .isInstanceOf(BusinessException.class)
+                .hasMessageContaining("Invalid cursor");
+        assertThatThrownBy(() -> KeysetCursor.decode("djJ8eHx5"))
+                .isInstanceOf(BusinessException.class);
+    }
+}
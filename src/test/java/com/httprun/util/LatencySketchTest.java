@@ -0,0 +1,66 @@
+package com.httprun.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * LatencySketch 单元测试
+ */
+class LatencySketchTest {
+
+    @Test
+    @DisplayName("分位数估算值相对误差不超过 2%")
+    void estimatesQuantilesWithinRelativeError() {
+        LatencySketch sketch = new LatencySketch();
+        for (long v = 1; v <= 10_000; v++) {
+            sketch.add(v);
+        }
+
+        assertThat(sketch.getCount()).isEqualTo(10_000);
+        assertThat((double) sketch.quantile(0.5)).isCloseTo(5_000, within(100.0));
+        assertThat((double) sketch.quantile(0.99)).isCloseTo(9_900, within(198.0));
+        assertThat(new LatencySketch().quantile(0.5)).isNull();
+    }
+
+    @Test
+    @DisplayName("分别汇总后合并与整体汇总结果一致")
+    void mergeEqualsCombinedSketch() {
+        LatencySketch combined = new LatencySketch();
+        LatencySketch first = new LatencySketch();
+        LatencySketch second = new LatencySketch();
+        for (long v = 0; v < 2_000; v++) {
+            combined.add(v * 7);
+            (v % 2 == 0 ? first : second).add(v * 7);
+        }
+
+        LatencySketch merged = first.merge(second);
+
+        assertThat(merged.getCount()).isEqualTo(combined.getCount());
+        for (double q : new double[] { 0, 0.25, 0.5, 0.95, 1 }) {
+            assertThat(merged.quantile(q)).isEqualTo(combined.quantile(q));
+        }
+    }
+
+    @Test
+    @DisplayName("序列化后反序列化保持计数与分位数，损坏的数据被拒绝")
+    void roundTripsThroughBytes() {
+        LatencySketch sketch = new LatencySketch();
+        sketch.add(0);
+        sketch.add(3);
+        sketch.add(120);
+        sketch.add(3_600_000);
+
+        LatencySketch restored = LatencySketch.fromBytes(sketch.toBytes());
+
+        assertThat(restored.getCount()).isEqualTo(4);
+        assertThat(restored.quantile(0)).isZero();
+        assertThat(restored.quantile(1)).isEqualTo(sketch.quantile(1));
+        assertThat(LatencySketch.fromBytes(null).getCount()).isZero();
+        assertThatThrownBy(() -> LatencySketch.fromBytes(new byte[] { 1, (byte) 0x80 }))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,103 @@
+package com.httprun.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * OutputSpillFile 单元测试
+ */
+class OutputSpillFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static String line(int i) {
+        return "line-" + i + (i % 7 == 0 ? " 中文😀" : "");
+    }
+
+    private OutputSpillFile writeLines(int count, boolean trailingNewline) throws Exception {
+        OutputSpillFile file = OutputSpillFile.create(tempDir.resolve("tmp"));
+        StringBuilder chunk = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            chunk.append(line(i));
+            if (i < count - 1 || trailingNewline) {
+                chunk.append('\n');
+            }
+            if (chunk.length() > 700) {
+                // 在代理对中间切分，验证跨写入的字符编码
+                int cut = chunk.length() - 1;
+                file.write(chunk, 0, cut);
+                chunk.delete(0, cut);
+            }
+        }
+        file.write(chunk, 0, chunk.length());
+        file.finish();
+        return file;
+    }
+
+    @Test
+    @DisplayName("按稀疏索引从任意行开始分页读取，跨检查点与文件末尾都正确")
+    void readsLinePagesAcrossCheckpoints() throws Exception {
+        int total = OutputSpillFile.LINE_INDEX_INTERVAL * 3 + 17;
+        OutputSpillFile file = writeLines(total, false);
+        Path target = tempDir.resolve("0").resolve("42.stdout");
+        file.moveTo(target, "ops");
+
+        OutputSpillFile.Index index = OutputSpillFile.readIndex(target);
+        assertThat(index.owner()).isEqualTo("ops");
+        assertThat(index.lines()).isEqualTo(total);
+        assertThat(index.size()).isEqualTo(Files.size(target));
+        assertThat(index.offsets()).hasSize(3);
+
+        OutputSpillFile.Lines first = OutputSpillFile.readLines(target, 0, 5, 1 << 20);
+        assertThat(first.lines()).containsExactly(line(0), line(1), line(2), line(3), line(4));
+        assertThat(first.nextLine()).isEqualTo(5);
+        assertThat(first.hasMore()).isTrue();
+
+        long from = OutputSpillFile.LINE_INDEX_INTERVAL * 2L - 2;
+        OutputSpillFile.Lines middle = OutputSpillFile.readLines(target, from, 4, 1 << 20);
+        assertThat(middle.lines()).containsExactly(line((int) from), line((int) from + 1), line((int) from + 2),
+                line((int) from + 3));
+
+        OutputSpillFile.Lines last = OutputSpillFile.readLines(target, total - 2, 100, 1 << 20);
+        assertThat(last.lines()).containsExactly(line(total - 2), line(total - 1));
+        assertThat(last.nextLine()).isEqualTo(total);
+        assertThat(last.hasMore()).isFalse();
+
+        assertThat(OutputSpillFile.readLines(target, total, 10, 1 << 20).lines()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("单页字节上限截断超长行，按字节范围读取原样写出")
+    void capsPageBytesAndTransfersRanges() throws Exception {
+        OutputSpillFile file = OutputSpillFile.create(tempDir);
+        String longLine = "x".repeat(5000);
+        String text = longLine + "\nshort\n";
+        file.write(text, 0, text.length());
+        file.finish();
+
+        assertThat(OutputSpillFile.readIndex(file.path()).owner()).isNull();
+        OutputSpillFile.Lines page = OutputSpillFile.readLines(file.path(), 0, 10, 1000);
+        assertThat(page.lines()).containsExactly("x".repeat(1000));
+        assertThat(page.nextLine()).isEqualTo(1);
+        assertThat(page.hasMore()).isTrue();
+        assertThat(OutputSpillFile.readLines(file.path(), 1, 10, 1000).lines()).containsExactly("short");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long sent = OutputSpillFile.transferTo(file.path(), 4998, 8, Channels.newChannel(out));
+        assertThat(sent).isEqualTo(8);
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("xx\nshort");
+
+        file.delete();
+        assertThat(Files.exists(file.path())).isFalse();
+    }
+}
@@ -0,0 +1,89 @@
+package com.httprun.util;
+
+import com.httprun.executor.OutputCapture;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * SecretMaskingFilter 单元测试
+ */
+class SecretMaskingFilterTest {
+
+    @Test
+    @DisplayName("无敏感值时原样输出")
+    void shouldPassThroughWithoutSecrets() {
+        assertThat(SecretMaskingFilter.of(List.of("", "")).isEmpty()).isTrue();
+        assertThat(SecretMaskingFilter.NONE.mask("password=abc")).isEqualTo("password=abc");
+    }
+
+    @Test
+    @DisplayName("脱敏所有出现位置，重叠与相邻命中合并为一个掩码")
+    void shouldMaskAllOccurrences() {
+        SecretMaskingFilter filter = SecretMaskingFilter.of(List.of("abc", "bcd", "pass"));
+
+        assertThat(filter.mask("user=root pass=pass")).isEqualTo("user=root ***=***");
+        assertThat(filter.mask("xabcdx")).isEqualTo("x***x");
+        assertThat(filter.mask("abcabc")).isEqualTo("***");
+        assertThat(filter.mask("ab bc cd")).isEqualTo("ab bc cd");
+    }
+
+    @Test
+    @DisplayName("同一前缀下多条出边按任意插入顺序都能命中")
+    void shouldMatchBranchingPrefixes() {
+        SecretMaskingFilter filter = SecretMaskingFilter.of(List.of("key-z", "key-a", "key-m", "kez", "k😀"));
+
+        assertThat(filter.mask("key-a key-m key-z key-b")).isEqualTo("*** *** *** key-b");
+        assertThat(filter.mask("kez k😀 ke")).isEqualTo("*** *** ke");
+    }
+
+    @Test
+    @DisplayName("任意分块写入与整体脱敏结果一致")
+    void shouldMaskAcrossChunkBoundaries() {
+        List<String> secrets = List.of("aab", "ab", "baba", "密钥b");
+        SecretMaskingFilter filter = SecretMaskingFilter.of(secrets);
+        String alphabet = "ab密钥 ";
+        Random random = new Random(42L);
+
+        for (int n = 0; n < 2_000; n++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(40);
+            for (int i = 0; i < length; i++) {
+                text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String input = text.toString();
+
+            StringBuilder chunked = new StringBuilder();
+            SecretMaskingFilter.Stream stream = filter.newStream();
+            int pos = 0;
+            while (pos < input.length()) {
+                int end = Math.min(input.length(), pos + 1 + random.nextInt(5));
+                stream.write(input.substring(pos, end), chunked);
+                pos = end;
+            }
+            stream.finish(chunked);
+
+            assertThat(chunked.toString()).as("input: %s", input).isEqualTo(filter.mask(input));
+            assertThat(chunked.toString()).as("input: %s", input).doesNotContain("aab", "ab", "baba", "密钥b");
+        }
+    }
+
+    @Test
+    @DisplayName("字节流按 UTF-8 增量解码，多字节字符跨写入边界仍能命中")
+    void shouldMaskByteStreamSplitInsideMultibyteChar() throws Exception {
+        OutputCapture capture = new OutputCapture(SecretMaskingFilter.of(List.of("密码")));
+        byte[] bytes = "值:密码!".getBytes(StandardCharsets.UTF_8);
+        OutputStream out = capture.asOutputStream(StandardCharsets.UTF_8);
+        for (byte b : bytes) {
+            out.write(b);
+        }
+
+        assertThat(capture.finish()).isEqualTo("值:***!");
+    }
+}
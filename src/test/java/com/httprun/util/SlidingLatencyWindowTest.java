@@ -0,0 +1,73 @@
+package com.httprun.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * SlidingLatencyWindow 单元测试
+ */
+class SlidingLatencyWindowTest {
+
+    @Test
+    @DisplayName("只汇总窗口内的槽位，过期槽位被新时间复用")
+    void countsOnlySlotsInsideWindow() {
+        SlidingLatencyWindow window = new SlidingLatencyWindow(1_000, 10);
+        window.record(100, false, 0);
+        window.record(100, true, 5_500);
+        window.record(100, false, 9_999);
+
+        assertThat(window.snapshot(5_000, 9_999).getCount()).isEqualTo(2);
+        assertThat(window.snapshot(10_000, 9_999).getCount()).isEqualTo(3);
+        assertThat(window.snapshot(10_000, 9_999).getErrors()).isEqualTo(1);
+
+        // 时间前进一整圈后，槽位 0 被新时间占用，旧数据不再计入
+        window.record(100, false, 10_000);
+        assertThat(window.snapshot(10_000, 10_000).getCount()).isEqualTo(3);
+        assertThat(window.snapshot(1_000, 10_000).ratePerSecond()).isCloseTo(1000.0, within(0.1));
+    }
+
+    @Test
+    @DisplayName("分位数估算值相对误差约 5%")
+    void estimatesQuantiles() {
+        SlidingLatencyWindow window = new SlidingLatencyWindow(60_000, 2);
+        for (long v = 1; v <= 1_000; v++) {
+            window.record(v, false, 30_000);
+        }
+
+        SlidingLatencyWindow.Snapshot snapshot = window.snapshot(60_000, 30_000);
+
+        assertThat((double) snapshot.quantile(0.5)).isCloseTo(500, within(25.0));
+        assertThat((double) snapshot.quantile(0.99)).isCloseTo(990, within(50.0));
+        assertThat(new SlidingLatencyWindow(1_000, 2).snapshot(1_000, 0).quantile(0.5)).isNull();
+    }
+
+    @Test
+    @DisplayName("多线程并发写入不丢失计数")
+    void concurrentRecordsAreNotLost() throws Exception {
+        SlidingLatencyWindow window = new SlidingLatencyWindow(1_000, 4);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < 8; t++) {
+            pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < 10_000; i++) {
+                    window.record(i % 500, false, 2_500);
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(window.snapshot(1_000, 2_500).getCount()).isEqualTo(80_000);
+    }
+}
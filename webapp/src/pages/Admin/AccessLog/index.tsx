@@ -25,7 +25,7 @@ import {
 import type { ColumnsType } from 'antd/es/table';
 import { PageContainer } from '@ant-design/pro-components';
 import dayjs from 'dayjs';
-import { getAccessLogList } from '@/services/httprun';
+import { getAccessLogList, getExecutionHistoryDetail } from '@/services/httprun';
 
 const { Text } = Typography;
 
@@ -60,6 +60,18 @@ const AdminAccessLog: React.FC = () => {
   const [logType, setLogType] = useState<'command' | 'all'>('all');
   const [detailModal, setDetailModal] = useState<HTTPRUN.AccessLogItem | null>(null);
 
+  // 打开详情弹窗，并按需加载请求 / 响应内容
+  const openDetail = (item: HTTPRUN.AccessLogItem) => {
+    setDetailModal(item);
+    getExecutionHistoryDetail(item.id, item.createdAt)
+      .then((detail) => {
+        setDetailModal((current) => (current && current.id === item.id ? { ...current, ...detail } : current));
+      })
+      .catch(() => {
+        message.error('加载日志详情失败');
+      });
+  };
+
   const refresh = useCallback(() => {
     setLoading(true);
     getAccessLogList({ ...page, type: logType, keyword: searchText || undefined })
@@ -207,7 +219,7 @@ const AdminAccessLog: React.FC = () => {
             type="link"
             size="small"
             icon={<EyeOutlined />}
-            onClick={() => setDetailModal(record)}
+            onClick={() => openDetail(record)}
           />
         </Tooltip>
       ),
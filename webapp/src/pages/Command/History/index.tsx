@@ -37,6 +37,7 @@ import {
   getUserCommandList,
   runCommand,
   getExecutionHistory,
+  getExecutionHistoryDetail,
   deleteExecutionHistoryItem,
   deleteExecutionHistoryBatch,
   clearExecutionHistory,
@@ -194,6 +195,18 @@ const CommandHistory: React.FC = () => {
   };
 
   // 重新执行命令
+  // 打开详情弹窗，并按需加载请求 / 响应内容
+  const openDetail = (item: HTTPRUN.AccessLogItem) => {
+    setDetailModal(item);
+    getExecutionHistoryDetail(item.id, item.createdAt)
+      .then((detail) => {
+        setDetailModal((current) => (current && current.id === item.id ? { ...current, ...detail } : current));
+      })
+      .catch(() => {
+        message.error('加载记录详情失败');
+      });
+  };
+
   const handleRerun = (item: HTTPRUN.AccessLogItem) => {
     if (!item.commandName) {
       message.warning('无法获取命令名称');
@@ -206,18 +219,20 @@ const CommandHistory: React.FC = () => {
       return;
     }
     
-    // 解析参数
-    let params: HTTPRUN.Param[] = [];
-    try {
-      const requestData = JSON.parse(item.request || '{}');
-      params = requestData.params || [];
-    } catch {
-      params = [];
-    }
-    
     message.loading({ content: '正在执行...', key: 'rerun' });
     
-    runCommand(item.commandName, params, [])
+    // 列表只返回元数据，请求参数需从详情接口获取
+    getExecutionHistoryDetail(item.id, item.createdAt)
+      .then((detail) => {
+        let params: HTTPRUN.Param[] = [];
+        try {
+          const requestData = JSON.parse(detail.request || '{}');
+          params = requestData.params || [];
+        } catch {
+          params = [];
+        }
+        return runCommand(item.commandName, params, []);
+      })
       .then(() => {
         message.success({ content: '执行完成', key: 'rerun' });
         // 重新加载历史记录
@@ -351,7 +366,7 @@ const CommandHistory: React.FC = () => {
               type="link"
               size="small"
               icon={<EyeOutlined />}
-              onClick={() => setDetailModal(record)}
+              onClick={() => openDetail(record)}
             />
           </Tooltip>
           {record.commandName && (
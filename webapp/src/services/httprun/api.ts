@@ -59,6 +59,20 @@ export async function getExecutionHistory(
   );
 }
 
+/** 获取执行记录详情（含请求/响应内容） GET /api/run/history/:id */
+export async function getExecutionHistoryDetail(
+  id: number,
+  createdAt?: string,
+  options?: { [key: string]: any },
+) {
+  const query = createdAt ? `?createdAt=${encodeURIComponent(createdAt)}` : '';
+  return request<HTTPRUN.AccessLogItem>(`/api/run/history/${id}${query}`, {
+    method: 'GET',
+    headers: getTokenHeader(),
+    ...(options || {}),
+  });
+}
+
 /** 删除执行记录 DELETE /api/run/history/:id */
 export async function deleteExecutionHistoryItem(
   id: number,
@@ -8,6 +8,8 @@ declare namespace HTTPRUN {
     type: 'string' | 'int' | 'bool';
     defaultValue: string | number | boolean | undefined;
     required: boolean;
+    /** 可选值列表（枚举型参数） */
+    options?: string[];
   };
 
   /** 参数 */
@@ -115,8 +117,9 @@ declare namespace HTTPRUN {
     path: string;
     ip: string;
     method: string;
-    request: string;
-    response: string;
+    // 请求 / 响应内容仅由详情接口返回
+    request?: string;
+    response?: string;
     statusCode: number;
     duration: number;
     // 审计增强字段